@@ -17,7 +17,7 @@
 package de.uniulm.ki.panda3.progression.TDGReachabilityAnalysis;
 
 import de.uniulm.ki.panda3.progression.htn.representation.ProMethod;
-import de.uniulm.ki.panda3.progression.htn.search.ProgressionNetwork;
+import de.uniulm.ki.panda3.progression.htn.search.ProgressionContext;
 import de.uniulm.ki.panda3.progression.htn.search.ProgressionPlanStep;
 import de.uniulm.ki.panda3.symbolic.domain.Task;
 
@@ -29,6 +29,8 @@ import java.util.*;
  */
 public class TDGLandmarkFactory implements IActionReachability, IDisjunctiveLandmarks {
 
+    private final ProgressionContext context;
+
     private final int numActions;
     private final int numTasks;
     private int nodeCount;
@@ -48,15 +50,16 @@ public class TDGLandmarkFactory implements IActionReachability, IDisjunctiveLand
     BitSet[][] relaxedLandmarks;
 
 
-    static public int tToI(Task t) {
-        return ProgressionNetwork.taskToIndex.get(t);
+    public int tToI(Task t) {
+        return context.taskToIndex.get(t);
     }
 
-    static public Task iToT(int i) {
-        return ProgressionNetwork.indexToTask[i];
+    public Task iToT(int i) {
+        return context.indexToTask[i];
     }
 
-    public TDGLandmarkFactory(HashMap<Task, List<ProMethod>> methods, List<ProgressionPlanStep> initialTasks, int numTasks, int numActions) {
+    public TDGLandmarkFactory(ProgressionContext context, HashMap<Task, List<ProMethod>> methods, List<ProgressionPlanStep> initialTasks, int numTasks, int numActions) {
+        this.context = context;
         System.out.println("Calculating HTN reachability ...");
         long time = System.currentTimeMillis();
         this.numActions = numActions;
@@ -495,6 +498,13 @@ public class TDGLandmarkFactory implements IActionReachability, IDisjunctiveLand
         return this.relaxedLandmarks[task];
     }
 
+    /**
+     * returns the tasks that are contained in every decomposition of the given task (including the task itself)
+     */
+    public BitSet getLandmarks(int task) {
+        return this.necessary[task];
+    }
+
 
     /*
      * printer functions
@@ -502,7 +512,7 @@ public class TDGLandmarkFactory implements IActionReachability, IDisjunctiveLand
 
     private void printDisLMTranslation() {
         for (int i = numActions; i < numTasks; i++) {
-            System.out.println(ProgressionNetwork.indexToTask[i].name() + " :");
+            System.out.println(context.indexToTask[i].name() + " :");
             for (int j = 0; j < relaxedLandmarks[i].length; j++) {
                 BitSet lms = relaxedLandmarks[i][j];
                 boolean first = true;
@@ -512,7 +522,7 @@ public class TDGLandmarkFactory implements IActionReachability, IDisjunctiveLand
                         first = false;
                     } else
                         System.out.print("   ");
-                    System.out.println(ProgressionNetwork.indexToTask[lm].name());
+                    System.out.println(context.indexToTask[lm].name());
                 }
             }
         }
@@ -521,7 +531,7 @@ public class TDGLandmarkFactory implements IActionReachability, IDisjunctiveLand
     private void printDisLMs() {
         for (int i = numActions; i < numTasks; i++) {
             if (relLMs[i].size() > 0) {
-                System.out.println(ProgressionNetwork.indexToTask[i].name() + " :");
+                System.out.println(context.indexToTask[i].name() + " :");
                 for (String key : relLMs[i].keySet()) {
                     for (String[] params : relLMs[i].get(key)) {
                         System.out.print(" - " + key);
@@ -538,10 +548,10 @@ public class TDGLandmarkFactory implements IActionReachability, IDisjunctiveLand
     private void printBS(BitSet[] someBS) {
         for (int i = numActions; i < numTasks; i++) {
             if (someBS[i].length() > 0) {
-                System.out.println(ProgressionNetwork.indexToTask[i].name() + " :");
+                System.out.println(context.indexToTask[i].name() + " :");
                 int j = someBS[i].nextSetBit(0);
                 while (j >= 0) {
-                    System.out.println(" - " + ProgressionNetwork.indexToTask[j].name());
+                    System.out.println(" - " + context.indexToTask[j].name());
                     j = someBS[i].nextSetBit(j + 1);
                 }
                 System.out.println();
@@ -555,7 +565,7 @@ public class TDGLandmarkFactory implements IActionReachability, IDisjunctiveLand
      */
 
     private boolean implementationEquality(HashMap<Task, List<ProMethod>> methods, List<ProgressionPlanStep> initialTasks, int numTasks, int numActions) {
-        TaskReachabilityGraph that = new TaskReachabilityGraph(methods, initialTasks, numTasks, numActions);
+        TaskReachabilityGraph that = new TaskReachabilityGraph(context, methods, initialTasks, numTasks, numActions);
         for (int i = 0; i < numTasks; i++) {
             BitSet thisImplementation = this.getReachableActions(i);
             BitSet thatImplementation = that.getReachableActions(i);
@@ -17,7 +17,7 @@
 package de.uniulm.ki.panda3.progression.TDGReachabilityAnalysis;
 
 import de.uniulm.ki.panda3.progression.htn.representation.ProMethod;
-import de.uniulm.ki.panda3.progression.htn.search.ProgressionNetwork;
+import de.uniulm.ki.panda3.progression.htn.search.ProgressionContext;
 import de.uniulm.ki.panda3.progression.htn.search.ProgressionPlanStep;
 import de.uniulm.ki.panda3.symbolic.domain.Task;
 
@@ -29,6 +29,8 @@ import java.util.*;
  */
 public class TaskReachabilityGraph implements IActionReachability {
 
+    private final ProgressionContext context;
+
     private BitSet root = null;
     private BitSet reachableTasks[]; // maps a task to itself and all TASKS that are reachable via decomposition
     private BitSet reachableActions[]; // maps a task to (possibly) itself and all ACTIONS that are reachable via decomposition
@@ -37,11 +39,11 @@ public class TaskReachabilityGraph implements IActionReachability {
     private int[] taskToScc; // maps a task to its SCC
     private BitSet[] scc2reachableTasks; // maps an SCC to all TASKS reachable from it
 
-    static public int tToI(Task t) {
-        return ProgressionNetwork.taskToIndex.get(t);
+    public int tToI(Task t) {
+        return context.taskToIndex.get(t);
     }
 
-    static public int[] maxDecompDepth; // this is the maximum decomposition depth that is left before tasks are primitive
+    public int[] maxDecompDepth; // this is the maximum decomposition depth that is left before tasks are primitive
 
     /*
     public TopDownReachabilityGraph(HashMap<Task, HashMap<GroundTask, List<method>>> methods, List<ProgressionPlanStep> initialTasks, int numTasks, int numActions, HashMap<GroundTask, Integer> mapping) {
@@ -51,7 +53,8 @@ public class TaskReachabilityGraph implements IActionReachability {
 
     }*/
 
-    public TaskReachabilityGraph(HashMap<Task, List<ProMethod>> methods, List<ProgressionPlanStep> initialTasks, int numTasks, int numActions) {
+    public TaskReachabilityGraph(ProgressionContext context, HashMap<Task, List<ProMethod>> methods, List<ProgressionPlanStep> initialTasks, int numTasks, int numActions) {
+        this.context = context;
         System.out.println("Calculating top down reachability ...");
         long time = System.currentTimeMillis();
 
@@ -145,6 +148,7 @@ public class TaskReachabilityGraph implements IActionReachability {
                 v = reachableTasks[i].nextSetBit(v + 1);
             }
         }
+        context.maxDecompDepth = this.maxDecompDepth;
 
         System.out.println(" - Reachability calculated in " + (System.currentTimeMillis() - time) + " ms.");
     }
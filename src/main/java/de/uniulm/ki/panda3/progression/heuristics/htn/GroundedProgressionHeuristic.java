@@ -37,10 +37,34 @@ public abstract class GroundedProgressionHeuristic {
 
     public abstract void build(ProgressionNetwork tn);
 
+    /**
+     * Returns an instance that can be used by a further search thread, i.e. one that does not share any mutable
+     * state with this object. The returned object has to have the same runtime type as this one.
+     */
+    public abstract GroundedProgressionHeuristic copyForWorker();
+
     public abstract GroundedProgressionHeuristic update(ProgressionNetwork newTN, ProgressionPlanStep ps, ProMethod m);
 
     public abstract GroundedProgressionHeuristic update(ProgressionNetwork newTN, ProgressionPlanStep ps);
 
+    /**
+     * Computes the heuristic of a network created from the one whose heuristic is parent, like
+     * parent.update(newTN, ps, m), but with the mutable data of this object: this has to be a worker copy (see
+     * copyForWorker) of the thread calling it, parent may belong to any thread. The information that belongs to the
+     * parent node is taken from parent. The default implementation is correct for heuristics whose update reads no
+     * mutable data, all others have to override it.
+     */
+    public GroundedProgressionHeuristic update(GroundedProgressionHeuristic parent, ProgressionNetwork newTN, ProgressionPlanStep ps, ProMethod m) {
+        return parent.update(newTN, ps, m);
+    }
+
+    /**
+     * Like update(parent, newTN, ps, m) for the application of an action.
+     */
+    public GroundedProgressionHeuristic update(GroundedProgressionHeuristic parent, ProgressionNetwork newTN, ProgressionPlanStep ps) {
+        return parent.update(newTN, ps);
+    }
+
     public abstract int getHeuristic();
 
     public abstract boolean goalRelaxedReachable();
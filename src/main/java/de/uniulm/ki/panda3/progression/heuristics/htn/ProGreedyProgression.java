@@ -40,6 +40,11 @@ public class ProGreedyProgression extends GroundedProgressionHeuristic {
         this.heuristic = -1 * (tn.numProgressionSteps);
     }
 
+    @Override
+    public GroundedProgressionHeuristic copyForWorker() {
+        return new ProGreedyProgression();
+    }
+
     @Override
     public GroundedProgressionHeuristic update(ProgressionNetwork newTN, ProgressionPlanStep ps, ProMethod m) {
         this.build(newTN);
@@ -52,6 +57,17 @@ public class ProGreedyProgression extends GroundedProgressionHeuristic {
         return this;
     }
 
+    @Override
+    public GroundedProgressionHeuristic update(GroundedProgressionHeuristic parent, ProgressionNetwork newTN, ProgressionPlanStep ps, ProMethod m) {
+        // the value only depends on the new network, but the object is changed
+        return update(newTN, ps, m);
+    }
+
+    @Override
+    public GroundedProgressionHeuristic update(GroundedProgressionHeuristic parent, ProgressionNetwork newTN, ProgressionPlanStep ps) {
+        return update(newTN, ps);
+    }
+
     @Override
     public int getHeuristic() {
         return heuristic;
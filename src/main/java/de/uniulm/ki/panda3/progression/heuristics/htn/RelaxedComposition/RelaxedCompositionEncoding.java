@@ -19,6 +19,7 @@ package de.uniulm.ki.panda3.progression.heuristics.htn.RelaxedComposition;
 import de.uniulm.ki.panda3.progression.TDGReachabilityAnalysis.IActionReachability;
 import de.uniulm.ki.panda3.progression.htn.representation.ProMethod;
 import de.uniulm.ki.panda3.progression.htn.representation.SasPlusProblem;
+import de.uniulm.ki.panda3.progression.htn.search.ProgressionContext;
 import de.uniulm.ki.panda3.progression.htn.search.ProgressionPlanStep;
 import de.uniulm.ki.panda3.symbolic.domain.Task;
 
@@ -30,6 +31,7 @@ import java.util.List;
  * Created by dh on 16.08.17.
  */
 public abstract class RelaxedCompositionEncoding extends SasPlusProblem {
+    protected ProgressionContext context;
     public int methodCosts = 1;
     int numOfNonHtnActions;
     public IActionReachability tdRechability;
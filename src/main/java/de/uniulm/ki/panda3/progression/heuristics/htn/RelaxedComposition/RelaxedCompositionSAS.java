@@ -17,7 +17,7 @@
 package de.uniulm.ki.panda3.progression.heuristics.htn.RelaxedComposition;
 
 import de.uniulm.ki.panda3.progression.htn.representation.ProMethod;
-import de.uniulm.ki.panda3.progression.htn.search.ProgressionNetwork;
+import de.uniulm.ki.panda3.progression.htn.search.ProgressionContext;
 import de.uniulm.ki.panda3.progression.htn.search.ProgressionPlanStep;
 import de.uniulm.ki.panda3.progression.TDGReachabilityAnalysis.TDGLandmarkFactory;
 import de.uniulm.ki.panda3.progression.htn.representation.SasPlusProblem;
@@ -46,8 +46,10 @@ public class RelaxedCompositionSAS extends RelaxedCompositionEncoding {
 
     public BitSet s0mask;
 
-    public RelaxedCompositionSAS(SasPlusProblem p) {
+    public RelaxedCompositionSAS(ProgressionContext context) {
+        SasPlusProblem p = context.flatProblem;
         assert (p.correctModel());
+        this.context = context;
 
         this.numOfStateFeatures = p.numOfStateFeatures;
         this.numOfOperators = p.numOfOperators;
@@ -74,8 +76,8 @@ public class RelaxedCompositionSAS extends RelaxedCompositionEncoding {
                                       List<ProgressionPlanStep> initialTasks) {
         this.numOfNonHtnActions = numOfOperators;
         this.numAnM = createMethodLookupTable(methods);
-        this.numTasks = ProgressionNetwork.indexToTask.length;
-        tdRechability = new TDGLandmarkFactory(methods, initialTasks, this.numTasks, this.numOfOperators);
+        this.numTasks = context.indexToTask.length;
+        tdRechability = new TDGLandmarkFactory(context, methods, initialTasks, this.numTasks, this.numOfOperators);
 
         unreachable = new int[numOfOperators];
         reachable = new int[numOfOperators];
@@ -157,11 +159,11 @@ public class RelaxedCompositionSAS extends RelaxedCompositionEncoding {
 
             for (int iSubTask = 0; iSubTask < m.subtasks.length; iSubTask++) {
                 Task t = m.subtasks[iSubTask];
-                int taskIndex = ProgressionNetwork.taskToIndex.get(t);
+                int taskIndex = context.taskToIndex.get(t);
                 tPrecLists[iM][iSubTask] = reached[taskIndex];
             }
 
-            int compTaskIndex = ProgressionNetwork.taskToIndex.get(m.m.abstractTask());
+            int compTaskIndex = context.taskToIndex.get(m.m.abstractTask());
             tAddLists[iM] = new int[1];
             tAddLists[iM][0] = reached[compTaskIndex];
             tDelLists[iM] = new int[1];
@@ -220,9 +222,9 @@ public class RelaxedCompositionSAS extends RelaxedCompositionEncoding {
         assert current == firstBurIndex;
         for (int i = 0; i < numTasks; i++) {
             assert current == unreached[i];
-            tFactStrs[current++] = "unreached-" + ProgressionNetwork.indexToTask[i].shortInfo();
+            tFactStrs[current++] = "unreached-" + context.indexToTask[i].shortInfo();
             assert current == reached[i];
-            tFactStrs[current++] = "reached-" + ProgressionNetwork.indexToTask[i].shortInfo();
+            tFactStrs[current++] = "reached-" + context.indexToTask[i].shortInfo();
         }
         assert (current - 1) == lastOverallIndex;
 
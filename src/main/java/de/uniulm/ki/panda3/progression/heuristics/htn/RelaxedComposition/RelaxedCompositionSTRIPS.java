@@ -21,7 +21,7 @@ import de.uniulm.ki.panda3.progression.TDGReachabilityAnalysis.TDGLandmarkFactor
 import de.uniulm.ki.panda3.progression.TDGReachabilityAnalysis.TaskReachabilityGraph;
 import de.uniulm.ki.panda3.progression.htn.representation.ProMethod;
 import de.uniulm.ki.panda3.progression.htn.representation.SasPlusProblem;
-import de.uniulm.ki.panda3.progression.htn.search.ProgressionNetwork;
+import de.uniulm.ki.panda3.progression.htn.search.ProgressionContext;
 import de.uniulm.ki.panda3.progression.htn.search.ProgressionPlanStep;
 import de.uniulm.ki.panda3.symbolic.domain.Task;
 
@@ -51,8 +51,10 @@ public class RelaxedCompositionSTRIPS extends RelaxedCompositionEncoding {
 
     public int lastOverallIndex;
 
-    public RelaxedCompositionSTRIPS(SasPlusProblem p) {
+    public RelaxedCompositionSTRIPS(ProgressionContext context) {
+        SasPlusProblem p = context.flatProblem;
         assert (p.correctModel());
+        this.context = context;
         this.createdFromStrips = p.createdFromStrips;
         this.numOfStateFeatures = p.numOfStateFeatures;
         this.numOfOperators = p.numOfOperators;
@@ -84,10 +86,10 @@ public class RelaxedCompositionSTRIPS extends RelaxedCompositionEncoding {
                                       List<ProgressionPlanStep> initialTasks, boolean calcTDR) {
 
         this.numAnM = createMethodLookupTable(methods);
-        this.numTasks = ProgressionNetwork.indexToTask.length;
+        this.numTasks = context.indexToTask.length;
         //tdRechability = new TDGLandmarkFactory(methods, initialTasks, this.numTasks, this.numOfOperators);
         if(calcTDR)
-          tdRechability = new TaskReachabilityGraph(methods, initialTasks, numTasks, this.numOfOperators);
+          tdRechability = new TaskReachabilityGraph(context, methods, initialTasks, numTasks, this.numOfOperators);
 
         // set indices
         this.firstTdrIndex = this.numOfStateFeatures;
@@ -148,11 +150,11 @@ public class RelaxedCompositionSTRIPS extends RelaxedCompositionEncoding {
 
             for (int iSubTask = 0; iSubTask < m.subtasks.length; iSubTask++) {
                 Task t = m.subtasks[iSubTask];
-                tPrecLists[iM][iSubTask] = reached[ProgressionNetwork.taskToIndex.get(t)];
+                tPrecLists[iM][iSubTask] = reached[context.taskToIndex.get(t)];
             }
 
             tAddLists[iM] = new int[1];
-            tAddLists[iM][0] = reached[ProgressionNetwork.taskToIndex.get(m.m.abstractTask())];
+            tAddLists[iM][0] = reached[context.taskToIndex.get(m.m.abstractTask())];
 
             tOpNames[iM] = m.m.name() + "@" + m.m.abstractTask().shortInfo();
             tCosts[iM] = this.methodCosts;
@@ -203,7 +205,7 @@ public class RelaxedCompositionSTRIPS extends RelaxedCompositionEncoding {
         }
 
         for (int i = firstTaskCompIndex; i <= lastTaskCompIndex; i++) {
-            tFactStrs[i] = "bur-" + ProgressionNetwork.indexToTask[i - firstTaskCompIndex].shortInfo();
+            tFactStrs[i] = "bur-" + context.indexToTask[i - firstTaskCompIndex].shortInfo();
         }
         factStrs = tFactStrs;
         varNames = tFactStrs;
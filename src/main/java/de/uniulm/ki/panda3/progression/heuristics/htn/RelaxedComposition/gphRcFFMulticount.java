@@ -19,6 +19,7 @@ package de.uniulm.ki.panda3.progression.heuristics.htn.RelaxedComposition;
 import de.uniulm.ki.panda3.progression.TDGReachabilityAnalysis.TaskReachabilityGraph;
 import de.uniulm.ki.panda3.progression.heuristics.htn.GroundedProgressionHeuristic;
 import de.uniulm.ki.panda3.progression.htn.representation.ProMethod;
+import de.uniulm.ki.panda3.progression.htn.search.ProgressionContext;
 import de.uniulm.ki.panda3.progression.htn.search.ProgressionPlanStep;
 import de.uniulm.ki.panda3.progression.htn.search.ProgressionNetwork;
 import de.uniulm.ki.panda3.util.fastIntegerDataStructures.UUIntStack;
@@ -58,124 +59,149 @@ public class gphRcFFMulticount extends GroundedProgressionHeuristic {
      * Define "Task": A task is either an action or an abstract task(-name)
      */
 
-    private static int numOperators; // number of actions + number of methods
-    private static int numTasks; // number of actions + number of ground abstract tasks
-    private static int numExtenedStateFeatures; // number of original state features + one feature for every task
+    /*
+     * The following members describe the model. They are computed once per planning problem and shared by all
+     * heuristic objects that are created during search.
+     */
+    private ProgressionContext context;
+
+    private int numOperators; // number of actions + number of methods
+    private int numTasks; // number of actions + number of ground abstract tasks
+    private int numExtenedStateFeatures; // number of original state features + one feature for every task
 
     // [f1, f2, ..., fm, a1, a2, c1, a3, ..., an, c2, ..., co]
-    public static int[][] prec2task; // [1][4, 5, 7] means that the tasks 4, 5 and 7 all have precondition 1
-    public static Set<Integer>[] add2task; // 1 -> [4, 5, 7] means that the tasks 4, 5 and 7 all add fact no. 1
-    public static int[] numprecs;
+    public int[][] prec2task; // [1][4, 5, 7] means that the tasks 4, 5 and 7 all have precondition 1
+    public Set<Integer>[] add2task; // 1 -> [4, 5, 7] means that the tasks 4, 5 and 7 all add fact no. 1
+    public int[] numprecs;
 
-    public static UUIntStack operatorsWithoutPrec;
+    public UUIntStack operatorsWithoutPrec;
 
     // [a1, a2, ..., an, m1, m2, ..., mp]
-    private static int[][] precLists;
-    public static int[][] addLists;  // [1][2, 5] means that action 1 adds state-features 2 and 5
+    private int[][] precLists;
+    public int[][] addLists;  // [1][2, 5] means that action 1 adds state-features 2 and 5
 
-    private static HashMap<ProMethod, Integer> MethodToIndex;
-    private static ProMethod[] IndexToMethod;
+    private HashMap<ProMethod, Integer> MethodToIndex;
+    private ProMethod[] IndexToMethod;
 
 
-    private static HashMap<Task, Integer> TaskToIndex;
-    private static Task[] IndexToTask;
+    private HashMap<Task, Integer> TaskToIndex;
+    private Task[] IndexToTask;
 
-    private static TaskReachabilityGraph tdRechability;
+    private TaskReachabilityGraph tdRechability;
 
-    private static ProMethod IndexToMethodGet(int index) {
-        return IndexToMethod[index - ProgressionNetwork.flatProblem.numOfOperators];
+    private ProMethod IndexToMethodGet(int index) {
+        return IndexToMethod[index - context.flatProblem.numOfOperators];
     }
 
-    private static Task IndexToTaskGet(int index) {
-        return IndexToTask[index - ProgressionNetwork.flatProblem.numOfStateFeatures];
+    private Task IndexToTaskGet(int index) {
+        return IndexToTask[index - context.flatProblem.numOfStateFeatures];
     }
 
-    private static void IndexToTaskPut(int index, Task t) {
-        IndexToTask[index - ProgressionNetwork.flatProblem.numOfStateFeatures] = t;
+    private void IndexToTaskPut(int index, Task t) {
+        IndexToTask[index - context.flatProblem.numOfStateFeatures] = t;
     }
 
-    private static void IndexToMethodPut(int index, ProMethod m) {
-        IndexToMethod[index - ProgressionNetwork.flatProblem.numOfOperators] = m;
+    private void IndexToMethodPut(int index, ProMethod m) {
+        IndexToMethod[index - context.flatProblem.numOfOperators] = m;
     }
 
     // Members of the current object
     private boolean goalRelaxedReachable;
     private int heuristicValue;
 
-    private gphRcFFMulticount() { // only used by factory methods -> private
+    private gphRcFFMulticount(gphRcFFMulticount model) { // only used by factory methods -> private
+        this.context = model.context;
+        this.numOperators = model.numOperators;
+        this.numTasks = model.numTasks;
+        this.numExtenedStateFeatures = model.numExtenedStateFeatures;
+        this.prec2task = model.prec2task;
+        this.add2task = model.add2task;
+        this.numprecs = model.numprecs;
+        this.operatorsWithoutPrec = model.operatorsWithoutPrec;
+        this.precLists = model.precLists;
+        this.addLists = model.addLists;
+        this.MethodToIndex = model.MethodToIndex;
+        this.IndexToMethod = model.IndexToMethod;
+        this.TaskToIndex = model.TaskToIndex;
+        this.IndexToTask = model.IndexToTask;
+        this.tdRechability = model.tdRechability;
+        this.topDownReachability = model.topDownReachability;
+        this.prod = model.prod;
+        this.heuEx = model.heuEx;
     }
 
-    public static boolean topDownReachability = true;
+    public boolean topDownReachability = true;
     boolean orderingInvariants = false;
 
-    static producerSelection prod = producerSelection.actionDifficulty;
-    static heuristicExtraction heuEx = heuristicExtraction.multicount;
+    producerSelection prod = producerSelection.actionDifficulty;
+    heuristicExtraction heuEx = heuristicExtraction.multicount;
 
-    public gphRcFFMulticount(HashMap<Task, List<ProMethod>> methods, List<ProgressionPlanStep> initialTasks, Set<Task> allActions, boolean useTDReachability,
+    public gphRcFFMulticount(ProgressionContext context, HashMap<Task, List<ProMethod>> methods, List<ProgressionPlanStep> initialTasks, Set<Task> allActions, boolean useTDReachability,
                              gphRcFFMulticount.producerSelection selectionStrategy, gphRcFFMulticount.heuristicExtraction heuEx) {
-        gphRcFFMulticount.prod = selectionStrategy;
-        gphRcFFMulticount.heuEx = heuEx;
-        gphRcFFMulticount.topDownReachability = useTDReachability;
+        this.context = context;
+        this.prod = selectionStrategy;
+        this.heuEx = heuEx;
+        this.topDownReachability = useTDReachability;
 
         long time = System.currentTimeMillis();
         System.out.println("Init Relaxed Composition Graph (RCG) heuristic");
 
-        gphRcFFMulticount.numOperators = createMethodLookupTable(methods);
-        gphRcFFMulticount.numTasks = createTaskLookupTable(allActions, getGroundTasks(methods)) - ProgressionNetwork.flatProblem.numOfStateFeatures;
+        this.numOperators = createMethodLookupTable(methods);
+        this.numTasks = createTaskLookupTable(allActions, getGroundTasks(methods)) - context.flatProblem.numOfStateFeatures;
 
         if (topDownReachability || orderingInvariants) {
-            tdRechability = new TaskReachabilityGraph(methods, initialTasks, gphRcFFMulticount.numTasks, gphRcFFMulticount.numOperators);
+            tdRechability = new TaskReachabilityGraph(context, methods, initialTasks, this.numTasks, this.numOperators);
             //tdRechability.calcOrderingInvariants(RCG.numTasks,methods, IndexToTask);
         }
 
         // action-task-facts are true one layer after the action, this can done due to the 1-to-1 correspondence
-        gphRcFFMulticount.numExtenedStateFeatures = ProgressionNetwork.flatProblem.numOfStateFeatures + gphRcFFMulticount.numTasks;
+        this.numExtenedStateFeatures = context.flatProblem.numOfStateFeatures + this.numTasks;
 
-        gphRcFFMulticount.prec2task = new int[numExtenedStateFeatures][]; // pointers from literals to tasks that have this literal as precondition
-        gphRcFFMulticount.precLists = new int[numOperators][];
-        gphRcFFMulticount.add2task = new Set[numExtenedStateFeatures]; // pointers from literals to tasks that add it
-        gphRcFFMulticount.addLists = new int[numOperators][];
+        this.prec2task = new int[numExtenedStateFeatures][]; // pointers from literals to tasks that have this literal as precondition
+        this.precLists = new int[numOperators][];
+        this.add2task = new Set[numExtenedStateFeatures]; // pointers from literals to tasks that add it
+        this.addLists = new int[numOperators][];
 
         List<Integer>[] inverseMapping = new List[numExtenedStateFeatures];
 
-        for (int i = 0; i < gphRcFFMulticount.numExtenedStateFeatures; i++) {
+        for (int i = 0; i < this.numExtenedStateFeatures; i++) {
             inverseMapping[i] = new ArrayList<>();
         }
 
-        for (int actionI = 0; actionI < ProgressionNetwork.flatProblem.numOfOperators; actionI++) {
-            precLists[actionI] = ProgressionNetwork.flatProblem.precLists[actionI];
-            for (int precI = 0; precI < ProgressionNetwork.flatProblem.precLists[actionI].length; precI++) {
-                inverseMapping[ProgressionNetwork.flatProblem.precLists[actionI][precI]].add(actionI);
+        for (int actionI = 0; actionI < context.flatProblem.numOfOperators; actionI++) {
+            precLists[actionI] = context.flatProblem.precLists[actionI];
+            for (int precI = 0; precI < context.flatProblem.precLists[actionI].length; precI++) {
+                inverseMapping[context.flatProblem.precLists[actionI][precI]].add(actionI);
             }
         }
 
         // set number of operator (i.e. action and method) preconditions
-        numprecs = new int[gphRcFFMulticount.numOperators];
-        for (int i = 0; i < ProgressionNetwork.flatProblem.numOfOperators; i++) {
-            numprecs[i] = ProgressionNetwork.flatProblem.precLists[i].length;
+        numprecs = new int[this.numOperators];
+        for (int i = 0; i < context.flatProblem.numOfOperators; i++) {
+            numprecs[i] = context.flatProblem.precLists[i].length;
         }
 
-        for (int methodI = ProgressionNetwork.flatProblem.numOfOperators; methodI < numOperators; methodI++) {
-            ProMethod m = gphRcFFMulticount.IndexToMethodGet(methodI);
+        for (int methodI = context.flatProblem.numOfOperators; methodI < numOperators; methodI++) {
+            ProMethod m = this.IndexToMethodGet(methodI);
             numprecs[methodI] = m.numDistinctSubTasks;
             precLists[methodI] = new int[m.subtasks.length];
 
             for (int subtaskId = 0; subtaskId < m.subtasks.length; subtaskId++) {
                 Task t = m.subtasks[subtaskId];
-                int taskIndex = gphRcFFMulticount.TaskToIndex.get(t);
+                int taskIndex = this.TaskToIndex.get(t);
                 precLists[methodI][subtaskId] = taskIndex;
                 if (!inverseMapping[taskIndex].contains(methodI)) // this is necessary since there might be methods that have the same subtask twice
                     inverseMapping[taskIndex].add(methodI);
             }
 
-            int compTaskIndex = gphRcFFMulticount.TaskToIndex.get(m.m.abstractTask());
+            int compTaskIndex = this.TaskToIndex.get(m.m.abstractTask());
             addLists[methodI] = new int[1];
             addLists[methodI][0] = compTaskIndex;
         }
 
         operatorsWithoutPrec = new UUIntStack();
-        for (int i = 0; i < gphRcFFMulticount.numOperators; i++) {
-            if (gphRcFFMulticount.precLists[i].length == 0) {
+        for (int i = 0; i < this.numOperators; i++) {
+            if (this.precLists[i].length == 0) {
                 operatorsWithoutPrec.push(i);
             }
         }
@@ -190,21 +216,21 @@ public class gphRcFFMulticount extends GroundedProgressionHeuristic {
         }
 
         // generate add-lists
-        for (int i = 0; i < ProgressionNetwork.flatProblem.numOfOperators; i++) {
-            addLists[i] = new int[ProgressionNetwork.flatProblem.addLists[i].length + 1];
+        for (int i = 0; i < context.flatProblem.numOfOperators; i++) {
+            addLists[i] = new int[context.flatProblem.addLists[i].length + 1];
             int j;
-            for (j = 0; j < ProgressionNetwork.flatProblem.addLists[i].length; j++) {
-                gphRcFFMulticount.addLists[i][j] = ProgressionNetwork.flatProblem.addLists[i][j];
+            for (j = 0; j < context.flatProblem.addLists[i].length; j++) {
+                this.addLists[i][j] = context.flatProblem.addLists[i][j];
             }
-            gphRcFFMulticount.addLists[i][j] = ProgressionNetwork.flatProblem.numOfStateFeatures + i; // actions are located after the original state features and this is the i-th action
+            this.addLists[i][j] = context.flatProblem.numOfStateFeatures + i; // actions are located after the original state features and this is the i-th action
         }
 
         // generate lists mapping literal to lists of operators having it as add-effect
         for (int i = 0; i < numExtenedStateFeatures; i++) {
-            gphRcFFMulticount.add2task[i] = new HashSet<>();
+            this.add2task[i] = new HashSet<>();
         }
 
-        for (int i = 0; i < gphRcFFMulticount.numOperators; i++) {
+        for (int i = 0; i < this.numOperators; i++) {
             for (int addEffect : addLists[i]) {
                 add2task[addEffect].add(i);
             }
@@ -215,19 +241,19 @@ public class gphRcFFMulticount extends GroundedProgressionHeuristic {
     }
 
     private int createTaskLookupTable(Set<Task> allActions, Set<Task> allTasks) {
-        int taskNo = ProgressionNetwork.flatProblem.numOfStateFeatures;
-        gphRcFFMulticount.IndexToTask = new Task[allActions.size() + allTasks.size()];
-        gphRcFFMulticount.TaskToIndex = new HashMap<>();
+        int taskNo = context.flatProblem.numOfStateFeatures;
+        this.IndexToTask = new Task[allActions.size() + allTasks.size()];
+        this.TaskToIndex = new HashMap<>();
 
         for (Task a : allActions) {
-            gphRcFFMulticount.IndexToTaskPut(taskNo, a);
-            gphRcFFMulticount.TaskToIndex.put(a, taskNo);
+            this.IndexToTaskPut(taskNo, a);
+            this.TaskToIndex.put(a, taskNo);
             taskNo++;
         }
 
         for (Task t : allTasks) {
-            gphRcFFMulticount.IndexToTaskPut(taskNo, t);
-            gphRcFFMulticount.TaskToIndex.put(t, taskNo);
+            this.IndexToTaskPut(taskNo, t);
+            this.TaskToIndex.put(t, taskNo);
             taskNo++;
         }
         return taskNo;
@@ -248,21 +274,21 @@ public class gphRcFFMulticount extends GroundedProgressionHeuristic {
      * @return
      */
     private int createMethodLookupTable(HashMap<Task, List<ProMethod>> methods) {
-        int methodID = ProgressionNetwork.flatProblem.numOfOperators;
-        gphRcFFMulticount.MethodToIndex = new HashMap<>();
+        int methodID = context.flatProblem.numOfOperators;
+        this.MethodToIndex = new HashMap<>();
 
         // count methods, create array
         int anzMethods = 0;
         for (List<ProMethod> val2 : methods.values()) {
             anzMethods += val2.size();
         }
-        gphRcFFMulticount.IndexToMethod = new ProMethod[anzMethods];
+        this.IndexToMethod = new ProMethod[anzMethods];
 
         for (List<ProMethod> val2 : methods.values()) {
             for (ProMethod m : val2) {
-                assert (!gphRcFFMulticount.MethodToIndex.containsKey(m));
-                gphRcFFMulticount.MethodToIndex.put(m, methodID);
-                gphRcFFMulticount.IndexToMethodPut(methodID, m);
+                assert (!this.MethodToIndex.containsKey(m));
+                this.MethodToIndex.put(m, methodID);
+                this.IndexToMethodPut(methodID, m);
                 methodID++;
             }
         }
@@ -279,7 +305,7 @@ public class gphRcFFMulticount extends GroundedProgressionHeuristic {
         // [6, 1, 0, -1] means that there are 4 facts, the first one has been made true in layer 6
         // the second in layer 1... The -1 for fact 4 means that this fact has never been made true
         // contains STRIPS as well as HTN facts
-        int[] firstLayerWithFact = new int[gphRcFFMulticount.numExtenedStateFeatures];
+        int[] firstLayerWithFact = new int[this.numExtenedStateFeatures];
 
         // operatorDelta is a list of lists. Each inner list contains those actions that are applicable
         // in this layer for the *first time*, i.e. it is the delta of applicable actions
@@ -297,11 +323,11 @@ public class gphRcFFMulticount extends GroundedProgressionHeuristic {
 
         // Jörg Hoffmanns measure for choosing a supporter
         // an action's difficulty is the sum of the layers of its preconditions
-        int[] actionDifficulty = new int[gphRcFFMulticount.numOperators];
+        int[] actionDifficulty = new int[this.numOperators];
 
         // add literals in s0 to fringe
         UUIntStack changedLiterals = new UUIntStack();
-        for (int i = 0; i < ProgressionNetwork.flatProblem.numOfStateFeatures; i++) {
+        for (int i = 0; i < context.flatProblem.numOfStateFeatures; i++) {
             if (tn.state.get(i)) {
                 firstLayerWithFact[i] = 0;
                 changedLiterals.push(i);
@@ -309,14 +335,14 @@ public class gphRcFFMulticount extends GroundedProgressionHeuristic {
                 firstLayerWithFact[i] = -1;
         }
         // init facts concerning reachable task
-        for (int i = ProgressionNetwork.flatProblem.numOfStateFeatures; i < gphRcFFMulticount.numExtenedStateFeatures; i++) {
+        for (int i = context.flatProblem.numOfStateFeatures; i < this.numExtenedStateFeatures; i++) {
             firstLayerWithFact[i] = -1;
         }
 
         // prepare goal - it contains the STRIPS-goal as well as all tasks that appear in the initial HTN
         UUIntStack stripsAndHtnGoals = new UUIntStack();
-        for (int i = 0; i < ProgressionNetwork.flatProblem.gList.length; i++) { // these are the state-based goals
-            stripsAndHtnGoals.push(ProgressionNetwork.flatProblem.gList[i]);
+        for (int i = 0; i < context.flatProblem.gList.length; i++) { // these are the state-based goals
+            stripsAndHtnGoals.push(context.flatProblem.gList[i]);
         }
 
         // add all tasks in the current network as goal
@@ -324,7 +350,7 @@ public class gphRcFFMulticount extends GroundedProgressionHeuristic {
 
         BitSet reachableActions = null; // this is used in top down reachability
         if (topDownReachability) {
-            reachableActions = new BitSet(ProgressionNetwork.flatProblem.numOfOperators);
+            reachableActions = new BitSet(context.flatProblem.numOfOperators);
         }
 
         LinkedList<ProgressionPlanStep> temp = new LinkedList<>();
@@ -333,10 +359,10 @@ public class gphRcFFMulticount extends GroundedProgressionHeuristic {
         while (!temp.isEmpty()) {
             ProgressionPlanStep ps = temp.removeFirst();
             tasksInTNI.add(ps.getTask());
-            int t = gphRcFFMulticount.TaskToIndex.get(ps.getTask());
+            int t = this.TaskToIndex.get(ps.getTask());
             stripsAndHtnGoals.push(t);
             if (topDownReachability) {
-                reachableActions.or(gphRcFFMulticount.tdRechability.getReachableActions(t));
+                reachableActions.or(this.tdRechability.getReachableActions(t));
             }
             temp.addAll(ps.successorList);
         }
@@ -373,11 +399,11 @@ public class gphRcFFMulticount extends GroundedProgressionHeuristic {
 
             // in first layer, add actions without preconditions
             if (layerId == 1) {
-                gphRcFFMulticount.operatorsWithoutPrec.resetIterator();
-                while (gphRcFFMulticount.operatorsWithoutPrec.hasNext()) {
-                    int op = gphRcFFMulticount.operatorsWithoutPrec.next();
+                this.operatorsWithoutPrec.resetIterator();
+                while (this.operatorsWithoutPrec.hasNext()) {
+                    int op = this.operatorsWithoutPrec.next();
                     if ((!topDownReachability) ||
-                            (op >= ProgressionNetwork.flatProblem.numOfOperators) // it is a method
+                            (op >= context.flatProblem.numOfOperators) // it is a method
                             || (reachableActions.get(op)) // or a reachable action
                             ) {
                         newOperatorDelta.push(op);
@@ -390,7 +416,7 @@ public class gphRcFFMulticount extends GroundedProgressionHeuristic {
                 final int addedLiteral = changedLiterals.pop();
                 for (int actionWithThisPrec : prec2task[addedLiteral]) {
                     if ((topDownReachability) &&
-                            (actionWithThisPrec < ProgressionNetwork.flatProblem.numOfOperators) // aka it is an action
+                            (actionWithThisPrec < context.flatProblem.numOfOperators) // aka it is an action
                             && (!reachableActions.get(actionWithThisPrec)) // that is not reachable anymore via tdg
                             ) {
                         continue; // unreachable via hierarchy
@@ -456,7 +482,7 @@ public class gphRcFFMulticount extends GroundedProgressionHeuristic {
                 } else { // count HTN actions more than once
                     if (oneGoalDelta.hasNext()) {
                         goalFact = oneGoalDelta.next();
-                        if (goalFact < ProgressionNetwork.flatProblem.numOfStateFeatures) {
+                        if (goalFact < context.flatProblem.numOfStateFeatures) {
                             postponed.push(goalFact);
                             continue;
                         }
@@ -467,7 +493,7 @@ public class gphRcFFMulticount extends GroundedProgressionHeuristic {
                         }
                         if (postponed.hasNext()) {
                             goalFact = postponed.next();
-                            if ((goalFact < ProgressionNetwork.flatProblem.numOfStateFeatures) && (trueI.isSet(goalFact)))
+                            if ((goalFact < context.flatProblem.numOfStateFeatures) && (trueI.isSet(goalFact)))
                                 continue; // fact already there
                         } else {
                             loop = false;
@@ -487,7 +513,7 @@ public class gphRcFFMulticount extends GroundedProgressionHeuristic {
                     if (add2task[goalFact].contains(maybeProducer)) {
                         if (prod == producerSelection.numOfPreconditions) {
                             if (numprecs[maybeProducer] < bestDifficulty) {
-                                bestDifficulty = gphRcFFMulticount.precLists[maybeProducer].length;
+                                bestDifficulty = this.precLists[maybeProducer].length;
                                 producer = maybeProducer;
                             }
                         } else if (prod == producerSelection.actionDifficulty) {
@@ -502,9 +528,9 @@ public class gphRcFFMulticount extends GroundedProgressionHeuristic {
                     }
                 }
 
-                if (!ProgressionNetwork.ShopPrecActions.contains(producer)) {
+                if (!context.shopPrecActions.contains(producer)) {
                     for (int i = 0; i < addLists[producer].length; i++) {
-                        if ((goalFact < ProgressionNetwork.flatProblem.numOfStateFeatures) || (heuEx == heuristicExtraction.ff)) {
+                        if ((goalFact < context.flatProblem.numOfStateFeatures) || (heuEx == heuristicExtraction.ff)) {
                             trueI.set(addLists[producer][i]);
                             trueImm.set(addLists[producer][i]);
                         }
@@ -516,7 +542,7 @@ public class gphRcFFMulticount extends GroundedProgressionHeuristic {
                         numactions += count;
                 }
 
-                for (int aPrec : gphRcFFMulticount.precLists[producer]) {
+                for (int aPrec : this.precLists[producer]) {
                     if (trueImm.isSet(aPrec))
                         continue;
                     int flayer = firstLayerWithFact[aPrec];
@@ -525,7 +551,7 @@ public class gphRcFFMulticount extends GroundedProgressionHeuristic {
                             UUIntStack delta = goalDelta.get(flayer);
                             delta.push(aPrec);
                         }
-                        if (aPrec > ProgressionNetwork.flatProblem.numOfStateFeatures) // this is an HTN-related precondition
+                        if (aPrec > context.flatProblem.numOfStateFeatures) // this is an HTN-related precondition
                             goalWeight[aPrec] += count;
                         else // a normal precondition
                             goalWeight[aPrec]++;
@@ -552,10 +578,10 @@ public class gphRcFFMulticount extends GroundedProgressionHeuristic {
                         sb.append(", \n");
                     }
                     sb.append(" - ");
-                    if (action < ProgressionNetwork.flatProblem.numOfOperators) {
-                        sb.append(ProgressionNetwork.indexToTask[action].mediumInfo());
+                    if (action < context.flatProblem.numOfOperators) {
+                        sb.append(context.indexToTask[action].mediumInfo());
                     } else
-                        sb.append(gphRcFFMulticount.IndexToMethodGet(action).m.name());
+                        sb.append(this.IndexToMethodGet(action).m.name());
                 }
             }
 
@@ -569,10 +595,10 @@ public class gphRcFFMulticount extends GroundedProgressionHeuristic {
                         sb.append(", \n");
                     }
                     sb.append(" - ");
-                    if (j < ProgressionNetwork.flatProblem.numOfStateFeatures) {
+                    if (j < context.flatProblem.numOfStateFeatures) {
                         sb.append("fact" +  j);
                     } else
-                        sb.append(gphRcFFMulticount.IndexToTaskGet(j).mediumInfo());
+                        sb.append(this.IndexToTaskGet(j).mediumInfo());
                 }
             }
 
@@ -586,10 +612,10 @@ public class gphRcFFMulticount extends GroundedProgressionHeuristic {
                 } else {
                     sb.append(", ");
                 }
-                if (fact < ProgressionNetwork.flatProblem.numOfStateFeatures) {
+                if (fact < context.flatProblem.numOfStateFeatures) {
                     sb.append("fact" +  fact);
                 } else
-                    sb.append(gphRcFFMulticount.IndexToTaskGet(fact).mediumInfo());
+                    sb.append(this.IndexToTaskGet(fact).mediumInfo());
                 if (goalDelta.get(i).get(fact) > 1) {
                     sb.append(" * " + goalDelta.get(i).get(fact));
                 }
@@ -610,17 +636,39 @@ public class gphRcFFMulticount extends GroundedProgressionHeuristic {
         return goalRelaxedReachable;
     }
 
+    @Override
+    public GroundedProgressionHeuristic copyForWorker() {
+        // the model is shared, but the stack of operators without preconditions is iterated during build
+        gphRcFFMulticount copy = new gphRcFFMulticount(this);
+        copy.operatorsWithoutPrec = new UUIntStack();
+        this.operatorsWithoutPrec.resetIterator();
+        while (this.operatorsWithoutPrec.hasNext())
+            copy.operatorsWithoutPrec.push(this.operatorsWithoutPrec.next());
+        return copy;
+    }
+
     @Override
     public GroundedProgressionHeuristic update(ProgressionNetwork tn, ProgressionPlanStep ps, ProMethod m) {
-        gphRcFFMulticount crpg = new gphRcFFMulticount();
+        gphRcFFMulticount crpg = new gphRcFFMulticount(this);
         crpg.build(tn);
         return crpg;
     }
 
     @Override
     public GroundedProgressionHeuristic update(ProgressionNetwork tn, ProgressionPlanStep ps) {
-        gphRcFFMulticount crpg = new gphRcFFMulticount();
+        gphRcFFMulticount crpg = new gphRcFFMulticount(this);
         crpg.build(tn);
         return crpg;
     }
+
+    @Override
+    public GroundedProgressionHeuristic update(GroundedProgressionHeuristic parent, ProgressionNetwork tn, ProgressionPlanStep ps, ProMethod m) {
+        // the graph is built from scratch, but the stack of operators without preconditions must be the one of this worker
+        return update(tn, ps, m);
+    }
+
+    @Override
+    public GroundedProgressionHeuristic update(GroundedProgressionHeuristic parent, ProgressionNetwork tn, ProgressionPlanStep ps) {
+        return update(tn, ps);
+    }
 }
@@ -18,9 +18,9 @@ package de.uniulm.ki.panda3.progression.heuristics.htn.RelaxedComposition;
 
 import de.uniulm.ki.panda3.progression.heuristics.htn.GroundedProgressionHeuristic;
 import de.uniulm.ki.panda3.progression.htn.representation.ProMethod;
+import de.uniulm.ki.panda3.progression.htn.search.ProgressionContext;
 import de.uniulm.ki.panda3.progression.htn.search.ProgressionNetwork;
 import de.uniulm.ki.panda3.progression.htn.search.ProgressionPlanStep;
-import de.uniulm.ki.panda3.progression.htn.representation.SasPlusProblem;
 import de.uniulm.ki.panda3.symbolic.domain.Task;
 
 import java.io.BufferedWriter;
@@ -46,12 +46,12 @@ public class gphRcLama extends gphRelaxedComposition {
     }
 
 
-    public gphRcLama(SasPlusProblem flat,
+    public gphRcLama(ProgressionContext context,
                      HashMap<Task, List<ProMethod>> methods,
                      List<ProgressionPlanStep> initialTasks,
                      ProgressionNetwork init) {
 
-        this.compEnc = new RelaxedCompositionSAS(flat);
+        this.compEnc = new RelaxedCompositionSAS(context);
         this.compEnc.generateTaskCompGraph(methods, initialTasks);
 
         ProgressionPlanStep ps = init.getFirstAbstractTasks().get(0);
@@ -70,6 +70,15 @@ public class gphRcLama extends gphRelaxedComposition {
     }
 
 
+    private gphRcLama(gphRcLama model) {
+        this.compEnc = model.compEnc;
+    }
+
+    @Override
+    public GroundedProgressionHeuristic copyForWorker() {
+        return new gphRcLama(this);
+    }
+
     private void prepareLandmarks(ProgressionNetwork init) {
         // prepare s0 and g
         // need to modify the facts that define top-down-reachability
@@ -83,7 +92,7 @@ public class gphRcLama extends gphRelaxedComposition {
         for (ProgressionPlanStep ps2 : init.getFirstPrimitiveTasks())
             prepareS0andG(ps2, reachableActions, htnGoal);
 
-        BitSet s0 = (BitSet) init.state.clone();
+        BitSet s0 = init.state.toBitSet();
         BitSet g = new BitSet(compEnc.numOfStateFeatures);
 
         int reachable = reachableActions.nextSetBit(0);
@@ -135,6 +144,16 @@ public class gphRcLama extends gphRelaxedComposition {
         return null;
     }
 
+    @Override
+    public GroundedProgressionHeuristic update(GroundedProgressionHeuristic parent, ProgressionNetwork newTN, ProgressionPlanStep ps, ProMethod m) {
+        return update(newTN, ps, m);
+    }
+
+    @Override
+    public GroundedProgressionHeuristic update(GroundedProgressionHeuristic parent, ProgressionNetwork newTN, ProgressionPlanStep ps) {
+        return update(newTN, ps);
+    }
+
     @Override
     public int getHeuristic() {
         return 0;
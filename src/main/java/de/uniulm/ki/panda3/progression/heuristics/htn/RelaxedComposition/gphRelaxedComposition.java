@@ -20,14 +20,15 @@ import de.uniulm.ki.panda3.progression.heuristics.htn.GroundedProgressionHeurist
 import de.uniulm.ki.panda3.progression.heuristics.sasp.*;
 import de.uniulm.ki.panda3.progression.heuristics.sasp.ExplorationQueueBasedHeuristics.hAddhFFEq;
 import de.uniulm.ki.panda3.progression.heuristics.sasp.ExplorationQueueBasedHeuristics.hFilter;
+import de.uniulm.ki.panda3.progression.heuristics.sasp.ExplorationQueueBasedHeuristics.hIncExplorationEq;
 import de.uniulm.ki.panda3.progression.heuristics.sasp.ExplorationQueueBasedHeuristics.hLmCutEq;
 import de.uniulm.ki.panda3.progression.heuristics.sasp.ExplorationQueueBasedHeuristics.hMaxEq;
 import de.uniulm.ki.panda3.progression.heuristics.sasp.IncrementalCalc.IncInfLmCut;
 import de.uniulm.ki.panda3.progression.heuristics.sasp.IncrementalCalc.IncrementInformation;
 import de.uniulm.ki.panda3.progression.htn.representation.ProMethod;
+import de.uniulm.ki.panda3.progression.htn.search.ProgressionContext;
 import de.uniulm.ki.panda3.progression.htn.search.ProgressionNetwork;
 import de.uniulm.ki.panda3.progression.htn.search.ProgressionPlanStep;
-import de.uniulm.ki.panda3.progression.htn.representation.SasPlusProblem;
 import de.uniulm.ki.panda3.symbolic.domain.Task;
 
 import java.util.*;
@@ -38,6 +39,8 @@ import java.util.*;
 public class gphRelaxedComposition extends GroundedProgressionHeuristic {
     protected RelaxedCompositionEncoding compEnc;
     private SasHeuristic heuristic;
+    private SasHeuristic.SasHeuristics heuristicType;
+    private boolean checkIncrementalComputation;
     protected IncrementInformation inc;
     private int heuristicVal;
 
@@ -59,15 +62,27 @@ public class gphRelaxedComposition extends GroundedProgressionHeuristic {
     protected gphRelaxedComposition() {
     }
 
-    public gphRelaxedComposition(SasPlusProblem flat,
+    public gphRelaxedComposition(ProgressionContext context,
                                  SasHeuristic.SasHeuristics heuristic,
                                  HashMap<Task, List<ProMethod>> methods,
                                  List<ProgressionPlanStep> initialTasks) {
+        this(context, heuristic, methods, initialTasks, false);
+    }
 
-        if (flat.createdFromStrips)
-            this.compEnc = new RelaxedCompositionSTRIPS(flat);
+    /**
+     * @param checkIncrementalComputation whether incremental heuristics compare their results against a full
+     *                                    recomputation (which is slow)
+     */
+    public gphRelaxedComposition(ProgressionContext context,
+                                 SasHeuristic.SasHeuristics heuristic,
+                                 HashMap<Task, List<ProMethod>> methods,
+                                 List<ProgressionPlanStep> initialTasks,
+                                 boolean checkIncrementalComputation) {
+
+        if (context.flatProblem.createdFromStrips)
+            this.compEnc = new RelaxedCompositionSTRIPS(context);
         else
-            this.compEnc = new RelaxedCompositionSAS(flat);
+            this.compEnc = new RelaxedCompositionSAS(context);
 
         if (heuristic == SasHeuristic.SasHeuristics.hLmCutOpt)
             this.compEnc.methodCosts = 0;
@@ -76,31 +91,81 @@ public class gphRelaxedComposition extends GroundedProgressionHeuristic {
         this.compEnc.generateTaskCompGraph(methods, initialTasks);
         System.out.println(this.compEnc.getStatistics());
 
-        if (heuristic == SasHeuristic.SasHeuristics.hAdd) {
+        this.heuristicType = heuristic;
+        this.checkIncrementalComputation = checkIncrementalComputation;
+        createSasHeuristic();
+    }
+
+    private void createSasHeuristic() {
+        if (heuristicType == SasHeuristic.SasHeuristics.hAdd) {
             this.heuristic = new hAddhFFEq(this.compEnc, SasHeuristic.SasHeuristics.hAdd);
-        } else if (heuristic == SasHeuristic.SasHeuristics.hMax) {
+        } else if (heuristicType == SasHeuristic.SasHeuristics.hMax) {
             this.heuristic = new hMaxEq(this.compEnc);
-        } else if (heuristic == SasHeuristic.SasHeuristics.hFF) {
+        } else if (heuristicType == SasHeuristic.SasHeuristics.hFF) {
             this.heuristic = new hAddhFFEq(this.compEnc, SasHeuristic.SasHeuristics.hFF);
             supportsHelpfulActions = false;
-        } else if (heuristic == SasHeuristic.SasHeuristics.hFFwithHA) {
+        } else if (heuristicType == SasHeuristic.SasHeuristics.hFFwithHA) {
             this.heuristic = new hAddhFFEq(this.compEnc, SasHeuristic.SasHeuristics.hFF);
             supportsHelpfulActions = true;
-        } else if (heuristic == SasHeuristic.SasHeuristics.hCG) {
+        } else if (heuristicType == SasHeuristic.SasHeuristics.hCG) {
             this.heuristic = new hCausalGraph(this.compEnc);
-        } else if ((heuristic == SasHeuristic.SasHeuristics.hLmCut)
-                || (heuristic == SasHeuristic.SasHeuristics.hLmCutOpt)) {
+        } else if ((heuristicType == SasHeuristic.SasHeuristics.hLmCut)
+                || (heuristicType == SasHeuristic.SasHeuristics.hLmCutOpt)) {
             this.heuristic = new hLmCutEq(this.compEnc, false);
-        } else if (heuristic == SasHeuristic.SasHeuristics.hIncLmCut) {
+        } else if (heuristicType == SasHeuristic.SasHeuristics.hIncLmCut) {
             this.inc = new IncInfLmCut();
             this.heuristic = new hLmCutEq(this.compEnc, true);
-        } else if (heuristic == SasHeuristic.SasHeuristics.hFilter) {
+        } else if (heuristicType == SasHeuristic.SasHeuristics.hIncAdd) {
+            this.heuristic = new hIncExplorationEq(this.compEnc, SasHeuristic.SasHeuristics.hAdd, checkIncrementalComputation);
+        } else if (heuristicType == SasHeuristic.SasHeuristics.hIncFF) {
+            this.heuristic = new hIncExplorationEq(this.compEnc, SasHeuristic.SasHeuristics.hFF, checkIncrementalComputation);
+            supportsHelpfulActions = false;
+        } else if (heuristicType == SasHeuristic.SasHeuristics.hIncMax) {
+            this.heuristic = new hIncExplorationEq(this.compEnc, SasHeuristic.SasHeuristics.hMax, checkIncrementalComputation);
+        } else if (heuristicType == SasHeuristic.SasHeuristics.hFilter) {
             this.heuristic = new hFilter(this.compEnc);
         }
     }
 
+    /**
+     * Creates a heuristic for a further search thread: the composition model is only read during search and is
+     * shared, the exploration data of the sas+ heuristic is not.
+     */
+    protected gphRelaxedComposition(gphRelaxedComposition model) {
+        this.compEnc = model.compEnc;
+        this.heuristicType = model.heuristicType;
+        this.checkIncrementalComputation = model.checkIncrementalComputation;
+        createSasHeuristic();
+    }
+
+    @Override
+    public GroundedProgressionHeuristic copyForWorker() {
+        if (getClass() != gphRelaxedComposition.class)
+            throw new IllegalStateException(getClass().getSimpleName() + " has to override copyForWorker.");
+        return new gphRelaxedComposition(this);
+    }
+
     @Override
     public GroundedProgressionHeuristic update(ProgressionNetwork newTN, ProgressionPlanStep ps, ProMethod m) {
+        return update(inc, newTN, ps, m);
+    }
+
+    @Override
+    public GroundedProgressionHeuristic update(GroundedProgressionHeuristic parent, ProgressionNetwork newTN, ProgressionPlanStep ps, ProMethod m) {
+        // the increment information belongs to the parent node, the exploration data of the sas+ heuristic to this worker
+        return update(((gphRelaxedComposition) parent).inc, newTN, ps, m);
+    }
+
+    @Override
+    public GroundedProgressionHeuristic update(GroundedProgressionHeuristic parent, ProgressionNetwork newTN, ProgressionPlanStep ps) {
+        return update(parent, newTN, ps, null);
+    }
+
+    /**
+     * Computes the heuristic of newTN with the sas+ heuristic of this object, parentInc is the increment information
+     * of the node newTN has been created from.
+     */
+    private GroundedProgressionHeuristic update(IncrementInformation parentInc, ProgressionNetwork newTN, ProgressionPlanStep ps, ProMethod m) {
         // prepare s0 and g
         // need to modify the facts that define top-down-reachability
         BitSet reachableActions = new BitSet(compEnc.numOfNonHtnActions);
@@ -116,7 +181,7 @@ public class gphRelaxedComposition extends GroundedProgressionHeuristic {
         for (int i = reachableActions.nextSetBit(0); i >= 0; i = reachableActions.nextSetBit(i + 1)) {
             compEnc.setReachable(s0, i);
         }
-        s0.or(newTN.state);
+        newTN.state.orInto(s0);
 
         // prepare g
         BitSet g = new BitSet();
@@ -135,8 +200,14 @@ public class gphRelaxedComposition extends GroundedProgressionHeuristic {
             else
                 lastAction = ps.taskIndex;
 
+            // the composition model and the sas+ heuristic are shared, only the increment information belongs to the node
             gphRelaxedComposition res = new gphRelaxedComposition();
-            res.heuristicVal = heuristic.calcHeu(lastAction, inc, s0, g);
+            res.compEnc = this.compEnc;
+            res.heuristic = this.heuristic;
+            res.heuristicType = this.heuristicType;
+            res.checkIncrementalComputation = this.checkIncrementalComputation;
+            res.supportsHelpfulActions = this.supportsHelpfulActions;
+            res.heuristicVal = heuristic.calcHeu(lastAction, parentInc, s0, g);
             res.inc = this.heuristic.getIncInf();
             return res;
         } else {
@@ -147,14 +218,17 @@ public class gphRelaxedComposition extends GroundedProgressionHeuristic {
 
     protected void prepareS0andG(ProgressionPlanStep ps, BitSet r, BitSet g) {
         if (!ps.done) {
-            ps.reachableTasks = new BitSet();
-            ps.goalFacts = new BitSet();
-            ps.reachableTasks.or(compEnc.tdRechability.getReachableActions(ps.taskIndex));
-            ps.goalFacts.set(ps.taskIndex);
+            // plan steps are shared between search nodes (and threads), they are published only when complete
+            BitSet reachableTasks = new BitSet();
+            BitSet goalFacts = new BitSet();
+            reachableTasks.or(compEnc.tdRechability.getReachableActions(ps.taskIndex));
+            goalFacts.set(ps.taskIndex);
 
             for (ProgressionPlanStep psSucc : ps.successorList) {
-                prepareS0andG(psSucc, ps.reachableTasks, ps.goalFacts);
+                prepareS0andG(psSucc, reachableTasks, goalFacts);
             }
+            ps.reachableTasks = reachableTasks;
+            ps.goalFacts = goalFacts;
             ps.done = true;
         }
         r.or(ps.reachableTasks);
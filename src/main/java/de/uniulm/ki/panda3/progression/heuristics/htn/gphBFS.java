@@ -40,6 +40,11 @@ public class gphBFS extends GroundedProgressionHeuristic {
         this.heuristic = tn.solution.getLength();
     }
 
+    @Override
+    public GroundedProgressionHeuristic copyForWorker() {
+        return new gphBFS();
+    }
+
     @Override
     public GroundedProgressionHeuristic update(ProgressionNetwork newTN, ProgressionPlanStep ps, ProMethod m) {
         gphBFS h = new gphBFS();
@@ -40,6 +40,11 @@ public class gphDFS extends GroundedProgressionHeuristic {
         this.heuristic = -(tn.numProgressionSteps + tn.numDecompositionSteps);
     }
 
+    @Override
+    public GroundedProgressionHeuristic copyForWorker() {
+        return new gphDFS();
+    }
+
     @Override
     public GroundedProgressionHeuristic update(ProgressionNetwork newTN, ProgressionPlanStep ps, ProMethod m) {
         gphDFS h = new gphDFS();
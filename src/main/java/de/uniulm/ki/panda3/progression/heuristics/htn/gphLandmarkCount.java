@@ -0,0 +1,111 @@
+// PANDA 3 -- a domain-independent planner for classical and hierarchical planning
+// Copyright (C) 2014-2018 the original author or authors.
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+
+package de.uniulm.ki.panda3.progression.heuristics.htn;
+
+import de.uniulm.ki.panda3.progression.TDGReachabilityAnalysis.TDGLandmarkFactory;
+import de.uniulm.ki.panda3.progression.htn.representation.ProMethod;
+import de.uniulm.ki.panda3.progression.htn.search.ProgressionContext;
+import de.uniulm.ki.panda3.progression.htn.search.ProgressionNetwork;
+import de.uniulm.ki.panda3.progression.htn.search.ProgressionPlanStep;
+import de.uniulm.ki.panda3.symbolic.domain.Task;
+
+import java.util.*;
+
+/**
+ * Counts the landmarks of the tasks in the network, i.e. the tasks that are contained in every decomposition of a
+ * task as found by the TDGLandmarkFactory (including the task itself). The landmarks of different tasks are counted
+ * separately, since every task has to be decomposed on its own. The value is updated incrementally: applying an
+ * action removes one landmark, decomposing a task replaces its landmarks by the ones of the subtasks.
+ */
+public class gphLandmarkCount extends GroundedProgressionHeuristic {
+
+    // task -> number of its landmarks, method -> number of landmarks of its subtasks
+    private final int[] numLandmarks;
+    private final Map<ProMethod, Integer> methodLandmarks;
+    private int heuristic;
+
+    public gphLandmarkCount(ProgressionContext context, HashMap<Task, List<ProMethod>> methods, List<ProgressionPlanStep> initialTasks) {
+        TDGLandmarkFactory landmarks = new TDGLandmarkFactory(context, methods, initialTasks, context.indexToTask.length, context.flatProblem.numOfOperators);
+        this.numLandmarks = new int[context.indexToTask.length];
+        // tasks that are not reachable from the initial network have no landmarks, but they are landmarks of themselves
+        for (int t = 0; t < numLandmarks.length; t++)
+            numLandmarks[t] = Math.max(1, landmarks.getLandmarks(t).cardinality());
+
+        this.methodLandmarks = new IdentityHashMap<>();
+        for (List<ProMethod> ms : methods.values())
+            for (ProMethod m : ms) {
+                int sum = 0;
+                for (Task subtask : m.subtasks)
+                    sum += numLandmarks[context.taskToIndex.get(subtask)];
+                methodLandmarks.put(m, sum);
+            }
+    }
+
+    private gphLandmarkCount(gphLandmarkCount parent, int heuristic) {
+        this.numLandmarks = parent.numLandmarks;
+        this.methodLandmarks = parent.methodLandmarks;
+        this.heuristic = heuristic;
+    }
+
+    @Override
+    public String getName() {
+        return "TDG landmark count";
+    }
+
+    @Override
+    public void build(ProgressionNetwork tn) {
+        heuristic = 0;
+        Set<ProgressionPlanStep> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        Deque<ProgressionPlanStep> stack = new ArrayDeque<>();
+        stack.addAll(tn.getFirstAbstractTasks());
+        stack.addAll(tn.getFirstPrimitiveTasks());
+        while (!stack.isEmpty()) {
+            ProgressionPlanStep ps = stack.pop();
+            if (!visited.add(ps))
+                continue;
+            heuristic += numLandmarks[ps.taskIndex];
+            stack.addAll(ps.successorList);
+        }
+    }
+
+    @Override
+    public GroundedProgressionHeuristic copyForWorker() {
+        // the landmark counts are never changed after construction
+        return new gphLandmarkCount(this, heuristic);
+    }
+
+    @Override
+    public GroundedProgressionHeuristic update(ProgressionNetwork newTN, ProgressionPlanStep ps, ProMethod m) {
+        return new gphLandmarkCount(this, heuristic - numLandmarks[ps.taskIndex] + methodLandmarks.get(m));
+    }
+
+    @Override
+    public GroundedProgressionHeuristic update(ProgressionNetwork newTN, ProgressionPlanStep ps) {
+        return new gphLandmarkCount(this, heuristic - numLandmarks[ps.taskIndex]);
+    }
+
+    @Override
+    public int getHeuristic() {
+        return heuristic;
+    }
+
+    @Override
+    public boolean goalRelaxedReachable() {
+        return true;
+    }
+}
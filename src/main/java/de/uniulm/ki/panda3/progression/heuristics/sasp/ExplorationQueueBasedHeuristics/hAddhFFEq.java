@@ -18,6 +18,7 @@ package de.uniulm.ki.panda3.progression.heuristics.sasp.ExplorationQueueBasedHeu
 
 import de.uniulm.ki.panda3.progression.heuristics.sasp.SasHeuristic;
 import de.uniulm.ki.panda3.progression.htn.representation.SasPlusProblem;
+import de.uniulm.ki.panda3.util.fastIntegerDataStructures.UUEpochIntArray;
 import de.uniulm.ki.panda3.util.fastIntegerDataStructures.UUIntPairPriorityQueue;
 
 import java.util.ArrayList;
@@ -30,9 +31,7 @@ import java.util.List;
 public class hAddhFFEq extends SasHeuristic {
     private final SasHeuristic.SasHeuristics heuristic;
     private final int[] precLessOps;
-    private final int[] hValPropInit;
     SasPlusProblem p;
-    private int[] unsatPrecs;
 
     @Override
     public String toString() {
@@ -43,9 +42,15 @@ public class hAddhFFEq extends SasHeuristic {
     }
 
     private int numGoals;
-    private int[] hValOp;
-    private int[] hValProp;
-    private int[] reachedBy;
+
+    // scratch memory of calcHeu
+    private final UUEpochIntArray unsatPrecs;
+    private final UUEpochIntArray hValOp;
+    private final UUEpochIntArray hValProp;
+    private final int[] reachedBy; // only valid for facts with a set hValProp
+    private final UUIntPairPriorityQueue queue;
+    private final BitSet markedFs = new BitSet();
+    private final BitSet markedOps = new BitSet();
 
     public hAddhFFEq(SasPlusProblem p, SasHeuristic.SasHeuristics heuristic) {
         this.heuristic = heuristic;
@@ -59,9 +64,11 @@ public class hAddhFFEq extends SasHeuristic {
         precLessOps = new int[tempPrecLess.size()];
         for (int i = 0; i < tempPrecLess.size(); i++)
             precLessOps[i] = tempPrecLess.get(i);
-        this.hValPropInit = new int[p.numOfStateFeatures];
-        for (int i = 0; i < hValPropInit.length; i++)
-            hValPropInit[i] = cUnreachable;//todo: precless actions
+        this.unsatPrecs = new UUEpochIntArray(p.numPrecs);
+        this.hValOp = new UUEpochIntArray(p.costs);
+        this.hValProp = new UUEpochIntArray(p.numOfStateFeatures, cUnreachable);//todo: precless actions
+        this.reachedBy = new int[p.numOfStateFeatures];
+        this.queue = UUIntPairPriorityQueue.forCosts(p.costs);
     }
 
     @Override
@@ -70,33 +77,32 @@ public class hAddhFFEq extends SasHeuristic {
             return 0;
         if (heuristic == SasHeuristics.hFF)
             helpfulOps = new BitSet(p.numOfOperators);
-        this.unsatPrecs = p.numPrecs.clone();
+        this.unsatPrecs.reset();
         this.numGoals = g.cardinality();
 
-        this.hValOp = p.costs.clone();
-        this.hValProp = hValPropInit.clone();
-        this.reachedBy = new int[p.numOfStateFeatures];
+        this.hValOp.reset();
+        this.hValProp.reset();
 
-        UUIntPairPriorityQueue queue = new UUIntPairPriorityQueue();
+        queue.clear();
         for (int f = s0.nextSetBit(0); f >= 0; f = s0.nextSetBit(f + 1)) {
             queue.add(0, f);
-            hValProp[f] = 0;
+            hValProp.set(f, 0);
         }
         // actions without preconditions
         for (int a : precLessOps) {
             for (int f : p.addLists[a]) {
-                if (hValProp[f] > p.costs[a]) {
-                    hValProp[f] = p.costs[a];
-                    queue.add(hValProp[f], f);
+                if (hValProp.get(f) > p.costs[a]) {
+                    hValProp.set(f, p.costs[a]);
+                    reachedBy[f] = a;
+                    queue.add(p.costs[a], f);
                 }
             }
         }
 
         while (!queue.isEmpty()) {
-            int[] pair = queue.minPair();
-            int pVal = pair[0];
-            int prop = pair[1];
-            if (hValProp[prop] < pVal)
+            int pVal = queue.minKey();
+            int prop = queue.pollMinValue();
+            if (hValProp.get(prop) < pVal)
                 continue;
             if (g.get(prop) && (--numGoals == 0)) {
                 if (heuristic == SasHeuristics.hAdd)
@@ -105,13 +111,13 @@ public class hAddhFFEq extends SasHeuristic {
                     return getFFVal(s0, g);
             }
             for (int op : p.precToTask[prop]) {
-                hValOp[op] += pVal;
-                if (--unsatPrecs[op] == 0) {
+                int opVal = hValOp.add(op, pVal);
+                if (unsatPrecs.add(op, -1) == 0) {
                     for (int f : p.addLists[op]) {
-                        if (hValOp[op] < hValProp[f]) {
-                            hValProp[f] = hValOp[op];
+                        if (opVal < hValProp.get(f)) {
+                            hValProp.set(f, opVal);
                             reachedBy[f] = op; // only used by FF
-                            queue.add(hValProp[f], f);
+                            queue.add(opVal, f);
                         }
                     }
                 }
@@ -123,24 +129,25 @@ public class hAddhFFEq extends SasHeuristic {
     private int getAddVal(BitSet g) {
         int hVal = 0;
         for (int f = g.nextSetBit(0); f >= 0; f = g.nextSetBit(f + 1)) {
-            assert hValProp[f] != cUnreachable;
-            hVal += hValProp[f];
+            assert hValProp.get(f) != cUnreachable;
+            hVal += hValProp.get(f);
         }
 
         return hVal;
     }
 
     private int getFFVal(BitSet s0, BitSet g) {
-        BitSet markedFs = (BitSet) s0.clone();
-        BitSet markedOps = new BitSet();
+        markedFs.clear();
+        markedFs.or(s0);
+        markedOps.clear();
         for (int f = g.nextSetBit(0); f >= 0; f = g.nextSetBit(f + 1)) {
-            assert hValProp[f] != cUnreachable;
+            assert hValProp.get(f) != cUnreachable;
 
             // adapted HTN version of helpful actions
             //System.out.println(p.opNames[reachedBy[f]]);
             helpfulOps.set(reachedBy[f]);
 
-            markRelaxedPlan(markedFs, markedOps, f);
+            markRelaxedPlan(f);
         }
 
         int hGoal = 0;
@@ -150,17 +157,17 @@ public class hAddhFFEq extends SasHeuristic {
         return hGoal;
     }
 
-    private void markRelaxedPlan(BitSet markedFs, BitSet markedOps, int f) {
+    private void markRelaxedPlan(int f) {
         if (!markedFs.get(f)) {
             markedFs.set(f);
             for (int prec : p.precLists[reachedBy[f]]) {
-                markRelaxedPlan(markedFs, markedOps, prec);
+                markRelaxedPlan(prec);
             }
             markedOps.set(reachedBy[f]);
 
             // classical version of helpful actions
                 /*int op = reachedBy[f];
-                if (hValOp[op] == p.costs[op]) { // the preconditions of op are free (i.e. in s0)
+                if (hValOp.get(op) == p.costs[op]) { // the preconditions of op are free (i.e. in s0)
                     helpfulOps.set(op);
                 }*/
         }
@@ -0,0 +1,353 @@
+// PANDA 3 -- a domain-independent planner for classical and hierarchical planning
+// Copyright (C) 2014-2018 the original author or authors.
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package de.uniulm.ki.panda3.progression.heuristics.sasp.ExplorationQueueBasedHeuristics;
+
+import de.uniulm.ki.panda3.progression.heuristics.sasp.IncrementalCalc.IncInfExploration;
+import de.uniulm.ki.panda3.progression.heuristics.sasp.IncrementalCalc.IncrementInformation;
+import de.uniulm.ki.panda3.progression.heuristics.sasp.SasHeuristic;
+import de.uniulm.ki.panda3.progression.htn.representation.SasPlusProblem;
+import de.uniulm.ki.panda3.util.fastIntegerDataStructures.UUEpochIntArray;
+import de.uniulm.ki.panda3.util.fastIntegerDataStructures.UUIntPairPriorityQueue;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Incremental version of hAdd, hFF and hMax. The fact costs of the last evaluated nodes are kept, a child of one of
+ * them is evaluated by starting from the costs of its parent and propagating only the changes caused by the facts that
+ * have been removed from or added to the initial state: the costs of all facts whose supporter depends on a removed
+ * fact are recomputed, the added facts may decrease the costs of others. If the costs of the parent are not available
+ * (anymore), the costs are computed from scratch.
+ * <p>
+ * In check mode, every incremental computation is compared against a full recomputation.
+ */
+public class hIncExplorationEq extends SasHeuristic {
+    private static final int CACHED_NODES = 16;
+
+    private final SasHeuristics heuristic;
+    private final SasPlusProblem p;
+    private final int[] precLessOps;
+    private final boolean checkIncrement;
+
+    public int incrementalCalls = 0;
+    public int fullCalls = 0;
+
+    // fact costs and supporters (-1 for facts in s0 and unreachable ones) of the nodes evaluated last
+    private final IncInfExploration[] cachedNodes = new IncInfExploration[CACHED_NODES];
+    private final int[][] cachedCosts = new int[CACHED_NODES][];
+    private final int[][] cachedSupporters = new int[CACHED_NODES][];
+    private final long[] lastUsed = new long[CACHED_NODES];
+    private long time = 0;
+    private IncInfExploration lastIncInf;
+
+    // scratch memory of calcHeu
+    private final UUIntPairPriorityQueue queue;
+    private final UUEpochIntArray unsatPrecs;
+    private final UUEpochIntArray hValOp;
+    private final UUEpochIntArray affectedFacts;
+    private final UUEpochIntArray affectedOps;
+    private final int[] affectedList;
+    private final BitSet changedFacts = new BitSet();
+    private final BitSet markedFs = new BitSet();
+    private final BitSet markedOps = new BitSet();
+    private int[] checkCosts;
+    private int[] checkSupporters;
+
+    /**
+     * @param heuristic one of hAdd, hFF and hMax
+     */
+    public hIncExplorationEq(SasPlusProblem p, SasHeuristics heuristic, boolean checkIncrement) {
+        assert (heuristic == SasHeuristics.hAdd) || (heuristic == SasHeuristics.hFF) || (heuristic == SasHeuristics.hMax);
+        this.heuristic = heuristic;
+        this.p = p;
+        this.checkIncrement = checkIncrement;
+        this.isIncremental = true;
+        this.helpfulOps = new BitSet();
+
+        int numPrecLess = 0;
+        for (int a = 0; a < p.numOfOperators; a++)
+            if (p.precLists[a].length == 0)
+                numPrecLess++;
+        precLessOps = new int[numPrecLess];
+        for (int a = 0, i = 0; a < p.numOfOperators; a++)
+            if (p.precLists[a].length == 0)
+                precLessOps[i++] = a;
+
+        for (int i = 0; i < CACHED_NODES; i++) {
+            cachedCosts[i] = new int[p.numOfStateFeatures];
+            cachedSupporters[i] = new int[p.numOfStateFeatures];
+        }
+        this.unsatPrecs = new UUEpochIntArray(p.numPrecs);
+        this.hValOp = new UUEpochIntArray(p.costs);
+        this.affectedFacts = new UUEpochIntArray(p.numOfStateFeatures, 0);
+        this.affectedOps = new UUEpochIntArray(p.numOfOperators, 0);
+        this.affectedList = new int[p.numOfStateFeatures];
+        this.queue = UUIntPairPriorityQueue.forCosts(p.costs);
+    }
+
+    @Override
+    public String toString() {
+        if (heuristic == SasHeuristics.hAdd)
+            return "inc-hAdd-EQ";
+        else if (heuristic == SasHeuristics.hFF)
+            return "inc-hFF-EQ";
+        else
+            return "inc-hMax-EQ";
+    }
+
+    @Override
+    public IncrementInformation getIncInf() {
+        return lastIncInf;
+    }
+
+    @Override
+    public int calcHeu(BitSet s0, BitSet g) {
+        return calcHeu(-1, null, s0, g);
+    }
+
+    /**
+     * The given s0 must not be changed afterwards, it is part of the increment information of this node.
+     */
+    @Override
+    public int calcHeu(int lastAction, IncrementInformation inc, BitSet s0, BitSet g) {
+        int parent = (inc instanceof IncInfExploration) ? cacheIndex((IncInfExploration) inc) : -1;
+        int slot = leastRecentlyUsed(parent);
+        int[] costs = cachedCosts[slot];
+        int[] supporters = cachedSupporters[slot];
+
+        if (parent >= 0) {
+            lastUsed[parent] = ++time;
+            System.arraycopy(cachedCosts[parent], 0, costs, 0, costs.length);
+            System.arraycopy(cachedSupporters[parent], 0, supporters, 0, supporters.length);
+            propagateChanges(((IncInfExploration) inc).s0, s0, costs, supporters);
+            incrementalCalls++;
+        } else {
+            explore(s0, costs, supporters);
+            fullCalls++;
+        }
+
+        lastIncInf = new IncInfExploration(s0);
+        cachedNodes[slot] = lastIncInf;
+        lastUsed[slot] = ++time;
+
+        if (checkIncrement && (parent >= 0))
+            checkAgainstFullComputation(s0, costs);
+
+        return heuristicValue(s0, g, costs, supporters);
+    }
+
+    private int cacheIndex(IncInfExploration inc) {
+        for (int i = 0; i < CACHED_NODES; i++)
+            if (cachedNodes[i] == inc)
+                return i;
+        return -1;
+    }
+
+    private int leastRecentlyUsed(int except) {
+        int res = -1;
+        for (int i = 0; i < CACHED_NODES; i++) {
+            if (i == except)
+                continue;
+            if ((res < 0) || (lastUsed[i] < lastUsed[res]))
+                res = i;
+        }
+        return res;
+    }
+
+    /**
+     * computes the costs of all facts from scratch
+     */
+    private void explore(BitSet s0, int[] costs, int[] supporters) {
+        Arrays.fill(costs, cUnreachable);
+        Arrays.fill(supporters, -1);
+        unsatPrecs.reset();
+        hValOp.reset();
+        queue.clear();
+
+        for (int f = s0.nextSetBit(0); f >= 0; f = s0.nextSetBit(f + 1)) {
+            costs[f] = 0;
+            queue.add(0, f);
+        }
+        for (int a : precLessOps)
+            relax(a, p.costs[a], costs, supporters);
+
+        while (!queue.isEmpty()) {
+            int pVal = queue.minKey();
+            int prop = queue.pollMinValue();
+            if (costs[prop] < pVal)
+                continue;
+            for (int op : p.precToTask[prop]) {
+                int opVal = (heuristic == SasHeuristics.hMax) ? 0 : hValOp.add(op, pVal);
+                if (unsatPrecs.add(op, -1) == 0) {
+                    // the facts are polled in increasing order, i.e. the last precondition is the most expensive one
+                    if (heuristic == SasHeuristics.hMax)
+                        opVal = p.costs[op] + pVal;
+                    relax(op, opVal, costs, supporters);
+                }
+            }
+        }
+    }
+
+    /**
+     * changes the costs of the parent's initial state to the ones of the new initial state
+     */
+    private void propagateChanges(BitSet parentS0, BitSet s0, int[] costs, int[] supporters) {
+        changedFacts.clear();
+        changedFacts.or(parentS0);
+        changedFacts.xor(s0);
+        affectedFacts.reset();
+        affectedOps.reset();
+        queue.clear();
+
+        // the removed facts and all facts whose supporter (transitively) depends on one of them
+        int numAffected = 0;
+        for (int f = changedFacts.nextSetBit(0); f >= 0; f = changedFacts.nextSetBit(f + 1)) {
+            if (!s0.get(f)) {
+                affectedFacts.set(f, 1);
+                affectedList[numAffected++] = f;
+            }
+        }
+        for (int i = 0; i < numAffected; i++) {
+            for (int op : p.precToTask[affectedList[i]]) {
+                if (affectedOps.isSet(op))
+                    continue;
+                affectedOps.set(op, 1);
+                for (int f : p.addLists[op]) {
+                    if ((supporters[f] == op) && !affectedFacts.isSet(f) && !s0.get(f)) {
+                        affectedFacts.set(f, 1);
+                        affectedList[numAffected++] = f;
+                    }
+                }
+            }
+        }
+
+        // the added facts are free
+        for (int f = changedFacts.nextSetBit(0); f >= 0; f = changedFacts.nextSetBit(f + 1)) {
+            if (s0.get(f)) {
+                supporters[f] = -1;
+                if (costs[f] != 0) {
+                    costs[f] = 0;
+                    queue.add(0, f);
+                }
+            }
+        }
+
+        // the affected facts get the best value their achievers have without them, the queue fixes the rest
+        for (int i = 0; i < numAffected; i++) {
+            costs[affectedList[i]] = cUnreachable;
+            supporters[affectedList[i]] = -1;
+        }
+        for (int i = 0; i < numAffected; i++) {
+            int f = affectedList[i];
+            for (int op : p.addToTask[f]) {
+                int opVal = operatorValue(op, costs);
+                if (opVal < costs[f]) {
+                    costs[f] = opVal;
+                    supporters[f] = op;
+                }
+            }
+            if (costs[f] != cUnreachable)
+                queue.add(costs[f], f);
+        }
+
+        while (!queue.isEmpty()) {
+            int pVal = queue.minKey();
+            int prop = queue.pollMinValue();
+            if (costs[prop] < pVal)
+                continue;
+            for (int op : p.precToTask[prop]) {
+                int opVal = operatorValue(op, costs);
+                if (opVal != cUnreachable)
+                    relax(op, opVal, costs, supporters);
+            }
+        }
+    }
+
+    private int operatorValue(int op, int[] costs) {
+        int val = 0;
+        for (int prec : p.precLists[op]) {
+            if (costs[prec] == cUnreachable)
+                return cUnreachable;
+            if (heuristic == SasHeuristics.hMax)
+                val = Math.max(val, costs[prec]);
+            else
+                val += costs[prec];
+        }
+        return p.costs[op] + val;
+    }
+
+    private void relax(int op, int opVal, int[] costs, int[] supporters) {
+        for (int f : p.addLists[op]) {
+            if (opVal < costs[f]) {
+                costs[f] = opVal;
+                supporters[f] = op;
+                queue.add(opVal, f);
+            }
+        }
+    }
+
+    private void checkAgainstFullComputation(BitSet s0, int[] costs) {
+        if (checkCosts == null) {
+            checkCosts = new int[p.numOfStateFeatures];
+            checkSupporters = new int[p.numOfStateFeatures];
+        }
+        explore(s0, checkCosts, checkSupporters);
+        for (int f = 0; f < costs.length; f++)
+            if (costs[f] != checkCosts[f])
+                throw new IllegalStateException("The incremental computation of " + this + " yields the cost " + costs[f]
+                        + " for fact " + p.factStrs[f] + ", the full recomputation " + checkCosts[f]);
+    }
+
+    private int heuristicValue(BitSet s0, BitSet g, int[] costs, int[] supporters) {
+        if (heuristic == SasHeuristics.hFF)
+            helpfulOps = new BitSet(p.numOfOperators);
+
+        int hVal = 0;
+        for (int f = g.nextSetBit(0); f >= 0; f = g.nextSetBit(f + 1)) {
+            if (costs[f] == cUnreachable)
+                return cUnreachable;
+            if (heuristic == SasHeuristics.hAdd)
+                hVal += costs[f];
+            else if (heuristic == SasHeuristics.hMax)
+                hVal = Math.max(hVal, costs[f]);
+        }
+        if (heuristic != SasHeuristics.hFF)
+            return hVal;
+
+        markedFs.clear();
+        markedFs.or(s0);
+        markedOps.clear();
+        for (int f = g.nextSetBit(0); f >= 0; f = g.nextSetBit(f + 1)) {
+            // adapted HTN version of helpful actions
+            if (supporters[f] >= 0)
+                helpfulOps.set(supporters[f]);
+            markRelaxedPlan(f, supporters);
+        }
+        for (int op = markedOps.nextSetBit(0); op >= 0; op = markedOps.nextSetBit(op + 1))
+            hVal += p.costs[op];
+        return hVal;
+    }
+
+    private void markRelaxedPlan(int f, int[] supporters) {
+        if (!markedFs.get(f)) {
+            markedFs.set(f);
+            for (int prec : p.precLists[supporters[f]])
+                markRelaxedPlan(prec, supporters);
+            markedOps.set(supporters[f]);
+        }
+    }
+}
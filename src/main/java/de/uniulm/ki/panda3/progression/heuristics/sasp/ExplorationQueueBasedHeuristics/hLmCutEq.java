@@ -21,6 +21,7 @@ import de.uniulm.ki.panda3.progression.heuristics.sasp.IncrementalCalc.Increment
 import de.uniulm.ki.panda3.progression.heuristics.sasp.RtgBasedHeuristics.hMaxRtg;
 import de.uniulm.ki.panda3.progression.heuristics.sasp.SasHeuristic;
 import de.uniulm.ki.panda3.progression.htn.representation.SasPlusProblem;
+import de.uniulm.ki.panda3.util.fastIntegerDataStructures.UUEpochIntArray;
 import de.uniulm.ki.panda3.util.fastIntegerDataStructures.UUIntPairPriorityQueue;
 import de.uniulm.ki.panda3.util.fastIntegerDataStructures.UUIntStack;
 
@@ -30,21 +31,28 @@ import java.util.*;
  * Created by dh on 22.06.17.
  */
 public class hLmCutEq extends SasHeuristic {
-    private final int[] maxPrecInit;
-    private final int[] hValInit;
     private final int[] precLessOps;
 
     SasPlusProblem p;
-    private int[] unsatPrecs;
     //private int numGoals; // only for hMax
 
-    private int[] hVal;
-    private int[] maxPrec;
     //private BitSet[] maxPrecInv;
     private int maxPrecG;
-    private int[] costs;
     private IncInfLmCut myIncInf;
 
+    // scratch memory of calcHeu
+    private final UUEpochIntArray unsatPrecs;
+    private final UUEpochIntArray hVal;
+    private final UUEpochIntArray maxPrec;
+    private final UUEpochIntArray costs;
+    private final UUEpochIntArray visited;
+    private final UUIntPairPriorityQueue queue;
+    private final UUIntStack stack = new UUIntStack(100);
+    private final BitSet goalZone = new BitSet();
+    private final BitSet cut = new BitSet();
+    private final BitSet precsOfCutNodes = new BitSet();
+    private final BitSet remove = new BitSet();
+
     // necessary for debug
     //private BitSet s0;
 
@@ -59,12 +67,12 @@ public class hLmCutEq extends SasHeuristic {
     public hLmCutEq(SasPlusProblem p, boolean incremental) {
         this.p = p;
         this.isIncremental = incremental;
-        this.maxPrecInit = new int[p.numOfOperators];
-        for (int i = 0; i < maxPrecInit.length; i++)
-            maxPrecInit[i] = -1;
-        this.hValInit = new int[p.numOfStateFeatures];
-        for (int i = 0; i < hValInit.length; i++)
-            hValInit[i] = cUnreachable;
+        this.unsatPrecs = new UUEpochIntArray(p.numPrecs);
+        this.maxPrec = new UUEpochIntArray(p.numOfOperators, -1);
+        this.hVal = new UUEpochIntArray(p.numOfStateFeatures, cUnreachable);
+        this.costs = new UUEpochIntArray(p.costs);
+        this.visited = new UUEpochIntArray(p.numOfStateFeatures, 0);
+        this.queue = UUIntPairPriorityQueue.forCosts(p.costs);
         /*this.maxPrecInv = new BitSet[p.numOfStateFeatures];
         for (int i = 0; i < p.numOfStateFeatures; i++)
             maxPrecInv[i] = new BitSet();*/
@@ -88,7 +96,7 @@ public class hLmCutEq extends SasHeuristic {
     @Override
     public int calcHeu(int lastAction, IncrementInformation inc, BitSet s0, BitSet g) {
         int hLmCut = 0;
-        this.costs = p.costs.clone();
+        this.costs.reset();
 
         if (isIncremental) {
             myIncInf = new IncInfLmCut();
@@ -106,9 +114,9 @@ public class hLmCutEq extends SasHeuristic {
             //assert implementationEquality(s0, g);
             //assert reachablilityOK(s0, this.hVal); // this is less restrictive than the one above
 
-            BitSet goalZone = new BitSet();
-            BitSet cut = new BitSet();
-            BitSet precsOfCutNodes = new BitSet();
+            goalZone.clear();
+            cut.clear();
+            precsOfCutNodes.clear();
             goalZone(goalZone, cut, precsOfCutNodes);
             assert cut.cardinality() > 0;
 
@@ -120,7 +128,7 @@ public class hLmCutEq extends SasHeuristic {
             // calculate costs
             int minCosts = Integer.MAX_VALUE;
             for (int cutted = cut.nextSetBit(0); cutted >= 0; cutted = cut.nextSetBit(cutted + 1)) {
-                minCosts = Integer.min(minCosts, costs[cutted]);
+                minCosts = Integer.min(minCosts, costs.get(cutted));
             }
             assert minCosts > 0;
             hLmCut += minCosts;
@@ -162,8 +170,8 @@ public class hLmCutEq extends SasHeuristic {
                 myIncInf.cuts.add(cut);
                 myIncInf.costs.push(costs);
                 for (int op : cut) {
-                    this.costs[op] -= costs;
-                    assert (this.costs[op] >= 0);
+                    this.costs.add(op, -costs);
+                    assert (this.costs.get(op) >= 0);
                     debugOut(op + " " + p.opNames[op] + "\n");
                 }
             }
@@ -200,14 +208,14 @@ public class hLmCutEq extends SasHeuristic {
         while (!fringe.isEmpty()) {
             int fact = fringe.pop();
             for (int producer : p.addToTask[fact]) {
-                if (unsatPrecs[producer] > 0) // not reachable
+                if (unsatPrecs.get(producer) > 0) // not reachable
                     continue;
 
-                int singlePrec = maxPrec[producer];
+                int singlePrec = maxPrec.get(producer);
                 if (goalZone.get(singlePrec))
                     continue;
 
-                if (this.costs[producer] == 0) {
+                if (this.costs.get(producer) == 0) {
                     goalZone.set(singlePrec);
                     precsOfCutNodes.set(singlePrec, false);
                     fringe.push(singlePrec);
@@ -223,31 +231,30 @@ public class hLmCutEq extends SasHeuristic {
 
 
     private void forwardReachabilityDFS(BitSet s0, BitSet cut, BitSet goalZone, BitSet testReachability) {
-        UUIntStack stack = new UUIntStack(100);
-
-        BitSet remove = new BitSet();
+        remove.clear();
         for (int f = testReachability.nextSetBit(0); f >= 0; f = testReachability.nextSetBit(f + 1)) {
             if (s0.get(f))
                 continue;
-            BitSet visited = new BitSet();
+            visited.reset();
             boolean reachedS0 = false;
             stack.clear();
             stack.push(f);
-            visited.set(f);
+            visited.set(f, 1);
             reachabilityLoop:
             while (!stack.isEmpty()) {
                 int pred = stack.pop();
                 for (int op : p.addToTask[pred]) {
-                    if (unsatPrecs[op] > 0)
+                    if (unsatPrecs.get(op) > 0)
                         continue;
-                    if (goalZone.get(maxPrec[op]))
+                    int opMaxPrec = maxPrec.get(op);
+                    if (goalZone.get(opMaxPrec))
                         continue;
-                    if ((p.numPrecs[op] == 0) || (s0.get(maxPrec[op]))) { // reached s0
+                    if ((p.numPrecs[op] == 0) || (s0.get(opMaxPrec))) { // reached s0
                         reachedS0 = true;
                         break reachabilityLoop;
-                    } else if (!visited.get(maxPrec[op])) {
-                        visited.set(maxPrec[op], true);
-                        stack.push(maxPrec[op]);
+                    } else if (!visited.isSet(opMaxPrec)) {
+                        visited.set(opMaxPrec, 1);
+                        stack.push(opMaxPrec);
                     }
                 }
             }
@@ -255,7 +262,7 @@ public class hLmCutEq extends SasHeuristic {
                 remove.set(f);
         }
         for (int op = cut.nextSetBit(0); op >= 0; op = cut.nextSetBit(op + 1)) {
-            if (remove.get(maxPrec[op]))
+            if (remove.get(maxPrec.get(op)))
                 cut.set(op, false);
         }
     }
@@ -313,9 +320,9 @@ public class hLmCutEq extends SasHeuristic {
     private BitSet getMaxPrecInv(int f) {
         BitSet bs = new BitSet();
         for (int i = 0; i < p.numOfOperators; i++) {
-            if (unsatPrecs[i] > 0)
+            if (unsatPrecs.get(i) > 0)
                 continue;
-            if (maxPrec[i] == f)
+            if (maxPrec.get(i) == f)
                 bs.set(i);
         }
         return bs;
@@ -325,33 +332,32 @@ public class hLmCutEq extends SasHeuristic {
         //this.s0 = s0; // for debug
         if (g.cardinality() == 0)
             return 0;
-        this.unsatPrecs = p.numPrecs.clone();
-        this.hVal = hValInit.clone();
-        this.maxPrec = maxPrecInit.clone();
+        this.unsatPrecs.reset();
+        this.hVal.reset();
+        this.maxPrec.reset();
         //this.numGoals = g.cardinality(); // only for hMax
         //for (int i = 0; i < p.numOfStateFeatures; i++)
         //    maxPrecInv[i].clear();
 
-        UUIntPairPriorityQueue queue = new UUIntPairPriorityQueue();
+        queue.clear();
         for (int f = s0.nextSetBit(0); f >= 0; f = s0.nextSetBit(f + 1)) {
             queue.add(0, f);
-            hVal[f] = 0;
+            hVal.set(f, 0);
         }
         // actions without preconditions
         for (int a = 0; a < precLessOps.length; a++) {
             for (int f : p.addLists[a]) {
-                if (hVal[f] > costs[a]) {
-                    hVal[f] = costs[a];
-                    queue.add(hVal[f], f);
+                if (hVal.get(f) > costs.get(a)) {
+                    hVal.set(f, costs.get(a));
+                    queue.add(costs.get(a), f);
                 }
             }
         }
 
         while (!queue.isEmpty()) {
-            int[] pair = queue.minPair();
-            int pVal = pair[0];
-            int prop = pair[1];
-            if (hVal[prop] < pVal)
+            int pVal = queue.minKey();
+            int prop = queue.pollMinValue();
+            if (hVal.get(prop) < pVal)
                 continue;
 
             // only for hMax
@@ -359,16 +365,17 @@ public class hLmCutEq extends SasHeuristic {
             //    return getMaxVal(g);
             //}
             for (int op : p.precToTask[prop]) {
-                if ((maxPrec[op] == -1) || (hVal[maxPrec[op]] < hVal[prop])) {
-                    maxPrec[op] = prop;
+                if ((maxPrec.get(op) == -1) || (hVal.get(maxPrec.get(op)) < hVal.get(prop))) {
+                    maxPrec.set(op, prop);
                 }
-                if (--unsatPrecs[op] == 0) {
+                if (unsatPrecs.add(op, -1) == 0) {
                     //maxPrecInv[maxPrec[op]].set(op);
                     assert allPrecsTrue(op);
+                    int opVal = hVal.get(maxPrec.get(op)) + costs.get(op);
                     for (int f : p.addLists[op]) {
-                        if ((hVal[maxPrec[op]] + costs[op]) < hVal[f]) {
-                            hVal[f] = hVal[maxPrec[op]] + costs[op];
-                            queue.add(hVal[f], f);
+                        if (opVal < hVal.get(f)) {
+                            hVal.set(f, opVal);
+                            queue.add(opVal, f);
                         }
                     }
                 }
@@ -378,43 +385,44 @@ public class hLmCutEq extends SasHeuristic {
     }
 
     public int costUpdate(BitSet operators, int decreaseBy, BitSet g) {
-        UUIntPairPriorityQueue queue = new UUIntPairPriorityQueue();
+        queue.clear();
         for (int op = operators.nextSetBit(0); op >= 0; op = operators.nextSetBit(op + 1)) {
-            costs[op] -= decreaseBy;
-            assert costs[op] >= 0;
+            int opCosts = costs.add(op, -decreaseBy);
+            assert opCosts >= 0;
             assert allPrecsTrue(op);
+            int opVal = hVal.get(maxPrec.get(op)) + opCosts;
             for (int f : p.addLists[op]) {
-                if ((hVal[maxPrec[op]] + costs[op]) < hVal[f]) { // that f might be cheaper now
-                    hVal[f] = hVal[maxPrec[op]] + costs[op];
-                    queue.add(hVal[f], f);
+                if (opVal < hVal.get(f)) { // that f might be cheaper now
+                    hVal.set(f, opVal);
+                    queue.add(opVal, f);
                 }
             }
         }
         while (!queue.isEmpty()) {
-            int[] pair = queue.minPair();
-            int pVal = pair[0];
-            int prop = pair[1];
-            if (hVal[prop] < pVal) // we have prop's costs DECREASED -> this is fine
+            int pVal = queue.minKey();
+            int prop = queue.pollMinValue();
+            if (hVal.get(prop) < pVal) // we have prop's costs DECREASED -> this is fine
                 continue;
             for (int op : p.precToTask[prop]) {
-                if ((unsatPrecs[op] == 0) && (prop == maxPrec[op])) { // this may change the costs of the operator and all its successors
+                if ((unsatPrecs.get(op) == 0) && (prop == maxPrec.get(op))) { // this may change the costs of the operator and all its successors
                     int opMaxPrec = -1;
                     int val = Integer.MIN_VALUE;
                     for (int f : p.precLists[op]) {
-                        assert hVal[f] != cUnreachable;
-                        if (hVal[f] > val) {
+                        assert hVal.get(f) != cUnreachable;
+                        if (hVal.get(f) > val) {
                             opMaxPrec = f;
-                            val = hVal[f];
+                            val = hVal.get(f);
                         }
                     }
                     //maxPrecInv[prop].set(op, false);
-                    maxPrec[op] = opMaxPrec;
+                    maxPrec.set(op, opMaxPrec);
                     //maxPrecInv[opMaxPrec].set(op, true);
+                    int opVal = val + costs.get(op);
                     for (int f : p.addLists[op]) {
-                        if ((hVal[maxPrec[op]] + costs[op]) < hVal[f]) {
-                            hVal[f] = hVal[maxPrec[op]] + costs[op];
-                            assert hVal[f] >= 0;
-                            queue.add(hVal[f], f);
+                        if (opVal < hVal.get(f)) {
+                            hVal.set(f, opVal);
+                            assert opVal >= 0;
+                            queue.add(opVal, f);
                         }
                     }
                 }
@@ -429,9 +437,9 @@ public class hLmCutEq extends SasHeuristic {
     private int getMaxVal(BitSet g) {
         int hVal = 0;
         for (int f = g.nextSetBit(0); f >= 0; f = g.nextSetBit(f + 1)) {
-            assert this.hVal[f] != cUnreachable;
-            if (hVal > this.hVal[f]) {
-                hVal = this.hVal[f];
+            assert this.hVal.get(f) != cUnreachable;
+            if (hVal > this.hVal.get(f)) {
+                hVal = this.hVal.get(f);
                 maxPrecG = f;
             }
         }
@@ -445,12 +453,12 @@ public class hLmCutEq extends SasHeuristic {
     private int getMaxValEnd(BitSet g) {
         int hVal = 0;
         for (int f = g.nextSetBit(0); f >= 0; f = g.nextSetBit(f + 1)) {
-            if (this.hVal[f] == cUnreachable) {
+            if (this.hVal.get(f) == cUnreachable) {
                 maxPrecG = -1;
                 return cUnreachable;
             }
-            if (hVal < this.hVal[f]) {
-                hVal = this.hVal[f];
+            if (hVal < this.hVal.get(f)) {
+                hVal = this.hVal.get(f);
                 maxPrecG = f;
             }
         }
@@ -463,7 +471,7 @@ public class hLmCutEq extends SasHeuristic {
      */
     private boolean allPrecsTrue(int op) {
         for (int prec : p.precLists[op]) {
-            if (hVal[prec] == cUnreachable)
+            if (hVal.get(prec) == cUnreachable)
                 return false;
         }
         return true;
@@ -471,15 +479,17 @@ public class hLmCutEq extends SasHeuristic {
 
     private boolean implementationEquality(BitSet s0, BitSet g) {
         int[] temp = p.costs;
-        p.costs = this.costs.clone();
+        p.costs = new int[p.numOfOperators];
+        for (int op = 0; op < p.numOfOperators; op++)
+            p.costs[op] = this.costs.get(op);
         hMaxRtg otherImp = new hMaxRtg(p);
         otherImp.earlyAbord = false;
         p.costs = temp;
         otherImp.calcHeu(s0, g);
 
         int[] otherVals = otherImp.hVal;
-        for (int i = 0; i < hVal.length; i++)
-            if (hVal[i] != otherVals[i])
+        for (int i = 0; i < hVal.size(); i++)
+            if (hVal.get(i) != otherVals[i])
                 return false;
         return true;
     }
@@ -18,6 +18,7 @@ package de.uniulm.ki.panda3.progression.heuristics.sasp.ExplorationQueueBasedHeu
 
 import de.uniulm.ki.panda3.progression.heuristics.sasp.SasHeuristic;
 import de.uniulm.ki.panda3.progression.htn.representation.SasPlusProblem;
+import de.uniulm.ki.panda3.util.fastIntegerDataStructures.UUEpochIntArray;
 import de.uniulm.ki.panda3.util.fastIntegerDataStructures.UUIntPairPriorityQueue;
 
 import java.util.*;
@@ -26,16 +27,16 @@ import java.util.*;
  * Created by dh on 22.06.17.
  */
 public class hMaxEq extends SasHeuristic {
-    private final int[] maxPrecInit;
-    private final int[] hValInit;
     private final int[] precLessOps;
 
     SasPlusProblem p;
-    private int[] unsatPrecs;
     private int numGoals;
 
-    private int[] hVal;
-    private int[] maxPrec;
+    // scratch memory of calcHeu
+    private final UUEpochIntArray unsatPrecs;
+    private final UUEpochIntArray hVal;
+    private final UUEpochIntArray maxPrec;
+    private final UUIntPairPriorityQueue queue;
 
     @Override
     public String toString() {
@@ -44,12 +45,10 @@ public class hMaxEq extends SasHeuristic {
 
     public hMaxEq(SasPlusProblem p) {
         this.p = p;
-        this.maxPrecInit = new int[p.numOfOperators];
-        for (int i = 0; i < maxPrecInit.length; i++)
-            maxPrecInit[i] = -1;
-        this.hValInit = new int[p.numOfStateFeatures];
-        for (int i = 0; i < hValInit.length; i++)
-            hValInit[i] = cUnreachable;
+        this.unsatPrecs = new UUEpochIntArray(p.numPrecs);
+        this.maxPrec = new UUEpochIntArray(p.numOfOperators, -1);
+        this.hVal = new UUEpochIntArray(p.numOfStateFeatures, cUnreachable);
+        this.queue = UUIntPairPriorityQueue.forCosts(p.costs);
 
         // get actions without preconditions
         List<Integer> tempPrecLess = new ArrayList<>();
@@ -67,46 +66,46 @@ public class hMaxEq extends SasHeuristic {
         g.andNot(s0);
         if (g.cardinality() == 0)
             return 0;
-        this.unsatPrecs = p.numPrecs.clone();
-        this.maxPrec = maxPrecInit.clone();
-        this.hVal = hValInit.clone();
+        this.unsatPrecs.reset();
+        this.maxPrec.reset();
+        this.hVal.reset();
         this.numGoals = g.cardinality();
 
-        UUIntPairPriorityQueue queue = new UUIntPairPriorityQueue();
+        queue.clear();
         for (int f = s0.nextSetBit(0); f >= 0; f = s0.nextSetBit(f + 1)) {
             queue.add(0, f);
-            hVal[f] = 0;
+            hVal.set(f, 0);
         }
         // actions without preconditions
         for (int a = 0; a < precLessOps.length; a++) {
             for (int f : p.addLists[a]) {
-                if (hVal[f] > p.costs[a]) {
-                    hVal[f] = p.costs[a];
-                    queue.add(hVal[f], f);
+                if (hVal.get(f) > p.costs[a]) {
+                    hVal.set(f, p.costs[a]);
+                    queue.add(p.costs[a], f);
                 }
             }
         }
 
         while (!queue.isEmpty()) {
-            int[] pair = queue.minPair();
-            int pVal = pair[0];
-            int prop = pair[1];
-            if (hVal[prop] < pVal)
+            int pVal = queue.minKey();
+            int prop = queue.pollMinValue();
+            if (hVal.get(prop) < pVal)
                 continue;
 
             if (g.get(prop) && (--numGoals == 0)) {
                 return getMaxVal(g);
             }
             for (int op : p.precToTask[prop]) {
-                if ((maxPrec[op] == -1) || (hVal[maxPrec[op]] < hVal[prop])) {
-                    maxPrec[op] = prop;
+                if ((maxPrec.get(op) == -1) || (hVal.get(maxPrec.get(op)) < hVal.get(prop))) {
+                    maxPrec.set(op, prop);
                 }
-                if (--unsatPrecs[op] == 0) {
+                if (unsatPrecs.add(op, -1) == 0) {
                     assert allPrecsTrue(op);
+                    int opVal = hVal.get(maxPrec.get(op)) + p.costs[op];
                     for (int f : p.addLists[op]) {
-                        if ((hVal[maxPrec[op]] + p.costs[op]) < hVal[f]) {
-                            hVal[f] = hVal[maxPrec[op]] + p.costs[op];
-                            queue.add(hVal[f], f);
+                        if (opVal < hVal.get(f)) {
+                            hVal.set(f, opVal);
+                            queue.add(opVal, f);
                         }
                     }
                 }
@@ -119,9 +118,9 @@ public class hMaxEq extends SasHeuristic {
     private int getMaxVal(BitSet g) {
         int hVal = 0;
         for (int f = g.nextSetBit(0); f >= 0; f = g.nextSetBit(f + 1)) {
-            assert this.hVal[f] != cUnreachable;
-            if (hVal > this.hVal[f]) {
-                hVal = this.hVal[f];
+            assert this.hVal.get(f) != cUnreachable;
+            if (hVal > this.hVal.get(f)) {
+                hVal = this.hVal.get(f);
             }
         }
 
@@ -130,7 +129,7 @@ public class hMaxEq extends SasHeuristic {
 
     private boolean allPrecsTrue(int op) {
         for (int prec : p.precLists[op]) {
-            if (hVal[prec] == cUnreachable)
+            if (hVal.get(prec) == cUnreachable)
                 return false;
         }
         return true;
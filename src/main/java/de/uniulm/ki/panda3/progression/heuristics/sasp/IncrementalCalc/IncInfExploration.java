@@ -0,0 +1,31 @@
+// PANDA 3 -- a domain-independent planner for classical and hierarchical planning
+// Copyright (C) 2014-2018 the original author or authors.
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package de.uniulm.ki.panda3.progression.heuristics.sasp.IncrementalCalc;
+
+import java.util.BitSet;
+
+/**
+ * The initial state of the relaxed problem a search node has been evaluated on. It identifies the fact costs of the
+ * node in the cache of the incremental exploration heuristics.
+ */
+public class IncInfExploration extends IncrementInformation {
+    public final BitSet s0;
+
+    public IncInfExploration(BitSet s0) {
+        this.s0 = s0;
+    }
+}
@@ -18,6 +18,7 @@ package de.uniulm.ki.panda3.progression.heuristics.sasp.RtgBasedHeuristics;
 
 import de.uniulm.ki.panda3.util.fastIntegerDataStructures.UUIntPairPriorityQueue;
 import de.uniulm.ki.panda3.progression.htn.representation.SasPlusProblem;
+import de.uniulm.ki.panda3.progression.htn.search.ProgressionContext;
 
 import java.util.*;
 
@@ -34,6 +35,14 @@ public abstract class RTGBaseCalc extends RelaxedTaskGraph {
         super(p, trackPCF);
     }
 
+    public RTGBaseCalc(ProgressionContext context, boolean trackPCF) {
+        super(context, trackPCF);
+    }
+
+    protected RTGBaseCalc(SasPlusProblem p, RelaxedTaskGraphStructure graph, boolean trackPCF) {
+        super(p, graph, trackPCF);
+    }
+
     @Override
     public int calcHeu(BitSet s0, BitSet g) {
         if (this.trackPCF) {
@@ -18,6 +18,7 @@ package de.uniulm.ki.panda3.progression.heuristics.sasp.RtgBasedHeuristics;
 
 import de.uniulm.ki.panda3.progression.heuristics.sasp.SasHeuristic;
 import de.uniulm.ki.panda3.progression.htn.representation.SasPlusProblem;
+import de.uniulm.ki.panda3.progression.htn.search.ProgressionContext;
 import de.uniulm.ki.panda3.util.fastIntegerDataStructures.UUIntStack;
 
 import java.util.*;
@@ -27,29 +28,26 @@ import java.util.*;
  */
 public abstract class RelaxedTaskGraph extends SasHeuristic {
 
-    static int nodeCount;
+    final int nodeCount;
 
     // this is only used for debugging
-    static List<String> nodeNames = new ArrayList<>();
+    final List<String> nodeNames;
 
-    static int[] precNodeToOp; // mapping of nodes that belong to preconditions to the corresponding operator
-    static int[] opIndexToEffNode; // mapping of operator to its effect node
+    final int[] precNodeToOp; // mapping of nodes that belong to preconditions to the corresponding operator
+    final int[] opIndexToEffNode; // mapping of operator to its effect node
 
-    static BitSet isAndNode = new BitSet(); // is it an AND-node? (it is an OR-node otherwise)
+    final BitSet isAndNode; // is it an AND-node? (it is an OR-node otherwise)
 
     // for each node, the int defines the *index* of the nodes to be activated before the respective node
-    static int[][] waitingForNodes;
+    final int[][] waitingForNodes;
 
-    /* for each node, the int defines the *number* of nodes to be activated before the respective node
-     * - for or-nodes, this will be always one
-     * - for and-nodes, it is the actual number of predecessors
-     */
-    static int[] initialWaitingForCount; // the original values
+    // for each node, the *number* of nodes to be activated before the respective node (see RelaxedTaskGraphStructure)
+    final int[] initialWaitingForCount; // the original values
 
     /* for each node, it gives a list of nodes that wait that the respective node is activated */
-    static int[][] whoIsWaitingForMe;
+    final int[][] whoIsWaitingForMe;
 
-    static int[] precTnodes; // precondition nodes of actions without preconditions
+    final int[] precTnodes; // precondition nodes of actions without preconditions
 
     /* holds h-max for every node */
     public int[] hVal;
@@ -72,103 +70,26 @@ public abstract class RelaxedTaskGraph extends SasHeuristic {
     }
 
     public RelaxedTaskGraph(SasPlusProblem p, boolean trackPCF) {
-        this.trackPCF = trackPCF;
-
-        // init variable nodes
-        List<List<Integer>> tempWaitingForNodes = new ArrayList<>();
-        List<Integer> tempCosts = new ArrayList<>();
-        for (int i = 0; i < p.numOfStateFeatures; i++) {
-            tempWaitingForNodes.add(new ArrayList<>());
-            isAndNode.set(i, false);
-            tempCosts.add(0);
-            nodeNames.add(p.factName(i));
-        }
-
-        // generate operator subgraphs
-        int nodeID = p.numOfStateFeatures - 1; // current index of the last node
-        opIndexToEffNode = new int[p.numOfOperators];
-        Map<Integer, Integer> tempPrecNodeToOp = new HashMap<>();
-        List<Integer> tempPrecTnodes = new ArrayList<>(); // nodes without precondition
-
-        for (int iOperator = 0; iOperator < p.numOfOperators; iOperator++) {
-            List<Integer> allPrecNodes = new ArrayList<>(); // currently one, but this might change due to ORs
-            List<Integer> newPrecNode = new ArrayList<>();
-            tempWaitingForNodes.add(newPrecNode);
-            nodeID++;
-            isAndNode.set(nodeID, true);
-            tempCosts.add(0);
-            tempPrecNodeToOp.put(nodeID, iOperator);
-            allPrecNodes.add(nodeID);
-            nodeNames.add("prec(" + p.opNames[iOperator] + ")");
-
-            for (int iPrec = 0; iPrec < p.precLists[iOperator].length; iPrec++)
-                newPrecNode.add(p.precLists[iOperator][iPrec]);
-
-            // actions without preconditions
-            if (p.precLists[iOperator].length == 0)
-                tempPrecTnodes.add(nodeID);
-
-            // effect node
-            List<Integer> newEffNode = new ArrayList<>();
-            tempWaitingForNodes.add(newEffNode);
-            nodeID++;
-            isAndNode.set(nodeID, true);
-            tempCosts.add(p.costs[iOperator]);
-            nodeNames.add("add(" + p.opNames[iOperator] + ")");
-            opIndexToEffNode[iOperator] = nodeID;
-            newEffNode.addAll(allPrecNodes); // this is waiting for its preconditions
-
-            for (int iAddEff = 0; iAddEff < p.addLists[iOperator].length; iAddEff++)
-                tempWaitingForNodes.get(p.addLists[iOperator][iAddEff]).add(nodeID); // the other node is waiting for me
-
-            // todo: conditional effect
-        }
-
-        // copy temporal data structures to class members
-        this.costs = new int[tempCosts.size()];
-        for (int i = 0; i < tempCosts.size(); i++)
-            this.costs[i] = tempCosts.get(i);
-
-        List<List<Integer>> tempWhoIsWaitingForMe = new ArrayList<>();
-        for (int i = 0; i < tempWaitingForNodes.size(); i++)
-            tempWhoIsWaitingForMe.add(new ArrayList<>());
-
-        this.waitingForNodes = new int[tempWaitingForNodes.size()][];
-        this.initialWaitingForCount = new int[tempWaitingForNodes.size()];
-        for (int i = 0; i < tempWaitingForNodes.size(); i++) {
-            List<Integer> list = tempWaitingForNodes.get(i);
-            this.waitingForNodes[i] = new int[list.size()];
-            for (int j = 0; j < list.size(); j++) {
-                this.waitingForNodes[i][j] = list.get(j);
-                tempWhoIsWaitingForMe.get(list.get(j)).add(i);
-            }
-            if (isAndNode.get(i)) {
-                initialWaitingForCount[i] = list.size();
-            } else {
-                initialWaitingForCount[i] = 1;
-            }
-        }
+        this(p, new RelaxedTaskGraphStructure(p), trackPCF);
+    }
 
-        this.whoIsWaitingForMe = new int[tempWhoIsWaitingForMe.size()][];
-        for (int i = 0; i < tempWhoIsWaitingForMe.size(); i++) {
-            List<Integer> list = tempWhoIsWaitingForMe.get(i);
-            this.whoIsWaitingForMe[i] = new int[list.size()];
-            for (int j = 0; j < list.size(); j++)
-                this.whoIsWaitingForMe[i][j] = list.get(j);
-        }
+    public RelaxedTaskGraph(ProgressionContext context, boolean trackPCF) {
+        this(context.flatProblem, context.getRelaxedTaskGraph(), trackPCF);
+    }
 
-        this.precTnodes = new int[tempPrecTnodes.size()];
-        for (int i = 0; i < tempPrecTnodes.size(); i++) {
-            this.precTnodes[i] = tempPrecTnodes.get(i);
-        }
+    protected RelaxedTaskGraph(SasPlusProblem p, RelaxedTaskGraphStructure graph, boolean trackPCF) {
+        this.trackPCF = trackPCF;
 
-        this.precNodeToOp = new int[tempWaitingForNodes.size()];
-        for (int i = 0; i < this.precNodeToOp.length; i++) {
-            if (tempPrecNodeToOp.containsKey(i))
-                this.precNodeToOp[i] = tempPrecNodeToOp.get(i);
-            else
-                this.precNodeToOp[i] = -1;
-        }
+        this.nodeCount = graph.nodeCount;
+        this.nodeNames = graph.nodeNames;
+        this.precNodeToOp = graph.precNodeToOp;
+        this.opIndexToEffNode = graph.opIndexToEffNode;
+        this.isAndNode = graph.isAndNode;
+        this.waitingForNodes = graph.waitingForNodes;
+        this.initialWaitingForCount = graph.initialWaitingForCount;
+        this.whoIsWaitingForMe = graph.whoIsWaitingForMe;
+        this.precTnodes = graph.precTnodes;
+        this.costs = graph.initialCosts.clone();
 
         // precondition choice function
         if (this.trackPCF) {
@@ -179,9 +100,7 @@ public abstract class RelaxedTaskGraph extends SasHeuristic {
             opReachable = new BitSet(p.numOfOperators);
         }
 
-        this.nodeCount = tempWaitingForNodes.size();
-
-        hVal = new int[tempWaitingForNodes.size()]; // initialized in calc method
+        hVal = new int[nodeCount]; // initialized in calc method
 
         /*for(int i = 0; i < nodeNames.size();i++)
             System.out.println(nodeNames.get(i));
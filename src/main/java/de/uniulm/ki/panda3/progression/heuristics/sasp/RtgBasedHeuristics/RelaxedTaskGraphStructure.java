@@ -0,0 +1,154 @@
+// PANDA 3 -- a domain-independent planner for classical and hierarchical planning
+// Copyright (C) 2014-2018 the original author or authors.
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package de.uniulm.ki.panda3.progression.heuristics.sasp.RtgBasedHeuristics;
+
+import de.uniulm.ki.panda3.progression.htn.representation.SasPlusProblem;
+
+import java.util.*;
+
+/**
+ * The graph of a relaxed task graph heuristic. It only depends on the flat problem and is never changed by the
+ * heuristics, so it can be shared by all heuristics of a problem (see ProgressionContext.getRelaxedTaskGraph).
+ */
+public class RelaxedTaskGraphStructure {
+
+    final int nodeCount;
+
+    // this is only used for debugging
+    final List<String> nodeNames = new ArrayList<>();
+
+    final int[] precNodeToOp; // mapping of nodes that belong to preconditions to the corresponding operator
+    final int[] opIndexToEffNode; // mapping of operator to its effect node
+
+    final BitSet isAndNode = new BitSet(); // is it an AND-node? (it is an OR-node otherwise)
+
+    // for each node, the int defines the *index* of the nodes to be activated before the respective node
+    final int[][] waitingForNodes;
+
+    /* for each node, the int defines the *number* of nodes to be activated before the respective node
+     * - for or-nodes, this will be always one
+     * - for and-nodes, it is the actual number of predecessors
+     */
+    final int[] initialWaitingForCount; // the original values
+
+    /* for each node, it gives a list of nodes that wait that the respective node is activated */
+    final int[][] whoIsWaitingForMe;
+
+    final int[] precTnodes; // precondition nodes of actions without preconditions
+
+    final int[] initialCosts; // costs of activating a node (in addition to its predecessors -> this are action costs)
+
+    public RelaxedTaskGraphStructure(SasPlusProblem p) {
+        // init variable nodes
+        List<List<Integer>> tempWaitingForNodes = new ArrayList<>();
+        List<Integer> tempCosts = new ArrayList<>();
+        for (int i = 0; i < p.numOfStateFeatures; i++) {
+            tempWaitingForNodes.add(new ArrayList<>());
+            isAndNode.set(i, false);
+            tempCosts.add(0);
+            nodeNames.add(p.factName(i));
+        }
+
+        // generate operator subgraphs
+        int nodeID = p.numOfStateFeatures - 1; // current index of the last node
+        opIndexToEffNode = new int[p.numOfOperators];
+        Map<Integer, Integer> tempPrecNodeToOp = new HashMap<>();
+        List<Integer> tempPrecTnodes = new ArrayList<>(); // nodes without precondition
+
+        for (int iOperator = 0; iOperator < p.numOfOperators; iOperator++) {
+            List<Integer> allPrecNodes = new ArrayList<>(); // currently one, but this might change due to ORs
+            List<Integer> newPrecNode = new ArrayList<>();
+            tempWaitingForNodes.add(newPrecNode);
+            nodeID++;
+            isAndNode.set(nodeID, true);
+            tempCosts.add(0);
+            tempPrecNodeToOp.put(nodeID, iOperator);
+            allPrecNodes.add(nodeID);
+            nodeNames.add("prec(" + p.opNames[iOperator] + ")");
+
+            for (int iPrec = 0; iPrec < p.precLists[iOperator].length; iPrec++)
+                newPrecNode.add(p.precLists[iOperator][iPrec]);
+
+            // actions without preconditions
+            if (p.precLists[iOperator].length == 0)
+                tempPrecTnodes.add(nodeID);
+
+            // effect node
+            List<Integer> newEffNode = new ArrayList<>();
+            tempWaitingForNodes.add(newEffNode);
+            nodeID++;
+            isAndNode.set(nodeID, true);
+            tempCosts.add(p.costs[iOperator]);
+            nodeNames.add("add(" + p.opNames[iOperator] + ")");
+            opIndexToEffNode[iOperator] = nodeID;
+            newEffNode.addAll(allPrecNodes); // this is waiting for its preconditions
+
+            for (int iAddEff = 0; iAddEff < p.addLists[iOperator].length; iAddEff++)
+                tempWaitingForNodes.get(p.addLists[iOperator][iAddEff]).add(nodeID); // the other node is waiting for me
+
+            // todo: conditional effect
+        }
+
+        // copy temporal data structures to class members
+        this.initialCosts = new int[tempCosts.size()];
+        for (int i = 0; i < tempCosts.size(); i++)
+            this.initialCosts[i] = tempCosts.get(i);
+
+        List<List<Integer>> tempWhoIsWaitingForMe = new ArrayList<>();
+        for (int i = 0; i < tempWaitingForNodes.size(); i++)
+            tempWhoIsWaitingForMe.add(new ArrayList<>());
+
+        this.waitingForNodes = new int[tempWaitingForNodes.size()][];
+        this.initialWaitingForCount = new int[tempWaitingForNodes.size()];
+        for (int i = 0; i < tempWaitingForNodes.size(); i++) {
+            List<Integer> list = tempWaitingForNodes.get(i);
+            this.waitingForNodes[i] = new int[list.size()];
+            for (int j = 0; j < list.size(); j++) {
+                this.waitingForNodes[i][j] = list.get(j);
+                tempWhoIsWaitingForMe.get(list.get(j)).add(i);
+            }
+            if (isAndNode.get(i)) {
+                initialWaitingForCount[i] = list.size();
+            } else {
+                initialWaitingForCount[i] = 1;
+            }
+        }
+
+        this.whoIsWaitingForMe = new int[tempWhoIsWaitingForMe.size()][];
+        for (int i = 0; i < tempWhoIsWaitingForMe.size(); i++) {
+            List<Integer> list = tempWhoIsWaitingForMe.get(i);
+            this.whoIsWaitingForMe[i] = new int[list.size()];
+            for (int j = 0; j < list.size(); j++)
+                this.whoIsWaitingForMe[i][j] = list.get(j);
+        }
+
+        this.precTnodes = new int[tempPrecTnodes.size()];
+        for (int i = 0; i < tempPrecTnodes.size(); i++) {
+            this.precTnodes[i] = tempPrecTnodes.get(i);
+        }
+
+        this.precNodeToOp = new int[tempWaitingForNodes.size()];
+        for (int i = 0; i < this.precNodeToOp.length; i++) {
+            if (tempPrecNodeToOp.containsKey(i))
+                this.precNodeToOp[i] = tempPrecNodeToOp.get(i);
+            else
+                this.precNodeToOp[i] = -1;
+        }
+
+        this.nodeCount = tempWaitingForNodes.size();
+    }
+}
@@ -18,6 +18,7 @@ package de.uniulm.ki.panda3.progression.heuristics.sasp.RtgBasedHeuristics;
 
 import de.uniulm.ki.panda3.progression.heuristics.sasp.RtgBasedHeuristics.RTGBaseCalc;
 import de.uniulm.ki.panda3.progression.htn.representation.SasPlusProblem;
+import de.uniulm.ki.panda3.progression.htn.search.ProgressionContext;
 
 /**
  * Created by dh on 01.05.17.
@@ -28,6 +29,10 @@ public class hAddRtg extends RTGBaseCalc {
         super(p);
     }
 
+    public hAddRtg(ProgressionContext context) {
+        super(context, false);
+    }
+
     @Override
     int eAND() {
         return 0;
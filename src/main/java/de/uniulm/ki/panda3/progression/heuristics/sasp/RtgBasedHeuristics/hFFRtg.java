@@ -19,6 +19,7 @@ package de.uniulm.ki.panda3.progression.heuristics.sasp.RtgBasedHeuristics;
 import de.uniulm.ki.panda3.progression.heuristics.sasp.RtgBasedHeuristics.RTGBaseCalc;
 import de.uniulm.ki.panda3.util.fastIntegerDataStructures.UUIntStack;
 import de.uniulm.ki.panda3.progression.htn.representation.SasPlusProblem;
+import de.uniulm.ki.panda3.progression.htn.search.ProgressionContext;
 
 import java.util.BitSet;
 
@@ -29,7 +30,15 @@ public class hFFRtg extends RTGBaseCalc {
     int[] emptyAchieverList;
 
     public hFFRtg(SasPlusProblem p) {
-        super(p);
+        this(p, new RelaxedTaskGraphStructure(p));
+    }
+
+    public hFFRtg(ProgressionContext context) {
+        this(context.flatProblem, context.getRelaxedTaskGraph());
+    }
+
+    private hFFRtg(SasPlusProblem p, RelaxedTaskGraphStructure graph) {
+        super(p, graph, false);
         this.evalBestAchievers = true;
         this.trackPCF = false;
         this.earlyAbord = true;
@@ -20,6 +20,7 @@ import de.uniulm.ki.panda3.progression.heuristics.sasp.IncrementalCalc.IncInfLmC
 import de.uniulm.ki.panda3.progression.heuristics.sasp.IncrementalCalc.IncrementInformation;
 import de.uniulm.ki.panda3.util.fastIntegerDataStructures.UUIntStack;
 import de.uniulm.ki.panda3.progression.htn.representation.SasPlusProblem;
+import de.uniulm.ki.panda3.progression.htn.search.ProgressionContext;
 
 import java.util.*;
 
@@ -36,7 +37,15 @@ public class hLmCutRtg extends hMaxRtg {
     private IncrementInformation incInf;
 
     public hLmCutRtg(SasPlusProblem p, boolean incremental) {
-        super(p, true);
+        this(p, new RelaxedTaskGraphStructure(p), incremental);
+    }
+
+    public hLmCutRtg(ProgressionContext context, boolean incremental) {
+        this(context.flatProblem, context.getRelaxedTaskGraph(), incremental);
+    }
+
+    private hLmCutRtg(SasPlusProblem p, RelaxedTaskGraphStructure graph, boolean incremental) {
+        super(p, graph, true);
         this.earlyAbord = false;
         this.trackPCF = true;
         assert (p.correctModel());
@@ -18,6 +18,7 @@ package de.uniulm.ki.panda3.progression.heuristics.sasp.RtgBasedHeuristics;
 
 import de.uniulm.ki.panda3.progression.heuristics.sasp.RtgBasedHeuristics.RTGBaseCalc;
 import de.uniulm.ki.panda3.progression.htn.representation.SasPlusProblem;
+import de.uniulm.ki.panda3.progression.htn.search.ProgressionContext;
 
 /**
  * Created by dh on 01.05.17.
@@ -31,6 +32,18 @@ public class hMaxRtg extends RTGBaseCalc {
         super(p);
     }
 
+    public hMaxRtg(ProgressionContext context, boolean trackPCF) {
+        super(context, trackPCF);
+    }
+
+    public hMaxRtg(ProgressionContext context) {
+        this(context, false);
+    }
+
+    protected hMaxRtg(SasPlusProblem p, RelaxedTaskGraphStructure graph, boolean trackPCF) {
+        super(p, graph, trackPCF);
+    }
+
     @Override
     int eAND() {
         return Integer.MIN_VALUE;
@@ -22,12 +22,15 @@ import java.util.BitSet;
 
 /**
  * Created by dh on 02.05.17.
+ * <p/>
+ * Heuristics keep scratch memory that is reused by every computation, an object must therefore not be used by
+ * several threads. Each search thread gets its own copy, see GroundedProgressionHeuristic.copyForWorker.
  */
 public abstract class SasHeuristic {
     public static final int cUnreachable = Integer.MAX_VALUE;
     public BitSet helpfulOps;
 
-    public enum SasHeuristics {hFilter, hMax, hAdd, hFF, hFFwithHA, hCG, hLmCut, hLmCutOpt, hIncLmCut, noSearch}
+    public enum SasHeuristics {hFilter, hMax, hAdd, hFF, hFFwithHA, hCG, hLmCut, hLmCutOpt, hIncLmCut, hIncAdd, hIncFF, hIncMax, noSearch}
 
     protected boolean isIncremental = false;
 
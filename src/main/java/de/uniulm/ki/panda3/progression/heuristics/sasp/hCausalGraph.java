@@ -119,7 +119,7 @@ public class hCausalGraph extends SasHeuristic {
         queue.add(0, d0 + p.firstIndex[v]);
         boolean[] reached = new boolean[p.ranges[v]];
         while (!queue.isEmpty()) {
-            int gd1 = queue.minPair()[1];
+            int gd1 = queue.pollMinValue();
             int d1 = gd1 - p.firstIndex[v];
             if (reached[d1])
                 continue;
@@ -26,7 +26,12 @@ import de.uniulm.ki.panda3.progression.heuristics.htn.RelaxedComposition.gphRcFF
 import de.uniulm.ki.panda3.progression.heuristics.htn.RelaxedComposition.gphRelaxedComposition;
 import de.uniulm.ki.panda3.progression.heuristics.sasp.SasHeuristic;
 import de.uniulm.ki.panda3.progression.htn.representation.ProMethod;
+import de.uniulm.ki.panda3.progression.htn.representation.SasPlusProblem;
 import de.uniulm.ki.panda3.progression.htn.search.*;
+import de.uniulm.ki.panda3.progression.htn.search.searchRoutine.CompleteEnforcedHillClimbing;
+import de.uniulm.ki.panda3.progression.htn.search.searchRoutine.EnforcedHillClimbing;
+import de.uniulm.ki.panda3.progression.htn.search.searchRoutine.LazyGreedySearch;
+import de.uniulm.ki.panda3.progression.htn.search.searchRoutine.ParallelPriorityQueueSearch;
 import de.uniulm.ki.panda3.progression.htn.search.searchRoutine.PriorityQueueSearch;
 import de.uniulm.ki.panda3.progression.htn.search.SolutionStep;
 import de.uniulm.ki.panda3.symbolic.domain.Domain;
@@ -45,6 +50,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
 
 /**
  * Created by Daniel Höller on 01.07.16.
@@ -53,8 +59,8 @@ public class ProPlanningInstance {
 
     final boolean verbose = false;
 
-    public static Random random;
-    public static long randomSeed;
+    // is informed about every improved solution of an anytime search
+    public Consumer<Task[]> solutionListener = null;
 
     public Task[] plan(Domain d, Plan p, Map<Task, Set<SimpleDecompositionMethod>> methodsByTask,
                        InformationCapsule ic, TimeCapsule tc,
@@ -63,7 +69,15 @@ public class ProPlanningInstance {
                        SearchAlgorithmType search,
                        String searchEngineCall,
                        long randomSeed,
-                       long quitAfterMs) throws ExecutionException, InterruptedException {
+                       long quitAfterMs,
+                       int numberOfThreads,
+                       PriorityQueueSearch.visitedListType visitedList,
+                       PriorityQueueSearch.openListType openList,
+                       int openListCapacity,
+                       boolean anytime,
+                       List<SearchHeuristic> additionalHeuristics,
+                       int[] alternationWeights,
+                       int preferredBoost) throws ExecutionException, InterruptedException {
         if (d.sasPlusRepresentation().isEmpty()) {
             System.out.println("Error: Progression search algorithm did not find action model.");
             System.exit(-1);
@@ -78,55 +92,10 @@ public class ProPlanningInstance {
 
         // Convert data structures
         long totaltime = System.currentTimeMillis();
-        ProPlanningInstance.randomSeed = randomSeed;
-        random = new Random(ProPlanningInstance.randomSeed);
-
-        ProgressionNetwork.flatProblem = d.sasPlusRepresentation().get().sasPlusProblem();
-
-        Map<Integer, Task> indexToTask = mapTomap(d.sasPlusRepresentation().get().sasPlusIndexToTask());
-
-        Tuple2<Map<Integer, Task>, Map<Task, Integer>> mappings
-                = ProgressionNetwork.flatProblem.restrictTo(indexToTask.keySet(), indexToTask);
-        indexToTask = mappings._1();
-        assert ((d.abstractTasks().size() + d.primitiveTasks().size()) == d.tasks().size());
-
-        // create permanent mappings
-        ProgressionNetwork.taskToIndex = new HashMap<>();
-        ProgressionNetwork.indexToTask = new Task[d.tasks().size()];
-
-        // create mapping for actions
-        for (int i = 0; i < indexToTask.keySet().size(); i++) {
-            Task action = indexToTask.get(i);
-            ProgressionNetwork.taskToIndex.put(action, i);
-            ProgressionNetwork.indexToTask[i] = action;
-        }
-
-        // add non-primitive tasks
-        int iAbs = indexToTask.keySet().size();
-        scala.collection.Iterator<Task> iter = d.abstractTasks().iterator();
-        while (iter.hasNext()) {
-            Task t = iter.next();
-            ProgressionNetwork.taskToIndex.put(t, iAbs);
-            ProgressionNetwork.indexToTask[iAbs] = t;
-            iAbs++;
-        }
-        indexToTask = null; // do not use this anymore
-
-        // prepare method representation that is used internally
-        HashMap<Task, List<ProMethod>> methods = getEfficientMethodRep(methodsByTask);
-        finalizeMethods(methods);
-        ProgressionNetwork.methods = methods;
-
-        if (p.planStepsWithoutInitGoal().size() != 1) {
-            System.out.println("Error: Progression search algorithm found more than one task in the initial task network.");
-            System.exit(-1);
-        }
-
-        List<ProgressionPlanStep> initialTasks = new LinkedList<>();
-        ProgressionPlanStep ps = new ProgressionPlanStep(p.planStepsWithoutInitGoal().apply(0).schema());
-        initialTasks.add(ps);
-        ps.methods = methods.get(ps.getTask());
-        ProgressionNetwork initialNode = new ProgressionNetwork(ProgressionNetwork.flatProblem.getS0(), initialTasks);
+        ProgressionNetwork initialNode = createInitialNode(d, p, methodsByTask, randomSeed);
+        ProgressionContext context = initialNode.context;
+        HashMap<Task, List<ProMethod>> methods = new HashMap<>(context.methods);
+        List<ProgressionPlanStep> initialTasks = initialTasks(initialNode);
 
         /* Spezialfälle
          * - BFS/DFS -> PriorityQueue A* & spezielle Heuristik
@@ -140,37 +109,59 @@ public class ProPlanningInstance {
             initialNode.heuristic = new gphDFS();
         } else if (search instanceof ExternalSearchEngine) { // write model to hd to use external search engine
             ExternalSearchEngine searchEngine = (ExternalSearchEngine) search;
-            writeModelToHD(methods, initialTasks, initialNode, searchEngine.uuid(), searchEngineCall);
+            writeModelToHD(context, methods, initialTasks, initialNode, searchEngine.uuid(), searchEngineCall);
             System.exit(0);
-        } else if (heuristic instanceof HierarchicalHeuristicRelaxedComposition) {
-            HierarchicalHeuristicRelaxedComposition h = (HierarchicalHeuristicRelaxedComposition) heuristic;
-            initialNode.heuristic = new gphRelaxedComposition(ProgressionNetwork.flatProblem, h.classicalHeuristic(), methods, initialTasks);
-        } else if (heuristic instanceof RelaxedCompositionGraph) {
-            RelaxedCompositionGraph heu = (RelaxedCompositionGraph) heuristic;
-            initialNode.heuristic = new gphRcFFMulticount(methods, initialTasks, ProgressionNetwork.taskToIndex.keySet(), heu.useTDReachability(), heu.producerSelectionStrategy(), heu.heuristicExtraction());
-        } else if (heuristic instanceof GreedyProgression$)
-            initialNode.heuristic = new ProGreedyProgression();
-        else {
-            throw new IllegalArgumentException("Heuristic " + heuristic + " is not supported");
-        }
+        } else
+            initialNode.heuristic = createHeuristic(heuristic, context, methods, initialTasks);
 
         initialNode.heuristic.build(initialNode);
         initialNode.metric = initialNode.heuristic.getHeuristic();
 
+        GroundedProgressionHeuristic[] additional = new GroundedProgressionHeuristic[additionalHeuristics.size()];
+        initialNode.additionalHeuristics = additional;
+        initialNode.additionalHeuristicVals = new int[additional.length];
+        initialNode.additionalMetrics = new int[additional.length];
+        for (int i = 0; i < additional.length; i++) {
+            additional[i] = createHeuristic(additionalHeuristics.get(i), context, methods, initialTasks);
+            additional[i].build(initialNode);
+            initialNode.additionalHeuristicVals[i] = additional[i].getHeuristic();
+            initialNode.additionalMetrics[i] = additional[i].getHeuristic();
+        }
+
         PriorityQueueSearch routine;
         boolean printOutput = true;
         boolean findShortest = false;
 
         boolean aStar = true;
-        if (search instanceof GreedyType$)
+        if ((search instanceof GreedyType$) || (search instanceof LazyGreedyType$) || (search instanceof EnforcedHillClimbingType))
             aStar = false;
 
-        routine = new PriorityQueueSearch(aStar, printOutput, findShortest, taskSelectionStrategy);
+        if (search instanceof EnforcedHillClimbingType) {
+            EnforcedHillClimbingType ehc = (EnforcedHillClimbingType) search;
+            if (ehc.complete())
+                routine = new CompleteEnforcedHillClimbing(printOutput, taskSelectionStrategy, ehc.restarts());
+            else
+                routine = new EnforcedHillClimbing(printOutput, taskSelectionStrategy, ehc.restarts());
+        } else if (search instanceof LazyGreedyType$)
+            routine = new LazyGreedySearch(printOutput, taskSelectionStrategy);
+        else if ((numberOfThreads > 1) && (taskSelectionStrategy != PriorityQueueSearch.abstractTaskSelection.branchOverAll))
+            routine = new ParallelPriorityQueueSearch(aStar, printOutput, numberOfThreads, taskSelectionStrategy);
+        else
+            routine = new PriorityQueueSearch(aStar, printOutput, findShortest, taskSelectionStrategy);
         if (search instanceof AStarActionsType) {
             routine.greediness = (int) ((AStarActionsType) search).weight();
         }
 
         routine.wallTime = quitAfterMs;
+        if (visitedList != null) // otherwise the default of the search routine is used
+            routine.visitedList = visitedList;
+        routine.openList = openList;
+        routine.openListCapacity = openListCapacity;
+        routine.additionalHeuristics = additional;
+        routine.alternationWeights = alternationWeights;
+        routine.preferredBoost = preferredBoost;
+        if (solutionListener != null)
+            routine.solutionListener = s -> solutionListener.accept(s.toPrimitiveSequence());
 
         System.out.println("Searching with \n - " + routine.SearchName() + " search routine");
         if (aStar) {
@@ -179,6 +170,10 @@ public class ProPlanningInstance {
             System.out.println(" - Greedy search");
         }
         System.out.println(" - HTN heuristic:" + initialNode.heuristic.getName());
+        for (GroundedProgressionHeuristic h : additional)
+            System.out.println(" - Additional HTN heuristic:" + h.getName());
+        if ((additional.length > 0) && (routine.getClass() != PriorityQueueSearch.class))
+            System.out.println(" - The additional heuristics are not computed by this search routine, their queues use the main heuristic.");
 
         if (taskSelectionStrategy == PriorityQueueSearch.abstractTaskSelection.random) {
             System.out.println(" - Abstract task choice: randomly");
@@ -190,20 +185,36 @@ public class ProPlanningInstance {
             System.out.println(" - Abstract task choice: branch over all abstract tasks");
         }
 
+        if (routine.visitedList != PriorityQueueSearch.visitedListType.none) {
+            System.out.println(" - Visited list: " + routine.visitedList);
+        }
+        if ((openList == PriorityQueueSearch.openListType.alternation) || (additional.length > 0)) {
+            System.out.println(" - Open list: alternation, weights " + ((alternationWeights == null) ? "equal" : Arrays.toString(alternationWeights))
+                    + ", boosting preferred queues by " + preferredBoost);
+        } else if (openList != PriorityQueueSearch.openListType.heap) {
+            System.out.println(" - Open list: " + openList + ((openListCapacity > 0) ? " (at most " + openListCapacity + " nodes)" : ""));
+        }
+
+        if (anytime) {
+            System.out.println(" - Anytime search, weights after the first solution: " + Arrays.toString(routine.anytimeWeights));
+        }
+
         if (quitAfterMs > 0) {
             System.out.println(" - time limit for search is " + (quitAfterMs / 1000) + " sec");
         }
 
         SolutionStep solution;
-        if ((routine instanceof PriorityQueueSearch) && (taskSelectionStrategy == PriorityQueueSearch.abstractTaskSelection.branchOverAll)) {
+        if ((routine.getClass() == PriorityQueueSearch.class) && (taskSelectionStrategy == PriorityQueueSearch.abstractTaskSelection.branchOverAll)) {
             System.out.println(" - This is not a good configuration -- it BRANCHES over ALL abstract tasks. " +
                     "One should only do that for evaluation purposes.");
             solution = ((PriorityQueueSearch) routine).searchWithAbstractBranching(initialNode, ic, tc);
+        } else if (anytime) {
+            solution = routine.searchAnytime(initialNode, ic, tc);
         } else {
             solution = routine.search(initialNode, ic, tc);
         }
 
-        assert (isApplicable(solution, ProgressionNetwork.flatProblem.getS0()));
+        assert (isApplicable(context.flatProblem, solution, context.flatProblem.getS0()));
 
         if (solution != null) {
             System.out.println("\nFound a solution:");
@@ -217,7 +228,94 @@ public class ProPlanningInstance {
             return solution.toPrimitiveSequence();
     }
 
-    private void writeModelToHD(HashMap<Task, List<ProMethod>> methods, List<ProgressionPlanStep> initialTasks, ProgressionNetwork initialNode, String uuid, String progName) {
+    /**
+     * Creates the progression context of the given (preprocessed) problem and the search node of its initial task
+     * network. The heuristic of the node is not set.
+     */
+    public ProgressionNetwork createInitialNode(Domain d, Plan p, Map<Task, Set<SimpleDecompositionMethod>> methodsByTask, long randomSeed) {
+        // the flat problem is reduced below, the one of the domain may be shared with other calls and must not change
+        ProgressionContext context = new ProgressionContext(d.sasPlusRepresentation().get().sasPlusProblem().copy(), randomSeed);
+
+        Map<Integer, Task> indexToTask = mapTomap(d.sasPlusRepresentation().get().sasPlusIndexToTask());
+
+        Tuple2<Map<Integer, Task>, Map<Task, Integer>> mappings
+                = context.flatProblem.restrictTo(indexToTask.keySet(), indexToTask);
+        indexToTask = mappings._1();
+        assert ((d.abstractTasks().size() + d.primitiveTasks().size()) == d.tasks().size());
+
+        // create permanent mappings
+        context.taskToIndex = new HashMap<>();
+        context.indexToTask = new Task[d.tasks().size()];
+
+        // create mapping for actions
+        for (int i = 0; i < indexToTask.keySet().size(); i++) {
+            Task action = indexToTask.get(i);
+            context.taskToIndex.put(action, i);
+            context.indexToTask[i] = action;
+        }
+
+        // add non-primitive tasks
+        int iAbs = indexToTask.keySet().size();
+        scala.collection.Iterator<Task> iter = d.abstractTasks().iterator();
+        while (iter.hasNext()) {
+            Task t = iter.next();
+            context.taskToIndex.put(t, iAbs);
+            context.indexToTask[iAbs] = t;
+            iAbs++;
+        }
+        indexToTask = null; // do not use this anymore
+
+        // prepare method representation that is used internally
+        HashMap<Task, List<ProMethod>> methods = getEfficientMethodRep(methodsByTask);
+        finalizeMethods(methods, context.taskToIndex);
+        context.methods = methods;
+
+        if (p.planStepsWithoutInitGoal().size() != 1) {
+            System.out.println("Error: Progression search algorithm found more than one task in the initial task network.");
+            System.exit(-1);
+        }
+
+        List<ProgressionPlanStep> initialTasks = new LinkedList<>();
+        Task initialTask = p.planStepsWithoutInitGoal().apply(0).schema();
+        ProgressionPlanStep ps = new ProgressionPlanStep(initialTask, context.taskToIndex.get(initialTask));
+        initialTasks.add(ps);
+        ps.methods = methods.get(ps.getTask());
+        ProgressionNetwork initialNode = new ProgressionNetwork(context, context.flatProblem.getS0(), initialTasks);
+        return initialNode;
+    }
+
+    /**
+     * Creates the given heuristic for the problem of the initial node created by createInitialNode, it is not built.
+     */
+    public GroundedProgressionHeuristic createHeuristic(SearchHeuristic heuristic, ProgressionNetwork initialNode) {
+        return createHeuristic(heuristic, initialNode.context, new HashMap<>(initialNode.context.methods), initialTasks(initialNode));
+    }
+
+    private List<ProgressionPlanStep> initialTasks(ProgressionNetwork initialNode) {
+        List<ProgressionPlanStep> initialTasks = new LinkedList<>();
+        initialTasks.addAll(initialNode.getFirstAbstractTasks());
+        initialTasks.addAll(initialNode.getFirstPrimitiveTasks());
+        return initialTasks;
+    }
+
+    private GroundedProgressionHeuristic createHeuristic(SearchHeuristic heuristic, ProgressionContext context, HashMap<Task, List<ProMethod>> methods,
+                                                         List<ProgressionPlanStep> initialTasks) {
+        if (heuristic instanceof HierarchicalHeuristicRelaxedComposition) {
+            HierarchicalHeuristicRelaxedComposition h = (HierarchicalHeuristicRelaxedComposition) heuristic;
+            return new gphRelaxedComposition(context, h.classicalHeuristic(), methods, initialTasks, h.checkIncrementalComputation());
+        } else if (heuristic instanceof RelaxedCompositionGraph) {
+            RelaxedCompositionGraph heu = (RelaxedCompositionGraph) heuristic;
+            return new gphRcFFMulticount(context, methods, initialTasks, context.taskToIndex.keySet(), heu.useTDReachability(), heu.producerSelectionStrategy(), heu.heuristicExtraction());
+        } else if (heuristic instanceof GreedyProgression$)
+            return new ProGreedyProgression();
+        else if (heuristic instanceof TDGLandmarkCount$)
+            return new gphLandmarkCount(context, methods, initialTasks);
+        else {
+            throw new IllegalArgumentException("Heuristic " + heuristic + " is not supported");
+        }
+    }
+
+    private void writeModelToHD(ProgressionContext context, HashMap<Task, List<ProMethod>> methods, List<ProgressionPlanStep> initialTasks, ProgressionNetwork initialNode, String uuid, String progName) {
         String htnModelFile = System.getProperty("user.dir") + "/" + uuid + ".htn";
         String heuristicModelFile = System.getProperty("user.dir") + "/" + uuid + ".rc";
 
@@ -226,7 +324,7 @@ public class ProPlanningInstance {
         System.out.println("done");
 
         System.out.println("Generating RC model");
-        RelaxedCompositionSTRIPS compEnc = new RelaxedCompositionSTRIPS(ProgressionNetwork.flatProblem);
+        RelaxedCompositionSTRIPS compEnc = new RelaxedCompositionSTRIPS(context);
         compEnc.generateTaskCompGraph(methods, initialTasks, false);
 
         try {
@@ -264,28 +362,28 @@ public class ProPlanningInstance {
         return indexToTask;
     }
 
-    private void finalizeMethods(HashMap<Task, List<ProMethod>> methods) {
+    private void finalizeMethods(HashMap<Task, List<ProMethod>> methods, Map<Task, Integer> taskToIndex) {
         for (List<ProMethod> y : methods.values()) {
             for (ProMethod z : y) {
-                z.finalizeMethod(methods);
+                z.finalizeMethod(methods, taskToIndex);
             }
         }
     }
 
-    private boolean isApplicable(SolutionStep solution, BitSet state) {
+    private boolean isApplicable(SasPlusProblem flatProblem, SolutionStep solution, BitSet state) {
         if (solution == null)
             return true;
         for (Object mod : solution.getSolution()) {
             if (mod instanceof Integer) {
                 int a = (Integer) mod;
-                for (int pre : ProgressionNetwork.flatProblem.precLists[a]) {
+                for (int pre : flatProblem.precLists[a]) {
                     if (!state.get(pre))
                         return false;
                 }
 
-                for (int df : ProgressionNetwork.flatProblem.delLists[a])
+                for (int df : flatProblem.delLists[a])
                     state.set(df, false);
-                for (int af : ProgressionNetwork.flatProblem.addLists[a])
+                for (int af : flatProblem.addLists[a])
                     state.set(af, true);
             }
         }
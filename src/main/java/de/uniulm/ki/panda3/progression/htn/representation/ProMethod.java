@@ -16,7 +16,6 @@
 
 package de.uniulm.ki.panda3.progression.htn.representation;
 
-import de.uniulm.ki.panda3.progression.htn.search.ProgressionNetwork;
 import de.uniulm.ki.panda3.progression.htn.search.ProgressionPlanStep;
 import de.uniulm.ki.panda3.symbolic.domain.SimpleDecompositionMethod;
 import de.uniulm.ki.panda3.symbolic.domain.Task;
@@ -37,6 +36,7 @@ public class ProMethod {
     public int numDistinctSubTasks = 0;
 
     // these are the modifications for the SUB-tasks
+    int[] taskIndex;
     int[] actionID;
     List<ProMethod>[] methods;
 
@@ -50,6 +50,7 @@ public class ProMethod {
         this.m = dm;
         Seq<PlanStep> steps = dm.subPlan().planStepsWithoutInitGoal();
         this.subtasks = new Task[steps.size()];
+        this.taskIndex = new int[steps.size()];
         this.actionID = new int[steps.size()];
         this.methods = new List[steps.size()];
 
@@ -88,15 +89,16 @@ public class ProMethod {
         }
     }
 
-    public void finalizeMethod(HashMap<Task, List<ProMethod>> methods) {
+    public void finalizeMethod(HashMap<Task, List<ProMethod>> methods, Map<Task, Integer> taskToIndex) {
         Set<Task> distinctTasks = new HashSet<>();
         for (Task t : this.subtasks) {
             distinctTasks.add(t);
         }
         this.numDistinctSubTasks = distinctTasks.size();
         for (int i = 0; i < subtasks.length; i++) {
+            taskIndex[i] = taskToIndex.get(subtasks[i]);
             if (subtasks[i].isPrimitive()) {
-                actionID[i] = ProgressionNetwork.taskToIndex.get(subtasks[i]);
+                actionID[i] = taskIndex[i];
             } else {
                 this.methods[i] = methods.get(subtasks[i]);
 
@@ -110,7 +112,7 @@ public class ProMethod {
     public ProSubtaskNetwork instantiate() {
         ProgressionPlanStep[] steps = new ProgressionPlanStep[this.subtasks.length];
         for (int i = 0; i < steps.length; i++) {
-            steps[i] = new ProgressionPlanStep(this.subtasks[i]);
+            steps[i] = new ProgressionPlanStep(this.subtasks[i], this.taskIndex[i]);
             steps[i].action = this.actionID[i];
             steps[i].methods = this.methods[i];
         }
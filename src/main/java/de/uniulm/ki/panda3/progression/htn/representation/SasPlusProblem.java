@@ -40,7 +40,7 @@ import java.util.Set;
 /**
  * Created by Daniel Höller on 24.02.17.
  */
-public class SasPlusProblem {
+public class SasPlusProblem implements Cloneable {
     /**
      * Class to use Malte Helmert's SAS+ format.
      * <p>
@@ -287,6 +287,26 @@ public class SasPlusProblem {
     public SasPlusProblem() {
     }
 
+    /**
+     * Returns a copy that can be transformed (e.g. by restrictTo) without changing this problem. The transformations
+     * replace the arrays of the problem, only the per-operator entries of the prec, add and del lists and of numPrecs
+     * are changed in place, so only these are copied.
+     */
+    public SasPlusProblem copy() {
+        SasPlusProblem copy;
+        try {
+            copy = (SasPlusProblem) super.clone();
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException(e);
+        }
+        copy.precLists = precLists.clone();
+        copy.addLists = addLists.clone();
+        copy.delLists = delLists.clone();
+        copy.numPrecs = numPrecs.clone();
+        copy.s0Bitset = null;
+        return copy;
+    }
+
     public SasPlusProblem(String Filename) throws Exception {
         BufferedReader br = new BufferedReader(new FileReader(Filename));
         String line = br.readLine();
@@ -0,0 +1,123 @@
+// PANDA 3 -- a domain-independent planner for classical and hierarchical planning
+// Copyright (C) 2014-2018 the original author or authors.
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package de.uniulm.ki.panda3.progression.htn.search;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * The state of a progression search node: the true facts packed into a fixed number of longs, together with two
+ * Zobrist hashes of them that are maintained incrementally when an action is applied. Equal states have equal hashes,
+ * i.e. the hashes can be used as keys of primitive hash tables (with an equality check to rule out collisions).
+ * <p/>
+ * States are created and changed only by their PackedStateSpace and must not be changed once they belong to a search
+ * node.
+ */
+public final class PackedState {
+    final long[] words;
+    long hash1;
+    long hash2;
+
+    PackedState(int numWords) {
+        this.words = new long[numWords];
+    }
+
+    PackedState(PackedState other) {
+        this.words = other.words.clone();
+        this.hash1 = other.hash1;
+        this.hash2 = other.hash2;
+    }
+
+    public boolean get(int fact) {
+        return (words[fact >>> 6] & (1L << fact)) != 0;
+    }
+
+    /**
+     * same as BitSet.nextSetBit, i.e. -1 if there is no further true fact
+     */
+    public int nextSetBit(int fromFact) {
+        int w = fromFact >>> 6;
+        if (w >= words.length)
+            return -1;
+        long word = words[w] & (-1L << fromFact);
+        while (true) {
+            if (word != 0)
+                return (w << 6) + Long.numberOfTrailingZeros(word);
+            if (++w == words.length)
+                return -1;
+            word = words[w];
+        }
+    }
+
+    public int cardinality() {
+        int res = 0;
+        for (long word : words)
+            res += Long.bitCount(word);
+        return res;
+    }
+
+    /**
+     * sets all true facts of this state in the given bit set
+     */
+    public void orInto(BitSet target) {
+        for (int w = 0; w < words.length; w++) {
+            long word = words[w];
+            while (word != 0) {
+                target.set((w << 6) + Long.numberOfTrailingZeros(word));
+                word &= word - 1;
+            }
+        }
+    }
+
+    public BitSet toBitSet() {
+        return BitSet.valueOf(words);
+    }
+
+    /**
+     * 64 bit Zobrist hash of the state
+     */
+    public long zobristHash() {
+        return hash1;
+    }
+
+    /**
+     * a second Zobrist hash, which is independent of the first one
+     */
+    public long zobristHash2() {
+        return hash2;
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (hash1 ^ (hash1 >>> 32));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (!(o instanceof PackedState))
+            return false;
+        PackedState other = (PackedState) o;
+        return (hash1 == other.hash1) && (hash2 == other.hash2) && Arrays.equals(words, other.words);
+    }
+
+    @Override
+    public String toString() {
+        return toBitSet().toString();
+    }
+}
@@ -0,0 +1,154 @@
+// PANDA 3 -- a domain-independent planner for classical and hierarchical planning
+// Copyright (C) 2014-2018 the original author or authors.
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package de.uniulm.ki.panda3.progression.htn.search;
+
+import de.uniulm.ki.panda3.progression.htn.representation.SasPlusProblem;
+
+import java.util.BitSet;
+import java.util.Random;
+
+/**
+ * Creates and changes the packed states of a SAS+ problem. It holds the Zobrist keys of all facts and the
+ * preconditions of all actions as masks for the words of a packed state, such that an applicability test is an AND
+ * per word instead of a test per precondition.
+ */
+public class PackedStateSpace {
+    private final SasPlusProblem p;
+    private final int numWords;
+    private final long[] zobrist1;
+    private final long[] zobrist2;
+
+    // action -> indices of the words that contain preconditions, and the preconditions in these words
+    private final int[][] precWords;
+    private final long[][] precMasks;
+
+    private volatile SuccessorGenerator successorGenerator;
+
+    public PackedStateSpace(SasPlusProblem p, long randomSeed) {
+        this.p = p;
+        this.numWords = Math.max(1, (p.numOfStateFeatures + 63) >>> 6);
+
+        Random random = new Random(randomSeed);
+        this.zobrist1 = new long[p.numOfStateFeatures];
+        this.zobrist2 = new long[p.numOfStateFeatures];
+        for (int f = 0; f < p.numOfStateFeatures; f++) {
+            zobrist1[f] = random.nextLong();
+            zobrist2[f] = random.nextLong();
+        }
+
+        this.precWords = new int[p.numOfOperators][];
+        this.precMasks = new long[p.numOfOperators][];
+        long[] masks = new long[numWords];
+        for (int a = 0; a < p.numOfOperators; a++) {
+            int used = 0;
+            for (int pre : p.precLists[a]) {
+                if (masks[pre >>> 6] == 0)
+                    used++;
+                masks[pre >>> 6] |= 1L << pre;
+            }
+            precWords[a] = new int[used];
+            precMasks[a] = new long[used];
+            for (int w = 0, i = 0; w < numWords; w++) {
+                if (masks[w] != 0) {
+                    precWords[a][i] = w;
+                    precMasks[a][i++] = masks[w];
+                    masks[w] = 0;
+                }
+            }
+        }
+    }
+
+    public PackedState create(BitSet facts) {
+        PackedState res = new PackedState(numWords);
+        for (int f = facts.nextSetBit(0); f >= 0; f = facts.nextSetBit(f + 1))
+            set(res, f);
+        return res;
+    }
+
+    public boolean isApplicable(PackedState s, int action) {
+        int[] wordIndices = precWords[action];
+        long[] masks = precMasks[action];
+        for (int i = 0; i < wordIndices.length; i++)
+            if ((s.words[wordIndices[i]] & masks[i]) != masks[i])
+                return false;
+        return true;
+    }
+
+    /**
+     * the successor generator of the problem, it is built on the first call
+     */
+    public SuccessorGenerator getSuccessorGenerator() {
+        SuccessorGenerator res = successorGenerator;
+        if (res == null) {
+            synchronized (this) {
+                if (successorGenerator == null)
+                    successorGenerator = new SuccessorGenerator(p);
+                res = successorGenerator;
+            }
+        }
+        return res;
+    }
+
+    /**
+     * whether finding the applicable ones among the given number of candidate actions with the successor generator is
+     * expected to be faster than testing them one by one. A query visits every node of the tree, which costs about
+     * half as much as testing a candidate, and on small trees it only pays off for more than about 64 candidates.
+     */
+    public boolean prefersSuccessorGenerator(int numCandidates) {
+        return (numCandidates >= 64) && (numCandidates >= getSuccessorGenerator().numNodes() / 2);
+    }
+
+    /**
+     * returns the actions applicable in the given state as a bit set with one bit per action
+     */
+    public long[] applicableActions(PackedState s) {
+        SuccessorGenerator generator = getSuccessorGenerator();
+        long[] res = new long[generator.numActionWords()];
+        generator.applicableActions(s, res);
+        return res;
+    }
+
+    /**
+     * returns the state resulting from applying the action, the given state is not changed
+     */
+    public PackedState apply(PackedState s, int action) {
+        PackedState res = new PackedState(s);
+        for (int df : p.delLists[action])
+            clear(res, df);
+        for (int af : p.addLists[action])
+            set(res, af);
+        return res;
+    }
+
+    private void set(PackedState s, int fact) {
+        long bit = 1L << fact;
+        if ((s.words[fact >>> 6] & bit) == 0) {
+            s.words[fact >>> 6] |= bit;
+            s.hash1 ^= zobrist1[fact];
+            s.hash2 ^= zobrist2[fact];
+        }
+    }
+
+    private void clear(PackedState s, int fact) {
+        long bit = 1L << fact;
+        if ((s.words[fact >>> 6] & bit) != 0) {
+            s.words[fact >>> 6] &= ~bit;
+            s.hash1 ^= zobrist1[fact];
+            s.hash2 ^= zobrist2[fact];
+        }
+    }
+}
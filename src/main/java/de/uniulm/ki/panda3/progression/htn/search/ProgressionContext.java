@@ -0,0 +1,89 @@
+// PANDA 3 -- a domain-independent planner for classical and hierarchical planning
+// Copyright (C) 2014-2018 the original author or authors.
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package de.uniulm.ki.panda3.progression.htn.search;
+
+import de.uniulm.ki.panda3.progression.heuristics.sasp.RtgBasedHeuristics.RelaxedTaskGraphStructure;
+import de.uniulm.ki.panda3.progression.htn.representation.ProMethod;
+import de.uniulm.ki.panda3.progression.htn.representation.SasPlusProblem;
+import de.uniulm.ki.panda3.symbolic.domain.Task;
+
+import java.util.*;
+
+/**
+ * Holds everything that belongs to a single planning problem and is needed during progression search, i.e. the
+ * flat (SAS+) model, the task indices and the methods. Every search node refers to the context of its problem,
+ * so several problems can be solved at the same time in one JVM.
+ * <p/>
+ * The context is filled by the planning instance before the search starts and is only read afterwards.
+ */
+public class ProgressionContext {
+
+    public final SasPlusProblem flatProblem;
+    public final long randomSeed;
+    public final Random random;
+
+    public Task[] indexToTask;
+    public Map<Task, Integer> taskToIndex;
+    public Map<Task, List<ProMethod>> methods;
+    public Set<Integer> shopPrecActions = new HashSet<>();
+
+    public boolean useHelpfulActions = false;
+
+    // the maximum decomposition depth that is left before tasks are primitive, set by the task reachability graph
+    public int[] maxDecompDepth;
+
+    private volatile PackedStateSpace stateSpace;
+    private volatile RelaxedTaskGraphStructure relaxedTaskGraph;
+
+    public ProgressionContext(SasPlusProblem flatProblem, long randomSeed) {
+        this.flatProblem = flatProblem;
+        this.randomSeed = randomSeed;
+        this.random = new Random(randomSeed);
+    }
+
+    /**
+     * the packed representation of the states of the flat problem, it is created when the first search node is
+     * created, i.e. after the flat problem has been reduced
+     */
+    public PackedStateSpace getStateSpace() {
+        PackedStateSpace res = stateSpace;
+        if (res == null) {
+            synchronized (this) {
+                if (stateSpace == null)
+                    stateSpace = new PackedStateSpace(flatProblem, randomSeed);
+                res = stateSpace;
+            }
+        }
+        return res;
+    }
+
+    /**
+     * the graph of the relaxed task graph heuristics of the flat problem, it is shared by all of these heuristics
+     * that are created for this problem
+     */
+    public RelaxedTaskGraphStructure getRelaxedTaskGraph() {
+        RelaxedTaskGraphStructure res = relaxedTaskGraph;
+        if (res == null) {
+            synchronized (this) {
+                if (relaxedTaskGraph == null)
+                    relaxedTaskGraph = new RelaxedTaskGraphStructure(flatProblem);
+                res = relaxedTaskGraph;
+            }
+        }
+        return res;
+    }
+}
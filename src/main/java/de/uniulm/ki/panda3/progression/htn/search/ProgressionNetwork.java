@@ -16,14 +16,13 @@
 
 package de.uniulm.ki.panda3.progression.htn.search;
 
-import de.uniulm.ki.panda3.progression.htn.ProPlanningInstance;
 import de.uniulm.ki.panda3.progression.htn.representation.*;
 import de.uniulm.ki.panda3.progression.heuristics.htn.GroundedProgressionHeuristic;
-import de.uniulm.ki.panda3.progression.htn.representation.SasPlusProblem;
 import de.uniulm.ki.panda3.symbolic.domain.Task;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Created by dhoeller on 21.07.16.
@@ -32,19 +31,19 @@ import java.util.*;
  * <p/>
  * The implementation reuses unchanged parts of the task network and adds only those nodes that are new. This can
  * be done because it is changed only at its beginning, and the nodes only hold pointers to its successors.
+ * <p/>
+ * The first tasks are stored in arrays that are never changed, a new search node shares them with its parent as
+ * long as they are unchanged.
  */
 public class ProgressionNetwork implements Comparable<ProgressionNetwork>, Cloneable {
 
+    public final ProgressionContext context;
 
-    public static SasPlusProblem flatProblem;
-    public static Task[] indexToTask;
-    public static Map<Task, Integer> taskToIndex;
-    public static Map<Task, List<ProMethod>> methods;
-    public static Set<Integer> ShopPrecActions = new HashSet<>();
+    public PackedState state;
+    private static final ProgressionPlanStep[] noSteps = new ProgressionPlanStep[0];
 
-    public BitSet state;
-    List<ProgressionPlanStep> unconstraintPrimitiveTasks;
-    List<ProgressionPlanStep> unconstraintAbstractTasks;
+    ProgressionPlanStep[] unconstraintPrimitiveTasks;
+    ProgressionPlanStep[] unconstraintAbstractTasks;
     public int numProgressionSteps = 0;
     public int numSHOPProgressionSteps = 0;
     public int numDecompositionSteps = 0;
@@ -53,6 +52,12 @@ public class ProgressionNetwork implements Comparable<ProgressionNetwork>, Clone
     public String progressionTrace;
 
     public GroundedProgressionHeuristic heuristic;
+    // further heuristics used by fringes with one queue per heuristic, their values and metrics
+    public GroundedProgressionHeuristic[] additionalHeuristics;
+    public int[] additionalHeuristicVals;
+    public int[] additionalMetrics;
+    // set by fringes that contain a network several times when it is returned the first time
+    public boolean polledFromFringe = false;
 
     public int heuristicVal = 0;
     public int metric = 0;
@@ -62,71 +67,88 @@ public class ProgressionNetwork implements Comparable<ProgressionNetwork>, Clone
     private int numberOfPrimitiveTasks = 0;
     public SolutionStep solution;
 
-    public static boolean useHelpfulActions = false;
-
     public BitSet helpfulActions;
     private Task initialTask;
 
+    // set by searches with deferred evaluation as long as the heuristic has not been computed: then the heuristic
+    // is the one of the parent and these are the modifications that lead from the parent to this network
+    public ProgressionPlanStep deferredStep;
+    public ProMethod deferredMethod;
+
+    // the actions applicable in the state (one bit per action), computed by the successor generator if the network
+    // has so many first primitive tasks that this is faster than testing them one by one
+    private long[] applicableActions;
+
     public boolean isHelpfulAction(int action) {
-        if (!useHelpfulActions)
+        if (!context.useHelpfulActions)
             return false;
         return helpfulActions.get(action);
     }
 
     public boolean isHelpfulMethod(ProMethod method) {
-        if (!useHelpfulActions)
+        if (!context.useHelpfulActions)
             return false;
         return helpfulActions.get(method.methodID);
     }
 
-    private ProgressionNetwork() {
+    private ProgressionNetwork(ProgressionContext context) {
+        this.context = context;
     }
 
-    public ProgressionNetwork(BitSet state, List<ProgressionPlanStep> ps) {
-        this.unconstraintPrimitiveTasks = new LinkedList<>();
-        this.unconstraintAbstractTasks = new LinkedList<>();
+    public ProgressionNetwork(ProgressionContext context, BitSet state, List<ProgressionPlanStep> ps) {
+        this.context = context;
+        List<ProgressionPlanStep> primitiveTasks = new ArrayList<>();
+        List<ProgressionPlanStep> abstractTasks = new ArrayList<>();
         for (ProgressionPlanStep p : ps) {
             if (p.isPrimitive) {
-                unconstraintPrimitiveTasks.add(p);
+                primitiveTasks.add(p);
                 numberOfTasks++;
                 numberOfPrimitiveTasks++;
             } else {
-                unconstraintAbstractTasks.add(p);
+                abstractTasks.add(p);
                 numberOfTasks++;
             }
         }
-        solution = new SolutionStep();
+        this.unconstraintPrimitiveTasks = primitiveTasks.toArray(noSteps);
+        this.unconstraintAbstractTasks = abstractTasks.toArray(noSteps);
+        solution = new SolutionStep(context);
         if (printProgressionTrace) {
             System.out.println("WARNING: The system is recording a full decomposition trace - this is VERY slow and only recommended for debugging.");
             this.progressionTrace = "\nPROGRESSION-TRACE:\n\n";
             this.progressionTrace += this.toString();
         }
-        this.state = state;
+        this.state = context.getStateSpace().create(state);
     }
 
     public boolean empty() {
-        return (this.unconstraintPrimitiveTasks.isEmpty() && this.unconstraintAbstractTasks.isEmpty());
+        return (this.unconstraintPrimitiveTasks.length == 0) && (this.unconstraintAbstractTasks.length == 0);
     }
 
+    /**
+     * the returned list must not be changed
+     */
     public List<ProgressionPlanStep> getFirstPrimitiveTasks() {
-        return this.unconstraintPrimitiveTasks;
+        return Arrays.asList(this.unconstraintPrimitiveTasks);
     }
 
+    /**
+     * the returned list must not be changed
+     */
     public List<ProgressionPlanStep> getFirstAbstractTasks() {
-        return this.unconstraintAbstractTasks;
+        return Arrays.asList(this.unconstraintAbstractTasks);
     }
 
     @Deprecated
     public List<ProgressionPlanStep> getFirst() {
         List<ProgressionPlanStep> all = new LinkedList<>();
-        all.addAll(this.unconstraintAbstractTasks);
-        all.addAll(this.unconstraintPrimitiveTasks);
+        all.addAll(getFirstAbstractTasks());
+        all.addAll(getFirstPrimitiveTasks());
         return all;
     }
 
     @Override
     public String toString() {
-        return networkToString(unconstraintAbstractTasks, unconstraintPrimitiveTasks);
+        return networkToString(getFirstAbstractTasks(), getFirstPrimitiveTasks());
     }
 
     public static String networkToString(List<ProgressionPlanStep> abstractTasks, List<ProgressionPlanStep> primitiveTasks) {
@@ -219,9 +241,9 @@ public class ProgressionNetwork implements Comparable<ProgressionNetwork>, Clone
         res.numberOfTasks += m.numberOfPrimSubtasks;
 
         res.state = this.state;
+        res.applicableActions = this.applicableActions;
         res.solution = new SolutionStep(this.solution, m.m);
         res.numDecompositionSteps++;
-        res.unconstraintAbstractTasks.remove(ps);
 
         // get copy of method subtask network
         ProSubtaskNetwork tn = m.instantiate();
@@ -237,11 +259,21 @@ public class ProgressionNetwork implements Comparable<ProgressionNetwork>, Clone
         }
 
         // the first nodes off the task network are new first nodes of this network
-        for (ProgressionPlanStep p : tn.getFirstNodes()) {
+        List<ProgressionPlanStep> firstNodes = tn.getFirstNodes();
+        int numPrimitive = 0;
+        for (ProgressionPlanStep p : firstNodes)
+            if (p.isPrimitive)
+                numPrimitive++;
+        res.unconstraintAbstractTasks = withoutStep(this.unconstraintAbstractTasks, ps, firstNodes.size() - numPrimitive);
+        if (numPrimitive > 0)
+            res.unconstraintPrimitiveTasks = Arrays.copyOf(this.unconstraintPrimitiveTasks, this.unconstraintPrimitiveTasks.length + numPrimitive);
+        int iAbs = res.unconstraintAbstractTasks.length - (firstNodes.size() - numPrimitive);
+        int iPrim = this.unconstraintPrimitiveTasks.length;
+        for (ProgressionPlanStep p : firstNodes) {
             if (p.isPrimitive)
-                res.unconstraintPrimitiveTasks.add(p);
+                res.unconstraintPrimitiveTasks[iPrim++] = p;
             else
-                res.unconstraintAbstractTasks.add(p);
+                res.unconstraintAbstractTasks[iAbs++] = p;
         }
         if (printProgressionTrace) {
             res.progressionTrace += "\n";
@@ -254,60 +286,70 @@ public class ProgressionNetwork implements Comparable<ProgressionNetwork>, Clone
         ProgressionNetwork res = this.clone();
         res.numberOfTasks--;
         res.numberOfPrimitiveTasks--;
-        res.state = (BitSet) this.state.clone();
+        assert (isApplicable(ps.action));
+        res.state = context.getStateSpace().apply(this.state, ps.action);
 
         res.solution = new SolutionStep(this.solution, ps.action);
-        if (ProgressionNetwork.ShopPrecActions.contains(ps.action))
+        if (context.shopPrecActions.contains(ps.action))
             res.numSHOPProgressionSteps++;
         else
             res.numProgressionSteps++;
 
-        res.unconstraintPrimitiveTasks.remove(ps);
-
-        assert (isApplicable(res.state, ps.action));
-
-        // transfer state
-        for (int df : ProgressionNetwork.flatProblem.delLists[ps.action])
-            res.state.set(df, false);
-        for (int af : ProgressionNetwork.flatProblem.addLists[ps.action])
-            res.state.set(af, true);
-
-        // every successor of ps is a first task if and only if it is
-        // not a successor of any task in the firstTasks list.
-        HashSet<ProgressionPlanStep> potentialFirst = new HashSet<>();
-        potentialFirst.addAll(ps.successorList);
-
-        // todo: shouldn't this be a set?
-        LinkedList<ProgressionPlanStep> potentialPredecessors = new LinkedList<>();
-        for (ProgressionPlanStep f : res.unconstraintAbstractTasks) { // this must be res.unconstraintTasks. otherwise, the ps itself is in there!
-            potentialPredecessors.addAll(f.successorList);
-        }
-        for (ProgressionPlanStep f : res.unconstraintPrimitiveTasks) {
-            potentialPredecessors.addAll(f.successorList);
-        }
-
-        // todo: do I really need to do that?
-        // todo: this could be done in preprocessing
-        for (ProgressionPlanStep f : ps.successorList) {
-            potentialPredecessors.addAll(f.successorList);
+        // every successor of ps is a first task if and only if it is not a successor of any other task in the network,
+        // i.e. of the remaining first tasks or of another successor of ps
+        ProgressionPlanStep[] candidates = ps.successorArray();
+        ProgressionPlanStep[] remainingPrimitive = withoutStep(this.unconstraintPrimitiveTasks, ps, 0);
+        Scratch scratch = Scratch.get();
+        boolean[] notFirst = scratch.notFirst(candidates.length);
+        if (candidates.length > 0) {
+            long mark = visitMarks.getAndIncrement();
+            int numCandidates = candidates.length;
+            scratch.size = 0;
+            for (ProgressionPlanStep f : this.unconstraintAbstractTasks)
+                scratch.pushSuccessors(f, mark);
+            for (ProgressionPlanStep f : remainingPrimitive)
+                scratch.pushSuccessors(f, mark);
+            for (ProgressionPlanStep f : candidates)
+                scratch.pushSuccessors(f, mark);
+
+            while ((scratch.size > 0) && (numCandidates > 0)) {
+                ProgressionPlanStep ps2 = scratch.pop();
+                if (ps2.visitMark == mark)
+                    continue;
+                ps2.visitMark = mark;
+                for (int i = 0; i < candidates.length; i++) {
+                    if ((candidates[i] == ps2) && !notFirst[i]) {
+                        notFirst[i] = true;
+                        numCandidates--;
+                    }
+                }
+                scratch.pushSuccessors(ps2, mark);
+            }
+            scratch.clear();
         }
 
-        while (true) {
-            if (potentialFirst.isEmpty()) {
-                break; // no first left
-            }
-            if (potentialPredecessors.isEmpty()) {
-                break; // the next that are left are valid firstTasks
-            }
-            ProgressionPlanStep ps2 = potentialPredecessors.removeFirst();
-            potentialPredecessors.addAll(ps2.successorList);
-            potentialFirst.remove(ps2);
+        int numNewPrimitive = 0;
+        int numNewAbstract = 0;
+        for (int i = 0; i < candidates.length; i++) {
+            if (notFirst[i])
+                continue;
+            if (candidates[i].isPrimitive)
+                numNewPrimitive++;
+            else
+                numNewAbstract++;
         }
-        for (ProgressionPlanStep p : potentialFirst) {
-            if (p.isPrimitive)
-                res.unconstraintPrimitiveTasks.add(p);
+        res.unconstraintPrimitiveTasks = (numNewPrimitive == 0) ? remainingPrimitive : Arrays.copyOf(remainingPrimitive, remainingPrimitive.length + numNewPrimitive);
+        if (numNewAbstract > 0)
+            res.unconstraintAbstractTasks = Arrays.copyOf(this.unconstraintAbstractTasks, this.unconstraintAbstractTasks.length + numNewAbstract);
+        int iPrim = remainingPrimitive.length;
+        int iAbs = this.unconstraintAbstractTasks.length;
+        for (int i = 0; i < candidates.length; i++) {
+            if (notFirst[i])
+                continue;
+            if (candidates[i].isPrimitive)
+                res.unconstraintPrimitiveTasks[iPrim++] = candidates[i];
             else
-                res.unconstraintAbstractTasks.add(p);
+                res.unconstraintAbstractTasks[iAbs++] = candidates[i];
         }
         if (printProgressionTrace) {
             res.progressionTrace += "\n";
@@ -318,46 +360,35 @@ public class ProgressionNetwork implements Comparable<ProgressionNetwork>, Clone
 
     public ProgressionNetwork insertAction(int action) {
         ProgressionNetwork res = this.clone();
-        res.state = (BitSet) this.state.clone();
+        assert (isApplicable(action));
+        res.state = context.getStateSpace().apply(this.state, action);
 
         res.solution = new SolutionStep(this.solution, action);
         res.numProgressionSteps++;
 
-        assert (isApplicable(res.state, action));
-
-        // transfer state
-        for (int df : ProgressionNetwork.flatProblem.delLists[action])
-            res.state.set(df, false);
-        for (int af : ProgressionNetwork.flatProblem.addLists[action])
-            res.state.set(af, true);
-
         if (printProgressionTrace) {
             res.progressionTrace += "\n";
             res.progressionTrace += res.toString();
         }
         return res;
     }
-    private boolean isApplicable(BitSet state, int action) {
-        for (int pre : ProgressionNetwork.flatProblem.precLists[action]) {
-            if (!state.get(pre))
-                return false;
-        }
-        return true;
-    }
-
     public boolean isApplicable(int action) {
-        for (int pre : ProgressionNetwork.flatProblem.precLists[action]) {
-            if (!this.state.get(pre))
-                return false;
+        long[] applicable = applicableActions;
+        if (applicable == null) {
+            PackedStateSpace stateSpace = context.getStateSpace();
+            if (!stateSpace.prefersSuccessorGenerator(unconstraintPrimitiveTasks.length))
+                return stateSpace.isApplicable(this.state, action);
+            applicable = stateSpace.applicableActions(this.state);
+            applicableActions = applicable;
         }
-        return true;
+        return (applicable[action >>> 6] & (1L << action)) != 0;
     }
 
     public boolean isGoal() {
         if (!this.empty()) {
             return false;
         }
-        for (int g : ProgressionNetwork.flatProblem.gList) {
+        for (int g : context.flatProblem.gList) {
             if (!state.get(g))
                 return false;
         }
@@ -366,13 +397,12 @@ public class ProgressionNetwork implements Comparable<ProgressionNetwork>, Clone
 
     @Override
     protected ProgressionNetwork clone() {
-        ProgressionNetwork res = new ProgressionNetwork();
+        ProgressionNetwork res = new ProgressionNetwork(this.context);
         res.numberOfPrimitiveTasks = this.numberOfPrimitiveTasks;
         res.numberOfTasks = this.numberOfTasks;
-        res.unconstraintPrimitiveTasks = new LinkedList<>(); // todo: array or linkedList?
-        res.unconstraintAbstractTasks = new LinkedList<>(); // todo: array or linkedList?
-        res.unconstraintPrimitiveTasks.addAll(this.unconstraintPrimitiveTasks);
-        res.unconstraintAbstractTasks.addAll(this.unconstraintAbstractTasks);
+        // the arrays are never changed, i.e. they can be shared
+        res.unconstraintPrimitiveTasks = this.unconstraintPrimitiveTasks;
+        res.unconstraintAbstractTasks = this.unconstraintAbstractTasks;
         res.solution = this.solution;
         if (printProgressionTrace)
             res.progressionTrace = this.progressionTrace;
@@ -382,11 +412,79 @@ public class ProgressionNetwork implements Comparable<ProgressionNetwork>, Clone
         return res;
     }
 
+    /**
+     * returns a copy of the given steps without ps that has room for the given number of additional steps at its end
+     */
+    private static ProgressionPlanStep[] withoutStep(ProgressionPlanStep[] steps, ProgressionPlanStep ps, int additional) {
+        ProgressionPlanStep[] res = new ProgressionPlanStep[steps.length - 1 + additional];
+        int j = 0;
+        for (ProgressionPlanStep step : steps)
+            if (step != ps)
+                res[j++] = step;
+        assert (j == steps.length - 1);
+        return res;
+    }
+
+    // every call of apply uses a new mark for the plan steps it has visited. Since the marks are unique, plan steps
+    // shared by search nodes in different threads can at worst be visited twice when another thread overwrites a mark
+    private static final AtomicLong visitMarks = new AtomicLong(1);
+
+    /**
+     * per thread stack of plan steps used by apply
+     */
+    private static final class Scratch {
+        private static final ThreadLocal<Scratch> scratch = ThreadLocal.withInitial(Scratch::new);
+
+        ProgressionPlanStep[] stack = new ProgressionPlanStep[64];
+        int size = 0;
+        boolean[] notFirst = new boolean[16];
+
+        static Scratch get() {
+            return scratch.get();
+        }
+
+        boolean[] notFirst(int length) {
+            if (notFirst.length < length)
+                notFirst = new boolean[Math.max(length, 2 * notFirst.length)];
+            else
+                Arrays.fill(notFirst, 0, length, false);
+            return notFirst;
+        }
+
+        void pushSuccessors(ProgressionPlanStep ps, long mark) {
+            for (ProgressionPlanStep succ : ps.successorArray()) {
+                if (succ.visitMark == mark)
+                    continue;
+                if (size == stack.length)
+                    stack = Arrays.copyOf(stack, 2 * size);
+                stack[size++] = succ;
+            }
+        }
+
+        ProgressionPlanStep pop() {
+            return stack[--size];
+        }
+
+        // drops the references to the plan steps of the last call
+        void clear() {
+            Arrays.fill(stack, 0, size, null);
+            size = 0;
+        }
+    }
+
     @Override
     public int compareTo(ProgressionNetwork other) {
+        return compareTo(other, context.random);
+    }
+
+    /**
+     * Compares the networks like compareTo, but ties are broken with the given random generator instead of the one of
+     * the context, which must not be used by more than one thread.
+     */
+    public int compareTo(ProgressionNetwork other, Random random) {
         int c = (this.metric - other.metric);
         if (c == 0) {
-            if (ProPlanningInstance.random.nextBoolean())
+            if (random.nextBoolean())
                 c = 1;
             else c = -1;
         }
@@ -406,7 +504,7 @@ public class ProgressionNetwork implements Comparable<ProgressionNetwork>, Clone
 
             PrintStream ps = new PrintStream(new BufferedOutputStream(new FileOutputStream(path)));
 
-            flatProblem.writeToDisk(ps, false);
+            context.flatProblem.writeToDisk(ps, false);
             this.writeToDisk(ps);
             ps.close();
         } catch (Exception e) {
@@ -416,8 +514,11 @@ public class ProgressionNetwork implements Comparable<ProgressionNetwork>, Clone
 
     private void writeToDisk(PrintStream bw) throws Exception {
         bw.print("\n;; Tasks\n");
-        bw.print(this.indexToTask.length + "\n");
-        for (int i = 0; i < this.indexToTask.length; i++) {
+        Task[] indexToTask = context.indexToTask;
+        Map<Task, Integer> taskToIndex = context.taskToIndex;
+        Map<Task, List<ProMethod>> methods = context.methods;
+        bw.print(indexToTask.length + "\n");
+        for (int i = 0; i < indexToTask.length; i++) {
             if (indexToTask[i].isPrimitive())
                 bw.print("0 ");
             else
@@ -28,22 +28,43 @@ public class ProgressionPlanStep {
     private final Task task;
     public final Integer taskIndex;
     public Set<ProgressionPlanStep> successorList = new HashSet<>();
+    private volatile ProgressionPlanStep[] successors;
     public final boolean isPrimitive;
 
     public int action;
     public List<ProMethod> methods;
     public BitSet reachableTasks;
     public BitSet goalFacts;
-    public boolean done;
+    public volatile boolean done;
+
+    // canonical hash of this step and its successors, see FingerprintVisitedList
+    public long fingerprint1;
+    public long fingerprint2;
+    public volatile boolean hasFingerprint;
+
+    // the search that visited this step last, see ProgressionNetwork.apply
+    long visitMark;
 
     public Task getTask() {
         return task;
     }
 
-    public ProgressionPlanStep(Task task) {
+    public ProgressionPlanStep(Task task, Integer taskIndex) {
         this.task = task;
         this.isPrimitive = task.isPrimitive();
-        this.taskIndex = ProgressionNetwork.taskToIndex.get(task);
+        this.taskIndex = taskIndex;
+    }
+
+    /**
+     * the successors as an array, the successor list must not be changed after this has been called
+     */
+    public ProgressionPlanStep[] successorArray() {
+        ProgressionPlanStep[] res = successors;
+        if (res == null) {
+            res = successorList.toArray(new ProgressionPlanStep[successorList.size()]);
+            successors = res;
+        }
+        return res;
     }
 
     @Override
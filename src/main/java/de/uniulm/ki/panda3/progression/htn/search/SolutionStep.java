@@ -27,6 +27,7 @@ import java.util.List;
  */
 public class SolutionStep {
 
+    private final ProgressionContext context;
     private SolutionStep predecessor = null;
 
     // my step
@@ -37,26 +38,29 @@ public class SolutionStep {
     protected int primitiveCount;
     protected int shopCount;
 
-    public SolutionStep() {
+    public SolutionStep(ProgressionContext context) {
+        this.context = context;
         length = 0;
         primitiveCount = 0;
         shopCount = 0;
     }
 
     public SolutionStep(SolutionStep predSol, int action) {
+        this.context = predSol.context;
         this.predecessor = predSol;
         this.action = action;
         this.length = predSol.length + 1;
         this.primitiveCount = predSol.primitiveCount;
         this.shopCount = predSol.shopCount;
 
-        if (!ProgressionNetwork.ShopPrecActions.contains(action))
+        if (!context.shopPrecActions.contains(action))
             primitiveCount++;
         else
             shopCount++;
     }
 
     public SolutionStep(SolutionStep predSol, SimpleDecompositionMethod method) {
+        this.context = predSol.context;
         this.predecessor = predSol;
         this.method = method;
         this.length = predSol.length + 1;
@@ -72,7 +76,7 @@ public class SolutionStep {
             if (this.method != null) {
                 me = this.method.name() + " @ " + this.method.abstractTask().shortInfo();
             } else {
-                me = ProgressionNetwork.flatProblem.opNames[this.action];
+                me = context.flatProblem.opNames[this.action];
             }
             String other = "";
             other = predecessor.toString();
@@ -90,7 +94,7 @@ public class SolutionStep {
         SolutionStep currentStep = this;
         while (currentStep.predecessor != null) {
             if (currentStep.method == null) {
-                solution[currentPos--] = ProgressionNetwork.indexToTask[currentStep.action];
+                solution[currentPos--] = context.indexToTask[currentStep.action];
             }
             currentStep = currentStep.predecessor;
         }
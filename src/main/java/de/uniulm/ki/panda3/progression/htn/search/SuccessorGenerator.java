@@ -0,0 +1,198 @@
+// PANDA 3 -- a domain-independent planner for classical and hierarchical planning
+// Copyright (C) 2014-2018 the original author or authors.
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+
+package de.uniulm.ki.panda3.progression.htn.search;
+
+import de.uniulm.ki.panda3.progression.htn.representation.SasPlusProblem;
+
+import java.util.Arrays;
+
+/**
+ * A decision tree over the preconditions of the actions of a SAS+ problem (like the successor generator of Fast
+ * Downward). Every inner node switches on the value of a mutex group and has a child for each value that is a
+ * precondition of one of its actions, as well as a child for the actions that do not care about the group. The
+ * applicable actions of a state are found by following the values of the state through the tree, so preconditions
+ * that several actions share are tested only once.
+ */
+public class SuccessorGenerator {
+
+    private static final int[] noActions = new int[0];
+
+    private static final class Node {
+        // actions whose preconditions have all been tested on the path to this node
+        int[] actions = noActions;
+        // the facts this node switches on, byValue[f - firstFact] is the subtree for the actions that need fact f
+        int firstFact;
+        int lastFact = -1;
+        Node[] byValue;
+        Node dontCare;
+    }
+
+    private final SasPlusProblem p;
+    private final Node root;
+    private int numNodes = 0;
+
+    // sorted preconditions of the actions and the position of the next untested one during construction
+    private final int[][] precs;
+    private final int[] nextPrec;
+
+    public SuccessorGenerator(SasPlusProblem p) {
+        this.p = p;
+        this.precs = new int[p.numOfOperators][];
+        this.nextPrec = new int[p.numOfOperators];
+        int[] all = new int[p.numOfOperators];
+        for (int a = 0; a < p.numOfOperators; a++) {
+            precs[a] = Arrays.stream(p.precLists[a]).sorted().distinct().toArray();
+            all[a] = a;
+        }
+        this.root = build(all, all.length);
+    }
+
+    /**
+     * builds the subtree for the given actions, all preconditions before nextPrec have already been tested. The
+     * nodes for the actions that do not care about a group are chained in a loop, only the values are recursive.
+     */
+    private Node build(int[] actions, int count) {
+        Node first = null;
+        Node last = null;
+        while (count > 0) {
+            Node n = new Node();
+            numNodes++;
+            if (first == null)
+                first = n;
+            else
+                last.dontCare = n;
+            last = n;
+
+            int numDone = 0;
+            int minFact = Integer.MAX_VALUE;
+            for (int i = 0; i < count; i++) {
+                int a = actions[i];
+                if (nextPrec[a] == precs[a].length)
+                    numDone++;
+                else if (precs[a][nextPrec[a]] < minFact)
+                    minFact = precs[a][nextPrec[a]];
+            }
+            if (numDone > 0) {
+                n.actions = new int[numDone];
+                int j = 0;
+                int rest = 0;
+                for (int i = 0; i < count; i++) {
+                    int a = actions[i];
+                    if (nextPrec[a] == precs[a].length)
+                        n.actions[j++] = a;
+                    else
+                        actions[rest++] = a;
+                }
+                count = rest;
+            }
+            if (count == 0)
+                break;
+
+            int lo = minFact;
+            int hi = minFact;
+            if (p.indexToMutexGroup != null) {
+                int g = p.indexToMutexGroup[minFact];
+                if ((p.firstIndex[g] <= minFact) && (minFact <= p.lastIndex[g]))
+                    hi = p.lastIndex[g];
+            }
+
+            // the actions that need a value of the group, sorted by the value
+            int[] numByValue = new int[hi - lo + 1];
+            int maxFact = lo;
+            int numSwitched = 0;
+            for (int i = 0; i < count; i++) {
+                int a = actions[i];
+                int f = precs[a][nextPrec[a]];
+                if (f <= hi) {
+                    numByValue[f - lo]++;
+                    numSwitched++;
+                    if (f > maxFact)
+                        maxFact = f;
+                }
+            }
+            n.firstFact = lo;
+            n.lastFact = maxFact;
+            n.byValue = new Node[maxFact - lo + 1];
+            int[] rest = new int[count - numSwitched];
+            int numRest = 0;
+            int[][] byValue = new int[maxFact - lo + 1][];
+            for (int i = 0; i < count; i++) {
+                int a = actions[i];
+                int f = precs[a][nextPrec[a]];
+                if (f <= hi) {
+                    int v = f - lo;
+                    if (byValue[v] == null)
+                        byValue[v] = new int[numByValue[v]];
+                    byValue[v][byValue[v].length - numByValue[v]--] = a;
+                    nextPrec[a]++;
+                } else
+                    rest[numRest++] = a;
+            }
+            for (int v = 0; v < byValue.length; v++)
+                if (byValue[v] != null)
+                    n.byValue[v] = build(byValue[v], byValue[v].length);
+
+            actions = rest;
+            count = numRest;
+        }
+        return first;
+    }
+
+    /**
+     * marks the actions that are applicable in the given state in the given bit set (with one bit per action)
+     */
+    public void applicableActions(PackedState s, long[] res) {
+        collect(root, s.words, res);
+    }
+
+    private void collect(Node n, long[] state, long[] res) {
+        while (n != null) {
+            for (int a : n.actions)
+                res[a >>> 6] |= 1L << a;
+            if (n.lastFact >= n.firstFact) {
+                int lo = n.firstFact;
+                int hi = n.lastFact;
+                for (int w = lo >>> 6; w <= hi >>> 6; w++) {
+                    long bits = state[w];
+                    if (w == lo >>> 6)
+                        bits &= -1L << lo;
+                    if (w == hi >>> 6)
+                        bits &= -1L >>> (63 - (hi & 63));
+                    while (bits != 0) {
+                        Node child = n.byValue[(w << 6) + Long.numberOfTrailingZeros(bits) - lo];
+                        if (child != null)
+                            collect(child, state, res);
+                        bits &= bits - 1;
+                    }
+                }
+            }
+            n = n.dontCare;
+        }
+    }
+
+    /**
+     * the number of words a bit set with one bit per action needs
+     */
+    public int numActionWords() {
+        return (p.numOfOperators + 63) >>> 6;
+    }
+
+    public int numNodes() {
+        return numNodes;
+    }
+}
@@ -16,17 +16,31 @@
 
 package de.uniulm.ki.panda3.progression.htn.search.fringe;
 
+import java.util.Comparator;
 import java.util.PriorityQueue;
 
 /**
  * Created by dh on 26.07.17.
  */
 public class AlternatingFringe<T> implements IFringe<T> {
-    PriorityQueue<T> std = new PriorityQueue<>();
-    PriorityQueue<T> pref = new PriorityQueue<>();
+    PriorityQueue<T> std;
+    PriorityQueue<T> pref;
 
     boolean prefRound = false;
 
+    public AlternatingFringe() {
+        std = new PriorityQueue<>();
+        pref = new PriorityQueue<>();
+    }
+
+    /**
+     * A fringe that orders the nodes with the given comparator instead of their natural ordering.
+     */
+    public AlternatingFringe(Comparator<? super T> comparator) {
+        std = new PriorityQueue<>(comparator);
+        pref = new PriorityQueue<>(comparator);
+    }
+
     @Override
     public T poll() {
         if (pref.isEmpty())
@@ -0,0 +1,92 @@
+// PANDA 3 -- a domain-independent planner for classical and hierarchical planning
+// Copyright (C) 2014-2018 the original author or authors.
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package de.uniulm.ki.panda3.progression.htn.search.fringe;
+
+import de.uniulm.ki.panda3.progression.htn.search.ProgressionNetwork;
+import de.uniulm.ki.panda3.util.fastIntegerDataStructures.UUBucketPriorityQueue;
+
+/**
+ * Fringe with one bucket per metric value. Nodes with equal metric are ordered by their heuristic value and then
+ * FIFO, i.e. in contrast to the heap based fringes ties are not broken randomly.
+ * <p>
+ * If alternate is set, preferred nodes are kept in a second queue and both queues are used in turns (as in
+ * AlternatingFringe).
+ */
+public class BucketFringe implements IFringe<ProgressionNetwork> {
+    UUBucketPriorityQueue<ProgressionNetwork> std = new UUBucketPriorityQueue<>();
+    UUBucketPriorityQueue<ProgressionNetwork> pref = new UUBucketPriorityQueue<>();
+
+    final boolean alternate;
+    boolean prefRound = false;
+
+    public BucketFringe(boolean alternate) {
+        this.alternate = alternate;
+    }
+
+    @Override
+    public ProgressionNetwork poll() {
+        if (pref.isEmpty())
+            return std.poll();
+        if (std.isEmpty())
+            return pref.poll();
+        prefRound = !prefRound;
+        if (prefRound)
+            return pref.poll();
+        else return std.poll();
+    }
+
+    @Override
+    public void add(ProgressionNetwork node, boolean prefered) {
+        if (prefered && alternate)
+            pref.add(node, node.metric, node.heuristicVal);
+        else
+            std.add(node, node.metric, node.heuristicVal);
+    }
+
+    @Override
+    public void add(ProgressionNetwork node) {
+        std.add(node, node.metric, node.heuristicVal);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return std.isEmpty() && pref.isEmpty();
+    }
+
+    @Override
+    public void clear() {
+        std.clear();
+        pref.clear();
+    }
+
+    @Override
+    public int size() {
+        return std.size() + pref.size();
+    }
+
+    /**
+     * Limits the number of nodes kept in each of the queues, the worst nodes are dropped.
+     */
+    public void setCapacity(int capacity) {
+        std.setCapacity(capacity);
+        pref.setCapacity(capacity);
+    }
+
+    public int getNumberOfEvictions() {
+        return std.getNumberOfEvictions() + pref.getNumberOfEvictions();
+    }
+}
@@ -0,0 +1,174 @@
+// PANDA 3 -- a domain-independent planner for classical and hierarchical planning
+// Copyright (C) 2014-2018 the original author or authors.
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+
+package de.uniulm.ki.panda3.progression.htn.search.fringe;
+
+import de.uniulm.ki.panda3.progression.htn.search.ProgressionNetwork;
+import de.uniulm.ki.panda3.util.fastIntegerDataStructures.UUBucketPriorityQueue;
+
+import java.util.Arrays;
+
+/**
+ * Fringe with one queue per heuristic of the search nodes (the main one and the additional ones), each ordered by the
+ * metric of its heuristic, and if preferred nodes are used, a second queue per heuristic that contains only those.
+ * Every node is added to all of its queues, the queues are used in turns (like the alternation open list of LAMA):
+ * the queue that has been used least relative to its weight is polled next, entries of nodes that have already been
+ * returned via another queue are skipped.
+ * <p>
+ * Whenever a node with a better value of one of the heuristics than all nodes added so far is added, the preferred
+ * queues are boosted, i.e. they are used exclusively for the next preferredBoost polls (weighted by their weights).
+ * <p>
+ * The queues are ordered by the metric and then by the heuristic value, ties are broken FIFO.
+ */
+public class MultiQueueFringe implements IFringe<ProgressionNetwork> {
+    // the weights are normalized to steps of this size divided by the weight, it is divisible by all weights up to 16
+    private static final long STEP = 720720;
+
+    private final int numHeuristics;
+    private final boolean preferredQueues;
+    private final UUBucketPriorityQueue<ProgressionNetwork>[] queues;
+    private final long[] steps;
+    private final long[] priorities;
+    private final int preferredBoost;
+
+    private final int[] bestHeuristicValues;
+    private boolean bestHeuristicValuesSet = false;
+
+    private int size = 0;
+    private int numBoosts = 0;
+
+    /**
+     * @param numHeuristics   the number of heuristics, i.e. one plus the number of additional heuristics of the nodes
+     * @param preferredQueues whether there is a queue of preferred nodes for every heuristic
+     * @param weights         the weights of the heuristics' queues, the preferred queue of a heuristic has the same
+     *                        weight as its regular one. If null, all queues are used equally often.
+     * @param preferredBoost  for how many polls the preferred queues are boosted if progress is made, 0 disables
+     *                        boosting
+     */
+    public MultiQueueFringe(int numHeuristics, boolean preferredQueues, int[] weights, int preferredBoost) {
+        this.numHeuristics = numHeuristics;
+        this.preferredQueues = preferredQueues;
+        int numQueues = preferredQueues ? 2 * numHeuristics : numHeuristics;
+        if ((weights != null) && (weights.length != numHeuristics))
+            throw new IllegalArgumentException("Got " + weights.length + " weights for " + numHeuristics + " heuristics");
+
+        this.queues = newQueueArray(numQueues);
+        this.steps = new long[numQueues];
+        this.priorities = new long[numQueues];
+        for (int i = 0; i < numQueues; i++) {
+            queues[i] = new UUBucketPriorityQueue<>();
+            int weight = (weights == null) ? 1 : weights[preferredQueues ? i / 2 : i];
+            if (weight <= 0)
+                throw new IllegalArgumentException("The weights of the queues have to be positive");
+            steps[i] = STEP / weight;
+        }
+        this.preferredBoost = preferredQueues ? preferredBoost : 0;
+        this.bestHeuristicValues = new int[numHeuristics];
+    }
+
+    // generic arrays can't be created, the array is only ever filled with queues of search nodes
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static UUBucketPriorityQueue<ProgressionNetwork>[] newQueueArray(int numQueues) {
+        return new UUBucketPriorityQueue[numQueues];
+    }
+
+    @Override
+    public ProgressionNetwork poll() {
+        while (size > 0) {
+            int best = -1;
+            for (int i = 0; i < queues.length; i++)
+                if (!queues[i].isEmpty() && ((best == -1) || (priorities[i] < priorities[best])))
+                    best = i;
+            priorities[best] += steps[best];
+            ProgressionNetwork node = queues[best].poll();
+            if (!node.polledFromFringe) {
+                node.polledFromFringe = true;
+                size--;
+                return node;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void add(ProgressionNetwork node, boolean prefered) {
+        node.polledFromFringe = false;
+        boolean progress = false;
+        for (int h = 0; h < numHeuristics; h++) {
+            int heuristicVal = heuristicVal(node, h);
+            if (!bestHeuristicValuesSet || (heuristicVal < bestHeuristicValues[h])) {
+                progress = bestHeuristicValuesSet;
+                bestHeuristicValues[h] = heuristicVal;
+            }
+            int queue = preferredQueues ? 2 * h : h;
+            queues[queue].add(node, metric(node, h), heuristicVal);
+            if (prefered && preferredQueues)
+                queues[queue + 1].add(node, metric(node, h), heuristicVal);
+        }
+        bestHeuristicValuesSet = true;
+        size++;
+
+        if (progress && (preferredBoost > 0)) {
+            numBoosts++;
+            for (int q = 1; q < queues.length; q += 2)
+                priorities[q] -= preferredBoost * steps[q];
+        }
+    }
+
+    @Override
+    public void add(ProgressionNetwork node) {
+        add(node, false);
+    }
+
+    private static int heuristicVal(ProgressionNetwork node, int h) {
+        if ((h == 0) || (node.additionalHeuristicVals == null))
+            return node.heuristicVal;
+        return node.additionalHeuristicVals[h - 1];
+    }
+
+    private static int metric(ProgressionNetwork node, int h) {
+        if ((h == 0) || (node.additionalMetrics == null))
+            return node.metric;
+        return node.additionalMetrics[h - 1];
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public void clear() {
+        for (UUBucketPriorityQueue<ProgressionNetwork> queue : queues)
+            queue.clear();
+        Arrays.fill(priorities, 0);
+        bestHeuristicValuesSet = false;
+        size = 0;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * returns how often the preferred queues have been boosted
+     */
+    public int getNumberOfBoosts() {
+        return numBoosts;
+    }
+}
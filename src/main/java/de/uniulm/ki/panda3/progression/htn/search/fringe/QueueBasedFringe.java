@@ -18,13 +18,25 @@ package de.uniulm.ki.panda3.progression.htn.search.fringe;
 
 import de.uniulm.ki.panda3.progression.htn.search.ProgressionNetwork;
 
+import java.util.Comparator;
 import java.util.PriorityQueue;
 
 /**
  * Created by dh on 26.07.17.
  */
 public class QueueBasedFringe<T> implements IFringe<T> {
-    PriorityQueue<T> queue = new PriorityQueue<>();
+    PriorityQueue<T> queue;
+
+    public QueueBasedFringe() {
+        queue = new PriorityQueue<>();
+    }
+
+    /**
+     * A fringe that orders the nodes with the given comparator instead of their natural ordering.
+     */
+    public QueueBasedFringe(Comparator<? super T> comparator) {
+        queue = new PriorityQueue<>(comparator);
+    }
 
     @Override
     public T poll() {
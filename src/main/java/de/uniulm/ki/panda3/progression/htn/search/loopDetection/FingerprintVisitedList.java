@@ -0,0 +1,338 @@
+// PANDA 3 -- a domain-independent planner for classical and hierarchical planning
+// Copyright (C) 2014-2018 the original author or authors.
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package de.uniulm.ki.panda3.progression.htn.search.loopDetection;
+
+import de.uniulm.ki.panda3.progression.htn.search.ProgressionNetwork;
+import de.uniulm.ki.panda3.progression.htn.search.ProgressionPlanStep;
+
+import java.util.*;
+
+/**
+ * Visited list that stores a 128 bit fingerprint of every search node instead of the node itself.
+ * <p/>
+ * The fingerprint combines the state with a canonical hash of the task network: the hash of a plan step is built
+ * from its task and the hashes of its successors, the one of the network from the hashes of its first tasks. Both
+ * combinations do not depend on any order, i.e. isomorphic networks get the same fingerprint. Since the successors
+ * of a plan step do not change once it is part of a network, the hash is computed only once per plan step.
+ * <p/>
+ * The fingerprints are kept in an open-addressing table of longs. Two different nodes with the same fingerprint
+ * are very unlikely, but possible. When the exact check is enabled, the nodes are stored as well and a node is
+ * only reported as visited if it is actually equal to the stored one.
+ */
+public class FingerprintVisitedList {
+
+    private static final long SEED1 = 0x9E3779B97F4A7C15L;
+    private static final long SEED2 = 0xC2B2AE3D27D4EB4FL;
+    private static final int INITIAL_SLOTS = 1 << 12;
+
+    private final boolean exactCheck;
+
+    // two longs per slot, a slot containing (0, 0) is empty
+    private long[] table;
+    private ProgressionNetwork[] nodes; // only used for the exact check
+    private int mask;
+    private int size = 0;
+
+    private int calls = 0;
+    private int hits = 0;
+    private int collisions = 0;
+    private long totaltime = 0;
+
+    // plan steps whose fingerprints are being computed
+    private final Deque<ProgressionPlanStep> stack = new ArrayDeque<>();
+
+    // the fingerprint of the node passed last to computeFingerprint
+    private long lastFp1;
+    private long lastFp2;
+
+    public FingerprintVisitedList(boolean exactCheck) {
+        this.exactCheck = exactCheck;
+        allocate(INITIAL_SLOTS);
+    }
+
+    public int getNumCalls() {
+        return this.calls;
+    }
+
+    public int getNumHits() {
+        return this.hits;
+    }
+
+    /**
+     * Number of nodes that had the fingerprint of a visited node, but turned out to be different by the exact check.
+     */
+    public int getNumCollisions() {
+        return this.collisions;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Removes all nodes, the statistics are kept.
+     */
+    public void clear() {
+        if (this.mask + 1 > INITIAL_SLOTS)
+            allocate(INITIAL_SLOTS);
+        else {
+            Arrays.fill(this.table, 0L);
+            if (this.nodes != null)
+                Arrays.fill(this.nodes, null);
+        }
+        this.size = 0;
+    }
+
+    /**
+     * Time spent in the visited list in ms.
+     */
+    public long getTotalTime() {
+        return this.totaltime / 1000000;
+    }
+
+    /**
+     * Size of the tables in bytes, the nodes that are kept for the exact check are not counted.
+     */
+    public long getMemoryUsage() {
+        long bytes = 8L * table.length;
+        if (nodes != null)
+            bytes += 8L * nodes.length;
+        return bytes;
+    }
+
+    /**
+     * Adds the node to the list. Returns true if it (or an equal node) has been added before.
+     */
+    public boolean addIfNotIn(ProgressionNetwork n) {
+        long time = System.nanoTime();
+        this.calls++;
+
+        computeFingerprint(n);
+        boolean visited = find(lastFp1, lastFp2, n, true);
+        if (visited)
+            this.hits++;
+        this.totaltime += System.nanoTime() - time;
+        return visited;
+    }
+
+    /**
+     * Returns true if the node (or an equal node) has been added before, but does not add it.
+     */
+    public boolean contains(ProgressionNetwork n) {
+        long time = System.nanoTime();
+        computeFingerprint(n);
+        boolean visited = find(lastFp1, lastFp2, n, false);
+        this.totaltime += System.nanoTime() - time;
+        return visited;
+    }
+
+    private void computeFingerprint(ProgressionNetwork n) {
+        // the state's hashes are maintained incrementally by apply
+        long fp1 = n.state.zobristHash();
+        long fp2 = n.state.zobristHash2();
+        long t1 = 0;
+        long t2 = 0;
+        for (ProgressionPlanStep ps : n.getFirstPrimitiveTasks()) {
+            computeFingerprint(ps);
+            t1 += ps.fingerprint1;
+            t2 += ps.fingerprint2;
+        }
+        for (ProgressionPlanStep ps : n.getFirstAbstractTasks()) {
+            computeFingerprint(ps);
+            t1 += ps.fingerprint1;
+            t2 += ps.fingerprint2;
+        }
+        // the number of tasks distinguishes networks that share a plan step from those containing two copies of it
+        long counts = (((long) n.getNumberOfTasks()) << 32) | n.getNumberOfPrimitiveTasks();
+        fp1 = mix1(fp1 ^ mix1(t1 + counts));
+        fp2 = mix2(fp2 ^ mix2(t2 - counts));
+        if ((fp1 == 0) && (fp2 == 0))
+            fp1 = 1;
+        this.lastFp1 = fp1;
+        this.lastFp2 = fp2;
+    }
+
+    private boolean find(long fp1, long fp2, ProgressionNetwork n, boolean insert) {
+        int slot = ((int) (fp1 ^ (fp1 >>> 32))) & mask;
+        while ((table[2 * slot] != 0) || (table[2 * slot + 1] != 0)) {
+            if ((table[2 * slot] == fp1) && (table[2 * slot + 1] == fp2)) {
+                if (!exactCheck)
+                    return true;
+                if (equalNetworks(nodes[slot], n))
+                    return true;
+                this.collisions++;
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (!insert)
+            return false;
+        table[2 * slot] = fp1;
+        table[2 * slot + 1] = fp2;
+        if (exactCheck)
+            nodes[slot] = n;
+        this.size++;
+        if (2 * this.size > this.mask)
+            grow();
+        return false;
+    }
+
+    private void allocate(int slots) {
+        this.table = new long[2 * slots];
+        if (exactCheck)
+            this.nodes = new ProgressionNetwork[slots];
+        this.mask = slots - 1;
+    }
+
+    private void grow() {
+        long[] oldTable = this.table;
+        ProgressionNetwork[] oldNodes = this.nodes;
+        allocate(2 * (this.mask + 1));
+        for (int i = 0; i < oldTable.length / 2; i++) {
+            long fp1 = oldTable[2 * i];
+            long fp2 = oldTable[2 * i + 1];
+            if ((fp1 == 0) && (fp2 == 0))
+                continue;
+            int slot = ((int) (fp1 ^ (fp1 >>> 32))) & mask;
+            while ((table[2 * slot] != 0) || (table[2 * slot + 1] != 0))
+                slot = (slot + 1) & mask;
+            table[2 * slot] = fp1;
+            table[2 * slot + 1] = fp2;
+            if (exactCheck)
+                nodes[slot] = oldNodes[i];
+        }
+    }
+
+    /**
+     * Computes the fingerprints of the plan step and of all its successors that do not have one yet. A step is hashed
+     * after all of its successors, the steps are kept on an explicit stack since the networks can be very deep.
+     */
+    private void computeFingerprint(ProgressionPlanStep root) {
+        if (root.hasFingerprint)
+            return;
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            ProgressionPlanStep ps = stack.peek();
+            if (ps.hasFingerprint) {
+                stack.pop();
+                continue;
+            }
+            boolean successorsDone = true;
+            for (ProgressionPlanStep succ : ps.successorList) {
+                if (!succ.hasFingerprint) {
+                    stack.push(succ);
+                    successorsDone = false;
+                }
+            }
+            if (!successorsDone)
+                continue;
+            stack.pop();
+
+            long s1 = 0;
+            long s2 = 0;
+            for (ProgressionPlanStep succ : ps.successorList) {
+                s1 += succ.fingerprint1;
+                s2 += succ.fingerprint2;
+            }
+            long task = ps.taskIndex;
+            ps.fingerprint1 = mix1(mix1(task + SEED1) ^ s1);
+            ps.fingerprint2 = mix2(mix2(task + SEED2) ^ s2);
+            ps.hasFingerprint = true;
+        }
+    }
+
+    /*
+     * Exact check. It searches for a mapping between the plan steps of both networks and pairs successors with equal
+     * fingerprints in the order they are sorted in. It may therefore miss an equality, but never reports a wrong one.
+     * The successors of newly mapped steps are compared later on, they are kept on an explicit stack.
+     */
+
+    private static final Comparator<ProgressionPlanStep> byFingerprint = new Comparator<ProgressionPlanStep>() {
+        @Override
+        public int compare(ProgressionPlanStep a, ProgressionPlanStep b) {
+            int c = Long.compare(a.fingerprint1, b.fingerprint1);
+            if (c == 0)
+                c = Long.compare(a.fingerprint2, b.fingerprint2);
+            return c;
+        }
+    };
+
+    private boolean equalNetworks(ProgressionNetwork a, ProgressionNetwork b) {
+        if ((a.getNumberOfTasks() != b.getNumberOfTasks())
+                || (a.getNumberOfPrimitiveTasks() != b.getNumberOfPrimitiveTasks())
+                || (!a.state.equals(b.state)))
+            return false;
+        Map<ProgressionPlanStep, ProgressionPlanStep> aToB = new IdentityHashMap<>();
+        Map<ProgressionPlanStep, ProgressionPlanStep> bToA = new IdentityHashMap<>();
+        Deque<ProgressionPlanStep[]> pending = new ArrayDeque<>();
+        if (!equalSteps(a.getFirstPrimitiveTasks(), b.getFirstPrimitiveTasks(), aToB, bToA, pending)
+                || !equalSteps(a.getFirstAbstractTasks(), b.getFirstAbstractTasks(), aToB, bToA, pending))
+            return false;
+        while (!pending.isEmpty()) {
+            ProgressionPlanStep[] pair = pending.pop();
+            if (!equalSteps(pair[0].successorList, pair[1].successorList, aToB, bToA, pending))
+                return false;
+        }
+        return true;
+    }
+
+    private boolean equalSteps(Collection<ProgressionPlanStep> as, Collection<ProgressionPlanStep> bs,
+                               Map<ProgressionPlanStep, ProgressionPlanStep> aToB, Map<ProgressionPlanStep, ProgressionPlanStep> bToA,
+                               Deque<ProgressionPlanStep[]> pending) {
+        if (as.size() != bs.size())
+            return false;
+        ProgressionPlanStep[] aSorted = as.toArray(new ProgressionPlanStep[as.size()]);
+        ProgressionPlanStep[] bSorted = bs.toArray(new ProgressionPlanStep[bs.size()]);
+        Arrays.sort(aSorted, byFingerprint);
+        Arrays.sort(bSorted, byFingerprint);
+        for (int i = 0; i < aSorted.length; i++) {
+            if (!equalStep(aSorted[i], bSorted[i], aToB, bToA, pending))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Maps a to b if they can be equal. The successors of newly mapped steps are added to pending.
+     */
+    private boolean equalStep(ProgressionPlanStep a, ProgressionPlanStep b,
+                              Map<ProgressionPlanStep, ProgressionPlanStep> aToB, Map<ProgressionPlanStep, ProgressionPlanStep> bToA,
+                              Deque<ProgressionPlanStep[]> pending) {
+        ProgressionPlanStep mapped = aToB.get(a);
+        if (mapped != null)
+            return mapped == b;
+        if (bToA.containsKey(b))
+            return false;
+        if ((a.fingerprint1 != b.fingerprint1) || (a.fingerprint2 != b.fingerprint2) || (!a.taskIndex.equals(b.taskIndex)))
+            return false;
+        aToB.put(a, b);
+        bToA.put(b, a);
+        pending.push(new ProgressionPlanStep[]{a, b});
+        return true;
+    }
+
+    private static long mix1(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    private static long mix2(long z) {
+        z = (z ^ (z >>> 33)) * 0xFF51AFD7ED558CCDL;
+        z = (z ^ (z >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return z ^ (z >>> 33);
+    }
+}
@@ -16,6 +16,7 @@
 
 package de.uniulm.ki.panda3.progression.htn.search.loopDetection;
 
+import de.uniulm.ki.panda3.progression.htn.search.PackedState;
 import de.uniulm.ki.panda3.progression.htn.search.ProgressionNetwork;
 import de.uniulm.ki.panda3.progression.htn.search.ProgressionPlanStep;
 
@@ -30,7 +31,7 @@ public class VisitedList {
     private static final short cIdentical = 0;
     private static final short cRefIdentical = 1;
 
-    private final Map<Integer, Map<Integer, Map<BitSet, List<List<ProgressionPlanStep>[]>>>> visited;
+    private final Map<Integer, Map<Integer, Map<PackedState, List<List<ProgressionPlanStep>[]>>>> visited;
     private int calls = 0;
     private int hits = 0;
     private long totaltime = 0;
@@ -57,7 +58,7 @@ public class VisitedList {
 
         // number of tasks
         int t = n.getNumberOfTasks();
-        Map<Integer, Map<BitSet, List<List<ProgressionPlanStep>[]>>> sameTaskNum = visited.get(t);
+        Map<Integer, Map<PackedState, List<List<ProgressionPlanStep>[]>>> sameTaskNum = visited.get(t);
         if (sameTaskNum == null) {
             // prepare network
             List<ProgressionPlanStep>[] network = new List[2];
@@ -67,7 +68,7 @@ public class VisitedList {
             networks.add(network);
 
             // prepare maps: most inner to most outer
-            Map<BitSet, List<List<ProgressionPlanStep>[]>> samePrimTaskNum = new HashMap<>();
+            Map<PackedState, List<List<ProgressionPlanStep>[]>> samePrimTaskNum = new HashMap<>();
             samePrimTaskNum.put(n.state, networks);
             sameTaskNum = new HashMap<>();
             sameTaskNum.put(n.getNumberOfPrimitiveTasks(), samePrimTaskNum);
@@ -78,7 +79,7 @@ public class VisitedList {
         } else {
             // number of primitive tasks
             t = n.getNumberOfPrimitiveTasks();
-            Map<BitSet, List<List<ProgressionPlanStep>[]>> samePrimTaskNum = sameTaskNum.get(t);
+            Map<PackedState, List<List<ProgressionPlanStep>[]>> samePrimTaskNum = sameTaskNum.get(t);
             if (samePrimTaskNum == null) {
                 // prepare network
                 List<ProgressionPlanStep>[] network = new List[2];
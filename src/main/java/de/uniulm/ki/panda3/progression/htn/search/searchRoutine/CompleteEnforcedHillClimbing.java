@@ -23,87 +23,45 @@ import de.uniulm.ki.util.TimeCapsule;
 
 /**
  * Created by dh on 15.09.16.
+ * <p/>
+ * Enforced hill climbing that continues with a (complete) lazy greedy search from the initial network if the hill
+ * climbing fails.
  */
-public class CompleteEnforcedHillClimbing extends ProgressionSearchRoutine {
+public class CompleteEnforcedHillClimbing extends EnforcedHillClimbing {
 
+    public static final String FALLBACK = "30 progression:24:ehc:fallback";
 
-    int cehcSearchNodes = 1;
-
-    public SolutionStep search(ProgressionNetwork firstSearchNode) {
-        /*
-        int bestMetric = firstSearchNode.metric;
-        LinkedList<ProgressionNetwork> fringe = new LinkedList<>();
-        fringe.add(firstSearchNode);
-
-        planningloop:
-        while (true) {
-            if (fringe.isEmpty()) // failure
-                return null;
-
-            ProgressionNetwork n = fringe.removeFirst();
-
-            operatorloop:
-            for (ProgressionPlanStep ps : n.getFirst()) {
-                if (ps.isPrimitive) {
-                    int pre = operators.prec[ps.action].nextSetBit(0);
-                    while (pre > -1) {
-                        if (!n.state.get(pre))
-                            continue operatorloop;
-                        pre = operators.prec[ps.action].nextSetBit(pre + 1);
-                    }
-
-                    ProgressionNetwork node = n.apply(ps, false);
-                    if (node.heuristic.goalRelaxedReachable()) {
-                        if (node.isGoal())
-                            return node.solution;
-
-                        if (node.metric < bestMetric) {
-                            bestMetric = node.metric;
-                            System.out.println("-> " + node.metric);
-                            List<Object> solution = (new CompleteEnforcedHillClimbing()).search(node);
-                            if (solution != null)
-                                return solution;
-
-                            System.out.println("<- " + bestMetric);
-                        }
-                        fringe.addLast(node);
-                    }
-                    cehcSearchNodes++;
-                    if ((cehcSearchNodes % 10000) == 0)
-                        System.out.println("Searchnodes :" + cehcSearchNodes);
-                } else { // is an abstract task
-                    for (method m : ps.methods) {
-                        ProgressionNetwork node = n.decompose(ps, m);
-
-                        if (node.heuristic.goalRelaxedReachable()) {
-                            if (node.isGoal())
-                                return node.solution;
-
-                            if (node.metric < bestMetric) {
-                                bestMetric = node.metric;
-                                System.out.println("-> " + node.metric);
-                                List<Object> solution = (new CompleteEnforcedHillClimbing()).search(node);
-                                if (solution != null)
-                                    return solution;
-
-                                System.out.println("<- " + bestMetric);
-                            }
-                            fringe.addLast(node);
-                        }
-                        cehcSearchNodes++;
-                        if ((cehcSearchNodes % 10000) == 0)
-                            System.out.println("Searchnodes :" + cehcSearchNodes);
+    public CompleteEnforcedHillClimbing(boolean output, PriorityQueueSearch.abstractTaskSelection taskSelectionStrategy, int maxRestarts) {
+        super(output, taskSelectionStrategy, maxRestarts);
+    }
 
-                    }
-                }
-            }
+    @Override
+    public SolutionStep search(ProgressionNetwork firstSearchNode, InformationCapsule info, TimeCapsule timing) {
+        SolutionStep solution = super.search(firstSearchNode, info, timing);
+        if ((solution != null) || exitDueToTimeLimit) {
+            info.set(FALLBACK, 0);
+            return solution;
         }
-        */
-        return null;
+
+        if (output)
+            System.out.println("Enforced hill climbing failed, continuing with lazy greedy search");
+        LazyGreedySearch fallback = new LazyGreedySearch(output, taskSelection);
+        fallback.visitedList = visitedList;
+        fallback.openList = openList;
+        fallback.openListCapacity = openListCapacity;
+        if (wallTime > 0)
+            fallback.wallTime = Math.max(1, wallTime - (System.currentTimeMillis() - totalSearchTime));
+        solution = fallback.search(firstSearchNode, info, timing);
+        exitDueToTimeLimit = fallback.exitDueToTimeLimit;
+
+        info.set(FALLBACK, 1);
+        info.add(NUM_SEARCH_NODES, searchnodes);
+        info.add(NUM_EVALUATIONS, evaluations);
+        return solution;
     }
 
     @Override
-    public SolutionStep search(ProgressionNetwork firstSearchNode, InformationCapsule info, TimeCapsule timing) {
-        return null;
+    public String SearchName() {
+        return "Complete Enforced Hill Climbing";
     }
 }
@@ -16,102 +16,220 @@
 
 package de.uniulm.ki.panda3.progression.htn.search.searchRoutine;
 
-import de.uniulm.ki.panda3.progression.htn.search.SolutionStep;
+import de.uniulm.ki.panda3.progression.htn.representation.ProMethod;
 import de.uniulm.ki.panda3.progression.htn.search.ProgressionNetwork;
+import de.uniulm.ki.panda3.progression.htn.search.ProgressionPlanStep;
+import de.uniulm.ki.panda3.progression.htn.search.SolutionStep;
+import de.uniulm.ki.panda3.progression.htn.search.loopDetection.FingerprintVisitedList;
 import de.uniulm.ki.util.InformationCapsule;
 import de.uniulm.ki.util.TimeCapsule;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 /**
  * Created by dh on 15.09.16.
+ * <p/>
+ * Enforced hill climbing: starting with the current network, a breadth first search is done until a network with a
+ * smaller heuristic value is found, which becomes the new current one. If the heuristic supports helpful actions,
+ * only the successors created by helpful actions and methods are considered first, the breadth first search is
+ * repeated with all successors if that fails.
+ * <p/>
+ * When the breadth first search with all successors fails, none of the networks it has expanded can be refined into
+ * a solution. They are recorded as dead ends and the search restarts from the last network it has moved to that is
+ * not a recorded dead end (which might be the initial network), skipping all recorded dead ends and generating the
+ * successors in a random order. The search fails after the given number of restarts, i.e. it is incomplete.
  */
-public class EnforcedHillClimbing extends ProgressionSearchRoutine{
-
-    public SolutionStep search(ProgressionNetwork firstSearchNode) {
-        /*
-        System.out.println("\nStarting enforced hill climbing search");
-        int searchnodes = 1;
-        int bestMetric = firstSearchNode.metric;
-        List<Object> solution = null;
-        long time = System.currentTimeMillis();
-        LinkedList<ProgressionNetwork> fringe = new LinkedList<>();
-        fringe.add(firstSearchNode);
-
-        planningloop:
+public class EnforcedHillClimbing extends PriorityQueueSearch {
+
+    public static final String RESTARTS = "30 progression:22:ehc:restarts";
+    public static final String IMPROVEMENTS = "30 progression:23:ehc:improvements";
+
+    public int maxRestarts;
+    public boolean helpfulActionPruning = true;
+
+    int searchnodes;
+    int evaluations;
+    int restarts;
+    int improvements;
+    long totalSearchTime;
+    private long lastInfo;
+    private FingerprintVisitedList deadEnds;
+    private FingerprintVisitedList visited;
+    private final ArrayDeque<ProgressionNetwork> queue = new ArrayDeque<>();
+    private final List<ProgressionNetwork> expanded = new ArrayList<>();
+
+    public EnforcedHillClimbing(boolean output, PriorityQueueSearch.abstractTaskSelection taskSelectionStrategy, int maxRestarts) {
+        super(false, output, false, taskSelectionStrategy);
+        this.maxRestarts = maxRestarts;
+    }
+
+    @Override
+    public SolutionStep search(ProgressionNetwork firstSearchNode, InformationCapsule info, TimeCapsule timing) {
+        if (output)
+            System.out.println("\nStarting enforced hill climbing search");
+        searchnodes = 1;
+        evaluations = 0;
+        restarts = 0;
+        improvements = 0;
+        totalSearchTime = System.currentTimeMillis();
+        lastInfo = totalSearchTime;
+        deadEnds = new FingerprintVisitedList(true);
+        visited = new FingerprintVisitedList(visitedList == visitedListType.exact);
+
+        boolean pruning = helpfulActionPruning && firstSearchNode.heuristic.supportsHelpfulActions;
+        if (firstSearchNode.heuristic.supportsHelpfulActions) {
+            firstSearchNode.context.useHelpfulActions = true;
+            firstSearchNode.helpfulActions = firstSearchNode.heuristic.helpfulOps();
+        }
+        SolutionStep solution = null;
+
+        timing.start(SEARCH_TIME);
+
+        // the networks the hill climbing has moved to
+        List<ProgressionNetwork> path = new ArrayList<>();
+        path.add(firstSearchNode);
+
+        restartloop:
         while (true) {
-            if (fringe.isEmpty()) // failure
-                return null;
-
-            ProgressionNetwork n = fringe.removeFirst();
-
-            operatorloop:
-            for (ProgressionPlanStep ps : n.getFirst()) {
-                if (ps.isPrimitive) {
-                    int pre = operators.prec[ps.action].nextSetBit(0);
-                    while (pre > -1) {
-                        if (!n.state.get(pre))
-                            continue operatorloop;
-                        pre = operators.prec[ps.action].nextSetBit(pre + 1);
-                    }
-
-                    ProgressionNetwork node = n.apply(ps, false);
-                    if (node.heuristic.goalRelaxedReachable()) {
-                        // early goal test - NON-OPTIMAL
-                        if (node.isGoal()) {
-                            solution = node.solution;
-                            break planningloop;
-                        }
-
-
-                        if (node.metric < bestMetric) {
-                            bestMetric = node.metric;
-                            fringe.clear();
-                            fringe.add(node);
-                            System.out.println("Found new best metric value: " + node.metric);
-                            continue planningloop;
-                        } else {
-                            fringe.addLast(node);
-                        }
-                    }
-                    searchnodes++;
-                    if ((searchnodes % 10000) == 0)
-                        System.out.println(getInfoStr(searchnodes, fringe.size(), bestMetric, n, time));
-                } else { // is an abstract task
-                    for (method m : ps.methods) {
-                        ProgressionNetwork node = n.decompose(ps, m);
-
-                        if (node.heuristic.goalRelaxedReachable()) {
-
-                            if (node.isGoal()) {
-                                solution = node.solution;
-                                break planningloop;
-                            }
-
-                            if (node.metric < bestMetric) {
-                                bestMetric = node.metric;
-                                fringe.clear();
-                                fringe.add(node);
-                                System.out.println("Found new best metric value: " + node.metric);
-                                continue planningloop;
-                            } else {
-                                fringe.addLast(node);
-                            }
-                        }
-                        searchnodes++;
-                        if ((searchnodes % 10000) == 0)
-                            System.out.println(getInfoStr(searchnodes, fringe.size(), bestMetric, n, time));
-                    }
+            ProgressionNetwork current = path.get(path.size() - 1);
+            // the heuristic value of the initial network is not known, its first evaluated successor is taken
+            int bound = (current == firstSearchNode) ? Integer.MAX_VALUE : current.heuristicVal;
+            ProgressionNetwork better = null;
+            if (pruning)
+                better = improve(current, bound, true);
+            if ((better == null) && !exitDueToTimeLimit)
+                better = improve(current, bound, false);
+            if (exitDueToTimeLimit)
+                break restartloop;
+
+            if (better != null) {
+                if (better.isGoal()) {
+                    solution = better.solution;
+                    break restartloop;
                 }
+                path.add(better);
+                improvements++;
+                continue restartloop;
             }
+
+            // dead end: restart from the last network on the path that has not been recognised as one
+            for (ProgressionNetwork n : expanded)
+                deadEnds.addIfNotIn(n);
+            if ((current == firstSearchNode) || (restarts == maxRestarts))
+                break restartloop;
+            // a network on the path might be equal to the initial one, i.e. the initial network can be a dead end as well
+            while ((path.size() > 1) && deadEnds.contains(path.get(path.size() - 1)))
+                path.remove(path.size() - 1);
+            if (deadEnds.contains(path.get(0)))
+                break restartloop;
+            restarts++;
+            if (output)
+                System.out.println("Reached a dead end with heuristic value " + current.heuristicVal + ", restarting at depth "
+                        + (path.size() - 1) + " (" + restarts + "/" + maxRestarts + ")");
         }
+        timing.stop(SEARCH_TIME);
+
+        // the hill climbing is incomplete, a failure does not prove anything
+        if (solution != null)
+            info.set(STATUS, "solved");
+        else if (exitDueToTimeLimit)
+            info.set(STATUS, "timeout");
+        else
+            info.set(STATUS, "failed");
+        info.set(A_STAR, 0);
+        info.set(HEURISTIC, firstSearchNode.heuristic.getName());
+        info.set(NUM_SEARCH_NODES, searchnodes);
+        info.set(NUM_EVALUATIONS, evaluations);
+        info.set(RESTARTS, restarts);
+        info.set(IMPROVEMENTS, improvements);
+        setVisitedListInfo(info, visited);
+        setSolInfo(firstSearchNode.context, solution, info);
+
+        if (output) {
+            System.out.println("Generated search nodes (total): " + searchnodes);
+            System.out.println("Restarts: " + restarts);
+            System.out.println("Search time: " + (System.currentTimeMillis() - totalSearchTime) + " ms");
+        }
+        return solution;
+    }
 
-        System.out.println("Generated search nodes (total): " + searchnodes);
-        System.out.println("Search time: " + (System.currentTimeMillis() - time) + " ms");
-        return solution;*/
+    /**
+     * Breadth first search for a goal network or one with a heuristic value smaller than the bound. Returns null if
+     * there is none (or the time limit has been reached), the expanded networks are kept in expanded.
+     */
+    private ProgressionNetwork improve(ProgressionNetwork from, int bound, boolean onlyHelpful) {
+        queue.clear();
+        expanded.clear();
+        queue.add(from);
+        visited.clear();
+        visited.addIfNotIn(from);
+        List<ProgressionNetwork> successors = new ArrayList<>();
+        while (!queue.isEmpty()) {
+            ProgressionNetwork n = queue.poll();
+            expanded.add(n);
+            generateSuccessors(n, onlyHelpful, successors);
+            // after a restart, the successors are visited in a different order
+            if (restarts > 0)
+                Collections.shuffle(successors, n.context.random);
+
+            for (ProgressionNetwork node : successors) {
+                if (node.isGoal())
+                    return node;
+                if (deadEnds.contains(node) || visited.addIfNotIn(node))
+                    continue;
+                evaluations++;
+                if (!LazyGreedySearch.evaluate(node))
+                    continue;
+                if (node.heuristicVal < bound)
+                    return node;
+                queue.add(node);
+            }
+
+            if ((System.currentTimeMillis() - lastInfo) > 1000) {
+                if ((wallTime > 0) && ((System.currentTimeMillis() - totalSearchTime) > wallTime)) {
+                    System.out.println("Reached time limit, search will stop.");
+                    exitDueToTimeLimit = true;
+                    return null;
+                }
+                lastInfo = System.currentTimeMillis();
+                if (output)
+                    System.out.println(getInfoStr(searchnodes, queue.size(), greediness, from, totalSearchTime));
+            }
+        }
         return null;
     }
 
+    /**
+     * Creates the successors of the network, their heuristic is not computed yet.
+     */
+    private void generateSuccessors(ProgressionNetwork n, boolean onlyHelpful, List<ProgressionNetwork> successors) {
+        successors.clear();
+        for (ProgressionPlanStep ps : n.getFirstPrimitiveTasks()) {
+            if (!n.isApplicable(ps.action) || (onlyHelpful && !n.isHelpfulAction(ps.action)))
+                continue;
+            ProgressionNetwork node = n.apply(ps);
+            node.id = searchnodes++;
+            LazyGreedySearch.defer(n, node, ps, null);
+            successors.add(node);
+        }
+        if (n.getFirstAbstractTasks().size() == 0)
+            return;
+        ProgressionPlanStep oneAbs = selectAbstractTask(n);
+        for (ProMethod m : oneAbs.methods) {
+            if (onlyHelpful && !n.isHelpfulMethod(m))
+                continue;
+            ProgressionNetwork node = n.decompose(oneAbs, m);
+            node.id = searchnodes++;
+            LazyGreedySearch.defer(n, node, oneAbs, m);
+            successors.add(node);
+        }
+    }
+
     @Override
-    public SolutionStep search(ProgressionNetwork firstSearchNode, InformationCapsule info, TimeCapsule timing) {
-        return null;
+    public String SearchName() {
+        return "Enforced Hill Climbing";
     }
 }
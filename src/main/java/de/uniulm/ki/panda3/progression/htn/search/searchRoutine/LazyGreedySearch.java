@@ -0,0 +1,189 @@
+// PANDA 3 -- a domain-independent planner for classical and hierarchical planning
+// Copyright (C) 2014-2018 the original author or authors.
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package de.uniulm.ki.panda3.progression.htn.search.searchRoutine;
+
+import de.uniulm.ki.panda3.configuration.Information;
+import de.uniulm.ki.panda3.progression.htn.representation.ProMethod;
+import de.uniulm.ki.panda3.progression.htn.search.ProgressionNetwork;
+import de.uniulm.ki.panda3.progression.htn.search.ProgressionPlanStep;
+import de.uniulm.ki.panda3.progression.htn.search.SolutionStep;
+import de.uniulm.ki.panda3.progression.htn.search.fringe.BucketFringe;
+import de.uniulm.ki.panda3.progression.htn.search.fringe.IFringe;
+import de.uniulm.ki.panda3.progression.htn.search.loopDetection.FingerprintVisitedList;
+import de.uniulm.ki.util.InformationCapsule;
+import de.uniulm.ki.util.TimeCapsule;
+
+/**
+ * Greedy best first search with deferred evaluation. The children of a node are put into the fringe with the
+ * heuristic value of their parent, their own value is only computed when they are polled. Children generated by a
+ * helpful action or method of their parent are preferred.
+ * <p/>
+ * Since all children of a node share its value, only the ones that are actually expanded have to be evaluated. This
+ * pays off when the branching factor is high and the heuristic is expensive.
+ */
+public class LazyGreedySearch extends PriorityQueueSearch {
+
+    int evaluations = 0;
+
+    public LazyGreedySearch(boolean output, PriorityQueueSearch.abstractTaskSelection taskSelectionStrategy) {
+        super(false, output, false, taskSelectionStrategy);
+    }
+
+    @Override
+    public SolutionStep search(ProgressionNetwork firstSearchNode, InformationCapsule info, TimeCapsule timing) {
+        if (output)
+            System.out.println("\nStarting lazy greedy search");
+        int searchnodes = 1;
+        evaluations = 0;
+        long totalSearchTime = System.currentTimeMillis();
+        long lastInfo = System.currentTimeMillis();
+
+        int checkAfter = 5000;
+        int sinceCheck = 0;
+
+        IFringe<ProgressionNetwork> fringe = createFringe(firstSearchNode.heuristic.supportsHelpfulActions);
+        if (firstSearchNode.heuristic.supportsHelpfulActions) {
+            firstSearchNode.context.useHelpfulActions = true;
+            firstSearchNode.helpfulActions = firstSearchNode.heuristic.helpfulOps();
+        }
+        fringe.add(firstSearchNode);
+        FingerprintVisitedList visited = createVisitedList();
+        if (visited != null)
+            visited.addIfNotIn(firstSearchNode);
+        SolutionStep solution = null;
+
+        timing.start(SEARCH_TIME);
+
+        planningloop:
+        while (!fringe.isEmpty()) {
+            ProgressionNetwork n = fringe.poll();
+            if (n.deferredStep != null)
+                evaluations++;
+            if (!evaluate(n))
+                continue planningloop;
+
+            actionloop:
+            for (ProgressionPlanStep ps : n.getFirstPrimitiveTasks()) {
+                if (!n.isApplicable(ps.action))
+                    continue actionloop;
+
+                ProgressionNetwork node = n.apply(ps);
+                node.id = searchnodes++;
+                sinceCheck++;
+                if (node.isGoal()) {
+                    solution = node.solution;
+                    break planningloop;
+                }
+                defer(n, node, ps, null);
+                if ((visited == null) || !visited.addIfNotIn(node))
+                    fringe.add(node, n.isHelpfulAction(ps.action));
+            }
+
+            if (n.getFirstAbstractTasks().size() > 0) {
+                ProgressionPlanStep oneAbs = selectAbstractTask(n);
+                for (ProMethod m : oneAbs.methods) {
+                    ProgressionNetwork node = n.decompose(oneAbs, m);
+                    node.id = searchnodes++;
+                    sinceCheck++;
+                    defer(n, node, oneAbs, m);
+                    if ((visited == null) || !visited.addIfNotIn(node))
+                        fringe.add(node, n.isHelpfulMethod(m));
+                }
+            }
+
+            if ((sinceCheck >= checkAfter) && ((System.currentTimeMillis() - lastInfo) > 1000)) {
+                sinceCheck = 0;
+                if ((wallTime > 0) && ((System.currentTimeMillis() - totalSearchTime) > wallTime)) {
+                    System.out.println("Reached time limit, search will stop.");
+                    exitDueToTimeLimit = true;
+                    break planningloop;
+                }
+                lastInfo = System.currentTimeMillis();
+                if (output)
+                    System.out.println(getInfoStr(searchnodes, fringe.size(), greediness, n, totalSearchTime));
+            }
+        }
+        if (output)
+            System.out.println("Number of nodes in final fringe: " + fringe.size());
+        if (fringe instanceof BucketFringe)
+            info.set(OPEN_LIST_EVICTIONS, ((BucketFringe) fringe).getNumberOfEvictions());
+        if ((solution == null) && (fringe.size() == 0) && !((fringe instanceof BucketFringe) && ((BucketFringe) fringe).getNumberOfEvictions() > 0))
+            info.set(Information.SEARCH_SPACE_FULLY_EXPLORED(), "true");
+        timing.stop(SEARCH_TIME);
+
+        if (solution != null)
+            info.set(STATUS, "solved");
+        else if (exitDueToTimeLimit)
+            info.set(STATUS, "timeout");
+        else
+            info.set(STATUS, "proven_unsolvable");
+        info.set(A_STAR, 0);
+        info.set(HEURISTIC, firstSearchNode.heuristic.getName());
+        info.set(NUM_SEARCH_NODES, searchnodes);
+        info.set(NUM_EVALUATIONS, evaluations);
+        if (visited != null)
+            setVisitedListInfo(info, visited);
+        setSolInfo(firstSearchNode.context, solution, info);
+
+        if (output) {
+            System.out.println("Generated search nodes (total): " + searchnodes);
+            System.out.println("Evaluated search nodes: " + evaluations);
+            System.out.println("Search time: " + (System.currentTimeMillis() - totalSearchTime) + " ms");
+        }
+        return solution;
+    }
+
+    /**
+     * The child gets the heuristic value of its parent, its own one is computed when it is expanded.
+     */
+    static void defer(ProgressionNetwork parent, ProgressionNetwork child, ProgressionPlanStep ps, ProMethod m) {
+        child.heuristic = parent.heuristic;
+        child.deferredStep = ps;
+        child.deferredMethod = m;
+        child.heuristicVal = parent.heuristicVal;
+        child.metric = parent.heuristicVal;
+    }
+
+    /**
+     * Computes the heuristic of a network whose evaluation has been deferred (if it has not been computed yet).
+     * Returns false if the goal is not relaxed reachable from it.
+     */
+    static boolean evaluate(ProgressionNetwork n) {
+        if (n.deferredStep == null)
+            return n.goalRelaxedReachable;
+        if (n.deferredMethod == null)
+            n.heuristic = n.heuristic.update(n, n.deferredStep);
+        else
+            n.heuristic = n.heuristic.update(n, n.deferredStep, n.deferredMethod);
+        n.deferredStep = null;
+        n.deferredMethod = null;
+
+        n.goalRelaxedReachable = n.heuristic.goalRelaxedReachable();
+        if (!n.goalRelaxedReachable)
+            return false;
+        n.heuristicVal = n.heuristic.getHeuristic();
+        n.metric = n.heuristicVal;
+        if (n.heuristic.supportsHelpfulActions)
+            n.helpfulActions = n.heuristic.helpfulOps();
+        return true;
+    }
+
+    @Override
+    public String SearchName() {
+        return "Lazy Greedy";
+    }
+}
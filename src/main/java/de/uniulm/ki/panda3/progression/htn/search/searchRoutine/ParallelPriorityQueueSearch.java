@@ -0,0 +1,292 @@
+// PANDA 3 -- a domain-independent planner for classical and hierarchical planning
+// Copyright (C) 2014-2018 the original author or authors.
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package de.uniulm.ki.panda3.progression.htn.search.searchRoutine;
+
+import de.uniulm.ki.panda3.configuration.Information;
+import de.uniulm.ki.panda3.progression.heuristics.htn.GroundedProgressionHeuristic;
+import de.uniulm.ki.panda3.progression.htn.representation.ProMethod;
+import de.uniulm.ki.panda3.progression.htn.search.ProgressionNetwork;
+import de.uniulm.ki.panda3.progression.htn.search.ProgressionPlanStep;
+import de.uniulm.ki.panda3.progression.htn.search.SolutionStep;
+import de.uniulm.ki.panda3.progression.htn.search.fringe.IFringe;
+import de.uniulm.ki.panda3.progression.htn.search.loopDetection.FingerprintVisitedList;
+import de.uniulm.ki.util.InformationCapsule;
+import de.uniulm.ki.util.TimeCapsule;
+
+import java.util.BitSet;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Best-first search with several workers in the style of HDA*: every search node is owned by the worker its
+ * hash value (state and number of tasks) is mapped to. Each worker has its own fringe, its own random generator,
+ * its own copy of the heuristic (holding the mutable data of the computation, the information belonging to a node is
+ * always taken from its parent) and (if enabled) its own visited list. Since equal search nodes always end up at the same worker,
+ * duplicate detection works for all workers without any locking. Unless configured otherwise, fingerprint based
+ * visited lists are used, i.e. the workers' lists are the shards of one visited list.
+ */
+public class ParallelPriorityQueueSearch extends PriorityQueueSearch {
+
+    public static final String NUM_WORKERS = "30 progression:12:numWorkers";
+    public static final String NUM_DUPLICATES = "30 progression:13:numDuplicates";
+
+    private final int numWorkers;
+
+    private Worker[] workers;
+    private final AtomicInteger searchnodes = new AtomicInteger(1);
+    // number of nodes sent to some worker that have not been expanded completely
+    private final AtomicLong openNodes = new AtomicLong(0);
+    private final AtomicBoolean stop = new AtomicBoolean(false);
+    private volatile SolutionStep solution = null;
+
+    public ParallelPriorityQueueSearch(boolean aStar, boolean output, int numWorkers,
+                                       PriorityQueueSearch.abstractTaskSelection taskSelectionStrategy) {
+        super(aStar, output, false, taskSelectionStrategy);
+        assert (numWorkers > 0);
+        this.numWorkers = numWorkers;
+        this.visitedList = visitedListType.fingerprint;
+    }
+
+    @Override
+    public SolutionStep search(ProgressionNetwork firstSearchNode, InformationCapsule info, TimeCapsule timing) {
+        if (taskSelection == abstractTaskSelection.branchOverAll)
+            throw new IllegalArgumentException("The parallel search does not support branching over all abstract tasks.");
+        if (output)
+            System.out.println("\nStarting parallel priority queue search with " + numWorkers + " workers");
+        long totalSearchTime = System.currentTimeMillis();
+
+        boolean helpfulActions = firstSearchNode.heuristic.supportsHelpfulActions;
+        if (helpfulActions) {
+            firstSearchNode.context.useHelpfulActions = true;
+            firstSearchNode.helpfulActions = new BitSet();
+        }
+
+        workers = new Worker[numWorkers];
+        for (int i = 0; i < numWorkers; i++) {
+            GroundedProgressionHeuristic heuristic = (i == 0) ? firstSearchNode.heuristic : firstSearchNode.heuristic.copyForWorker();
+            workers[i] = new Worker(i, heuristic, helpfulActions, firstSearchNode.context.randomSeed);
+        }
+        send(firstSearchNode, false);
+
+        timing.start(SEARCH_TIME);
+        Thread[] threads = new Thread[numWorkers];
+        for (int i = 0; i < numWorkers; i++) {
+            threads[i] = new Thread(workers[i], "progression-worker-" + i);
+            threads[i].start();
+        }
+
+        long lastInfo = System.currentTimeMillis();
+        try {
+            while (!stop.get()) {
+                for (Thread t : threads)
+                    t.join(100);
+                if ((wallTime > 0) && ((System.currentTimeMillis() - totalSearchTime) > wallTime)) {
+                    System.out.println("Reached time limit, search will stop.");
+                    exitDueToTimeLimit = true;
+                    stop.set(true);
+                }
+                if (output && ((System.currentTimeMillis() - lastInfo) > 1000)) {
+                    lastInfo = System.currentTimeMillis();
+                    System.out.println("nodes/sec: " + Math.round(searchnodes.get() / ((lastInfo - totalSearchTime) / 1000.0))
+                            + " - generated nodes: " + searchnodes.get()
+                            + " - fringe size: " + fringeSize());
+                }
+            }
+            for (Thread t : threads)
+                t.join();
+        } catch (InterruptedException e) {
+            stop.set(true);
+            Thread.currentThread().interrupt();
+        }
+        timing.stop(SEARCH_TIME);
+        long searchTime = System.currentTimeMillis() - totalSearchTime;
+
+        System.out.println("Number of nodes in final fringe: " + fringeSize());
+        if ((solution == null) && !exitDueToTimeLimit) info.set(Information.SEARCH_SPACE_FULLY_EXPLORED(), "true");
+
+        info.add("30 progression:91:findShortestPlan", 0);
+        info.set(NUM_WORKERS, numWorkers);
+        int duplicates = 0;
+        for (Worker w : workers) {
+            duplicates += w.duplicates;
+            int nodesPerSec = (int) Math.round(w.generated / (Math.max(searchTime, 1) / 1000.0));
+            info.set("30 progression:14:worker-" + w.id + ":nodesPerSec", nodesPerSec);
+            if (output)
+                System.out.println("Worker " + w.id + ": " + w.expanded + " expanded nodes, " + w.generated
+                        + " generated nodes, " + w.duplicates + " duplicates, " + nodesPerSec + " nodes/sec");
+        }
+        info.set(NUM_DUPLICATES, duplicates);
+        if (visitedList != visitedListType.none) {
+            FingerprintVisitedList[] lists = new FingerprintVisitedList[numWorkers];
+            for (int i = 0; i < numWorkers; i++)
+                lists[i] = workers[i].visited;
+            setVisitedListInfo(info, lists);
+        }
+
+        if (solution != null)
+            info.set(STATUS, "solved");
+        else if (exitDueToTimeLimit)
+            info.set(STATUS, "timeout");
+        else
+            info.set(STATUS, "proven_unsolvable");
+
+        if (this.aStar) {
+            info.set(A_STAR, 1);
+        } else {
+            info.set(A_STAR, 0);
+        }
+        info.set(HEURISTIC, firstSearchNode.heuristic.getName());
+        info.set(NUM_SEARCH_NODES, searchnodes.get());
+        setSolInfo(firstSearchNode.context, solution, info);
+
+        if (output) {
+            System.out.println("Generated search nodes (total): " + searchnodes.get());
+            System.out.println("Search time: " + searchTime + " ms");
+        }
+        return solution;
+    }
+
+    @Override
+    public String SearchName() {
+        return "Parallel Priority Queue (" + numWorkers + " workers)";
+    }
+
+    private int fringeSize() {
+        long size = openNodes.get();
+        return (size > Integer.MAX_VALUE) ? Integer.MAX_VALUE : (int) size;
+    }
+
+    /**
+     * Hands a node to its owner. Equal nodes have equal values, i.e. it has to be consistent with the visited list.
+     */
+    private void send(ProgressionNetwork node, boolean helpful) {
+        int h = node.state.hashCode();
+        h = 31 * h + node.getNumberOfTasks();
+        h = 31 * h + node.getNumberOfPrimitiveTasks();
+        h ^= (h >>> 16);
+        Worker owner = workers[(h & Integer.MAX_VALUE) % numWorkers];
+        openNodes.incrementAndGet();
+        if (helpful)
+            owner.prefInbox.add(node);
+        else
+            owner.inbox.add(node);
+    }
+
+    private void foundSolution(ProgressionNetwork node) {
+        if (stop.compareAndSet(false, true)) {
+            solution = node.solution;
+            System.out.println("Found solution length " + node.solution.getPrimitiveCount());
+            if (node.progressionTrace != null)
+                System.out.println(node.progressionTrace);
+        }
+    }
+
+    private class Worker implements Runnable {
+        final int id;
+        final GroundedProgressionHeuristic heuristic;
+        // tie-breaking and task selection are done with a generator of the worker instead of the shared one
+        final Random random;
+        final IFringe<ProgressionNetwork> fringe;
+        final FingerprintVisitedList visited = createVisitedList();
+        final ConcurrentLinkedQueue<ProgressionNetwork> inbox = new ConcurrentLinkedQueue<>();
+        final ConcurrentLinkedQueue<ProgressionNetwork> prefInbox = new ConcurrentLinkedQueue<>();
+
+        int expanded = 0;
+        int generated = 0;
+        int duplicates = 0;
+
+        Worker(int id, GroundedProgressionHeuristic heuristic, boolean helpfulActions, long randomSeed) {
+            this.id = id;
+            this.heuristic = heuristic;
+            this.random = new Random(31 * randomSeed + id);
+            this.fringe = createFringe(helpfulActions, random);
+        }
+
+        @Override
+        public void run() {
+            while (!stop.get()) {
+                receive(inbox, false);
+                receive(prefInbox, true);
+
+                ProgressionNetwork n = fringe.poll();
+                if (n == null) {
+                    if (openNodes.get() == 0) {
+                        stop.set(true); // search space is exhausted
+                    } else {
+                        LockSupport.parkNanos(50000);
+                    }
+                    continue;
+                }
+                expand(n);
+                expanded++;
+                openNodes.decrementAndGet();
+            }
+        }
+
+        private void receive(ConcurrentLinkedQueue<ProgressionNetwork> queue, boolean helpful) {
+            ProgressionNetwork node;
+            while ((node = queue.poll()) != null) {
+                if ((visited != null) && visited.addIfNotIn(node)) {
+                    duplicates++;
+                    openNodes.decrementAndGet();
+                } else {
+                    fringe.add(node, helpful);
+                }
+            }
+        }
+
+        private void expand(ProgressionNetwork n) {
+            for (ProgressionPlanStep ps : n.getFirstPrimitiveTasks()) {
+                if (!n.isApplicable(ps.action))
+                    continue;
+
+                ProgressionNetwork node = n.apply(ps);
+                node.heuristic = heuristic.update(n.heuristic, node, ps);
+                if (evaluate(node)) {
+                    if (node.isGoal()) {
+                        foundSolution(node);
+                        return;
+                    }
+                    send(node, n.isHelpfulAction(ps.action));
+                }
+            }
+
+            if (n.getFirstAbstractTasks().size() == 0) return;
+            ProgressionPlanStep oneAbs = selectAbstractTask(n, random);
+
+            for (ProMethod m : oneAbs.methods) {
+                ProgressionNetwork node = n.decompose(oneAbs, m);
+                node.heuristic = heuristic.update(n.heuristic, node, oneAbs, m);
+                if (evaluate(node))
+                    send(node, n.isHelpfulMethod(m));
+            }
+        }
+
+        /**
+         * Sets the values of a new node and returns whether it has to be kept.
+         */
+        private boolean evaluate(ProgressionNetwork node) {
+            node.id = searchnodes.getAndIncrement();
+            generated++;
+            return evaluateNode(node);
+        }
+    }
+}
@@ -17,20 +17,24 @@
 package de.uniulm.ki.panda3.progression.htn.search.searchRoutine;
 
 import de.uniulm.ki.panda3.configuration.Information;
-import de.uniulm.ki.panda3.progression.TDGReachabilityAnalysis.TaskReachabilityGraph;
-import de.uniulm.ki.panda3.progression.htn.ProPlanningInstance;
+import de.uniulm.ki.panda3.progression.heuristics.htn.GroundedProgressionHeuristic;
 import de.uniulm.ki.panda3.progression.htn.representation.ProMethod;
+import de.uniulm.ki.panda3.progression.htn.search.ProgressionContext;
 import de.uniulm.ki.panda3.progression.htn.search.SolutionStep;
 import de.uniulm.ki.panda3.progression.htn.search.ProgressionNetwork;
 import de.uniulm.ki.panda3.progression.htn.search.ProgressionPlanStep;
 import de.uniulm.ki.panda3.progression.htn.search.fringe.AlternatingFringe;
+import de.uniulm.ki.panda3.progression.htn.search.fringe.BucketFringe;
 import de.uniulm.ki.panda3.progression.htn.search.fringe.IFringe;
+import de.uniulm.ki.panda3.progression.htn.search.fringe.MultiQueueFringe;
 import de.uniulm.ki.panda3.progression.htn.search.fringe.QueueBasedFringe;
+import de.uniulm.ki.panda3.progression.htn.search.loopDetection.FingerprintVisitedList;
 import de.uniulm.ki.panda3.symbolic.domain.SimpleDecompositionMethod;
 import de.uniulm.ki.util.InformationCapsule;
 import de.uniulm.ki.util.TimeCapsule;
 
 import java.util.*;
+import java.util.function.Consumer;
 
 /**
  * Created by dh on 15.09.16.
@@ -50,17 +54,50 @@ public class PriorityQueueSearch extends ProgressionSearchRoutine {
         }
     }
 
+    static public enum visitedListType {
+        none, fingerprint, exact;
+
+        public static visitedListType parse(String text) {
+            if (text.equals("none")) return none;
+            if (text.equals("fingerprint")) return fingerprint;
+            if (text.equals("exact")) return exact;
+            throw new IllegalArgumentException("Unknown visited list " + text);
+        }
+    }
+
+    static public enum openListType {
+        heap, bucket, alternation;
+
+        public static openListType parse(String text) {
+            if (text.equals("heap")) return heap;
+            if (text.equals("bucket")) return bucket;
+            if (text.equals("alternation")) return alternation;
+            throw new IllegalArgumentException("Unknown open list " + text);
+        }
+    }
+
     public static final String SEARCH_TIME = "30 progression:01:searchTime";
     public static final String STATUS = "30 progression:01:status";
     public static final String A_STAR = "30 progression:02:aStar";
     public static final String HEURISTIC = "30 progression:03:heuristic";
     public static final String NUM_SEARCH_NODES = "30 progression:04:numSearchNodes";
+    public static final String NUM_EVALUATIONS = "30 progression:05:numEvaluations";
     public static final String NUM_PRIM_TASKS = "30 progression:06:numPrimTasks";
     public static final String NUM_SHOP_TASKS = "30 progression:07:numShopTasks";
     public static final String NUM_DECOMPOSITIONS = "30 progression:08:numDecompositions";
     public static final String INFERRED_TLT = "30 progression:09:inferredTlt";
     public static final String ENFORCED_PREFIX_LENGTH = "30 progression:10:enforcedPrefixLength";
     public static final String SOLUTION = "30 progression:11:solution";
+    public static final String VISITED_CALLS = "30 progression:15:visitedList:calls";
+    public static final String VISITED_HITS = "30 progression:16:visitedList:hits";
+    public static final String VISITED_HIT_RATE = "30 progression:17:visitedList:hitRate";
+    public static final String VISITED_COLLISIONS = "30 progression:18:visitedList:collisions";
+    public static final String VISITED_MEMORY = "30 progression:19:visitedList:memoryKB";
+    public static final String VISITED_TIME = "30 progression:20:visitedList:time";
+    public static final String OPEN_LIST_EVICTIONS = "30 progression:21:openList:evictions";
+    public static final String ANYTIME_PHASES = "30 progression:25:anytime:phases";
+    public static final String ANYTIME_LAST_WEIGHT = "30 progression:26:anytime:lastWeight";
+    public static final String OPEN_LIST_BOOSTS = "30 progression:27:openList:boosts";
 
     private boolean findShortest = false;
     boolean aStar = true;
@@ -86,6 +123,82 @@ public class PriorityQueueSearch extends ProgressionSearchRoutine {
     }
 
     abstractTaskSelection taskSelection = abstractTaskSelection.random;
+    public visitedListType visitedList = visitedListType.none;
+    public openListType openList = openListType.heap;
+    // maximal number of nodes kept in a bucket based open list, 0 means unlimited
+    public int openListCapacity = 0;
+    // heuristics that get queues of their own in an alternation open list besides the one of the main heuristic, the
+    // weights of the queues (null means equal weights) and for how many expansions the preferred queues are boosted
+    // when a node with a new best heuristic value is found
+    public GroundedProgressionHeuristic[] additionalHeuristics = new GroundedProgressionHeuristic[0];
+    public int[] alternationWeights = null;
+    public int preferredBoost = 1000;
+
+    // weights of the weighted A* searches done by searchAnytime after the first solution has been found, each of them
+    // starts from the initial network and prunes only by the number of actions of the best solution
+    public int[] anytimeWeights = {5, 3, 2, 1};
+    // is informed about every solution found by searchAnytime that is better than the ones before
+    public Consumer<SolutionStep> solutionListener = null;
+
+    /**
+     * Returns a new fringe of the configured type. If helpful actions are used, preferred nodes are expanded in turns
+     * with the other ones.
+     */
+    protected IFringe<ProgressionNetwork> createFringe(boolean helpfulActions) {
+        return createFringe(helpfulActions, null);
+    }
+
+    /**
+     * Like createFringe(helpfulActions), but the heap based fringes break ties with the given random generator (if it
+     * is not null) instead of the one of the context.
+     */
+    protected IFringe<ProgressionNetwork> createFringe(boolean helpfulActions, Random random) {
+        Comparator<ProgressionNetwork> comparator = (random == null) ? null : (n1, n2) -> n1.compareTo(n2, random);
+        if ((openList == openListType.alternation) || (additionalHeuristics.length > 0))
+            return new MultiQueueFringe(1 + additionalHeuristics.length, helpfulActions, alternationWeights, preferredBoost);
+        if (openList == openListType.bucket) {
+            BucketFringe fringe = new BucketFringe(helpfulActions);
+            if (openListCapacity > 0)
+                fringe.setCapacity(openListCapacity);
+            return fringe;
+        }
+        if (helpfulActions)
+            return (comparator == null) ? new AlternatingFringe<>() : new AlternatingFringe<>(comparator);
+        return (comparator == null) ? new QueueBasedFringe<>() : new QueueBasedFringe<>(comparator);
+    }
+
+    /**
+     * Returns a new visited list of the configured type or null if duplicates shall not be detected.
+     */
+    protected FingerprintVisitedList createVisitedList() {
+        if (visitedList == visitedListType.none)
+            return null;
+        return new FingerprintVisitedList(visitedList == visitedListType.exact);
+    }
+
+    protected void setVisitedListInfo(InformationCapsule info, FingerprintVisitedList... lists) {
+        int calls = 0;
+        int hits = 0;
+        int collisions = 0;
+        long memory = 0;
+        long time = 0;
+        for (FingerprintVisitedList visited : lists) {
+            calls += visited.getNumCalls();
+            hits += visited.getNumHits();
+            collisions += visited.getNumCollisions();
+            memory += visited.getMemoryUsage();
+            time += visited.getTotalTime();
+        }
+        info.set(VISITED_CALLS, calls);
+        info.set(VISITED_HITS, hits);
+        info.set(VISITED_HIT_RATE, String.format(Locale.US, "%.4f", (calls == 0) ? 0.0 : ((double) hits) / calls));
+        info.set(VISITED_COLLISIONS, collisions);
+        info.set(VISITED_MEMORY, (int) (memory / 1024));
+        info.set(VISITED_TIME, (int) time);
+        if (output)
+            System.out.println("Visited list: " + hits + " of " + calls + " nodes were duplicates, "
+                    + (memory / 1024) + " KB, " + time + " ms");
+    }
 
     public SolutionStep search(ProgressionNetwork firstSearchNode, InformationCapsule info, TimeCapsule timing) {
         if (output)
@@ -101,15 +214,15 @@ public class PriorityQueueSearch extends ProgressionSearchRoutine {
         int checkAfter = 5000;
         int sinceCheck = 0;
 
-        IFringe<ProgressionNetwork> fringe;
+        IFringe<ProgressionNetwork> fringe = createFringe(firstSearchNode.heuristic.supportsHelpfulActions);
         if (firstSearchNode.heuristic.supportsHelpfulActions) {
-            ProgressionNetwork.useHelpfulActions = true;
-            fringe = new AlternatingFringe<>();
+            firstSearchNode.context.useHelpfulActions = true;
             firstSearchNode.helpfulActions = new BitSet();
-        } else {
-            fringe = new QueueBasedFringe<>();
         }
         fringe.add(firstSearchNode);
+        FingerprintVisitedList visited = createVisitedList();
+        if (visited != null)
+            visited.addIfNotIn(firstSearchNode);
         SolutionStep solution = null;
 
         timing.start(SEARCH_TIME);
@@ -128,19 +241,10 @@ public class PriorityQueueSearch extends ProgressionSearchRoutine {
                 node.id = searchnodes++;
                 sinceCheck++;
                 node.heuristic = n.heuristic.update(node, ps);
-                node.goalRelaxedReachable = node.heuristic.goalRelaxedReachable();
-                if (node.goalRelaxedReachable) {
-                    node.heuristicVal = node.heuristic.getHeuristic();
-                    if (aStar) {
-                        node.metric = node.heuristicVal + (node.solution.getLength() / greediness);
-                    } else {
-                        node.metric = node.heuristicVal;
-                    }
-
-                    if (node.heuristic.supportsHelpfulActions) {
-                        node.helpfulActions = node.heuristic.helpfulOps();
+                if (evaluateNode(node)) {
+                    if (node.heuristic.supportsHelpfulActions)
                         helpfulAction = n.isHelpfulAction(ps.action);
-                    }
+                    evaluateAdditionalHeuristics(n, node, ps, null, 1);
 
                     // early goal test - NON-OPTIMAL
                     if (node.isGoal()) {
@@ -160,7 +264,7 @@ public class PriorityQueueSearch extends ProgressionSearchRoutine {
                         if (!findShortest) {
                             break planningloop;
                         }
-                    } else {
+                    } else if ((visited == null) || !visited.addIfNotIn(node)) {
                         fringe.add(node, helpfulAction);
                     }
                 }
@@ -168,33 +272,7 @@ public class PriorityQueueSearch extends ProgressionSearchRoutine {
 
             if (n.getFirstAbstractTasks().size() == 0) continue planningloop;
             // which task shall be decomposed?
-            ProgressionPlanStep oneAbs = null;
-            if (taskSelection == abstractTaskSelection.random)
-                oneAbs = n.getFirstAbstractTasks().get(ProPlanningInstance.random.nextInt(n.getFirstAbstractTasks().size()));
-            else if (taskSelection == abstractTaskSelection.methodCount) { // minimize branching
-                int minMethods = Integer.MAX_VALUE;
-                for (ProgressionPlanStep ps : n.getFirstAbstractTasks()) {
-                    if (ps.methods.size() < minMethods) {
-                        minMethods = ps.methods.size();
-                        oneAbs = ps;
-                    } else if ((ps.methods.size() == minMethods) && (ProPlanningInstance.random.nextBoolean())) {
-                        minMethods = ps.methods.size();
-                        oneAbs = ps;
-                    }
-                }
-            } else {
-                int minDepth = Integer.MAX_VALUE;
-                for (ProgressionPlanStep ps : n.getFirstAbstractTasks()) {
-                    int depth = TaskReachabilityGraph.maxDecompDepth[TaskReachabilityGraph.tToI(ps.getTask())];
-                    if (depth < minDepth) {
-                        minDepth = depth;
-                        oneAbs = ps;
-                    } else if ((ps.methods.size() == minDepth) && (ProPlanningInstance.random.nextBoolean())) {
-                        minDepth = ps.methods.size();
-                        oneAbs = ps;
-                    }
-                }
-            }
+            ProgressionPlanStep oneAbs = selectAbstractTask(n);
 
             methodloop:
             for (ProMethod m : oneAbs.methods) {
@@ -203,22 +281,14 @@ public class PriorityQueueSearch extends ProgressionSearchRoutine {
                 node.heuristic = n.heuristic.update(node, oneAbs, m);
                 node.id = searchnodes++;
                 sinceCheck++;
-                node.goalRelaxedReachable = node.heuristic.goalRelaxedReachable();
-
-                if (node.goalRelaxedReachable) {
-                    node.heuristicVal = node.heuristic.getHeuristic();
-                    if (aStar) {
-                        node.metric = node.heuristicVal + (node.solution.getLength() / greediness);
-                    } else {
-                        node.metric = node.heuristicVal;
-                    }
 
-                    if (node.heuristic.supportsHelpfulActions) {
-                        node.helpfulActions = node.heuristic.helpfulOps();
+                if (evaluateNode(node)) {
+                    if (node.heuristic.supportsHelpfulActions)
                         helpfulAction = n.isHelpfulMethod(m);
-                    }
+                    evaluateAdditionalHeuristics(n, node, oneAbs, m, 1);
 
-                    fringe.add(node, helpfulAction);
+                    if ((visited == null) || !visited.addIfNotIn(node))
+                        fringe.add(node, helpfulAction);
                 }
             }
             if ((sinceCheck >= checkAfter) && ((System.currentTimeMillis() - lastInfo) > 1000)) {
@@ -234,7 +304,13 @@ public class PriorityQueueSearch extends ProgressionSearchRoutine {
             }
         }
         System.out.println("Number of nodes in final fringe: " + fringe.size());
-        if (fringe.size() == 0) info.set(Information.SEARCH_SPACE_FULLY_EXPLORED(), "true");
+        if (fringe instanceof BucketFringe)
+            info.set(OPEN_LIST_EVICTIONS, ((BucketFringe) fringe).getNumberOfEvictions());
+        if (fringe instanceof MultiQueueFringe)
+            info.set(OPEN_LIST_BOOSTS, ((MultiQueueFringe) fringe).getNumberOfBoosts());
+        // nodes dropped from a bounded open list might have lead to a solution
+        if ((fringe.size() == 0) && !((fringe instanceof BucketFringe) && ((BucketFringe) fringe).getNumberOfEvictions() > 0))
+            info.set(Information.SEARCH_SPACE_FULLY_EXPLORED(), "true");
         timing.stop(SEARCH_TIME);
 
         if (this.findShortest)
@@ -262,7 +338,9 @@ public class PriorityQueueSearch extends ProgressionSearchRoutine {
         info.set(HEURISTIC, firstSearchNode.heuristic.getName());
 
         info.set(NUM_SEARCH_NODES, searchnodes);
-        setSolInfo(solution, info);
+        if (visited != null)
+            setVisitedListInfo(info, visited);
+        setSolInfo(firstSearchNode.context, solution, info);
 
         if (output) {
             System.out.println("Generated search nodes (total): " + searchnodes);
@@ -271,6 +349,220 @@ public class PriorityQueueSearch extends ProgressionSearchRoutine {
         return solution;
     }
 
+    /**
+     * Anytime search. The first solution is searched for with the configured search, afterwards weighted A* searches
+     * (f = g + w * h) with the weights in anytimeWeights are done. Every search stops as soon as it has found a
+     * solution with fewer actions than the best one so far, only the one with the last weight continues until its
+     * fringe is empty. Each new best solution is passed to the solution listener, the best one is returned when the
+     * search ends or the time limit is reached.
+     * <p>
+     * The best solution is only used as a bound on the plan length: a network is pruned if the number of primitive
+     * actions already in its solution is at least the one of the best solution. The heuristic value is not part of the
+     * bound (i.e. there is no g + h pruning), since the progression heuristics are in general not admissible.
+     * Furthermore, each weighted search restarts from the initial network with a new fringe and visited list, i.e.
+     * networks expanded by an earlier search are generated and evaluated again. If the last search empties its fringe
+     * and no visited list is used (it does not take the number of actions of a network into account), there is no plan
+     * with fewer actions.
+     */
+    public SolutionStep searchAnytime(ProgressionNetwork firstSearchNode, InformationCapsule info, TimeCapsule timing) {
+        long totalSearchTime = System.currentTimeMillis();
+        SolutionStep best = search(firstSearchNode, info, timing);
+        if ((best == null) || exitDueToTimeLimit)
+            return best;
+        int bestCost = best.getPrimitiveCount();
+        if (solutionListener != null)
+            solutionListener.accept(best);
+        int foundPlans = 1;
+        int searchnodes = 0;
+        long lastInfo = System.currentTimeMillis();
+        int checkAfter = 5000;
+        int sinceCheck = 0;
+        boolean helpfulActions = firstSearchNode.heuristic.supportsHelpfulActions;
+
+        timing.start(SEARCH_TIME);
+        int phase = 0;
+        phaseloop:
+        for (; phase < anytimeWeights.length; phase++) {
+            int weight = anytimeWeights[phase];
+            boolean lastPhase = phase == anytimeWeights.length - 1;
+            if (output)
+                System.out.println("Starting weighted A* search with weight " + weight + ", plans must have less than " + bestCost + " actions");
+
+            IFringe<ProgressionNetwork> fringe = createFringe(helpfulActions);
+            fringe.add(firstSearchNode);
+            FingerprintVisitedList visited = createVisitedList();
+            if (visited != null)
+                visited.addIfNotIn(firstSearchNode);
+
+            planningloop:
+            while (!fringe.isEmpty()) {
+                ProgressionNetwork n = fringe.poll();
+                // the bound might have been decreased since the network has been added
+                if (n.solution.getPrimitiveCount() >= bestCost)
+                    continue planningloop;
+
+                for (ProgressionPlanStep ps : n.getFirstPrimitiveTasks()) {
+                    if (!n.isApplicable(ps.action))
+                        continue;
+                    ProgressionNetwork node = n.apply(ps);
+                    node.id = searchnodes++;
+                    sinceCheck++;
+                    if (node.solution.getPrimitiveCount() >= bestCost)
+                        continue;
+                    node.heuristic = n.heuristic.update(node, ps);
+                    if (!evaluateWeighted(node, weight))
+                        continue;
+                    evaluateAdditionalHeuristics(n, node, ps, null, weight);
+
+                    if (node.isGoal()) {
+                        best = node.solution;
+                        bestCost = best.getPrimitiveCount();
+                        foundPlans++;
+                        System.out.println("Found solution " + foundPlans + " length " + bestCost + " (weight " + weight + ")");
+                        if (solutionListener != null)
+                            solutionListener.accept(best);
+                        if (!lastPhase)
+                            continue phaseloop;
+                    } else if ((visited == null) || !visited.addIfNotIn(node))
+                        fringe.add(node, n.isHelpfulAction(ps.action));
+                }
+
+                if (n.getFirstAbstractTasks().size() > 0) {
+                    ProgressionPlanStep oneAbs = selectAbstractTask(n);
+                    for (ProMethod m : oneAbs.methods) {
+                        ProgressionNetwork node = n.decompose(oneAbs, m);
+                        node.id = searchnodes++;
+                        sinceCheck++;
+                        node.heuristic = n.heuristic.update(node, oneAbs, m);
+                        if (!evaluateWeighted(node, weight))
+                            continue;
+                        evaluateAdditionalHeuristics(n, node, oneAbs, m, weight);
+                        if ((visited == null) || !visited.addIfNotIn(node))
+                            fringe.add(node, n.isHelpfulMethod(m));
+                    }
+                }
+
+                if ((sinceCheck >= checkAfter) && ((System.currentTimeMillis() - lastInfo) > 1000)) {
+                    sinceCheck = 0;
+                    if ((wallTime > 0) && ((System.currentTimeMillis() - totalSearchTime) > wallTime)) {
+                        System.out.println("Reached time limit, returning the best solution found so far.");
+                        exitDueToTimeLimit = true;
+                        break phaseloop;
+                    }
+                    lastInfo = System.currentTimeMillis();
+                    if (output)
+                        System.out.println(getInfoStr(searchnodes, fringe.size(), weight, n, totalSearchTime));
+                }
+            }
+        }
+        timing.stop(SEARCH_TIME);
+
+        info.set(STATUS, "solved");
+        info.add(NUM_SEARCH_NODES, searchnodes);
+        info.set("30 progression:94:foundPlans", foundPlans);
+        info.set(ANYTIME_PHASES, Math.min(phase + 1, anytimeWeights.length));
+        info.set(ANYTIME_LAST_WEIGHT, anytimeWeights[Math.min(phase, anytimeWeights.length - 1)]);
+        setSolInfo(firstSearchNode.context, best, info);
+        if (output)
+            System.out.println("Anytime search found " + foundPlans + " plans, the best one has " + bestCost + " actions");
+        return best;
+    }
+
+    /**
+     * Computes the values of the additional heuristics of a new network that has been created from the given parent
+     * by applying ps or by decomposing it with m. The metric of each heuristic uses the same path costs and weight as
+     * the one of the main heuristic, whose metric has to be computed before.
+     */
+    protected void evaluateAdditionalHeuristics(ProgressionNetwork parent, ProgressionNetwork node, ProgressionPlanStep ps, ProMethod m, int weight) {
+        if (parent.additionalHeuristics == null)
+            return;
+        int num = parent.additionalHeuristics.length;
+        node.additionalHeuristics = new GroundedProgressionHeuristic[num];
+        node.additionalHeuristicVals = new int[num];
+        node.additionalMetrics = new int[num];
+        for (int i = 0; i < num; i++) {
+            GroundedProgressionHeuristic h = (m == null) ? parent.additionalHeuristics[i].update(node, ps) : parent.additionalHeuristics[i].update(node, ps, m);
+            node.additionalHeuristics[i] = h;
+            node.additionalHeuristicVals[i] = h.getHeuristic();
+            node.additionalMetrics[i] = node.metric + weight * (node.additionalHeuristicVals[i] - node.heuristicVal);
+        }
+    }
+
+    /**
+     * Computes the heuristic value and the metric of a new network whose heuristic has been set. Returns false if the
+     * goal is not relaxed reachable from it.
+     */
+    protected boolean evaluateNode(ProgressionNetwork node) {
+        node.goalRelaxedReachable = node.heuristic.goalRelaxedReachable();
+        if (!node.goalRelaxedReachable)
+            return false;
+        node.heuristicVal = node.heuristic.getHeuristic();
+        if (aStar) {
+            node.metric = node.heuristicVal + (node.solution.getLength() / greediness);
+        } else {
+            node.metric = node.heuristicVal;
+        }
+        if (node.heuristic.supportsHelpfulActions)
+            node.helpfulActions = node.heuristic.helpfulOps();
+        return true;
+    }
+
+    /**
+     * Computes the heuristic value and the weighted A* metric of a new network. Returns false if the goal is not
+     * relaxed reachable from it.
+     */
+    private boolean evaluateWeighted(ProgressionNetwork node, int weight) {
+        node.goalRelaxedReachable = node.heuristic.goalRelaxedReachable();
+        if (!node.goalRelaxedReachable)
+            return false;
+        node.heuristicVal = node.heuristic.getHeuristic();
+        node.metric = node.solution.getLength() + weight * node.heuristicVal;
+        if (node.heuristic.supportsHelpfulActions)
+            node.helpfulActions = node.heuristic.helpfulOps();
+        return true;
+    }
+
+    /**
+     * Chooses the abstract task of the given network that is decomposed next.
+     */
+    protected ProgressionPlanStep selectAbstractTask(ProgressionNetwork n) {
+        return selectAbstractTask(n, n.context.random);
+    }
+
+    /**
+     * Like selectAbstractTask(n), but random choices are made with the given generator.
+     */
+    protected ProgressionPlanStep selectAbstractTask(ProgressionNetwork n, Random random) {
+        ProgressionPlanStep oneAbs = null;
+        if (taskSelection == abstractTaskSelection.random)
+            oneAbs = n.getFirstAbstractTasks().get(random.nextInt(n.getFirstAbstractTasks().size()));
+        else if (taskSelection == abstractTaskSelection.methodCount) { // minimize branching
+            int minMethods = Integer.MAX_VALUE;
+            for (ProgressionPlanStep ps : n.getFirstAbstractTasks()) {
+                if (ps.methods.size() < minMethods) {
+                    minMethods = ps.methods.size();
+                    oneAbs = ps;
+                } else if ((ps.methods.size() == minMethods) && (random.nextBoolean())) {
+                    minMethods = ps.methods.size();
+                    oneAbs = ps;
+                }
+            }
+        } else {
+            int minDepth = Integer.MAX_VALUE;
+            for (ProgressionPlanStep ps : n.getFirstAbstractTasks()) {
+                int depth = n.context.maxDecompDepth[ps.taskIndex];
+                if (depth < minDepth) {
+                    minDepth = depth;
+                    oneAbs = ps;
+                } else if ((ps.methods.size() == minDepth) && (random.nextBoolean())) {
+                    minDepth = ps.methods.size();
+                    oneAbs = ps;
+                }
+            }
+        }
+        return oneAbs;
+    }
+
     // ABSTRACT CHOICE
     public SolutionStep searchWithAbstractBranching(ProgressionNetwork firstSearchNode, InformationCapsule info, TimeCapsule timing) {
         if (output)
@@ -393,7 +685,7 @@ public class PriorityQueueSearch extends ProgressionSearchRoutine {
         info.set(HEURISTIC, firstSearchNode.heuristic.getClass().toString());
 
         info.set(NUM_SEARCH_NODES, searchnodes);
-        setSolInfo(solution, info);
+        setSolInfo(firstSearchNode.context, solution, info);
 
         if (output)
             System.out.println("Generated search nodes (total): " + searchnodes);
@@ -407,7 +699,7 @@ public class PriorityQueueSearch extends ProgressionSearchRoutine {
         return "Priority Queue";
     }
 
-    private void setSolInfo(SolutionStep solution, InformationCapsule ic) {
+    protected void setSolInfo(ProgressionContext context, SolutionStep solution, InformationCapsule ic) {
         String PrimitivePlan = "";
         String FirstDecTask = "";
         int numPrim = 0;
@@ -418,14 +710,14 @@ public class PriorityQueueSearch extends ProgressionSearchRoutine {
         if (solution != null) {
             for (Object a : solution.getSolution()) {
                 if (a instanceof Integer) {
-                    if (ProgressionNetwork.ShopPrecActions.contains(a))
+                    if (context.shopPrecActions.contains(a))
                         numShop++;
                     else {
                         numPrim++;
                         if (PrimitivePlan.length() > 0) {
                             PrimitivePlan += "&";
                         }
-                        String primName = ProgressionNetwork.indexToTask[(Integer) a].longInfo();
+                        String primName = context.indexToTask[(Integer) a].longInfo();
                         PrimitivePlan += primName;
                         if (primName.startsWith("p_") && (primName.charAt(2) == '0' ||
                                 primName.charAt(2) == '1' ||
@@ -0,0 +1,499 @@
+// PANDA 3 -- a domain-independent planner for classical and hierarchical planning
+// Copyright (C) 2014-2018 the original author or authors.
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package de.uniulm.ki.panda3.util.fastIntegerDataStructures;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+
+/**
+ * Priority queue for search nodes with integer priorities (e.g. f-values). There is one bucket per priority, inside
+ * a bucket the elements are ordered by a second integer (e.g. the heuristic value or the depth) and the order of
+ * insertion (FIFO or LIFO). Buckets are binary heaps over a single long that combines the tie-breaker and the
+ * insertion number, i.e. no objects are created when an element is added.
+ * <p>
+ * Keys can be changed lazily with update(): the element is inserted again and its old entry is skipped when it
+ * reaches the front of the queue. If a capacity is set, the worst elements are dropped whenever the queue gets larger.
+ * <p>
+ * The buckets cover the range from the smallest to the largest key inserted so far. If this range would get larger
+ * than the maximal bucket span, all elements are moved into a single binary heap ordered by key, tie-breaker and
+ * insertion, which is used until the queue is cleared.
+ */
+public class UUBucketPriorityQueue<T> {
+    private static final int INITIAL_BUCKETS = 64;
+    private static final int INITIAL_BUCKET_SIZE = 8;
+    public static final int DEFAULT_MAX_BUCKET_SPAN = 1 << 16;
+
+    private final boolean fifo;
+    private final int maxBucketSpan;
+
+    // bucket i contains the elements with key i + keyOffset
+    private long[][] bucketKeys = new long[INITIAL_BUCKETS][];
+    private Object[][] bucketElements = new Object[INITIAL_BUCKETS][];
+    private int[] bucketSizes = new int[INITIAL_BUCKETS];
+    private int keyOffset = 0;
+    private boolean keyOffsetSet = false;
+
+    // all buckets below this one are empty
+    private int minBucket = Integer.MAX_VALUE;
+    private int maxBucket = -1;
+
+    private int entries = 0;
+    private int staleEntries = 0;
+    private int insertions = 0;
+
+    private int capacity = Integer.MAX_VALUE;
+    private int evictions = 0;
+
+    // used instead of the buckets once the keys span more than maxBucketSpan values
+    private boolean heapMode = false;
+    private int[] heapKeys;
+    private long[] heapEntryKeys;
+    private Object[] heapElements;
+
+    // for all elements inserted via update: the insertion number of their current entry (-1 if it has already been
+    // removed) and the number of their entries that are still in the queue
+    private IdentityHashMap<T, int[]> currentEntry = null;
+
+    public UUBucketPriorityQueue() {
+        this(true);
+    }
+
+    /**
+     * @param fifo whether elements with the same key and tie-breaker are returned in the order they were inserted
+     *             (otherwise the one inserted last is returned first)
+     */
+    public UUBucketPriorityQueue(boolean fifo) {
+        this(fifo, DEFAULT_MAX_BUCKET_SPAN);
+    }
+
+    /**
+     * @param maxBucketSpan the maximal number of buckets, i.e. of different keys between the smallest and the largest
+     *                      one, before the queue switches to a single heap
+     */
+    public UUBucketPriorityQueue(boolean fifo, int maxBucketSpan) {
+        assert maxBucketSpan >= INITIAL_BUCKETS;
+        this.fifo = fifo;
+        this.maxBucketSpan = maxBucketSpan;
+    }
+
+    public void add(T element, int key) {
+        add(element, key, 0);
+    }
+
+    /**
+     * Inserts the element. Smaller keys are returned first, elements with equal keys are ordered by the tie-breaker
+     * (smaller first).
+     */
+    public void add(T element, int key, int tieBreaker) {
+        insert(element, key, tieBreaker);
+        while (size() > capacity)
+            evict();
+    }
+
+    /**
+     * Inserts the element or changes its key, if it has been inserted via this method before and has not been
+     * removed from the queue yet. The old entry stays in the queue, but will never be returned. Elements inserted via
+     * add must not be passed to this method.
+     */
+    public void update(T element, int key, int tieBreaker) {
+        if (currentEntry == null)
+            currentEntry = new IdentityHashMap<>();
+        int number = insert(element, key, tieBreaker);
+        int[] entry = currentEntry.get(element);
+        if (entry == null)
+            currentEntry.put(element, new int[]{number, 1});
+        else {
+            if (entry[0] != -1)
+                staleEntries++;
+            entry[0] = number;
+            entry[1]++;
+        }
+        while (size() > capacity)
+            evict();
+    }
+
+    public T poll() {
+        while (entries > 0) {
+            if (heapMode) {
+                long key = heapEntryKeys[0];
+                @SuppressWarnings("unchecked")
+                T element = (T) heapElements[0];
+                heapRemove(0);
+                if (isCurrent(element, key))
+                    return element;
+                continue;
+            }
+            while (bucketSizes[minBucket] == 0)
+                minBucket++;
+            int bucket = minBucket;
+            long key = bucketKeys[bucket][0];
+            @SuppressWarnings("unchecked")
+            T element = (T) bucketElements[bucket][0];
+            removeFirst(bucket);
+            if (isCurrent(element, key))
+                return element;
+        }
+        return null;
+    }
+
+    /**
+     * returns the key of the element that would be returned by poll. Note that this might be the key of an old entry
+     * of an updated element.
+     */
+    public int peekKey() {
+        assert entries > 0;
+        if (heapMode)
+            return heapKeys[0];
+        while (bucketSizes[minBucket] == 0)
+            minBucket++;
+        return minBucket + keyOffset;
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public int size() {
+        return entries - staleEntries;
+    }
+
+    public void clear() {
+        if (heapMode) {
+            heapMode = false;
+            heapKeys = null;
+            heapEntryKeys = null;
+            heapElements = null;
+            bucketKeys = new long[INITIAL_BUCKETS][];
+            bucketElements = new Object[INITIAL_BUCKETS][];
+            bucketSizes = new int[INITIAL_BUCKETS];
+            keyOffsetSet = false;
+        }
+        for (int i = 0; i < bucketSizes.length; i++) {
+            if (bucketElements[i] != null)
+                Arrays.fill(bucketElements[i], 0, bucketSizes[i], null);
+            bucketSizes[i] = 0;
+        }
+        entries = 0;
+        staleEntries = 0;
+        minBucket = Integer.MAX_VALUE;
+        maxBucket = -1;
+        if (currentEntry != null)
+            currentEntry.clear();
+    }
+
+    /**
+     * Limits the number of elements in the queue. If it contains more, the elements with the largest keys are removed.
+     */
+    public void setCapacity(int capacity) {
+        assert capacity > 0;
+        this.capacity = capacity;
+        while (size() > capacity)
+            evict();
+    }
+
+    public int getNumberOfEvictions() {
+        return evictions;
+    }
+
+    private int insert(T element, int key, int tieBreaker) {
+        int number = insertions++;
+        long entryKey = ((long) tieBreaker << 32) | ((fifo ? number : ~number) & 0xFFFFFFFFL);
+
+        if (!heapMode) {
+            if (!keyOffsetSet) {
+                // leave some room for smaller keys
+                keyOffset = key - INITIAL_BUCKETS / 4;
+                keyOffsetSet = true;
+            }
+            long bucket = (long) key - keyOffset;
+            if ((bucket < 0 && bucketSizes.length - bucket > maxBucketSpan) || bucket >= maxBucketSpan)
+                switchToHeap();
+            else if (bucket < 0)
+                shiftBuckets((int) -bucket);
+            else if (bucket >= bucketSizes.length)
+                growBuckets((int) bucket + 1);
+        }
+        if (heapMode) {
+            heapInsert(key, entryKey, element);
+            entries++;
+            return number;
+        }
+        int bucket = key - keyOffset;
+
+        if (bucketKeys[bucket] == null) {
+            bucketKeys[bucket] = new long[INITIAL_BUCKET_SIZE];
+            bucketElements[bucket] = new Object[INITIAL_BUCKET_SIZE];
+        } else if (bucketSizes[bucket] == bucketKeys[bucket].length) {
+            bucketKeys[bucket] = Arrays.copyOf(bucketKeys[bucket], 2 * bucketSizes[bucket]);
+            bucketElements[bucket] = Arrays.copyOf(bucketElements[bucket], 2 * bucketSizes[bucket]);
+        }
+
+        // sift up
+        long[] keys = bucketKeys[bucket];
+        Object[] elements = bucketElements[bucket];
+        int pos = bucketSizes[bucket]++;
+        while (pos > 0) {
+            int parent = (pos - 1) >>> 1;
+            if (keys[parent] <= entryKey)
+                break;
+            keys[pos] = keys[parent];
+            elements[pos] = elements[parent];
+            pos = parent;
+        }
+        keys[pos] = entryKey;
+        elements[pos] = element;
+
+        entries++;
+        if (bucket < minBucket)
+            minBucket = bucket;
+        if (bucket > maxBucket)
+            maxBucket = bucket;
+        return number;
+    }
+
+    private boolean isCurrent(T element, long entryKey) {
+        if (currentEntry == null)
+            return true;
+        int[] entry = currentEntry.get(element);
+        if (entry == null)
+            return true;
+        if (--entry[1] == 0)
+            currentEntry.remove(element);
+        int number = (int) (fifo ? entryKey : ~entryKey);
+        if (entry[0] == number) {
+            entry[0] = -1;
+            return true;
+        }
+        staleEntries--;
+        return false;
+    }
+
+    private void removeFirst(int bucket) {
+        long[] keys = bucketKeys[bucket];
+        Object[] elements = bucketElements[bucket];
+        int size = --bucketSizes[bucket];
+        long lastKey = keys[size];
+        Object lastElement = elements[size];
+        elements[size] = null;
+        entries--;
+        if (size == 0)
+            return;
+
+        // sift down
+        int pos = 0;
+        while (true) {
+            int child = 2 * pos + 1;
+            if (child >= size)
+                break;
+            if (child + 1 < size && keys[child + 1] < keys[child])
+                child++;
+            if (lastKey <= keys[child])
+                break;
+            keys[pos] = keys[child];
+            elements[pos] = elements[child];
+            pos = child;
+        }
+        keys[pos] = lastKey;
+        elements[pos] = lastElement;
+    }
+
+    /**
+     * removes the worst entry of the queue. If the worst bucket contains stale entries they might be removed instead.
+     */
+    private void evict() {
+        if (heapMode) {
+            // the worst entry of a heap is one of its leaves
+            int worst = entries >>> 1;
+            for (int i = worst + 1; i < entries; i++)
+                if (heapGreater(i, worst))
+                    worst = i;
+            @SuppressWarnings("unchecked")
+            T element = (T) heapElements[worst];
+            if (isCurrent(element, heapEntryKeys[worst]))
+                evictions++;
+            heapRemove(worst);
+            return;
+        }
+        while (bucketSizes[maxBucket] == 0)
+            maxBucket--;
+        int bucket = maxBucket;
+        long[] keys = bucketKeys[bucket];
+        Object[] elements = bucketElements[bucket];
+        int size = bucketSizes[bucket];
+
+        // the worst entry of a heap is one of its leaves
+        int worst = size >>> 1;
+        for (int i = worst + 1; i < size; i++)
+            if (keys[i] > keys[worst])
+                worst = i;
+
+        @SuppressWarnings("unchecked")
+        T element = (T) elements[worst];
+        boolean current = isCurrent(element, keys[worst]);
+
+        // the last entry takes the place of the removed leaf, it only might have to move up
+        long lastKey = keys[size - 1];
+        Object lastElement = elements[size - 1];
+        elements[size - 1] = null;
+        bucketSizes[bucket]--;
+        entries--;
+        if (worst != size - 1) {
+            int pos = worst;
+            while (pos > 0) {
+                int parent = (pos - 1) >>> 1;
+                if (keys[parent] <= lastKey)
+                    break;
+                keys[pos] = keys[parent];
+                elements[pos] = elements[parent];
+                pos = parent;
+            }
+            keys[pos] = lastKey;
+            elements[pos] = lastElement;
+        }
+        if (current)
+            evictions++;
+    }
+
+    private void growBuckets(int minimalLength) {
+        int length = Math.max(minimalLength, Math.min(maxBucketSpan, 2 * bucketSizes.length));
+        bucketKeys = Arrays.copyOf(bucketKeys, length);
+        bucketElements = Arrays.copyOf(bucketElements, length);
+        bucketSizes = Arrays.copyOf(bucketSizes, length);
+    }
+
+    private void shiftBuckets(int by) {
+        int shift = Math.max(by, Math.min(INITIAL_BUCKETS / 4, maxBucketSpan - bucketSizes.length));
+        int length = bucketSizes.length + shift;
+        long[][] newKeys = new long[length][];
+        Object[][] newElements = new Object[length][];
+        int[] newSizes = new int[length];
+        System.arraycopy(bucketKeys, 0, newKeys, shift, bucketKeys.length);
+        System.arraycopy(bucketElements, 0, newElements, shift, bucketElements.length);
+        System.arraycopy(bucketSizes, 0, newSizes, shift, bucketSizes.length);
+        bucketKeys = newKeys;
+        bucketElements = newElements;
+        bucketSizes = newSizes;
+        keyOffset -= shift;
+        if (minBucket != Integer.MAX_VALUE)
+            minBucket += shift;
+        if (maxBucket != -1)
+            maxBucket += shift;
+    }
+
+    /**
+     * moves all entries from the buckets into the heap, the buckets are not used afterwards
+     */
+    private void switchToHeap() {
+        int capacity = Math.max(INITIAL_BUCKET_SIZE, 2 * entries);
+        heapKeys = new int[capacity];
+        heapEntryKeys = new long[capacity];
+        heapElements = new Object[capacity];
+        int inserted = 0;
+        for (int bucket = 0; bucket < bucketSizes.length; bucket++)
+            for (int i = 0; i < bucketSizes[bucket]; i++) {
+                heapKeys[inserted] = bucket + keyOffset;
+                heapEntryKeys[inserted] = bucketKeys[bucket][i];
+                heapElements[inserted] = bucketElements[bucket][i];
+                inserted++;
+            }
+        assert inserted == entries;
+        for (int pos = entries / 2 - 1; pos >= 0; pos--)
+            heapSiftDown(pos);
+        bucketKeys = null;
+        bucketElements = null;
+        bucketSizes = null;
+        heapMode = true;
+    }
+
+    /**
+     * whether the heap entry at position i comes after the one at position j
+     */
+    private boolean heapGreater(int i, int j) {
+        return heapKeys[i] > heapKeys[j] || (heapKeys[i] == heapKeys[j] && heapEntryKeys[i] > heapEntryKeys[j]);
+    }
+
+    /**
+     * inserts the entry into the heap, the number of entries is not changed
+     */
+    private void heapInsert(int key, long entryKey, Object element) {
+        if (entries == heapKeys.length) {
+            heapKeys = Arrays.copyOf(heapKeys, 2 * entries);
+            heapEntryKeys = Arrays.copyOf(heapEntryKeys, 2 * entries);
+            heapElements = Arrays.copyOf(heapElements, 2 * entries);
+        }
+        heapKeys[entries] = key;
+        heapEntryKeys[entries] = entryKey;
+        heapElements[entries] = element;
+        heapSiftUp(entries);
+    }
+
+    /**
+     * removes the entry at the given position of the heap and decrements the number of entries
+     */
+    private void heapRemove(int pos) {
+        int last = --entries;
+        if (pos != last) {
+            heapKeys[pos] = heapKeys[last];
+            heapEntryKeys[pos] = heapEntryKeys[last];
+            heapElements[pos] = heapElements[last];
+            heapElements[last] = null;
+            heapSiftDown(heapSiftUp(pos));
+        } else
+            heapElements[last] = null;
+    }
+
+    private int heapSiftUp(int pos) {
+        int key = heapKeys[pos];
+        long entryKey = heapEntryKeys[pos];
+        Object element = heapElements[pos];
+        while (pos > 0) {
+            int parent = (pos - 1) >>> 1;
+            if (heapKeys[parent] < key || (heapKeys[parent] == key && heapEntryKeys[parent] <= entryKey))
+                break;
+            heapKeys[pos] = heapKeys[parent];
+            heapEntryKeys[pos] = heapEntryKeys[parent];
+            heapElements[pos] = heapElements[parent];
+            pos = parent;
+        }
+        heapKeys[pos] = key;
+        heapEntryKeys[pos] = entryKey;
+        heapElements[pos] = element;
+        return pos;
+    }
+
+    private void heapSiftDown(int pos) {
+        int key = heapKeys[pos];
+        long entryKey = heapEntryKeys[pos];
+        Object element = heapElements[pos];
+        while (true) {
+            int child = 2 * pos + 1;
+            if (child >= entries)
+                break;
+            if (child + 1 < entries && heapGreater(child, child + 1))
+                child++;
+            if (key < heapKeys[child] || (key == heapKeys[child] && entryKey <= heapEntryKeys[child]))
+                break;
+            heapKeys[pos] = heapKeys[child];
+            heapEntryKeys[pos] = heapEntryKeys[child];
+            heapElements[pos] = heapElements[child];
+            pos = child;
+        }
+        heapKeys[pos] = key;
+        heapEntryKeys[pos] = entryKey;
+        heapElements[pos] = element;
+    }
+}
@@ -0,0 +1,94 @@
+// PANDA 3 -- a domain-independent planner for classical and hierarchical planning
+// Copyright (C) 2014-2018 the original author or authors.
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package de.uniulm.ki.panda3.util.fastIntegerDataStructures;
+
+import java.util.Arrays;
+
+/**
+ * An int array that can be reset to its initial values in constant time. Every entry carries the epoch in which it
+ * has been written last, entries written in an earlier epoch are read as their initial value. This replaces cloning
+ * an array of initial values whenever only a small part of it is touched between two resets.
+ */
+public class UUEpochIntArray {
+    private final int[] values;
+    private final int[] stamps;
+    private final int[] initialValues;
+    private final int initialValue;
+    private int epoch = 1;
+
+    /**
+     * all entries are initially set to the given value
+     */
+    public UUEpochIntArray(int size, int initialValue) {
+        this.values = new int[size];
+        this.stamps = new int[size];
+        this.initialValues = null;
+        this.initialValue = initialValue;
+    }
+
+    /**
+     * the entries are initially set to the values of the given array, which must not be changed afterwards
+     */
+    public UUEpochIntArray(int[] initialValues) {
+        this.values = new int[initialValues.length];
+        this.stamps = new int[initialValues.length];
+        this.initialValues = initialValues;
+        this.initialValue = 0;
+    }
+
+    /**
+     * sets all entries back to their initial value
+     */
+    public void reset() {
+        epoch++;
+        if (epoch == Integer.MAX_VALUE) {
+            Arrays.fill(stamps, 0);
+            epoch = 1;
+        }
+    }
+
+    public int get(int i) {
+        if (stamps[i] == epoch)
+            return values[i];
+        return initialValues == null ? initialValue : initialValues[i];
+    }
+
+    public void set(int i, int value) {
+        stamps[i] = epoch;
+        values[i] = value;
+    }
+
+    /**
+     * adds the given value to the entry and returns the result
+     */
+    public int add(int i, int value) {
+        int newValue = get(i) + value;
+        set(i, newValue);
+        return newValue;
+    }
+
+    /**
+     * returns whether the entry has been written since the last reset
+     */
+    public boolean isSet(int i) {
+        return stamps[i] == epoch;
+    }
+
+    public int size() {
+        return values.length;
+    }
+}
@@ -0,0 +1,160 @@
+// PANDA 3 -- a domain-independent planner for classical and hierarchical planning
+// Copyright (C) 2014-2018 the original author or authors.
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package de.uniulm.ki.panda3.util.fastIntegerDataStructures;
+
+import java.util.Arrays;
+
+/**
+ * Bucket queue for small non-negative integer keys: there is one bucket per key, elements are added in constant time
+ * and the minimal key is found by moving a pointer over the buckets. This is fast if the keys are dense, as in
+ * Dijkstra-style explorations with small action costs, where the pointer only moves forward. Elements with equal keys
+ * are returned in LIFO order. Keys that are negative or too large for the buckets are kept in the binary heap of the
+ * super class. Neither adding nor removing an element creates objects.
+ */
+public class UUIntPairBucketQueue extends UUIntPairPriorityQueue {
+    /**
+     * the largest action cost for which the heuristics use a bucket queue, see forCosts
+     */
+    public static final int MAX_BUCKET_COST = 1024;
+    static final int MAX_BUCKETS = 1 << 16;
+
+    // index of the first element of every bucket in the pool (-1 if empty), only valid if the stamp is current
+    private int[] first = new int[64];
+    private int[] stamps = new int[64];
+    private int epoch = 1;
+
+    // the elements of all buckets as linked lists
+    private int[] poolValues = new int[256];
+    private int[] poolNext = new int[256];
+    private int poolSize = 0;
+    private int freeList = -1;
+
+    private int bucketEntries = 0;
+    // all buckets below this one are empty
+    private int minBucket = Integer.MAX_VALUE;
+
+    public UUIntPairBucketQueue() {
+        super(16);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return bucketEntries == 0 && super.isEmpty();
+    }
+
+    @Override
+    public int size() {
+        return bucketEntries + super.size();
+    }
+
+    @Override
+    public void clear() {
+        super.clear();
+        bucketEntries = 0;
+        poolSize = 0;
+        freeList = -1;
+        minBucket = Integer.MAX_VALUE;
+        epoch++;
+        if (epoch == Integer.MAX_VALUE) {
+            Arrays.fill(stamps, 0);
+            epoch = 1;
+        }
+    }
+
+    @Override
+    public void add(int sortBy, int someInt) {
+        if ((sortBy < 0) || (sortBy >= MAX_BUCKETS)) {
+            super.add(sortBy, someInt);
+            return;
+        }
+        if (sortBy >= first.length) {
+            int length = Math.min(MAX_BUCKETS, Math.max(sortBy + 1, 2 * first.length));
+            first = Arrays.copyOf(first, length);
+            stamps = Arrays.copyOf(stamps, length);
+        }
+
+        int node;
+        if (freeList >= 0) {
+            node = freeList;
+            freeList = poolNext[node];
+        } else {
+            if (poolSize == poolValues.length) {
+                poolValues = Arrays.copyOf(poolValues, 2 * poolSize);
+                poolNext = Arrays.copyOf(poolNext, 2 * poolSize);
+            }
+            node = poolSize++;
+        }
+        poolValues[node] = someInt;
+        poolNext[node] = (stamps[sortBy] == epoch) ? first[sortBy] : -1;
+        first[sortBy] = node;
+        stamps[sortBy] = epoch;
+
+        bucketEntries++;
+        if (sortBy < minBucket)
+            minBucket = sortBy;
+    }
+
+    @Override
+    public int minKey() {
+        if (bucketEntries == 0)
+            return super.minKey();
+        int bucket = minNonEmptyBucket();
+        if (!super.isEmpty() && (super.minKey() < bucket))
+            return super.minKey();
+        return bucket;
+    }
+
+    @Override
+    public int pollMinValue() {
+        if (bucketEntries == 0)
+            return super.pollMinValue();
+        int bucket = minNonEmptyBucket();
+        if (!super.isEmpty() && (super.minKey() < bucket))
+            return super.pollMinValue();
+
+        int node = first[bucket];
+        first[bucket] = poolNext[node];
+        poolNext[node] = freeList;
+        freeList = node;
+        bucketEntries--;
+        return poolValues[node];
+    }
+
+    private int minNonEmptyBucket() {
+        while ((stamps[minBucket] != epoch) || (first[minBucket] < 0))
+            minBucket++;
+        return minBucket;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (int bucket = 0; bucket < first.length; bucket++) {
+            if (stamps[bucket] != epoch)
+                continue;
+            for (int node = first[bucket]; node >= 0; node = poolNext[node]) {
+                if (sb.length() > 0)
+                    sb.append(", ");
+                sb.append("(").append(bucket).append(", ").append(poolValues[node]).append(")");
+            }
+        }
+        String heap = super.toString();
+        if ((sb.length() > 0) && (heap.length() > 0))
+            sb.append(", ");
+        return sb.append(heap).toString();
+    }
+}
@@ -24,18 +24,35 @@ import java.util.Random;
  * Created by dh on 15.05.17.
  */
 public class UUIntPairPriorityQueue {
-    int[][] pairs;
+    // binary heap stored in two parallel arrays, position 0 is a sentinel
+    int[] keys;
+    int[] values;
     int nextIndex;
 
     public UUIntPairPriorityQueue() {
-        pairs = new int[2049][];
-        nextIndex = 1;
-        pairs[0] = new int[2];
-        pairs[0][0] = Integer.MIN_VALUE;
+        this(2048);
 
         //assert (testMe());
     }
 
+    protected UUIntPairPriorityQueue(int initialCapacity) {
+        keys = new int[initialCapacity + 1];
+        values = new int[initialCapacity + 1];
+        nextIndex = 1;
+        keys[0] = Integer.MIN_VALUE;
+    }
+
+    /**
+     * Returns the queue to use for an exploration with the given action costs: a bucket queue if all costs are small
+     * non-negative integers, otherwise a binary heap.
+     */
+    public static UUIntPairPriorityQueue forCosts(int[] costs) {
+        for (int c : costs)
+            if ((c < 0) || (c > UUIntPairBucketQueue.MAX_BUCKET_COST))
+                return new UUIntPairPriorityQueue();
+        return new UUIntPairBucketQueue();
+    }
+
     private boolean testMe() {
         Random r = new Random(42);
         for (int i = 0; i < 100; i++) {
@@ -85,58 +102,80 @@ public class UUIntPairPriorityQueue {
             else
                 sb.append(", ");
             sb.append("(");
-            sb.append(pairs[i][0]);
+            sb.append(keys[i]);
             sb.append(", ");
-            sb.append(pairs[i][1]);
+            sb.append(values[i]);
             sb.append(")");
         }
         return sb.toString();
     }
 
-    public void add(int sortBy, int someInt) {
-        int[] pair = new int[2];
-        pair[0] = sortBy;
-        pair[1] = someInt;
-        this.add(pair);
+    /**
+     * removes all elements, the memory of the queue is kept
+     */
+    public void clear() {
+        nextIndex = 1;
     }
 
-    public void add(int[] pair) {
-        if (nextIndex == pairs.length)
-            pairs = Arrays.copyOf(pairs, (pairs.length - 1) * 2 + 1);
-
-        pairs[nextIndex] = pair;
+    public void add(int sortBy, int someInt) {
+        if (nextIndex == keys.length) {
+            keys = Arrays.copyOf(keys, (keys.length - 1) * 2 + 1);
+            values = Arrays.copyOf(values, keys.length);
+        }
 
-        int current = nextIndex;
-        while (pairs[current][0] < pairs[current / 2][0]) {
-            int[] swap = pairs[current];
-            pairs[current] = pairs[current / 2];
-            pairs[current / 2] = swap;
+        int current = nextIndex++;
+        while (sortBy < keys[current / 2]) {
+            keys[current] = keys[current / 2];
+            values[current] = values[current / 2];
             current /= 2;
         }
-        nextIndex++;
+        keys[current] = sortBy;
+        values[current] = someInt;
     }
 
-    public int[] minPair() {
-        int[] res = pairs[1];
-        pairs[1] = pairs[--nextIndex];
+    public void add(int[] pair) {
+        add(pair[0], pair[1]);
+    }
+
+    /**
+     * returns the key of the minimal element without removing it
+     */
+    public int minKey() {
+        return keys[1];
+    }
+
+    /**
+     * removes the minimal element and returns its value. Use this together with minKey() to avoid the allocation of
+     * minPair()
+     */
+    public int pollMinValue() {
+        int res = values[1];
+        int lastKey = keys[--nextIndex];
+        int lastValue = values[nextIndex];
 
         int current = 1;
-        boolean swapped = true;
-        while (swapped) {
+        while (true) {
             int child = current * 2;
             if (child >= nextIndex)
                 break;
 
-            if ((current * 2 + 1 < nextIndex) && (pairs[current * 2 + 1][0] < pairs[current * 2][0]))
+            if ((child + 1 < nextIndex) && (keys[child + 1] < keys[child]))
                 child++;
-            if (pairs[child][0] < pairs[current][0]) {
-                swapped = true;
-                int[] swap = pairs[current];
-                pairs[current] = pairs[child];
-                pairs[child] = swap;
+            if (keys[child] < lastKey) {
+                keys[current] = keys[child];
+                values[current] = values[child];
                 current = child;
-            } else swapped = false;
+            } else break;
         }
+        keys[current] = lastKey;
+        values[current] = lastValue;
+        return res;
+    }
+
+    public int[] minPair() {
+        int[] res = new int[2];
+        res[0] = minKey();
+        res[1] = pollMinValue();
         return res;
     }
 }
@@ -0,0 +1,426 @@
+// PANDA 3 -- a domain-independent planner for classical and hierarchical planning
+// Copyright (C) 2014-2018 the original author or authors.
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package de.uniulm.ki.panda3.configuration
+
+import java.io._
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.charset.StandardCharsets
+import java.nio.file.{Files, StandardCopyOption, StandardOpenOption}
+import java.security.MessageDigest
+
+import de.uniulm.ki.panda3.progression.htn.representation.SasPlusProblem
+import de.uniulm.ki.panda3.symbolic.csp.CSP
+import de.uniulm.ki.panda3.symbolic.domain._
+import de.uniulm.ki.panda3.symbolic.logic.{And, Formula, Literal, Predicate}
+import de.uniulm.ki.panda3.symbolic.plan.Plan
+import de.uniulm.ki.panda3.symbolic.plan.element.{OrderingConstraint, PlanStep}
+import de.uniulm.ki.panda3.symbolic.plan.ordering.TaskOrdering
+import de.uniulm.ki.panda3.symbolic.sat.additionalConstraints.LTLTrue
+import de.uniulm.ki.panda3.symbolic.search._
+import de.uniulm.ki.util.InformationCapsule
+
+/**
+  * A preprocessed planning problem read from the model cache.
+  *
+  * @param integerInformation the numerical statistics of the domain that were computed when the model was stored
+  * @param stringInformation  the other statistics of the domain
+  */
+case class CachedModel(domainAndPlan: (Domain, Plan), integerInformation: Map[String, Int], stringInformation: Map[String, String])
+
+/**
+  * Stores grounded and preprocessed planning problems in a directory such that repeated runs on the same input can skip parsing and preprocessing.
+  *
+  * A model contains the preprocessed domain and plan as they are given to the search: the predicates, the tasks with their preconditions, effects and costs,
+  * the decomposition methods, the initial plan and the SAS+ representation (all public fields of the [[SasPlusProblem]]). Only grounded models whose conditions
+  * are conjunctions of literals can be stored, they are restored exactly, except for the mapping back to the lifted domain. The analyses computed during
+  * preprocessing are not part of the model, so the cache must not be used if they are needed afterwards. The model is stored in a versioned binary file whose
+  * name is a hash of the domain, the problem and the configuration used to process them. Files are read via a memory mapping and written atomically, so
+  * several planners can share a cache.
+  */
+case class ModelCache(directory: String) {
+
+  import ModelCache._
+
+  def key(domain: Array[Byte], problem: Array[Byte], configuration: String): String = {
+    val digest = MessageDigest.getInstance("SHA-256")
+    Seq(VERSION.toString.getBytes(StandardCharsets.UTF_8), domain, problem, configuration.getBytes(StandardCharsets.UTF_8)) foreach { bytes =>
+      digest.update(ByteBuffer.allocate(4).putInt(bytes.length).array())
+      digest.update(bytes)
+    }
+    digest.digest() map { b => "%02x".format(b) } mkString ""
+  }
+
+  def file(key: String): File = new File(directory, key + ".model")
+
+  /**
+    * returns the model stored under the given key, if there is a valid one. If there is a model that cannot be read, the reason is recorded in the
+    * information capsule under [[Information.MODEL_CACHE_ERROR]].
+    */
+  def load(key: String, informationCapsule: InformationCapsule): Option[CachedModel] = {
+    val modelFile = file(key)
+    if (!modelFile.isFile) None
+    else try {
+      val channel = FileChannel.open(modelFile.toPath, StandardOpenOption.READ)
+      val buffer = try channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()) finally channel.close()
+      val reader = new ModelReader(buffer)
+
+      val magic = new Array[Byte](MAGIC.length)
+      buffer.get(magic)
+      if (!(magic sameElements MAGIC) || reader.int() != VERSION || reader.string() != key) {
+        informationCapsule.set(Information.MODEL_CACHE_ERROR, modelFile + ": not a model of this version for this key")
+        None
+      } else Some(readModel(reader))
+    } catch {
+      case e: Exception =>
+        // a broken model is simply recomputed
+        informationCapsule.set(Information.MODEL_CACHE_ERROR, modelFile + ": " + e)
+        None
+    }
+  }
+
+  /**
+    * stores the model in the cache. Returns false if the model cannot be represented in the cache, i.e. if it is not grounded or has no SAS+
+    * representation.
+    */
+  def store(key: String, domainAndPlan: (Domain, Plan), domainInformation: InformationCapsule): Boolean = if (!canBeStored(domainAndPlan)) false else {
+    new File(directory).mkdirs()
+    val temporaryFile = File.createTempFile(key, ".tmp", new File(directory))
+    try {
+      val out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporaryFile), 1 << 16))
+      try {
+        out.write(MAGIC)
+        out.writeInt(VERSION)
+        writeString(out, key)
+        writeModel(out, domainAndPlan, domainInformation)
+      } finally out.close()
+      Files.move(temporaryFile.toPath, file(key).toPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE)
+      true
+    } finally temporaryFile.delete()
+  }
+}
+
+object ModelCache {
+  /** has to be increased whenever the format of the model changes */
+  val VERSION: Int = 2
+
+  private val MAGIC: Array[Byte] = "PANDA-MODEL".getBytes(StandardCharsets.US_ASCII)
+
+  def readFully(stream: InputStream): Array[Byte] = {
+    val bytes = new ByteArrayOutputStream()
+    val buffer = new Array[Byte](1 << 16)
+    var read = stream.read(buffer)
+    while (read != -1) {
+      bytes.write(buffer, 0, read)
+      read = stream.read(buffer)
+    }
+    bytes.toByteArray
+  }
+
+  private def canBeStored(domainAndPlan: (Domain, Plan)): Boolean = {
+    val (domain, plan) = domainAndPlan
+    val predicates = domain.predicates.toSet
+
+    def isConjunctionOfLiterals(formula: Formula): Boolean = formula match {
+      case And(conjuncts) => conjuncts forall {
+        case Literal(predicate, _, Nil) => predicates contains predicate
+        case _                          => false
+      }
+      case _              => false
+    }
+
+    def canTaskBeStored(task: Task): Boolean = (task.isInstanceOf[ReducedTask] || task.isInstanceOf[GeneralTask]) && task.parameters.isEmpty &&
+      task.cost.isInstanceOf[ConstantActionCost] && isConjunctionOfLiterals(task.precondition) && isConjunctionOfLiterals(task.effect)
+
+    def canPlanBeStored(plan: Plan): Boolean = plan.planStepsAndRemovedPlanSteps.length == plan.planSteps.length && plan.causalLinksAndRemovedCausalLinks.isEmpty &&
+      plan.parameterVariableConstraints.variables.isEmpty && plan.parameterVariableConstraints.constraints.isEmpty &&
+      plan.planStepDecomposedByMethod.isEmpty && plan.planStepParentInDecompositionTree.isEmpty &&
+      plan.ltlConstraint == LTLTrue && (plan.planSteps forall { ps => ps.arguments.isEmpty && canTaskBeStored(ps.schema) }) &&
+      (plan.isModificationAllowed match {case NoModifications | AllModifications | ModificationsByClass(_*) => true; case _ => false}) &&
+      (plan.isFlawAllowed match {case NoFlaws | AllFlaws | FlawsByClass(_*) => true; case _ => false})
+
+    domain.sasPlusRepresentation.isDefined && domain.sorts.isEmpty && domain.decompositionAxioms.isEmpty && domain.costValues.isEmpty &&
+      (domain.predicates forall { _.argumentSorts.isEmpty }) &&
+      (domain.tasks forall canTaskBeStored) &&
+      (domain.decompositionMethods forall { case m: SimpleDecompositionMethod => canPlanBeStored(m.subPlan); case _ => false }) &&
+      canPlanBeStored(plan)
+  }
+
+  private def writeModel(out: DataOutputStream, domainAndPlan: (Domain, Plan), domainInformation: InformationCapsule): Unit = {
+    val (domain, plan) = domainAndPlan
+    val predicateIndex: Map[Predicate, Int] = domain.predicates.zipWithIndex.toMap
+    val taskIndex: Map[Task, Int] = domain.tasks.zipWithIndex.toMap
+
+    out.writeInt(domain.predicates.length)
+    domain.predicates foreach { p => writeString(out, p.name) }
+
+    out.writeInt(domain.tasks.length)
+    domain.tasks foreach { t => writeTask(out, t, predicateIndex) }
+
+    out.writeInt(domain.decompositionMethods.length)
+    domain.decompositionMethods foreach { m =>
+      writeString(out, m.name)
+      out.writeInt(taskIndex(m.abstractTask))
+      writePlan(out, m.subPlan, taskIndex, predicateIndex)
+    }
+
+    writePlan(out, plan, taskIndex, predicateIndex)
+
+    // SAS+ representation
+    val sasPlus = domain.sasPlusRepresentation.get
+    out.writeInt(sasPlus.sasPlusIndexToTask.size)
+    sasPlus.sasPlusIndexToTask foreach { case (i, t) => out.writeInt(i); out.writeInt(taskIndex(t)) }
+    out.writeInt(sasPlus.sasPlusIndexToPredicate.size)
+    sasPlus.sasPlusIndexToPredicate foreach { case (i, p) => out.writeInt(i); out.writeInt(predicateIndex(p)) }
+    writeSasPlusProblem(out, sasPlus.sasPlusProblem)
+
+    // statistics
+    val integerInformation = domainInformation.integerInformation
+    out.writeInt(integerInformation.size)
+    integerInformation foreach { case (k, v) => writeString(out, k); out.writeInt(v) }
+    // the error of a broken model that is replaced by this one belongs to the current run only
+    val stringInformation = domainInformation.stringInformation - Information.MODEL_CACHE_ERROR
+    out.writeInt(stringInformation.size)
+    stringInformation foreach { case (k, v) => writeString(out, k); writeString(out, v) }
+  }
+
+  private def readModel(in: ModelReader): CachedModel = {
+    val predicates: Array[Predicate] = Array.fill(in.int()) { Predicate(in.string(), Nil) }
+    val tasks: Array[Task] = Array.fill(in.int()) { readTask(in, predicates) }
+
+    val methods: Array[DecompositionMethod] = Array.fill(in.int()) {
+      val name = in.string()
+      val abstractTask = tasks(in.int())
+      SimpleDecompositionMethod(abstractTask, readPlan(in, tasks, predicates), name)
+    }
+
+    val plan = readPlan(in, tasks, predicates)
+
+    val sasPlusIndexToTask: Map[Int, Task] = Array.fill(in.int()) { val i = in.int(); i -> tasks(in.int()) } toMap
+    val sasPlusIndexToPredicate: Map[Int, Predicate] = Array.fill(in.int()) { val i = in.int(); i -> predicates(in.int()) } toMap
+    val sasPlusRepresentation = SASPlusRepresentation(readSasPlusProblem(in), sasPlusIndexToTask, sasPlusIndexToPredicate)
+
+    val integerInformation: Map[String, Int] = Array.fill(in.int()) { in.string() -> in.int() } toMap
+    val stringInformation: Map[String, String] = Array.fill(in.int()) { in.string() -> in.string() } toMap
+
+    val domain = Domain(Nil, predicates, tasks, methods, Nil, Map(), None, Some(sasPlusRepresentation))
+    CachedModel((domain, plan), integerInformation, stringInformation)
+  }
+
+  private def writeTask(out: DataOutputStream, task: Task, predicateIndex: Map[Predicate, Int]): Unit = {
+    out.writeBoolean(task.isInstanceOf[ReducedTask])
+    writeString(out, task.name)
+    out.writeBoolean(task.isPrimitive)
+    writeLiterals(out, task.precondition, predicateIndex)
+    writeLiterals(out, task.effect, predicateIndex)
+    out.writeInt(task.cost.getFixedCost)
+  }
+
+  private def readTask(in: ModelReader, predicates: Array[Predicate]): Task = {
+    val isReduced = in.bool()
+    val name = in.string()
+    val isPrimitive = in.bool()
+    val precondition = readLiterals(in, predicates)
+    val effect = readLiterals(in, predicates)
+    val cost = ConstantActionCost(in.int())
+    if (isReduced) ReducedTask(name, isPrimitive, Nil, Nil, Nil, precondition, effect, cost)
+    else GeneralTask(name, isPrimitive, Nil, Nil, Nil, precondition, effect, cost)
+  }
+
+  private def writeLiterals(out: DataOutputStream, formula: Formula, predicateIndex: Map[Predicate, Int]): Unit = {
+    val literals = formula.asInstanceOf[And[Formula]].conjuncts map { _.asInstanceOf[Literal] }
+    out.writeInt(literals.length)
+    literals foreach { l => out.writeInt(predicateIndex(l.predicate)); out.writeBoolean(l.isPositive) }
+  }
+
+  private def readLiterals(in: ModelReader, predicates: Array[Predicate]): And[Literal] =
+    And[Literal](Array.fill(in.int()) { Literal(predicates(in.int()), in.bool(), Nil) })
+
+  /**
+    * writes the plan steps (with their IDs), all ordering constraints and the allowed modifications and flaws. The schemata of init and goal are not
+    * contained in the domain, they are written together with their plan steps.
+    */
+  private def writePlan(out: DataOutputStream, plan: Plan, taskIndex: Map[Task, Int], predicateIndex: Map[Predicate, Int]): Unit = {
+    val planSteps = plan.planSteps
+    val planStepIndex = planSteps.zipWithIndex.toMap
+    out.writeInt(planSteps.length)
+    planSteps foreach { ps =>
+      out.writeInt(ps.id)
+      if (taskIndex contains ps.schema) out.writeInt(taskIndex(ps.schema)) else {
+        out.writeInt(-1)
+        writeTask(out, ps.schema, predicateIndex)
+      }
+    }
+    out.writeInt(planStepIndex(plan.init))
+    out.writeInt(planStepIndex(plan.goal))
+
+    val orderings = plan.orderingConstraints.originalOrderingConstraints
+    out.writeInt(orderings.length)
+    orderings foreach { o => out.writeInt(planStepIndex(o.before)); out.writeInt(planStepIndex(o.after)) }
+
+    plan.isModificationAllowed match {
+      case NoModifications                   => out.writeInt(0)
+      case AllModifications                  => out.writeInt(1)
+      case ModificationsByClass(classes@_*) => out.writeInt(2); writeArray(out, (classes map { _.getName }).toArray, writeString)
+    }
+    plan.isFlawAllowed match {
+      case NoFlaws                   => out.writeInt(0)
+      case AllFlaws                  => out.writeInt(1)
+      case FlawsByClass(classes@_*) => out.writeInt(2); writeArray(out, (classes map { _.getName }).toArray, writeString)
+    }
+    out.writeBoolean(plan.dontExpandVariableConstraints)
+  }
+
+  private def readPlan(in: ModelReader, tasks: Array[Task], predicates: Array[Predicate]): Plan = {
+    val planSteps = Array.fill(in.int()) {
+      val id = in.int()
+      val schemaIndex = in.int()
+      PlanStep(id, if (schemaIndex == -1) readTask(in, predicates) else tasks(schemaIndex), Nil)
+    }
+    val init = planSteps(in.int())
+    val goal = planSteps(in.int())
+    val orderingConstraints = Array.fill(in.int()) { OrderingConstraint(planSteps(in.int()), planSteps(in.int())) }
+
+    val isModificationAllowed = in.int() match {
+      case 0 => NoModifications
+      case 1 => AllModifications
+      case _ => ModificationsByClass(in.stringArray() map { c => Class.forName(c) }: _*)
+    }
+    val isFlawAllowed = in.int() match {
+      case 0 => NoFlaws
+      case 1 => AllFlaws
+      case _ => FlawsByClass(in.stringArray() map { c => Class.forName(c) }: _*)
+    }
+
+    Plan(planSteps, Nil, TaskOrdering(orderingConstraints, planSteps), CSP(Set(), Nil), init, goal, isModificationAllowed, isFlawAllowed, Map(), Map(),
+         in.bool())
+  }
+
+  private def writeSasPlusProblem(out: DataOutputStream, problem: SasPlusProblem): Unit = {
+    out.writeInt(problem.numOfVars)
+    out.writeInt(problem.numOfOperators)
+    out.writeInt(problem.numOfStateFeatures)
+    out.writeBoolean(problem.createdFromStrips)
+    writeIntArray(out, problem.ranges)
+    writeStringArray(out, problem.varNames)
+    writeArray(out, problem.values, writeStringArray)
+    writeStringArray(out, problem.opNames)
+    writeIntArray(out, problem.costs)
+    writeIntArray(out, problem.firstIndex)
+    writeIntArray(out, problem.lastIndex)
+    writeIntArray(out, problem.indexToMutexGroup)
+    writeArray(out, problem.precLists, writeIntArray)
+    writeArray(out, problem.addLists, writeIntArray)
+    writeArray(out, problem.delLists, writeIntArray)
+    writeArray(out, problem.expandedDelLists, writeIntArray)
+    writeArray(out, problem.precToTask, writeIntArray)
+    writeArray(out, problem.addToTask, writeIntArray)
+    writeIntArray(out, problem.numPrecs)
+    writeIntArray(out, problem.preclessActions)
+    writeIntArray(out, problem.s0List)
+    writeIntArray(out, problem.gList)
+    writeStringArray(out, problem.factStrs)
+  }
+
+  private def readSasPlusProblem(in: ModelReader): SasPlusProblem = {
+    val problem = new SasPlusProblem()
+    problem.numOfVars = in.int()
+    problem.numOfOperators = in.int()
+    problem.numOfStateFeatures = in.int()
+    problem.createdFromStrips = in.bool()
+    problem.ranges = in.intArray()
+    problem.varNames = in.stringArray()
+    problem.values = in.array(in.stringArray)
+    problem.opNames = in.stringArray()
+    problem.costs = in.intArray()
+    problem.firstIndex = in.intArray()
+    problem.lastIndex = in.intArray()
+    problem.indexToMutexGroup = in.intArray()
+    problem.precLists = in.array(in.intArray)
+    problem.addLists = in.array(in.intArray)
+    problem.delLists = in.array(in.intArray)
+    problem.expandedDelLists = in.array(in.intArray)
+    problem.precToTask = in.array(in.intArray)
+    problem.addToTask = in.array(in.intArray)
+    problem.numPrecs = in.intArray()
+    problem.preclessActions = in.intArray()
+    problem.s0List = in.intArray()
+    problem.gList = in.intArray()
+    problem.factStrs = in.stringArray()
+    problem
+  }
+
+  // arrays are stored with their length in front, null is stored as length -1
+
+  private def writeString(out: DataOutputStream, string: String): Unit =
+    if (string == null) out.writeInt(-1) else {
+      val bytes = string.getBytes(StandardCharsets.UTF_8)
+      out.writeInt(bytes.length)
+      out.write(bytes)
+    }
+
+  private def writeIntArray(out: DataOutputStream, array: Array[Int]): Unit =
+    if (array == null) out.writeInt(-1) else {
+      out.writeInt(array.length)
+      var i = 0
+      while (i < array.length) {
+        out.writeInt(array(i))
+        i += 1
+      }
+    }
+
+  private def writeStringArray(out: DataOutputStream, array: Array[String]): Unit = writeArray(out, array, writeString)
+
+  private def writeArray[T](out: DataOutputStream, array: Array[T], writeElement: (DataOutputStream, T) => Unit): Unit =
+    if (array == null) out.writeInt(-1) else {
+      out.writeInt(array.length)
+      array foreach { e => writeElement(out, e) }
+    }
+
+  private class ModelReader(buffer: ByteBuffer) {
+    def int(): Int = buffer.getInt()
+
+    def bool(): Boolean = buffer.get() != 0
+
+    def string(): String = {
+      val length = buffer.getInt()
+      if (length == -1) null else {
+        val bytes = new Array[Byte](length)
+        buffer.get(bytes)
+        new String(bytes, StandardCharsets.UTF_8)
+      }
+    }
+
+    def intArray(): Array[Int] = {
+      val length = buffer.getInt()
+      if (length == -1) null else {
+        val array = new Array[Int](length)
+        buffer.asIntBuffer().get(array)
+        buffer.position(buffer.position() + 4 * length)
+        array
+      }
+    }
+
+    def stringArray(): Array[String] = array(string)
+
+    def array[T](readElement: () => T)(implicit m: scala.reflect.ClassTag[T]): Array[T] = {
+      val length = buffer.getInt()
+      if (length == -1) null else Array.fill(length)(readElement())
+    }
+  }
+
+}
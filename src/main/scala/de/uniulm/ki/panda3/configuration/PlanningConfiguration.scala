@@ -16,14 +16,14 @@
 
 package de.uniulm.ki.panda3.configuration
 
-import java.io.InputStream
+import java.io.{ByteArrayInputStream, InputStream}
 import java.lang.management.{ManagementFactory, MemoryPoolMXBean, MemoryType}
 import java.util.UUID
 import java.util.concurrent.Semaphore
 
 import de.uniulm.ki.panda3.efficient.Wrapping
 import de.uniulm.ki.panda3.efficient.domain.datastructures.hiearchicalreachability.EfficientTDGFromGroundedSymbolic
-import de.uniulm.ki.panda3.efficient.domain.datastructures.primitivereachability.{EfficientGroundedPlanningGraph, EfficientGroundedPlanningGraphFromSymbolic}
+import de.uniulm.ki.panda3.efficient.domain.datastructures.primitivereachability.{EGPGConfiguration, EfficientGroundedPlanningGraph, EfficientGroundedPlanningGraphFromImplementation, EfficientGroundedPlanningGraphFromSymbolic, EfficientGroundedPlanningGraphImplementation}
 import de.uniulm.ki.panda3.efficient.heuristic.filter.{PlanLengthLimit, RecomputeHTN}
 import de.uniulm.ki.panda3.efficient.heuristic.{AlwaysZeroHeuristic, EfficientNumberOfFlaws, EfficientNumberOfPlanSteps, _}
 import de.uniulm.ki.panda3.efficient.search.flawSelector._
@@ -68,6 +68,10 @@ import scala.collection.{JavaConversions, JavaConverters, Seq}
 import scala.util.Random
 
 /**
+  * @param modelCacheDirectory directory of a [[ModelCache]] used by the progression search. Only the preprocessed (grounded) domain with its SAS+ problem and
+  *                            the preprocessed initial plan are cached, together with the statistics of the domain. Neither the unprocessed domain nor the
+  *                            analyses of the preprocessing (e.g. the task decomposition graph) are part of the cache, so it is skipped whenever a result is
+  *                            requested that needs them (see resultsNeedPreprocessingArtefacts).
   * @author Gregor Behnke (gregor.behnke@uni-ulm.de)
   */
 case class PlanningConfiguration(printGeneralInformation: Boolean, printAdditionalData: Boolean,
@@ -76,7 +80,8 @@ case class PlanningConfiguration(printGeneralInformation: Boolean, printAddition
                                  preprocessingConfiguration: PreprocessingConfiguration,
                                  searchConfiguration: SearchConfiguration,
                                  postprocessingConfiguration: PostprocessingConfiguration,
-                                 externalProgramPaths: Map[ExternalProgram, String] = Map()) extends Configuration {
+                                 externalProgramPaths: Map[ExternalProgram, String] = Map(),
+                                 modelCacheDirectory: Option[String] = None) extends Configuration {
 
   searchConfiguration match {
 
@@ -105,8 +110,69 @@ case class PlanningConfiguration(printGeneralInformation: Boolean, printAddition
   def runSearchHandle(domain: InputStream, problem: InputStream, releaseSemaphoreEvery: Option[Int], timeCapsule: TimeCapsule = new TimeCapsule()):
   (Domain, SearchNode, Semaphore, AbortFunction, InformationCapsule, Unit => ResultMap) = {
     timeCapsule startOrLetRun TOTAL_TIME
-    val parsedDomainAndProblem = runParsing(domain, problem, timeCapsule)
-    runSearchHandle(parsedDomainAndProblem._1._1, parsedDomainAndProblem._1._2, releaseSemaphoreEvery, parsedDomainAndProblem._2)
+    (modelCacheDirectory, searchConfiguration) match {
+      case (Some(directory), _: ProgressionSearch) if !resultsNeedPreprocessingArtefacts =>
+        runSearchHandleWithModelCache(ModelCache(directory), domain, problem, releaseSemaphoreEvery, timeCapsule)
+      case _                                                                              =>
+        val parsedDomainAndProblem = runParsing(domain, problem, timeCapsule)
+        runSearchHandle(parsedDomainAndProblem._1._1, parsedDomainAndProblem._1._2, releaseSemaphoreEvery, parsedDomainAndProblem._2)
+    }
+  }
+
+  /** whether results have to be produced that are computed from the analyses or the unprocessed domain, which are not contained in a cached model */
+  private def resultsNeedPreprocessingArtefacts: Boolean = postprocessingConfiguration.resultsToProduce exists {
+    case FinalTaskDecompositionGraph | FinalGroundedReachability | UnprocessedDomainAndPlan => true
+    case _                                                                                 => false
+  }
+
+  /**
+    * Runs the complete planner on the model stored in the cache for the given domain and problem. If there is none, the domain and problem are parsed and
+    * preprocessed as usual and the resulting model is stored in the cache.
+    */
+  private def runSearchHandleWithModelCache(modelCache: ModelCache, domain: InputStream, problem: InputStream, releaseSemaphoreEvery: Option[Int],
+                                            timeCapsule: TimeCapsule): (Domain, SearchNode, Semaphore, AbortFunction, InformationCapsule, Unit => ResultMap) = {
+    timeCapsule start MODEL_CACHE
+    timeCapsule start MODEL_CACHE_HASH
+    val domainBytes = ModelCache.readFully(domain)
+    val problemBytes = ModelCache.readFully(problem)
+    val key = modelCache.key(domainBytes, problemBytes, parsingConfiguration.longInfo + "\n" + preprocessingConfiguration.longInfo)
+    timeCapsule stop MODEL_CACHE_HASH
+
+    val informationCapsule = new InformationCapsule
+    timeCapsule start MODEL_CACHE_LOAD
+    val cachedModel = modelCache.load(key, informationCapsule)
+    timeCapsule stop MODEL_CACHE_LOAD
+    timeCapsule stop MODEL_CACHE
+    informationCapsule.stringInformation.get(Information.MODEL_CACHE_ERROR) foreach { error => info("Could not read cached model " + error + "\n") }
+
+    cachedModel match {
+      case Some(model) =>
+        info("Loaded grounded model from cache " + modelCache.file(key) + "\n")
+        model.stringInformation foreach { case (k, v) => informationCapsule.set(k, v) }
+        model.integerInformation foreach { case (k, v) => informationCapsule.set(k, v) }
+        informationCapsule.set(Information.MODEL_CACHE, "hit")
+
+        // the model in the cache is already preprocessed, there is nothing left of the unprocessed one and of the analyses. The progression search does
+        // not need them and the cache is not used if any result is computed from them.
+        runSearchHandleOnPreprocessedModel(model.domainAndPlan, model.domainAndPlan, model.domainAndPlan._1, AnalysisMap(Map()), informationCapsule,
+                                           releaseSemaphoreEvery, timeCapsule)
+      case None        =>
+        val parsedDomainAndProblem = runParsing(new ByteArrayInputStream(domainBytes), new ByteArrayInputStream(problemBytes), timeCapsule)
+        val (domainAndPlanFullyParsed, unprocessedDomain, _) = runParsingPostProcessing(parsedDomainAndProblem._1._1, parsedDomainAndProblem._1._2, timeCapsule)
+        val ((domainAndPlan, analysisMap), _) = runPreprocessing(domainAndPlanFullyParsed._1, domainAndPlanFullyParsed._2, timeCapsule)
+        writeDomainInformation(domainAndPlan, analysisMap, informationCapsule)
+
+        timeCapsule start MODEL_CACHE
+        timeCapsule start MODEL_CACHE_STORE
+        val stored = modelCache.store(key, domainAndPlan, informationCapsule)
+        timeCapsule stop MODEL_CACHE_STORE
+        timeCapsule stop MODEL_CACHE
+        if (stored) info("Stored grounded model in cache " + modelCache.file(key) + "\n")
+        informationCapsule.set(Information.MODEL_CACHE, if (stored) "miss" else "not cachable")
+
+        runSearchHandleOnPreprocessedModel(domainAndPlan, unprocessedDomain, domainAndPlanFullyParsed._1, analysisMap, informationCapsule,
+                                           releaseSemaphoreEvery, timeCapsule)
+    }
   }
 
   /**
@@ -122,10 +188,14 @@ case class PlanningConfiguration(printGeneralInformation: Boolean, printAddition
 
     // create the information container
     val informationCapsule = new InformationCapsule
+    writeDomainInformation(domainAndPlan, preprocessedAnalysisMap, informationCapsule)
 
-    // !!!! ATTENTION we use side effects for the sake of simplicity
-    var analysisMap = preprocessedAnalysisMap
+    runSearchHandleOnPreprocessedModel(domainAndPlan, unprocessedDomain, domainAndPlanFullyParsed._1, preprocessedAnalysisMap, informationCapsule,
+                                       releaseSemaphoreEvery, timeCapsule)
+  }
 
+  /** writes statistics about the preprocessed domain into the information capsule */
+  private def writeDomainInformation(domainAndPlan: (Domain, Plan), analysisMap: AnalysisMap, informationCapsule: InformationCapsule): Unit = {
     // if the map contains a tdg we will print the domain analysis statistic
     if (analysisMap contains SymbolicGroundedTaskDecompositionGraph) {
       val tdg = analysisMap(SymbolicGroundedTaskDecompositionGraph)
@@ -160,6 +230,13 @@ case class PlanningConfiguration(printGeneralInformation: Boolean, printAddition
     informationCapsule.set(Information.NUMBER_OF_METHODS, domainAndPlan._1.decompositionMethods.length)
     informationCapsule.set(Information.SIZE_OF_LARGEST_METHOD, domainAndPlan._1.maximumMethodSize)
     informationCapsule.set(Information.AVERAGE_METHOD_SIZE, domainAndPlan._1.averageMethodSize)
+  }
+
+  private def runSearchHandleOnPreprocessedModel(domainAndPlan: (Domain, Plan), unprocessedDomain: (Domain, Plan), fullyParsedDomain: Domain,
+                                                 preprocessedAnalysisMap: AnalysisMap, informationCapsule: InformationCapsule, releaseSemaphoreEvery: Option[Int], timeCapsule: TimeCapsule):
+  (Domain, SearchNode, Semaphore, AbortFunction, InformationCapsule, Unit => ResultMap) = {
+    // !!!! ATTENTION we use side effects for the sake of simplicity
+    var analysisMap = preprocessedAnalysisMap
 
     // write randomseed into the info capsule
     informationCapsule.set(Information.RANDOM_SEED, randomSeed.toString)
@@ -207,7 +284,13 @@ case class PlanningConfiguration(printGeneralInformation: Boolean, printAddition
           // EFFICIENT SEARCH
           timeCapsule start COMPUTE_EFFICIENT_REPRESENTATION
           val wrapper = Wrapping(domainAndPlan)
-          val efficientInitialPlan = wrapper.unwrap(domainAndPlan._2)
+          val unwrappedInitialPlan = wrapper.unwrap(domainAndPlan._2)
+          // all plans created during search share the problem configuration of the initial plan
+          val efficientInitialPlan =
+            if (search.checkIncrementalFlaws) {
+              val problemConfiguration = unwrappedInitialPlan.problemConfiguration.copy(checkIncrementalFlaws = true)
+              unwrappedInitialPlan.copy(problemConfiguration = problemConfiguration)(unwrappedInitialPlan.depthPerPlanStep, unwrappedInitialPlan.depthPerCausalLink)
+            } else unwrappedInitialPlan
           timeCapsule stop COMPUTE_EFFICIENT_REPRESENTATION
 
           // in some cases we need to re-do some steps of the preparation as we have to transfer them into the efficient representation
@@ -235,15 +318,22 @@ case class PlanningConfiguration(printGeneralInformation: Boolean, printAddition
             val pgConfig = GroundedPlanningGraphConfiguration(computeMutexes = preprocessingConfiguration.groundedReachability.contains(PlanningGraphWithMutexes))
             val pgConfigRelax = GroundedPlanningGraphConfiguration(isSerial = true)
 
-            val symbolicPlanningGraph = GroundedPlanningGraph(domainAndPlan._1, initialState, pgConfig)
-            val symbolicPlanningGraphRelax = GroundedPlanningGraph(domainAndPlan._1, initialState, pgConfigRelax)
-
             if (efficientPGNeeded) {
               println("Creating efficient PG for heuristic ... ")
-              analysisMap = analysisMap + (EfficientGroundedPlanningGraph, EfficientGroundedPlanningGraphFromSymbolic(symbolicPlanningGraph, wrapper))
+              // either convert the symbolic graph or build the graph directly on the efficient domain
+              val efficientPlanningGraph = search.planningGraphThreads match {
+                case None          => EfficientGroundedPlanningGraphFromSymbolic(GroundedPlanningGraph(domainAndPlan._1, initialState, pgConfig), wrapper)
+                case Some(threads) =>
+                  val efficientInitialState = initialState map { case GroundLiteral(p, _, args) => (wrapper.unwrap(p), args map wrapper.unwrap toArray) } toArray
+                  val efficientConfig = EGPGConfiguration(computeMutexes = pgConfig.computeMutexes, threads = threads)
+                  EfficientGroundedPlanningGraphFromImplementation(EfficientGroundedPlanningGraphImplementation(wrapper.efficientDomain, efficientInitialState, efficientConfig))
+              }
+              analysisMap = analysisMap + (EfficientGroundedPlanningGraph, efficientPlanningGraph)
             }
             if (efficientRelaxPGNeeded) {
               println("Creating efficient serial PG for Relax heuristic ... ")
+              // the efficient implementation stops too early if only serial mutexes vanish, so the serial graph is always converted from the symbolic one
+              val symbolicPlanningGraphRelax = GroundedPlanningGraph(domainAndPlan._1, initialState, pgConfigRelax)
               analysisMap = analysisMap + (EfficientGroundedPlanningGraphForRelax, EfficientGroundedPlanningGraphFromSymbolic(symbolicPlanningGraphRelax, wrapper))
             }
           }
@@ -277,17 +367,20 @@ case class PlanningConfiguration(printGeneralInformation: Boolean, printAddition
 
           val (searchTreeRoot, nodesProcessed, resultfunction, abortFunction) = search.searchAlgorithm match {
             case algo => algo match {
-              case BFSType                                              => efficient.search.BFS.startSearch(wrapper.efficientDomain, efficientInitialPlan,
-                                                                                                            search.nodeLimit, timeLimit, releaseSemaphoreEvery,
-                                                                                                            search.printSearchInfo,
-                                                                                                            postprocessingConfiguration.resultsToProduce contains SearchSpace,
-                                                                                                            informationCapsule, timeCapsule)
+              case BFSType                                              =>
+                new efficient.search.BFS(search.duplicateDetection, search.closedListCapacity).startSearch(wrapper.efficientDomain, efficientInitialPlan,
+                                                                                                           search.nodeLimit, timeLimit, releaseSemaphoreEvery,
+                                                                                                           search.printSearchInfo,
+                                                                                                           postprocessingConfiguration.resultsToProduce contains SearchSpace,
+                                                                                                           informationCapsule, timeCapsule)
               case DijkstraType | DFSType                               =>
                 // just use the zero heuristic
                 val heuristicSearch = efficient.search.HeuristicSearch(Array[EfficientHeuristic[Unit]](AlwaysZeroHeuristic), 0, Array(), flawSelector,
                                                                        addNumberOfPlanSteps = search.searchAlgorithm != DFSType, addDepth = search.searchAlgorithm == DFSType,
                                                                        continueOnSolution = search.continueOnSolution,
-                                                                       invertCosts = search.searchAlgorithm == DFSType)
+                                                                       invertCosts = search.searchAlgorithm == DFSType, threads = search.threads,
+                                                                       bucketOpenList = search.bucketOpenList, openListCapacity = search.openListCapacity,
+                                                                       duplicateDetection = search.duplicateDetection, closedListCapacity = search.closedListCapacity)
 
                 heuristicSearch.startSearch(wrapper.efficientDomain, efficientInitialPlan,
                                             search.nodeLimit, timeLimit, releaseSemaphoreEvery,
@@ -321,7 +414,11 @@ case class PlanningConfiguration(printGeneralInformation: Boolean, printAddition
                 }
 
                 val heuristicSearch = efficient.search.HeuristicSearch[AnyVal](heuristicInstance, weight, filters, flawSelector, addNumberOfPlanSteps = useActionCosts,
-                                                                               addDepth = useDepthCosts, continueOnSolution = search.continueOnSolution)
+                                                                               addDepth = useDepthCosts, continueOnSolution = search.continueOnSolution,
+                                                                               threads = search.threads, bucketOpenList = search.bucketOpenList,
+                                                                               openListCapacity = search.openListCapacity,
+                                                                               duplicateDetection = search.duplicateDetection,
+                                                                               closedListCapacity = search.closedListCapacity)
                 heuristicSearch.startSearch(wrapper.efficientDomain, efficientInitialPlan,
                                             search.nodeLimit, timeLimit, releaseSemaphoreEvery,
                                             search.printSearchInfo,
@@ -341,6 +438,7 @@ case class PlanningConfiguration(printGeneralInformation: Boolean, printAddition
       case progression: ProgressionSearch =>
 
         val progressionInstance = new ProPlanningInstance()
+        progression.solutionListener foreach { listener => progressionInstance.solutionListener = { plan: Array[Task] => listener(plan) } }
         val groundMethods = domainAndPlan._1.methodsForAbstractTasks map { case (at, ms) =>
           at -> JavaConversions.setAsJavaSet(ms collect { case s: SimpleDecompositionMethod => s } toSet)
         }
@@ -355,7 +453,15 @@ case class PlanningConfiguration(printGeneralInformation: Boolean, printAddition
                                                            progression.searchAlgorithm,
                                                            externalProgramPaths.getOrElse(PANDASEARCHENGINE, ""),
                                                            randomSeed,
-                                                           timeLimit.getOrElse(Int.MaxValue).toLong * 1000)
+                                                           timeLimit.getOrElse(Int.MaxValue).toLong * 1000,
+                                                           progression.threads,
+                                                           progression.visitedList.orNull,
+                                                           progression.openList,
+                                                           progression.openListCapacity,
+                                                           progression.anytime,
+                                                           JavaConversions.seqAsJavaList(progression.additionalHeuristics),
+                                                           if (progression.alternationWeights.isEmpty) null else progression.alternationWeights.toArray,
+                                                           progression.preferredBoost)
 
           timeCapsule stop TOTAL_TIME
 
@@ -382,7 +488,7 @@ case class PlanningConfiguration(printGeneralInformation: Boolean, printAddition
           val separatedFormulaeBeforeRandomSelection = combinedFormula match {
             case None          => Nil
             case Some(formula) =>
-              val formulaInNNF = formula.nnf.parseAndGround(domainAndPlan._1, domainAndPlanFullyParsed._1, Map()).nnf.simplify
+              val formulaInNNF = formula.nnf.parseAndGround(domainAndPlan._1, fullyParsedDomain, Map()).nnf.simplify
               formulaInNNF match {
                 case LTLAnd(conj) => conj
                 case x            => x :: Nil
@@ -452,7 +558,7 @@ case class PlanningConfiguration(printGeneralInformation: Boolean, printAddition
                                  satSearch.reductionMethod, satSearch.usePDTMutexes,
                                  timeCapsule, informationCapsule, satSearch.encodingToUse,
                                  postprocessingConfiguration.resultsToProduce.contains(SearchResultWithDecompositionTree),
-                                 randomSeed, satSearch.threads)
+                                 randomSeed, satSearch.threads, satSearch.keepVariableNames)
 
 
           // depending on whether we are doing a single or a full run, we have either to do a loop or just one run
@@ -1711,7 +1817,8 @@ case class PlanningConfiguration(printGeneralInformation: Boolean, printAddition
   /** returns a detailed information about the object */
   override def longInfo: String = "Planning Configuration\n======================\n" +
     alignConfig(("\tprintGeneralInformation", printGeneralInformation) :: ("\tprintAdditionalData", printAdditionalData) ::
-                  ("\trandom seed", randomSeed) :: ("\ttime limit (in seconds)", timeLimit.getOrElse("none")) :: Nil) + "\n\n" +
+                  ("\trandom seed", randomSeed) :: ("\ttime limit (in seconds)", timeLimit.getOrElse("none")) ::
+                  ("\tmodel cache", modelCacheDirectory.getOrElse("none")) :: Nil) + "\n\n" +
     "\texternal programs:\n" + alignConfig(externalProgramPaths.toSeq map { case (prog, path) => ("\t\t" + prog.longInfo, path) }) + "\n\n" + {
     parsingConfiguration.longInfo + "\n\n" + preprocessingConfiguration.longInfo + "\n\n" + searchConfiguration.longInfo + "\n\n" + postprocessingConfiguration.longInfo
   }.split("\n").map(x => "\t" + x).mkString("\n")
@@ -1740,6 +1847,7 @@ case class PlanningConfiguration(printGeneralInformation: Boolean, printAddition
 
          "-seed" -> (NecessaryParameter, { l: Option[String] => this.copy(randomSeed = l.get.toInt).asInstanceOf[this.type] }),
          "-timelimit" -> (NecessaryParameter, { l: Option[String] => this.copy(timeLimit = Some(l.get.toInt)).asInstanceOf[this.type] }),
+         "-modelCache" -> (NecessaryParameter, { l: Option[String] => this.copy(modelCacheDirectory = Some(l.get)).asInstanceOf[this.type] }),
 
          // paths to external programs
          "-programPath" -> (NecessaryParameter, { l: Option[String] =>
@@ -1844,7 +1952,7 @@ case class PlanningConfiguration(printGeneralInformation: Boolean, printAddition
   }
 
   private val protectedPredicatesFromConfiguration: Set[String] = searchConfiguration match {
-    case SATSearch(_, _, Some(f), _, _, _, _, _, _, _, _, _) => f.nnf.allPredicatesNames
+    case SATSearch(_, _, Some(f), _, _, _, _, _, _, _, _, _, _) => f.nnf.allPredicatesNames
     case _                                                   => Set()
   }
 }
@@ -2091,6 +2199,12 @@ object SearchAlgorithmType {
     case "dfs"                                                   => DFSType
     case "greedy"                                                => GreedyType
     case "dijkstra" | "uniform-cost"                             => DijkstraType
+    case "lazy-greedy" | "lazygreedy"                            => LazyGreedyType
+    case "ehc"                                                   => EnforcedHillClimbingType(EnforcedHillClimbingType.DEFAULT_RESTARTS, complete = false)
+    case "complete-ehc" | "cehc"                                 => EnforcedHillClimbingType(EnforcedHillClimbingType.DEFAULT_RESTARTS, complete = true)
+    case x if x.startsWith("ehc(")                               => EnforcedHillClimbingType(x.replace(')', '(').split("\\(")(1).toInt, complete = false)
+    case x if x.startsWith("complete-ehc(") || x.startsWith("cehc(") =>
+      EnforcedHillClimbingType(x.replace(')', '(').split("\\(")(1).toInt, complete = true)
     case "astar" | "a*"                                          => AStarActionsType(weight = 1)
     case x if x.startsWith("externalsearch")                     => ExternalSearchEngine(x.replace(')', '(').split("\\(")(1))
     case "depth-astar" | "depth-a*" | "astar-depth" | "a*-depth" => AStarDepthType(weight = 1)
@@ -2116,6 +2230,21 @@ object GreedyType extends SearchAlgorithmType {override def longInfo: String = "
 
 object DijkstraType extends SearchAlgorithmType {override def longInfo: String = "Dijkstra"}
 
+/** greedy best first search with deferred evaluation, only supported by the progression search */
+object LazyGreedyType extends SearchAlgorithmType {override def longInfo: String = "Lazy Greedy"}
+
+/**
+  * enforced hill climbing, only supported by the progression search. It restarts the given number of times after reaching a dead end, if it is complete it continues with a
+  * lazy greedy search afterwards
+  */
+case class EnforcedHillClimbingType(restarts: Int, complete: Boolean) extends SearchAlgorithmType {
+  override def longInfo: String = (if (complete) "complete " else "") + "enforced hill climbing, " + restarts + " restarts"
+}
+
+object EnforcedHillClimbingType {
+  val DEFAULT_RESTARTS = 10
+}
+
 case class ExternalSearchEngine(uuid: String) extends SearchAlgorithmType {override def longInfo: String = "Write model for external search engine"}
 
 object ArgumentListParser {
@@ -2175,17 +2304,22 @@ object SearchHeuristic {
                                                                                            producerSelectionStrategy = gphRcFFMulticount.producerSelection
                                                                                              .parse(hParameterMap.getOrElse("selection", "fcfs")))
       case "greedy-progression"                                => GreedyProgression
+      case "tdg-lmc" | "landmark-count"                        => TDGLandmarkCount
       case "hhrc"                                              =>
         val h = hParameterMap.get("h") match {
           case Some("ff")         => SasHeuristics.hFF
+          case Some("ff-ha")      => SasHeuristics.hFFwithHA
           case Some("add")        => SasHeuristics.hAdd
           case Some("max")        => SasHeuristics.hMax
           case Some("lm-cut")     => SasHeuristics.hLmCut
           case Some("inc-lm-cut") => SasHeuristics.hIncLmCut
+          case Some("inc-add")    => SasHeuristics.hIncAdd
+          case Some("inc-ff")     => SasHeuristics.hIncFF
+          case Some("inc-max")    => SasHeuristics.hIncMax
           case None               => assert(false); null
         }
 
-        HierarchicalHeuristicRelaxedComposition(h)
+        HierarchicalHeuristicRelaxedComposition(h, checkIncrementalComputation = hParameterMap.getOrElse("check-increment", "false").toBoolean)
     }
   })
 }
@@ -2272,8 +2406,13 @@ case class RelaxedCompositionGraph(useTDReachability: Boolean, heuristicExtracti
 
 object GreedyProgression extends SearchHeuristic {override val longInfo: String = "greedy-progression"}
 
-case class HierarchicalHeuristicRelaxedComposition(classicalHeuristic: SasHeuristics)
-  extends SearchHeuristic {override val longInfo: String = "hhRC(" + classicalHeuristic.toString + ")"}
+object TDGLandmarkCount extends SearchHeuristic {override val longInfo: String = "TDG landmark count"}
+
+/**
+  * @param checkIncrementalComputation compare the results of incremental heuristics against a full recomputation in every search node
+  */
+case class HierarchicalHeuristicRelaxedComposition(classicalHeuristic: SasHeuristics, checkIncrementalComputation: Boolean = false)
+  extends SearchHeuristic {override val longInfo: String = "hhRC(" + classicalHeuristic.toString + (if (checkIncrementalComputation) ",check" else "") + ")"}
 
 
 sealed trait PruningTechnique extends DefaultLongInfo
@@ -2350,7 +2489,14 @@ case class PlanBasedSearch(
                             flawSelector: SearchFlawSelector,
                             efficientSearch: Boolean = true,
                             continueOnSolution: Boolean = false,
-                            printSearchInfo: Boolean = true
+                            printSearchInfo: Boolean = true,
+                            threads: Int = 1,
+                            bucketOpenList: Boolean = false,
+                            openListCapacity: Int = 0,
+                            duplicateDetection: Boolean = false,
+                            closedListCapacity: Int = 1000000,
+                            planningGraphThreads: Option[Int] = None,
+                            checkIncrementalFlaws: Boolean = false
                           ) extends SearchConfiguration {
   /** returns a detailed information about the object */
   override def longInfo: String = "Plan-based Search Configuration\n-------------------------------\n" +
@@ -2362,6 +2508,11 @@ case class PlanBasedSearch(
                   ("Efficient search", efficientSearch) ::
                   ("Continue on solution", continueOnSolution) ::
                   ("Print search info", printSearchInfo) ::
+                  ("Threads", threads) ::
+                  ("Open list", (if (bucketOpenList) "bucket" else "heap") + (if (openListCapacity > 0) " (at most " + openListCapacity + " nodes)" else "")) ::
+                  ("Duplicate detection", if (!duplicateDetection) "off" else if (closedListCapacity > 0) "at most " + closedListCapacity + " plans" else "unbounded") ::
+                  ("Planning graph", planningGraphThreads map { t => "efficient (" + t + " threads)" } getOrElse "symbolic") ::
+                  ("Check incremental flaws", checkIncrementalFlaws) ::
                   Nil)
 
 
@@ -2386,13 +2537,36 @@ case class PlanBasedSearch(
          "-flawSelection" -> (NecessaryParameter, { f: Option[String] => this.copy(flawSelector = SearchFlawSelector.parse(f.get)).asInstanceOf[this.type] }),
          "-f" -> (NecessaryParameter, { f: Option[String] => this.copy(flawSelector = SearchFlawSelector.parse(f.get)).asInstanceOf[this.type] }),
 
-         "-prune" -> (NecessaryParameter, { p: Option[String] => this.copy(pruningTechniques = PruningTechnique.parse(p.get)).asInstanceOf[this.type] })
+         "-prune" -> (NecessaryParameter, { p: Option[String] => this.copy(pruningTechniques = PruningTechnique.parse(p.get)).asInstanceOf[this.type] }),
+
+         "-threads" -> (NecessaryParameter, { p: Option[String] => this.copy(threads = p.get.toInt).asInstanceOf[this.type] }),
+
+         "-bucketOpenList" -> (NoParameter, { p: Option[String] => this.copy(bucketOpenList = true).asInstanceOf[this.type] }),
+         "-heapOpenList" -> (NoParameter, { p: Option[String] => this.copy(bucketOpenList = false).asInstanceOf[this.type] }),
+         "-openListCapacity" -> (NecessaryParameter, { p: Option[String] => this.copy(openListCapacity = p.get.toInt).asInstanceOf[this.type] }),
+
+         "-duplicateDetection" -> (NoParameter, { p: Option[String] => this.copy(duplicateDetection = true).asInstanceOf[this.type] }),
+         "-closedListCapacity" -> (NecessaryParameter, { p: Option[String] => this.copy(closedListCapacity = p.get.toInt).asInstanceOf[this.type] }),
+
+         "-efficientPlanningGraph" -> (NecessaryParameter, { p: Option[String] => this.copy(planningGraphThreads = Some(p.get.toInt)).asInstanceOf[this.type] }),
+         "-symbolicPlanningGraph" -> (NoParameter, { p: Option[String] => assert(p.isEmpty); this.copy(planningGraphThreads = None).asInstanceOf[this.type] }),
+
+         "-checkIncrementalFlaws" -> (NoParameter, { p: Option[String] => this.copy(checkIncrementalFlaws = true).asInstanceOf[this.type] })
        )
 }
 
 case class ProgressionSearch(searchAlgorithm: SearchAlgorithmType,
                              heuristic: Option[SearchHeuristic],
-                             abstractTaskSelectionStrategy: PriorityQueueSearch.abstractTaskSelection) extends SearchConfiguration {
+                             abstractTaskSelectionStrategy: PriorityQueueSearch.abstractTaskSelection,
+                             threads: Int = 1,
+                             visitedList: Option[PriorityQueueSearch.visitedListType] = None,
+                             openList: PriorityQueueSearch.openListType = PriorityQueueSearch.openListType.heap,
+                             openListCapacity: Int = 0,
+                             anytime: Boolean = false,
+                             additionalHeuristics: Seq[SearchHeuristic] = Nil,
+                             alternationWeights: Seq[Int] = Nil,
+                             preferredBoost: Int = 1000,
+                             solutionListener: Option[Seq[Task] => Unit] = None) extends SearchConfiguration {
 
   override protected def localModifications: Seq[(String, (ParameterMode, (Option[String]) => ProgressionSearch.this.type))] =
     Seq(
@@ -2408,7 +2582,17 @@ case class ProgressionSearch(searchAlgorithm: SearchAlgorithmType,
            this.copy(heuristic = Some(parsedHeuristics.head)).asInstanceOf[this.type]
          }),
          "-abstractSelection" ->
-           (NecessaryParameter, { p: Option[String] => this.copy(abstractTaskSelectionStrategy = PriorityQueueSearch.abstractTaskSelection.parse(p.get)).asInstanceOf[this.type] })
+           (NecessaryParameter, { p: Option[String] => this.copy(abstractTaskSelectionStrategy = PriorityQueueSearch.abstractTaskSelection.parse(p.get)).asInstanceOf[this.type] }),
+         "-threads" -> (NecessaryParameter, { p: Option[String] => this.copy(threads = p.get.toInt).asInstanceOf[this.type] }),
+         "-visitedList" ->
+           (NecessaryParameter, { p: Option[String] => this.copy(visitedList = Some(PriorityQueueSearch.visitedListType.parse(p.get))).asInstanceOf[this.type] }),
+         "-openList" -> (NecessaryParameter, { p: Option[String] => this.copy(openList = PriorityQueueSearch.openListType.parse(p.get)).asInstanceOf[this.type] }),
+         "-openListCapacity" -> (NecessaryParameter, { p: Option[String] => this.copy(openListCapacity = p.get.toInt).asInstanceOf[this.type] }),
+         "-anytime" -> (NoParameter, { p: Option[String] => this.copy(anytime = true).asInstanceOf[this.type] }),
+         "-additionalHeuristics" ->
+           (NecessaryParameter, { h: Option[String] => this.copy(additionalHeuristics = SearchHeuristic.parse(h.get)).asInstanceOf[this.type] }),
+         "-alternationWeights" -> (NecessaryParameter, { p: Option[String] => this.copy(alternationWeights = p.get.split(",").map(_.trim.toInt)).asInstanceOf[this.type] }),
+         "-preferredBoost" -> (NecessaryParameter, { p: Option[String] => this.copy(preferredBoost = p.get.toInt).asInstanceOf[this.type] })
        )
 
   /** returns a detailed information about the object */
@@ -2416,6 +2600,13 @@ case class ProgressionSearch(searchAlgorithm: SearchAlgorithmType,
     alignConfig(("Search Algorithm", searchAlgorithm) ::
                   ("Heuristic", if (heuristic.isDefined) heuristic.get.longInfo else "none") ::
                   ("Abstract task selection strategy", abstractTaskSelectionStrategy) ::
+                  ("Threads", threads) ::
+                  ("Visited list", visitedList.getOrElse("default of the search routine")) ::
+                  ("Open list", openList + (if (openListCapacity > 0) " (at most " + openListCapacity + " nodes)" else "")) ::
+                  ("Anytime", anytime) ::
+                  ("Additional heuristics", if (additionalHeuristics.isEmpty) "none" else additionalHeuristics.map(_.longInfo).mkString(", ")) ::
+                  ("Alternation weights", if (alternationWeights.isEmpty) "equal" else alternationWeights.mkString(",")) ::
+                  ("Preferred boost", preferredBoost) ::
                   Nil)
 }
 
@@ -2472,7 +2663,8 @@ case class SATSearch(solverType: Solvertype,
                      encodingToUse: POEncoding = POCLDeleteEncoding,
                      atMostOneEncodingMethod: AtMostOneType,
                      usePDTMutexes: Boolean = false,
-                     threads: Int = 1
+                     threads: Int = 1,
+                     keepVariableNames: Boolean = false
                     ) extends SearchConfiguration {
 
   protected lazy val getSingleRun: SingleSATRun = runConfiguration match {
@@ -2495,12 +2687,14 @@ case class SATSearch(solverType: Solvertype,
 
 
          "-checkResult" -> (NoParameter, { l: Option[String] => this.copy(checkResult = true).asInstanceOf[this.type] }),
+         "-keepVariableNames" -> (NoParameter, { l: Option[String] => this.copy(keepVariableNames = true).asInstanceOf[this.type] }),
          "-solver" -> (NecessaryParameter, { l: Option[String] =>
            val solver = l.get.toLowerCase match {
              case "minisat"       => MINISAT
              case "cryptominisat" => CRYPTOMINISAT
              case "riss6"         => RISS6
              case "maplecomsps"   => MapleCOMSPS
+             case "cdcl"          => BUILTINCDCL
            }
            this.copy(solverType = solver).asInstanceOf[this.type]
          }),
@@ -2556,7 +2750,8 @@ case class SATSearch(solverType: Solvertype,
                   }
                     ) ++ (
       ("reduction method", reductionMethod.longInfo) ::
-        ("check result", checkResult) :: Nil))
+        ("check result", checkResult) ::
+        ("keep variable names", keepVariableNames) :: Nil))
 
 }
 
@@ -2571,6 +2766,7 @@ case class SATPlanVerification(solverType: Solvertype, planToVerify: String) ext
              case "cryptominisat" => CRYPTOMINISAT
              case "riss6"         => RISS6
              case "maplecomsps"   => MapleCOMSPS
+             case "cdcl"          => BUILTINCDCL
            }
            this.copy(solverType = solver).asInstanceOf[this.type]
          }),
@@ -2701,6 +2897,8 @@ object RISS6 extends Solvertype {override val longInfo: String = "riss6"}
 
 object CADICAL extends Solvertype {override val longInfo: String = "Cadical"}
 
+object BUILTINCDCL extends Solvertype {override val longInfo: String = "built-in CDCL"}
+
 
 sealed trait DefaultDIMACSSolver extends Solvertype
 
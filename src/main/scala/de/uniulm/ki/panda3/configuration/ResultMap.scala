@@ -164,6 +164,11 @@ object Timings {
 
   val HEURISTICS_PREPARATION = "03 heuristics preparation:00:total"
 
+  val MODEL_CACHE       = "04 model cache:00:total"
+  val MODEL_CACHE_HASH  = "04 model cache:01:hash input"
+  val MODEL_CACHE_LOAD  = "04 model cache:02:load model"
+  val MODEL_CACHE_STORE = "04 model cache:03:store model"
+
   val SEARCH_PREPARATION               = "10 search preparation:00:total"
   val COMPUTE_EFFICIENT_REPRESENTATION = "10 search preparation:01:compute efficient representation"
   val COMPUTE_STATE_INVARIANTS         = "10 search preparation:02:compute state invariants"
@@ -195,12 +200,14 @@ object Timings {
 }
 
 object Information {
-  val DOMAIN_NAME  = "00 global:00:domain"
-  val PROBLEM_NAME = "00 global:01:problem"
-  val RANDOM_SEED  = "00 global:02:randomseed"
-  val SOLVED_STATE = "00 global:90:planner result"
-  val PEAKMEMORY   = "00 global:80:peak memory"
-  val ERROR        = "00 global:99:error"
+  val DOMAIN_NAME       = "00 global:00:domain"
+  val PROBLEM_NAME      = "00 global:01:problem"
+  val RANDOM_SEED       = "00 global:02:randomseed"
+  val MODEL_CACHE       = "00 global:03:model cache"
+  val MODEL_CACHE_ERROR = "00 global:04:model cache error"
+  val SOLVED_STATE      = "00 global:90:planner result"
+  val PEAKMEMORY        = "00 global:80:peak memory"
+  val ERROR             = "00 global:99:error"
 
   val SOLUTION_LENGTH = "01 solution:01:number of primitive plan steps"
   val SOLUTION_COST = "01 solution:02:cost of solution"
@@ -216,6 +223,9 @@ object Information {
   val NUMBER_OF_NODES             = "10 search nodes:00:total"
   val NUMBER_OF_EXPANDED_NODES    = "10 search nodes:01:expanded"
   val NUMBER_OF_DISCARDED_NODES   = "10 search nodes:02:discarded nodes"
+  val NUMBER_OF_EVICTED_NODES     = "10 search nodes:03:evicted nodes"
+  val NUMBER_OF_PRUNED_DUPLICATES = "10 search nodes:04:pruned duplicates"
+  val DUPLICATE_PRUNING_RATE      = "10 search nodes:05:duplicate pruning rate"
   val SEARCH_SPACE_FULLY_EXPLORED = "10 search nodes:99:search space fully explored"
 
   val PLAN_SIZE = "20 search plans:01:number of plansteps"
@@ -0,0 +1,181 @@
+// PANDA 3 -- a domain-independent planner for classical and hierarchical planning
+// Copyright (C) 2014-2018 the original author or authors.
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package de.uniulm.ki.panda3.efficient.domain.datastructures.primitivereachability
+
+import java.util
+
+import scala.collection.mutable.ArrayBuffer
+
+/**
+  * Numbers a set of ground facts consecutively, s.t. values of facts can be stored in plain arrays. Facts are looked up without hashing:
+  *
+  * Every argument position of a predicate maps the constants occurring at it to consecutive ranks. If the number of combinations of these ranks is small compared to the number of
+  * facts of the predicate, a fact is looked up directly in a table indexed by its combination of ranks. Otherwise the facts of the predicate are kept lexicographically sorted and
+  * a fact is found by binary search.
+  */
+class EfficientFactIndex(numberOfPredicates: Int, facts: Array[(Int, Array[Int])]) {
+
+  private val predicateBuffer = new ArrayBuffer[Int]()
+  private val argumentsBuffer = new ArrayBuffer[Array[Int]]()
+
+  // per predicate and argument position the rank of each constant, -1 if the constant does not occur at that position
+  private val constantRanks: Array[Array[Array[Int]]] = new Array(numberOfPredicates)
+  private val numberOfRanks: Array[Array[Int]]        = new Array(numberOfPredicates)
+  // per predicate either a table from the combination of ranks to the fact or null if the facts are searched in sortedArguments
+  private val rankTable     : Array[Array[Int]]        = new Array(numberOfPredicates)
+  // the sorted arguments of the facts of each predicate and the corresponding facts
+  private val sortedArguments: Array[Array[Array[Int]]] = new Array(numberOfPredicates)
+  private val sortedFacts    : Array[Array[Int]]        = new Array(numberOfPredicates)
+
+  {
+    val factsPerPredicate = Array.fill(numberOfPredicates)(new ArrayBuffer[Array[Int]]())
+    var i = 0
+    while (i < facts.length) {
+      factsPerPredicate(facts(i)._1) append facts(i)._2
+      i += 1
+    }
+
+    var predicate = 0
+    while (predicate < numberOfPredicates) {
+      indexPredicate(predicate, factsPerPredicate(predicate))
+      predicate += 1
+    }
+  }
+
+  /** the number of different facts */
+  val numberOfFacts: Int = predicateBuffer.length
+
+  /** the predicate of each fact */
+  val factPredicates: Array[Int] = predicateBuffer.toArray
+
+  /** the arguments of each fact */
+  val factArguments: Array[Array[Int]] = argumentsBuffer.toArray
+
+  /** returns the number of the fact or -1 if it is not known */
+  def apply(predicate: Int, arguments: Array[Int]): Int = if (predicate >= numberOfPredicates) -1
+  else if (rankTable(predicate) != null) {
+    val ranks = constantRanks(predicate)
+    var code = 0
+    var position = 0
+    while (position < arguments.length && code != -1) {
+      val constant = arguments(position)
+      val rank = if (constant < ranks(position).length) ranks(position)(constant) else -1
+      code = if (rank == -1) -1 else code * numberOfRanks(predicate)(position) + rank
+      position += 1
+    }
+    if (code == -1) -1 else rankTable(predicate)(code)
+  } else {
+    val index = util.Arrays.binarySearch(sortedArguments(predicate), arguments, EfficientFactIndex.lexicographicOrder)
+    if (index < 0) -1 else sortedFacts(predicate)(index)
+  }
+
+  private def indexPredicate(predicate: Int, predicateFacts: ArrayBuffer[Array[Int]]): Unit = {
+    if (predicateFacts.nonEmpty) {
+      val arity = predicateFacts.head.length
+
+      // assign ranks to the constants in order of their first appearance
+      val ranks = new Array[Array[Int]](arity)
+      val rankCounts = new Array[Int](arity)
+      var position = 0
+      while (position < arity) {
+        var maximalConstant = 0
+        var i = 0
+        while (i < predicateFacts.length) {
+          maximalConstant = Math.max(maximalConstant, predicateFacts(i)(position))
+          i += 1
+        }
+        ranks(position) = Array.fill(maximalConstant + 1)(-1)
+        i = 0
+        while (i < predicateFacts.length) {
+          val constant = predicateFacts(i)(position)
+          if (ranks(position)(constant) == -1) {
+            ranks(position)(constant) = rankCounts(position)
+            rankCounts(position) += 1
+          }
+          i += 1
+        }
+        position += 1
+      }
+
+      var tableSize = 1L
+      position = 0
+      while (position < arity && tableSize <= EfficientFactIndex.maximalTableSize) {
+        tableSize *= rankCounts(position)
+        position += 1
+      }
+
+      if (tableSize <= Math.min(EfficientFactIndex.maximalTableSize, EfficientFactIndex.tableSizePerFact * predicateFacts.length + EfficientFactIndex.minimalTableSize)) {
+        constantRanks(predicate) = ranks
+        numberOfRanks(predicate) = rankCounts
+        rankTable(predicate) = Array.fill(tableSize.toInt)(-1)
+
+        var i = 0
+        while (i < predicateFacts.length) {
+          val arguments = predicateFacts(i)
+          var code = 0
+          position = 0
+          while (position < arity) {
+            code = code * rankCounts(position) + ranks(position)(arguments(position))
+            position += 1
+          }
+          if (rankTable(predicate)(code) == -1) rankTable(predicate)(code) = newFact(predicate, arguments)
+          i += 1
+        }
+      } else {
+        val sorted = predicateFacts.toArray
+        util.Arrays.sort(sorted, EfficientFactIndex.lexicographicOrder)
+        val distinctArguments = new ArrayBuffer[Array[Int]]()
+        val distinctFacts = new ArrayBuffer[Int]()
+        var i = 0
+        while (i < sorted.length) {
+          if (i == 0 || EfficientFactIndex.lexicographicOrder.compare(sorted(i - 1), sorted(i)) != 0) {
+            distinctArguments append sorted(i)
+            distinctFacts append newFact(predicate, sorted(i))
+          }
+          i += 1
+        }
+        sortedArguments(predicate) = distinctArguments.toArray
+        sortedFacts(predicate) = distinctFacts.toArray
+      }
+    } else {
+      // there are no facts with this predicate, so nothing can be found
+      sortedArguments(predicate) = Array()
+      sortedFacts(predicate) = Array()
+    }
+  }
+
+  private def newFact(predicate: Int, arguments: Array[Int]): Int = {
+    predicateBuffer append predicate
+    argumentsBuffer append arguments
+    predicateBuffer.length - 1
+  }
+}
+
+object EfficientFactIndex {
+  // a table may have at most this many entries per fact of its predicate (and a small base size), otherwise the facts are searched
+  private val tableSizePerFact = 16L
+  private val minimalTableSize = 1024L
+  private val maximalTableSize = Integer.MAX_VALUE / 2L
+
+  private val lexicographicOrder: util.Comparator[Array[Int]] = new util.Comparator[Array[Int]] {
+    override def compare(a: Array[Int], b: Array[Int]): Int = {
+      var position = 0
+      while (position < a.length && a(position) == b(position)) position += 1
+      if (position == a.length) 0 else Integer.compare(a(position), b(position))
+    }
+  }
+}
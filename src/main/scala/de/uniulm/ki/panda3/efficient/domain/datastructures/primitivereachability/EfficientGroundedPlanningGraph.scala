@@ -16,6 +16,7 @@
 
 package de.uniulm.ki.panda3.efficient.domain.datastructures.primitivereachability
 
+import java.util.concurrent.{Callable, ForkJoinPool}
 import java.{util => jav}
 
 import de.uniulm.ki.panda3.efficient.csp.EfficientVariableConstraint
@@ -23,11 +24,18 @@ import de.uniulm.ki.panda3.efficient.domain.EfficientDomain
 
 import scala.collection.mutable
 import scala.collection.mutable.{ArrayBuffer, HashMap}
+import scala.reflect.ClassTag
 
+/**
+  * @param threads if larger than one, the actions of a layer and the mutexes are computed by that many workers. The graph is the same as the one built by a single thread.
+  *
+  * The plan-based search builds this implementation for the planning graph of its ADD heuristics if [[de.uniulm.ki.panda3.configuration.PlanBasedSearch.planningGraphThreads]] is set.
+  */
 case class EGPGConfiguration(serial: Boolean = false,
                              computeMutexes: Boolean = true,
                              disallowedTasks: Array[Int] = Array[Int](),
-                             disallowedActions: Array[(Int, Array[Int])] = Array[(Int, Array[Int])]()) {}
+                             disallowedActions: Array[(Int, Array[Int])] = Array[(Int, Array[Int])](),
+                             threads: Int = 1) {}
 
 /**
   * Implements the efficient variant of the planning graph.
@@ -78,6 +86,12 @@ case class EGPGConfiguration(serial: Boolean = false,
   * Action mutexes are computed by simply checking the unions and intersections of those bitsets.
   * More information about mutex computation with sets can be found in M. Fox and D. Long (1999).
   *
+  * ## Parallel build
+  * If configured with more than one thread, the actions of a layer are instantiated by a pool of workers. Each worker instantiates all actions of some tasks into its own buffer,
+  * which is possible as the instantiation only reads the facts and mutexes of the previous layer and duplicate actions can only stem from the same task. The buffers are merged
+  * in the order in which a single thread would have instantiated the actions, s.t. the graph does not depend on the number of threads.
+  * The mutexes are tested in parallel in the same way and set in their sequential order afterwards.
+  *
   * ## Performance assumptions 
   * General assumptions about performance in scala.
   * - java.util.BitSets are faster than their scala equivalent.
@@ -108,11 +122,11 @@ case class EfficientGroundedPlanningGraphImplementation(domain: EfficientDomain,
                                                         config: EGPGConfiguration = EGPGConfiguration()) {
 
   /**
-    * Maximum number of facts that could be true in the domain.
+    * Initial size of the fact arrays. They grow if more facts become true.
     */
   private val maxFacts = computeMaxFacts()
   /**
-    * Maximum number of actions that could be instantiated in the domain.
+    * Initial size of the action arrays. They grow if more actions are instantiated.
     */
   private val maxActions = computeMaxActions()
   /**
@@ -120,14 +134,14 @@ case class EfficientGroundedPlanningGraphImplementation(domain: EfficientDomain,
     * The taskIndex is the index of the task in the domain.tasks-array.
     *
     */
-  val actionSpikeIDs: Array[Int] = Array.fill[Int](maxActions)(-1)
+  var actionSpikeIDs: Array[Int] = Array.fill[Int](maxActions)(-1)
   /**
     * Array containing the arguments of each action.
     * The arguments persist of an array of constants while each constant is an Int.
     * The Ints are Indices of the sort's constant-array.
     * The sort of each argument is determined by the task.
     */
-  val actionSpikeArgs: Array[Array[Int]] = new Array[Array[Int]](maxActions)
+  var actionSpikeArgs: Array[Array[Int]] = new Array[Array[Int]](maxActions)
   /**
     * ArrayBuffer containing the first index into the actionSpikes for each rank.
     */
@@ -139,7 +153,7 @@ case class EfficientGroundedPlanningGraphImplementation(domain: EfficientDomain,
   /**
     * Array containing the predicateID of each fact.
     */
-  val factSpikeIDs: Array[Int] = Array.fill[Int](maxFacts)(-1)
+  var factSpikeIDs: Array[Int] = Array.fill[Int](maxFacts)(-1)
 
   /*
    * ################
@@ -152,7 +166,7 @@ case class EfficientGroundedPlanningGraphImplementation(domain: EfficientDomain,
   /**
     * Array containing the arguments of each fact.
     */
-  val factSpikeArgs: Array[Array[Int]] = new Array[Array[Int]](maxFacts)
+  var factSpikeArgs: Array[Array[Int]] = new Array[Array[Int]](maxFacts)
   /**
     * ArrayBuffer containing the first index into the factSpikes for each rank.
     */
@@ -206,38 +220,38 @@ case class EfficientGroundedPlanningGraphImplementation(domain: EfficientDomain,
     * facts are represented by their index in the factSpike, the value represents the layer a fact first becomes true.
     * firstAppearanceOfFacts(i) => k | means that fact i becomes true for the first time in the k-th layer.
     */
-  val firstAppearanceOfFacts: Array[Int] = Array.fill[Int](maxFacts)(-1)
+  var firstAppearanceOfFacts: Array[Int] = Array.fill[Int](maxFacts)(-1)
   /**
     * Array containing all actions (represented by their indices in the actionSpike) for every fact that achieved the fact
     * in the layer they first became true.
     * firstAchieversOfFacts(i).contains(k) => true | means that action k is one of the actions that achieved fact i in its
     * first layer of appearance.
     */
-  val firstAchieversOfFacts: Array[ArrayBuffer[Int]] = new Array[ArrayBuffer[Int]](maxFacts)
+  var firstAchieversOfFacts: Array[ArrayBuffer[Int]] = new Array[ArrayBuffer[Int]](maxFacts)
   /**
     * Array containing the add-effects for every action in the actionSpike.
     * Each action has a BitSet and if a bit is set the action has the fact that is represented by the bit as an add-effect.
     * adds(i).get(k) => true | means that fact k is an add-effect of action i.
     */
-  val adds = new Array[jav.BitSet](maxActions)
+  var adds = new Array[jav.BitSet](maxActions)
   /**
     * Array containing the delete-effects for every action in the actionSpike.
     * Each action has a BitSet and if a bit is set the action has the fact that is represented by the bit as an delete-effect.
     * dels(i).get(k) => true | means that fact k is a delete-effect of action i.
     */
-  val dels = new Array[jav.BitSet](maxActions)
+  var dels = new Array[jav.BitSet](maxActions)
   /**
     * Array containing the preconditions for every action in the actionSpike.
     * Each action has a BitSet and if a bit is set the fact that is represented by the bit is a precondition of the action.
     * precs(i).get(k) => true | means that fact k is a precondition of action i.
     */
-  val precs = new Array[jav.BitSet](maxActions)
+  var precs = new Array[jav.BitSet](maxActions)
   /**
     * Array containing the preconditions for every action in the actionSpike.
     * Each action has an ArrayBuffer containing Ints which are precondition of the action.
     * precs(i).contains(k) => true | means that fact k is a precondition of action i.
     */
-  val precsAB = new Array[ArrayBuffer[Int]](maxActions)
+  var precsAB = new Array[ArrayBuffer[Int]](maxActions)
 
   /**
     * Number of layers in the graph.
@@ -271,6 +285,31 @@ case class EfficientGroundedPlanningGraphImplementation(domain: EfficientDomain,
    * ###############################
    */
 
+  /**
+    * Actions that have been instantiated by a single worker of the parallel build, together with the job they stem from. All actions belong to the same task.
+    */
+  private class LocalActions {
+    var currentJob   : Int                     = -1
+    val jobs         : ArrayBuffer[Int]        = new ArrayBuffer[Int]()
+    val preconditions: ArrayBuffer[Array[Int]] = new ArrayBuffer[Array[Int]]()
+    val arguments    : ArrayBuffer[Array[Int]] = new ArrayBuffer[Array[Int]]()
+
+    def add(precs: Array[Int], args: Array[Int]): Unit = {
+      jobs += currentJob
+      preconditions += precs
+      arguments += args
+    }
+
+    def contains(args: Array[Int]): Boolean = {
+      var actionIterator = 0
+      while (actionIterator < arguments.length) {
+        if (arguments(actionIterator) sameElements args) return true
+        actionIterator += 1
+      }
+      false
+    }
+  }
+
   /**
     * Method that actually builds the planning graph.
     */
@@ -279,6 +318,22 @@ case class EfficientGroundedPlanningGraphImplementation(domain: EfficientDomain,
 
     var counter = 0
 
+    /**
+      * Workers of the parallel build, if more than one thread is configured.
+      */
+    val pool: Option[ForkJoinPool] = if (config.threads > 1) Some(new ForkJoinPool(config.threads)) else None
+
+    /**
+      * Computes f for all indices, in parallel if the pool exists. The results are returned in the order of their indices.
+      */
+    def forAll[T: ClassTag](number: Int)(f: Int => T): Array[T] = pool match {
+      case None       => Array.tabulate(number)(f)
+      case Some(p) =>
+        val tasks = Array.tabulate(number) { i => new Callable[T] {override def call(): T = f(i)} }
+        val futures = p.invokeAll(jav.Arrays.asList(tasks: _*))
+        Array.tabulate(number) { i => futures.get(i).get() }
+    }
+
     /**
       * Array containing the number of unmet preconditions for every task.
       * A precondition is unmet if no fact exists in the factSpike containing the precondition's predicate.
@@ -305,11 +360,11 @@ case class EfficientGroundedPlanningGraphImplementation(domain: EfficientDomain,
       */
     val deletedFactMutexSecond = new ArrayBuffer[Int]()
 
-    val producers = Array.fill[jav.BitSet](maxFacts)(new jav.BitSet())
+    var producers = Array.fill[jav.BitSet](maxFacts)(new jav.BitSet())
 
-    val producersAB = Array.fill[ArrayBuffer[Int]](maxFacts)(new ArrayBuffer[Int]())
+    var producersAB = Array.fill[ArrayBuffer[Int]](maxFacts)(new ArrayBuffer[Int]())
 
-    val consumersAB = Array.fill[ArrayBuffer[Int]](maxFacts)(new ArrayBuffer[Int]())
+    var consumersAB = Array.fill[ArrayBuffer[Int]](maxFacts)(new ArrayBuffer[Int]())
 
     val updatedFacts = new ArrayBuffer[Int]()
 
@@ -431,6 +486,33 @@ case class EfficientGroundedPlanningGraphImplementation(domain: EfficientDomain,
       temporaryActionMutexesAB += Array.fill[ArrayBuffer[Int]](actionIndex + 1)(new ArrayBuffer[Int]())
     }
 
+    /**
+      * Enlarges the action arrays if they are full.
+      */
+    def ensureActionCapacity(): Unit = if (actionIndex == actionSpikeIDs.length) {
+      val size = grownSize(actionIndex)
+      actionSpikeIDs = grown(actionSpikeIDs, size, -1)
+      actionSpikeArgs = grown(actionSpikeArgs, size, null)
+      adds = grown(adds, size, null)
+      dels = grown(dels, size, null)
+      precs = grown(precs, size, null)
+      precsAB = grown(precsAB, size, null)
+    }
+
+    /**
+      * Enlarges the fact arrays if they are full.
+      */
+    def ensureFactCapacity(): Unit = if (factIndex == factSpikeIDs.length) {
+      val size = grownSize(factIndex)
+      factSpikeIDs = grown(factSpikeIDs, size, -1)
+      factSpikeArgs = grown(factSpikeArgs, size, null)
+      firstAppearanceOfFacts = grown(firstAppearanceOfFacts, size, -1)
+      firstAchieversOfFacts = grown(firstAchieversOfFacts, size, null)
+      producers = grown(producers, size, new jav.BitSet())
+      producersAB = grown(producersAB, size, new ArrayBuffer[Int]())
+      consumersAB = grown(consumersAB, size, new ArrayBuffer[Int]())
+    }
+
     def doesActionExist(taskID: Int, args: Array[Int]): Int = {
       var actionExists = -1
       val actions = taskActionsABs(taskID)
@@ -490,6 +572,7 @@ case class EfficientGroundedPlanningGraphImplementation(domain: EfficientDomain,
       if (exists != -1) {
         exists
       } else {
+        ensureFactCapacity()
         factSpikeIDs(factIndex) = predicate
         factSpikeArgs(factIndex) = args
         predicateFactMap(predicate).+=:(factIndex)
@@ -521,9 +604,8 @@ case class EfficientGroundedPlanningGraphImplementation(domain: EfficientDomain,
          */
         val actions = delBackLogActionIndex(predicate)
         val effects = delBackLogEffectIndex(predicate)
-        val numOfIterations = actions.length
         var iterator = 0
-        while (iterator < numOfIterations) {
+        while (iterator < actions.length) {
 
           /*
            * Compare arguments for same constants.
@@ -535,18 +617,20 @@ case class EfficientGroundedPlanningGraphImplementation(domain: EfficientDomain,
           var argIterator = 0
           while (argIterator < numOfArgs && args(argIterator) == effectArgs(argIterator)) argIterator += 1
           if (argIterator == numOfArgs) {
+            // the next entry moves to the current position
             delBackLogActionIndex(predicate).remove(iterator)
             delBackLogEffectIndex(predicate).remove(iterator)
             dels(action).set(factIndex)
+          } else {
+            iterator += 1
           }
-          iterator += 1
         }
         factIndex += 1
         factIndex - 1
       }
     }
 
-    def addActions(taskID: Int, facts: Array[Int]): Unit = {
+    def addActions(taskID: Int, facts: Array[Int], localActions: LocalActions): Unit = {
 
       val task = domain.tasks(taskID)
 
@@ -652,14 +736,15 @@ case class EfficientGroundedPlanningGraphImplementation(domain: EfficientDomain,
             var canBeUsed = true
 
             val fact = usableFacts(index)(uFIndex)
-            if (singleFact && fact < facts(0)) {
+            // combinations with other new facts of this layer are instantiated by the job of the smallest new fact, facts of earlier layers have to be used by every job
+            if (singleFact && fact < facts(0) && fact >= oldFactIndex) {
               canBeUsed = false
             }
             if (canBeUsed) {
               usedFacts(index) = fact
               if (setAssignment(fact, index) && firstAppearanceOfFacts(fact) >= 0 && isMutexFree(index)) {
                 if (index == usedFacts.length - 1) {
-                  addAction(taskID, usedFacts, assignment)
+                  addAction(taskID, usedFacts, assignment, localActions)
                 } else {
                   iteratePrecCombinations(index + 1)
                 }
@@ -670,7 +755,7 @@ case class EfficientGroundedPlanningGraphImplementation(domain: EfficientDomain,
           }
         } else {
           if (index == usedFacts.length - 1) {
-            addAction(taskID, usedFacts, assignment)
+            addAction(taskID, usedFacts, assignment, localActions)
           } else {
             iteratePrecCombinations(index + 1)
           }
@@ -748,7 +833,11 @@ case class EfficientGroundedPlanningGraphImplementation(domain: EfficientDomain,
       iterateCandidatesCombinations(0)
     }
 
-    def addAction(taskIndex: Int, preconditions: Array[Int], assignment: Array[Int]): Unit = {
+    /**
+      * Instantiates all actions of the task with the given preconditions and the partial assignment. If localActions is not null, the actions are collected there instead of
+      * being added to the graph.
+      */
+    def addAction(taskIndex: Int, preconditions: Array[Int], assignment: Array[Int], localActions: LocalActions): Unit = {
 
 
       val task = domain.tasks(taskIndex)
@@ -796,23 +885,8 @@ case class EfficientGroundedPlanningGraphImplementation(domain: EfficientDomain,
         }
 
         if (areConstraintsFulfilled()) {
-          taskActionsABs(taskIndex) += actionIndex
-          actionSpikeIDs(actionIndex) = taskIndex
-          actionSpikeArgs(actionIndex) = finalAssignment.clone()
-          precs(actionIndex) = new jav.BitSet()
-          precsAB(actionIndex) = new ArrayBuffer[Int]()
-          adds(actionIndex) = new jav.BitSet()
-          dels(actionIndex) = new jav.BitSet()
-          // set precs
-          var precIndex = 0
-          while (precIndex < preconditions.length) {
-            val prec = preconditions(precIndex)
-            precs(actionIndex).set(prec)
-            precsAB(actionIndex) += prec
-            consumersAB(prec) += actionIndex
-            precIndex += 1
-          }
-          actionIndex += 1
+          if (localActions == null) storeAction(taskIndex, preconditions, finalAssignment.clone())
+          else localActions.add(preconditions.clone(), finalAssignment.clone())
         }
       }
 
@@ -824,7 +898,7 @@ case class EfficientGroundedPlanningGraphImplementation(domain: EfficientDomain,
             val constant = domain.constantsOfSort(sort)(sIndex)
             assignment(index) = constant
             if (index == lastIndex) {
-              if (isAllowed && doesActionExist(taskIndex, assignment) == -1) {
+              if (isAllowed && doesActionExist(taskIndex, assignment) == -1 && (localActions == null || !localActions.contains(assignment))) {
                 instantiateAction(assignment)
               }
             } else {
@@ -835,7 +909,7 @@ case class EfficientGroundedPlanningGraphImplementation(domain: EfficientDomain,
           }
         } else {
           if (index == lastIndex) {
-            if (isAllowed && doesActionExist(taskIndex, assignment) == -1) {
+            if (isAllowed && doesActionExist(taskIndex, assignment) == -1 && (localActions == null || !localActions.contains(assignment))) {
               instantiateAction(assignment)
             }
           } else {
@@ -850,14 +924,91 @@ case class EfficientGroundedPlanningGraphImplementation(domain: EfficientDomain,
       if (assignmentIterator != assignment.length && assignment.length > 0) {
         iterateParameterCombinations(0)
       } else {
-        if (isAllowed && doesActionExist(taskIndex, assignment) == -1) {
+        if (isAllowed && doesActionExist(taskIndex, assignment) == -1 && (localActions == null || !localActions.contains(assignment))) {
           instantiateAction(assignment)
         }
       }
 
     }
 
-    def instantiateActionsFromNewFacts(): Unit = {
+    /**
+      * Adds a new action to the graph.
+      */
+    def storeAction(taskIndex: Int, preconditions: Array[Int], arguments: Array[Int]): Unit = {
+      ensureActionCapacity()
+      taskActionsABs(taskIndex) += actionIndex
+      actionSpikeIDs(actionIndex) = taskIndex
+      actionSpikeArgs(actionIndex) = arguments
+      precs(actionIndex) = new jav.BitSet()
+      precsAB(actionIndex) = new ArrayBuffer[Int]()
+      adds(actionIndex) = new jav.BitSet()
+      dels(actionIndex) = new jav.BitSet()
+      // set precs
+      var precIndex = 0
+      while (precIndex < preconditions.length) {
+        val prec = preconditions(precIndex)
+        precs(actionIndex).set(prec)
+        precsAB(actionIndex) += prec
+        consumersAB(prec) += actionIndex
+        precIndex += 1
+      }
+      actionIndex += 1
+    }
+
+    /**
+      * Instantiates the actions of all jobs (a task and the facts that have to be used as its preconditions) in their order.
+      * In the parallel mode, the jobs are partitioned by their task, as only actions of the same task can be duplicates of each other.
+      */
+    def runInstantiationJobs(jobTasks: ArrayBuffer[Int], jobFacts: ArrayBuffer[Array[Int]]): Unit = if (pool.isEmpty) {
+      var job = 0
+      while (job < jobTasks.length) {
+        addActions(jobTasks(job), jobFacts(job), null)
+        job += 1
+      }
+    } else {
+      val jobsPerTask = new mutable.LinkedHashMap[Int, ArrayBuffer[Int]]()
+      var job = 0
+      while (job < jobTasks.length) {
+        jobsPerTask.getOrElseUpdate(jobTasks(job), new ArrayBuffer[Int]()) += job
+        job += 1
+      }
+      val taskJobs = jobsPerTask.values.toArray
+
+      val instantiated: Array[LocalActions] = forAll(taskJobs.length) { t =>
+        val localActions = new LocalActions()
+        taskJobs(t) foreach { job =>
+          localActions.currentJob = job
+          addActions(jobTasks(job), jobFacts(job), localActions)
+        }
+        localActions
+      }
+
+      // merge the actions in the order of their jobs
+      val actionsPerJob = Array.fill(jobTasks.length)(new ArrayBuffer[Int]())
+      var t = 0
+      while (t < instantiated.length) {
+        var action = 0
+        while (action < instantiated(t).arguments.length) {
+          actionsPerJob(instantiated(t).jobs(action)) += t
+          actionsPerJob(instantiated(t).jobs(action)) += action
+          action += 1
+        }
+        t += 1
+      }
+      job = 0
+      while (job < jobTasks.length) {
+        val actions = actionsPerJob(job)
+        var i = 0
+        while (i < actions.length) {
+          val localActions = instantiated(actions(i))
+          storeAction(jobTasks(job), localActions.preconditions(actions(i + 1)), localActions.arguments(actions(i + 1)))
+          i += 2
+        }
+        job += 1
+      }
+    }
+
+    def instantiateActionsFromNewFacts(jobTasks: ArrayBuffer[Int], jobFacts: ArrayBuffer[Array[Int]]): Unit = {
       var fIndex = oldFactIndex
       while (fIndex < factIndex) {
         var taskIterator = 0
@@ -866,7 +1017,8 @@ case class EfficientGroundedPlanningGraphImplementation(domain: EfficientDomain,
           val taskID = tasks(taskIterator)
 
           if (unmetPreconditions(taskID) == 0) {
-            addActions(taskID, Array[Int](fIndex))
+            jobTasks += taskID
+            jobFacts += Array[Int](fIndex)
           }
           taskIterator += 1
         }
@@ -874,7 +1026,7 @@ case class EfficientGroundedPlanningGraphImplementation(domain: EfficientDomain,
       }
     }
 
-    def instantiateActionsFromDeletedMutexes(): Unit = {
+    def instantiateActionsFromDeletedMutexes(jobTasks: ArrayBuffer[Int], jobFacts: ArrayBuffer[Array[Int]]): Unit = {
       var mutexIndex = 0
       val nuOfDelMutexes = deletedFactMutexFirst.length
       while (mutexIndex < nuOfDelMutexes) {
@@ -893,7 +1045,8 @@ case class EfficientGroundedPlanningGraphImplementation(domain: EfficientDomain,
             val task = tasks1(tIndex1)
             val facts = Array(fact1Index, fact2Index)
             if (unmetPreconditions(task) == 0) {
-              addActions(task, facts)
+              jobTasks += task
+              jobFacts += facts
             }
             tIndex1 += 1
             tIndex2 += 1
@@ -956,6 +1109,7 @@ case class EfficientGroundedPlanningGraphImplementation(domain: EfficientDomain,
     }
 
     def createNOOP(factIndex: Int): Unit = {
+      ensureActionCapacity()
       val taskID = factSpikeIDs(factIndex)
       actionSpikeIDs(actionIndex) = domain.tasks.length + taskID + 1
       actionSpikeArgs(actionIndex) = factSpikeArgs(factIndex)
@@ -1016,11 +1170,29 @@ case class EfficientGroundedPlanningGraphImplementation(domain: EfficientDomain,
       updatedFacts.clear()
 
       def addActionMutexes(): Unit = {
-        var aIndex1 = oldActionIndex
-        while (aIndex1 < actionIndex) {
+        // the tests only read the actions and the fact mutexes of the last layer, so they can be done in parallel. Each entry holds pairs of an action and its mutex type.
+        val mutexesOfNewActions: Array[ArrayBuffer[Int]] = forAll(actionIndex - oldActionIndex) { i =>
+          val aIndex1 = oldActionIndex + i
+          val mutexes = new ArrayBuffer[Int]()
           var aIndex2 = 0
           while (aIndex2 < aIndex1) {
             val mutex = areActionsMutex(aIndex1, aIndex2)
+            if (mutex != 0) {
+              mutexes += aIndex2
+              mutexes += mutex
+            }
+            aIndex2 += 1
+          }
+          mutexes
+        }
+
+        var aIndex1 = oldActionIndex
+        while (aIndex1 < actionIndex) {
+          val mutexes = mutexesOfNewActions(aIndex1 - oldActionIndex)
+          var mIndex = 0
+          while (mIndex < mutexes.length) {
+            val aIndex2 = mutexes(mIndex)
+            val mutex = mutexes(mIndex + 1)
             if (mutex == 1) {
               newTemporaryActionMutexes(aIndex2).set(aIndex1)
               newTemporaryActionMutexes(aIndex1).set(aIndex2)
@@ -1031,7 +1203,7 @@ case class EfficientGroundedPlanningGraphImplementation(domain: EfficientDomain,
               newPermanentActionMutexes(aIndex2).set(aIndex1)
               newPermanentActionMutexes(aIndex1).set(aIndex2)
             }
-            aIndex2 += 1
+            mIndex += 2
           }
           aIndex1 += 1
         }
@@ -1164,18 +1336,30 @@ case class EfficientGroundedPlanningGraphImplementation(domain: EfficientDomain,
       }
 
       def addFactMutexes(): Unit = {
-        var fIndex1 = factIndex - 1
-        while (fIndex1 >= oldFactIndex) {
+        // the tests only read the action mutexes, which are final at this point. They are set in the same order as they would have been without parallelisation.
+        val mutexesOfNewFacts: Array[ArrayBuffer[Int]] = forAll(factIndex - oldFactIndex) { i =>
+          val fIndex1 = factIndex - 1 - i
+          val mutexes = new ArrayBuffer[Int]()
           var fIndex2 = fIndex1 - 1
           while (fIndex2 >= 0) {
-            if (areFactsMutex(fIndex2, fIndex1)) {
-              newFactMutexes(fIndex2).set(fIndex1)
-              newFactMutexes(fIndex1).set(fIndex2)
-              newFactMutexesAB(fIndex2) += (fIndex1)
-              newFactMutexesAB(fIndex1) += (fIndex2)
-            }
+            if (areFactsMutex(fIndex2, fIndex1)) mutexes += fIndex2
             fIndex2 -= 1
           }
+          mutexes
+        }
+
+        var fIndex1 = factIndex - 1
+        while (fIndex1 >= oldFactIndex) {
+          val mutexes = mutexesOfNewFacts(factIndex - 1 - fIndex1)
+          var mIndex = 0
+          while (mIndex < mutexes.length) {
+            val fIndex2 = mutexes(mIndex)
+            newFactMutexes(fIndex2).set(fIndex1)
+            newFactMutexes(fIndex1).set(fIndex2)
+            newFactMutexesAB(fIndex2) += (fIndex1)
+            newFactMutexesAB(fIndex1) += (fIndex2)
+            mIndex += 1
+          }
           fIndex1 -= 1
         }
       }
@@ -1194,22 +1378,29 @@ case class EfficientGroundedPlanningGraphImplementation(domain: EfficientDomain,
       }
 
       def deleteFactMutexes(): Unit = {
-        val uFacts = updatedFacts.distinct
+        val uFacts = updatedFacts.distinct.filter(_ < oldFactIndex).toArray
         deletedFactMutexFirst.clear()
         deletedFactMutexSecond.clear()
+        // only the mutexes of the last layer are checked, so the checks do not depend on the deletions
+        val noLongerMutex: Array[ArrayBuffer[Int]] = forAll(uFacts.length) { i =>
+          val fact1 = uFacts(i)
+          val mutexes = factMutexesAB.last(fact1)
+          val deleted = new ArrayBuffer[Int]()
+          var mIndex = 0
+          while (mIndex < mutexes.length) {
+            val fact2 = mutexes(mIndex)
+            if (!areFactsMutex(fact1, fact2)) deleted += fact2
+            mIndex += 1
+          }
+          deleted
+        }
         var fIndex = 0
         while (fIndex < uFacts.length) {
-          val fact1 = uFacts(fIndex)
-          if (fact1 < oldFactIndex) {
-            val mutexes = factMutexesAB.last(fact1)
-            var mIndex = 0
-            while (mIndex < mutexes.length) {
-              val fact2 = mutexes(mIndex)
-              if (!areFactsMutex(fact1, fact2)) {
-                deleteFactMutex(fact1, fact2)
-              }
-              mIndex += 1
-            }
+          val deleted = noLongerMutex(fIndex)
+          var mIndex = 0
+          while (mIndex < deleted.length) {
+            deleteFactMutex(uFacts(fIndex), deleted(mIndex))
+            mIndex += 1
           }
           fIndex += 1
         }
@@ -1218,7 +1409,7 @@ case class EfficientGroundedPlanningGraphImplementation(domain: EfficientDomain,
     }
 
     var running = true
-    while (running) {
+    try while (running) {
       if (counter == 0) {
         init()
       } else {
@@ -1228,7 +1419,7 @@ case class EfficientGroundedPlanningGraphImplementation(domain: EfficientDomain,
             val task = domain.tasks(taskIndex)
             // instantiate 0-precs-tasks
             if (task.precondition.length == 0 && !task.initOrGoalTask) {
-              addAction(taskIndex, new Array[Int](0), Array.fill[Int](task.parameterSorts.length)(-1))
+              addAction(taskIndex, new Array[Int](0), Array.fill[Int](task.parameterSorts.length)(-1), null)
             }
             taskIndex += 1
           }
@@ -1239,12 +1430,15 @@ case class EfficientGroundedPlanningGraphImplementation(domain: EfficientDomain,
           addNOOPs()
         }
         // add new actions based on new facts.
-        instantiateActionsFromNewFacts()
+        val jobTasks = new ArrayBuffer[Int]()
+        val jobFacts = new ArrayBuffer[Array[Int]]()
+        instantiateActionsFromNewFacts(jobTasks, jobFacts)
         // add new actions based on deleted mutexes.
 
         if (config.computeMutexes) {
-          instantiateActionsFromDeletedMutexes()
+          instantiateActionsFromDeletedMutexes(jobTasks, jobFacts)
         }
+        runInstantiationJobs(jobTasks, jobFacts)
         addFacts()
         if (config.computeMutexes) {
           computeMutexes()
@@ -1263,15 +1457,34 @@ case class EfficientGroundedPlanningGraphImplementation(domain: EfficientDomain,
       }
       oldActionIndex = actionIndex
       counter += 1
-    }
+    } finally pool foreach { _.shutdown() }
+
+  }
+
+  /**
+    * Size of an action or fact array that is full at the given size.
+    */
+  private def grownSize(size: Int): Int = if (size > Integer.MAX_VALUE / 2) Integer.MAX_VALUE - 8 else Math.max(2 * size, 16)
 
+  /**
+    * Returns a copy of the array with the given size, whose new elements are set to (separate evaluations of) default.
+    */
+  private def grown[T: ClassTag](array: Array[T], size: Int, default: => T): Array[T] = {
+    val newArray = new Array[T](size)
+    System.arraycopy(array, 0, newArray, 0, array.length)
+    var index = array.length
+    while (index < size) {
+      newArray(index) = default
+      index += 1
+    }
+    newArray
   }
 
   /**
-    * Computes the maximum number of actions (including NO-OPs) that can theoretically be instantiated in the domain.
+    * Estimates the number of actions (including NO-OPs) by the number of constants of the parameters of all tasks.
     * If this number exceeds Integer.MAX_VALUE it will return Integer.MAX_VALUE instead.
     *
-    * @return The maximum number of actions.
+    * @return The initial size of the action arrays.
     */
   private def computeMaxActions(): Int = {
     var max = false
@@ -1311,10 +1524,10 @@ case class EfficientGroundedPlanningGraphImplementation(domain: EfficientDomain,
   }
 
   /**
-    * Computes the maximum number of facts that theoretically can become true in the domain.
+    * Estimates the number of facts by the number of constants of the arguments of all predicates.
     * If this number exceeds Integer.MAX_VALUE it will return Integer.MAX_VALUE instead.
     *
-    * @return The maximum number of facts.
+    * @return The initial size of the fact arrays.
     */
   private def computeMaxFacts(): Int = {
     var max = false
@@ -29,6 +29,13 @@ trait EfficientGroundedPlanningGraph {
   def actionLayer: Array[Array[(Int, Array[Int])]]
 
   def stateLayer: Array[Array[(Int, Array[Int])]]
+
+  /** numbers all facts occurring in the state layers */
+  lazy val factIndex: EfficientFactIndex = {
+    val facts = stateLayer.flatten
+    val numberOfPredicates = if (facts.isEmpty) 0 else (facts map { _._1 }).max + 1
+    new EfficientFactIndex(numberOfPredicates, facts)
+  }
 }
 
 
@@ -45,3 +52,21 @@ case class EfficientGroundedPlanningGraphFromSymbolic(symbolicPlanningGraph: Gro
       (wrapper.unwrap(predicate), arguments map wrapper.unwrap toArray) } toArray
   } toArray
 }
+
+/**
+  * The layers of a planning graph that has been built directly on the efficient domain. As in the symbolic graph, every layer contains all actions and facts reached so far,
+  * but neither NO-OPs nor the init and goal tasks.
+  */
+case class EfficientGroundedPlanningGraphFromImplementation(planningGraph: EfficientGroundedPlanningGraphImplementation) extends EfficientGroundedPlanningGraph {
+
+  override val actionLayer: Array[Array[(Int, Array[Int])]] = planningGraph.actionRankLast.toArray map { last =>
+    Range(0, last) filter { a =>
+      val taskID = planningGraph.actionSpikeIDs(a)
+      taskID < planningGraph.domain.tasks.length && planningGraph.domain.tasks(taskID).isPrimitive && !planningGraph.domain.tasks(taskID).initOrGoalTask
+    } map { a => (planningGraph.actionSpikeIDs(a), planningGraph.actionSpikeArgs(a)) } toArray
+  }
+
+  override val stateLayer: Array[Array[(Int, Array[Int])]] = planningGraph.factRankLast.toArray map { last =>
+    Range(0, last) map { f => (planningGraph.factSpikeIDs(f), planningGraph.factSpikeArgs(f)) } toArray
+  }
+}
@@ -16,15 +16,12 @@
 
 package de.uniulm.ki.panda3.efficient.heuristic
 
-import de.uniulm.ki.panda3.efficient.domain.{EfficientDomain, EfficientGroundTask}
-import de.uniulm.ki.panda3.efficient.domain.datastructures.primitivereachability.EfficientGroundedPlanningGraph
+import de.uniulm.ki.panda3.efficient.domain.EfficientDomain
+import de.uniulm.ki.panda3.efficient.domain.datastructures.primitivereachability.{EfficientFactIndex, EfficientGroundedPlanningGraph}
 import de.uniulm.ki.panda3.efficient.plan.EfficientPlan
-import de.uniulm.ki.panda3.efficient.logic.EfficientGroundLiteral
 import de.uniulm.ki.panda3.efficient.plan.modification.EfficientModification
 import de.uniulm.ki.util._
 
-import scala.collection.mutable.ArrayBuffer
-
 /**
   * standard ADD-heuristic according to Young & Simons
   *
@@ -33,58 +30,79 @@ import scala.collection.mutable.ArrayBuffer
 case class AddHeuristic(planningGraph: EfficientGroundedPlanningGraph, domain: EfficientDomain, initialState: Array[(Int, Array[Int])],
                         resuingAsVHPOP: Boolean) extends MinimisationOverGroundingsBasedHeuristic[Unit] {
 
-  val heuristicMap: Map[EfficientGroundLiteral, Double] =
-    (planningGraph.actionLayer zip planningGraph.stateLayer)
-      .foldLeft(initialState map { case (predicate, args) => EfficientGroundLiteral(predicate, isPositive = true, args) -> 0.0 } toMap)(
-        {
-          case (initiallyComputedValues, (actions, _)) =>
-            // apply all actions
-            actions.distinct.foldLeft(initiallyComputedValues)({ case (computedValues, (task, arguments)) =>
-              val groundTask = EfficientGroundTask(task, arguments)
-
-              // determine the total cost for this action
-              var actionCost = 1.0
-
-              var precondition = 0
-              while (precondition < domain.tasks(task).precondition.length) {
-                actionCost += computedValues(groundTask.substitutedPrecondition(precondition, domain))
-                precondition += 1
-              }
-
-
-              val newPredicateCosts: ArrayBuffer[(EfficientGroundLiteral, Double)] = new ArrayBuffer[(EfficientGroundLiteral, Double)]()
-              val removePredicateCosts: ArrayBuffer[EfficientGroundLiteral] = new ArrayBuffer[EfficientGroundLiteral]()
-
-              var effect = 0
-              while (effect < domain.tasks(task).effect.length) {
-                val effectLiteral = groundTask.substitutedEffect(effect, domain)
-                if (effectLiteral.isPositive && !computedValues.contains(effectLiteral)) {
-                  newPredicateCosts append ((effectLiteral, actionCost))
-                }
-
-                if (effectLiteral.isPositive && computedValues.contains(effectLiteral) && computedValues(effectLiteral) > actionCost) {
-                  removePredicateCosts append effectLiteral
-                  newPredicateCosts append ((effectLiteral, actionCost))
-                }
+  /** the facts of the planning graph, which index factCosts */
+  val factIndex: EfficientFactIndex = planningGraph.factIndex
+
+  /**
+    * The ADD value of every fact of the planning graph, Double.MaxValue for facts that are never reached.
+    * The actions of each layer are applied in turn, each one lowering the costs of its positive effects to one plus the summed costs of its preconditions.
+    * Only positive facts have costs, i.e. a negative precondition costs Double.MaxValue.
+    */
+  val factCosts: Array[Double] = {
+    val costs = Array.fill(factIndex.numberOfFacts)(Double.MaxValue)
+
+    var i = 0
+    while (i < initialState.length) {
+      val fact = factIndex(initialState(i)._1, initialState(i)._2)
+      if (fact != -1) costs(fact) = 0.0
+      i += 1
+    }
 
-                effect += 1
-              }
+    val numberOfLayers = Math.min(planningGraph.actionLayer.length, planningGraph.stateLayer.length)
+    var layer = 0
+    while (layer < numberOfLayers) {
+      val actions = planningGraph.actionLayer(layer)
+      var action = 0
+      while (action < actions.length) {
+        val (taskIndex, arguments) = actions(action)
+        val task = domain.tasks(taskIndex)
+
+        // determine the total cost for this action
+        var actionCost = 1.0
+        var precondition = 0
+        while (precondition < task.precondition.length) {
+          val literal = task.precondition(precondition)
+          actionCost += (if (literal.isPositive) costOf(costs, literal.predicate, task.getArgumentsOfLiteral(arguments, literal)) else Double.MaxValue)
+          precondition += 1
+        }
 
-              (computedValues -- removePredicateCosts) ++ newPredicateCosts.toArray
-                                                               })
-        }) withDefault { _ => Double.MaxValue }
+        var effect = 0
+        while (effect < task.effect.length) {
+          val effectLiteral = task.effect(effect)
+          if (effectLiteral.isPositive) {
+            val fact = factIndex(effectLiteral.predicate, task.getArgumentsOfLiteral(arguments, effectLiteral))
+            if (fact != -1 && costs(fact) > actionCost) costs(fact) = actionCost
+          }
+          effect += 1
+        }
+        action += 1
+      }
+      layer += 1
+    }
 
-  /*heuristicMapping foreach {case (lit,v) =>
-    println(lit.predicate + (lit.arguments.mkString("(",",",")")) + " -> " + v)
-  }*/
+    costs
+  }
 
-  // TODO used to be pricate
-  val efficientAccessMaps = domain.predicates.indices map { case p =>
-    val literals = heuristicMap filter { _._1.predicate == p }
+  /** the minimal ADD value of all facts of each predicate, but at most Integer.MAX_VALUE */
+  lazy val minimalCostPerPredicate: Array[Double] = {
+    val minimalCosts = Array.fill(domain.predicates.length)(Integer.MAX_VALUE.toDouble)
+    var fact = 0
+    while (fact < factIndex.numberOfFacts) {
+      val predicate = factIndex.factPredicates(fact)
+      minimalCosts(predicate) = Math.min(minimalCosts(predicate), factCosts(fact))
+      fact += 1
+    }
+    minimalCosts
+  }
 
-    BucketAccessMap(literals map { case (k, v) => (k.arguments, v) })
+  private def costOf(costs: Array[Double], predicate: Int, arguments: Array[Int]): Double = {
+    val fact = factIndex(predicate, arguments)
+    if (fact == -1) Double.MaxValue else costs(fact)
   }
 
+  /** the ADD value of the given fact */
+  def costOf(predicate: Int, arguments: Array[Int]): Double = costOf(factCosts, predicate, arguments)
+
   def groundingEstimator(plan: EfficientPlan, planStep: Int, arguments: Array[Int]): Double = {
     var heuristicEstimate = 0.0
     val planStepTask = domain.tasks(plan.planStepTasks(planStep))
@@ -108,7 +126,7 @@ case class AddHeuristic(planningGraph: EfficientGroundedPlanningGraph, domain: E
         }
         if (!resuingAsVHPOP || !potentialSupporterFound) {
           val literalArguments = planStepTask.getArgumentsOfLiteral(arguments, planStepPreconditions(precondition))
-          val h = efficientAccessMaps(planStepPreconditions(precondition).predicate)(literalArguments)
+          val h = costOf(planStepPreconditions(precondition).predicate, literalArguments)
           heuristicEstimate += h
         }
       }
@@ -136,4 +154,6 @@ case class AddHeuristic(planningGraph: EfficientGroundedPlanningGraph, domain: E
   }
 
   def computeInitialPayLoad(plan: EfficientPlan): Unit = ()
+
+  override def isStateless: Boolean = true
 }
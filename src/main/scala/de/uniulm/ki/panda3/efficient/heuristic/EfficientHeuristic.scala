@@ -33,6 +33,12 @@ trait EfficientHeuristic[Payload] {
                        informationCapsule: InformationCapsule): (Double, Payload) = computeHeuristic(plan, payload, Some(appliedModification), depth, oldHeuristic, informationCapsule)
 
   def computeInitialPayLoad(plan: EfficientPlan) : Payload
+
+  /**
+    * whether computing the heuristic does not change any state of this object, i.e. whether it can be computed for several plans at the same time.
+    * [[de.uniulm.ki.panda3.efficient.search.HeuristicSearch]] evaluates the children of a node in parallel only if this holds for all its heuristics and filters.
+    */
+  def isStateless: Boolean = false
 }
 
 
@@ -41,6 +47,8 @@ object AlwaysZeroHeuristic extends EfficientHeuristic[Unit] {
                                 informationCapsule: InformationCapsule): (Double, Unit) = (0, ())
 
   def computeInitialPayLoad(plan: EfficientPlan) : Unit = ()
+
+  override def isStateless: Boolean = true
 }
 
 trait MinimisationOverGroundingsBasedHeuristic[Payload] extends EfficientHeuristic[Payload] {
@@ -113,4 +113,6 @@ case class RelaxHeuristic(planningGraph: EfficientGroundedPlanningGraph, domain:
   }
 
   def computeInitialPayLoad(plan: EfficientPlan) : Unit = ()
+
+  override def isStateless: Boolean = true
 }
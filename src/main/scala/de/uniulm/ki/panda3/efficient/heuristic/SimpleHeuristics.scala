@@ -33,6 +33,8 @@ object EfficientNumberOfFlaws extends EfficientHeuristic[Unit] {
   (Double, Unit) = (plan.flaws.length, ())
 
   def computeInitialPayLoad(plan: EfficientPlan): Unit = ()
+
+  override def isStateless: Boolean = true
 }
 
 object EfficientNumberOfOpenPreconditions extends EfficientHeuristic[Unit] {
@@ -40,6 +42,8 @@ object EfficientNumberOfOpenPreconditions extends EfficientHeuristic[Unit] {
   (Double, Unit) = (plan.openPreconditions.length, ())
 
   def computeInitialPayLoad(plan: EfficientPlan): Unit = ()
+
+  override def isStateless: Boolean = true
 }
 
 case class EfficientWeightedFlaws(openPreconditionWeight: Double, causalThreadWeight: Double, abstractTaskWeight: Double) extends EfficientHeuristic[Unit] {
@@ -48,6 +52,8 @@ case class EfficientWeightedFlaws(openPreconditionWeight: Double, causalThreadWe
     (plan.openPreconditions.length * openPreconditionWeight + plan.causalThreats.length * causalThreadWeight + plan.abstractPlanSteps.length * abstractTaskWeight, ())
 
   def computeInitialPayLoad(plan: EfficientPlan): Unit = ()
+
+  override def isStateless: Boolean = true
 }
 
 object EfficientNumberOfPlanSteps extends EfficientHeuristic[Unit] {
@@ -55,6 +61,8 @@ object EfficientNumberOfPlanSteps extends EfficientHeuristic[Unit] {
   (Double, Unit) = (plan.numberOfPlanSteps, ())
 
   def computeInitialPayLoad(plan: EfficientPlan): Unit = ()
+
+  override def isStateless: Boolean = true
 }
 
 object EfficientNumberOfAbstractPlanSteps extends EfficientHeuristic[Unit] {
@@ -62,6 +70,8 @@ object EfficientNumberOfAbstractPlanSteps extends EfficientHeuristic[Unit] {
   (Double, Unit) = (plan.abstractPlanSteps.length, ())
 
   def computeInitialPayLoad(plan: EfficientPlan): Unit = ()
+
+  override def isStateless: Boolean = true
 }
 
 object EfficientUMCPHeuristic extends EfficientHeuristic[Unit] {
@@ -72,6 +82,8 @@ object EfficientUMCPHeuristic extends EfficientHeuristic[Unit] {
   }
 
   def computeInitialPayLoad(plan: EfficientPlan): Unit = ()
+
+  override def isStateless: Boolean = true
 }
 
 object EfficientUMCPBFHeuristic extends EfficientHeuristic[Unit] {
@@ -82,6 +94,8 @@ object EfficientUMCPBFHeuristic extends EfficientHeuristic[Unit] {
   }
 
   def computeInitialPayLoad(plan: EfficientPlan): Unit = ()
+
+  override def isStateless: Boolean = true
 }
 
 
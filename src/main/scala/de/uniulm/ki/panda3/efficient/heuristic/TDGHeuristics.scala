@@ -48,6 +48,8 @@ trait TDGHeuristics extends MinimisationOverGroundingsBasedHeuristic[Unit] with
 
   override lazy val dotString: String = dotString(())
 
+  override def isStateless: Boolean = primitiveActionInPlanHeuristic forall { _.isStateless }
+
   /** The DOT representation of the object with options */
   override def dotString(options: Unit): String = {
     val dotStringBuilder = new StringBuilder()
@@ -195,7 +197,7 @@ case class PreconditionRelaxationTDGHeuristic(taskDecompositionTree: EfficientGr
 
 case class MinimumADDHeuristic(taskDecompositionTree: EfficientGroundedTaskDecompositionGraph, addHeuristic: AddHeuristic, domain: EfficientDomain,
                                primitiveActionInPlanHeuristic: Option[MinimisationOverGroundingsBasedHeuristic[Unit]] = None) extends TDGPrimitiveActionValueHeuristic {
-  protected def deductionForSupportedPrecondition(predicate: Int, arguments: Array[Int]): Double = 1 + addHeuristic.efficientAccessMaps(predicate)(arguments)
+  protected def deductionForSupportedPrecondition(predicate: Int, arguments: Array[Int]): Double = 1 + addHeuristic.costOf(predicate, arguments)
 
   protected def computeHeuristicForGroundPrimitive(taskID: Int, arguments: Array[Int]): Double = {
     var heuristicEstimate = 0.0
@@ -206,7 +208,7 @@ case class MinimumADDHeuristic(taskDecompositionTree: EfficientGroundedTaskDecom
     while (precondition < planStepPreconditions.length) {
       // look whether this precondition is protected by a causal link
       val literalArguments = planStepTask.getArgumentsOfLiteral(arguments, planStepPreconditions(precondition))
-      val h = 1 + addHeuristic.efficientAccessMaps(planStepPreconditions(precondition).predicate)(literalArguments)
+      val h = 1 + addHeuristic.costOf(planStepPreconditions(precondition).predicate, literalArguments)
       heuristicEstimate += h
       precondition += 1
     }
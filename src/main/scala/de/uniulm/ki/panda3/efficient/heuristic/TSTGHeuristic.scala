@@ -109,6 +109,8 @@ trait TSTGHeuristic extends EfficientHeuristic[Unit] {
     } else (Integer.MIN_VALUE, ())
 
   def computeInitialPayLoad(plan: EfficientPlan): Unit = ()
+
+  override def isStateless: Boolean = primitiveActionInPlanHeuristic forall { _.isStateless }
 }
 
 trait PreComputationTSTGHeuristic extends TSTGHeuristic {
@@ -238,9 +240,7 @@ trait LiftedMinimumADD extends TSTGHeuristic {
 
   def addHeuristic: AddHeuristic
 
-  lazy val addValuesPerPredicate: Array[Double] =
-    domain.predicates.indices map { pred => (addHeuristic.heuristicMap collect { case (grounding, v) if pred == grounding.predicate => v }).toSeq.:+(Integer.MAX_VALUE.toDouble) min
-    } toArray
+  lazy val addValuesPerPredicate: Array[Double] = addHeuristic.minimalCostPerPredicate
 
   override protected def computeHeuristicForPrimitive(taskID: Int): Double = {
     val task = domain.tasks(taskID)
@@ -342,6 +342,8 @@ case class ComparingTSTGHeuristic(domain: EfficientDomain, usePR: Boolean) exten
 
     var taskValues: Array[Double] = Array()
 
+    override def isStateless: Boolean = false
+
     def taskValue(plan: EfficientPlan) = new TaskValuation {
 
       taskValues = argumentRelaxedTDG.minSumTraversalArray(plan.tasksOfPresentPlanSteps :+ plan.planStepTasks(1), {
@@ -358,6 +360,8 @@ case class ComparingTSTGHeuristic(domain: EfficientDomain, usePR: Boolean) exten
 
     var taskValues: Array[Double] = Array()
 
+    override def isStateless: Boolean = false
+
     def taskValue(plan: EfficientPlan) = new TaskValuation {
       def apply(planStep: Int): Int = taskValues(plan.planStepTasks(planStep)).toInt
     }
@@ -23,9 +23,14 @@ import de.uniulm.ki.panda3.efficient.plan.EfficientPlan
   */
 trait Filter {
   def isPossiblySolvable(plan: EfficientPlan): Boolean
+
+  /** whether the test does not change any state of this object, see [[de.uniulm.ki.panda3.efficient.heuristic.EfficientHeuristic.isStateless]] */
+  def isStateless: Boolean = false
 }
 
 
 case class PlanLengthLimit(limit : Int) extends Filter {
   override def isPossiblySolvable(plan: EfficientPlan): Boolean = (plan.numberOfPlanSteps - 2) <= limit
+
+  override def isStateless: Boolean = true
 }
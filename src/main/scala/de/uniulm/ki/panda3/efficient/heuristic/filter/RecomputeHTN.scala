@@ -42,4 +42,6 @@ import de.uniulm.ki.panda3.efficient.plan.EfficientPlan
   */
 object RecomputeHTN extends Filter {
   override def isPossiblySolvable(plan: EfficientPlan): Boolean = plan.goalPotentiallyReachable && plan.allLandmarksApplicable && plan.allContainedApplicable && plan.allAbstractTasksAllowed
+
+  override def isStateless: Boolean = true
 }
@@ -204,6 +204,8 @@ case class TreeFF(domain: EfficientDomain) extends Filter {
 
     plan.ordering.existsLinearisationWithPropertyFold(initial, progress)
   }
+
+  override def isStateless: Boolean = true
 }
 
 object TreeFF {
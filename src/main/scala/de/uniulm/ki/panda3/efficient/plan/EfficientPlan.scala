@@ -114,6 +114,29 @@ case class EfficientPlan(domain: EfficientDomain, planStepTasks: Array[Int], pla
   private var appliedModification             : Option[EfficientModification]            = None
   private var precomputedCausalThreatFlaws    : Option[Array[EfficientCausalThreat]]     = None
 
+  // the rows of the bit set tables are shared with the plans created by modify. A row may only be changed by the plan that owns it, all others have to
+  // copy it first (see the modifiable* functions). The supported preconditions are never changed after a plan has been created
+  private val ownsPotentialSupporters         : Array[Boolean] = Array.fill(potentialSupportersOfPlanStepPreconditions.length)(true)
+  private val ownsCausalLinksPotentialThreater: Array[Boolean] = Array.fill(causalLinksPotentialThreater.length)(true)
+
+  /** the potential supporters of a precondition, which can be changed without affecting any other plan */
+  def modifiablePotentialSupporters(planStep: Int, precondition: Int): mutable.BitSet = {
+    if (!ownsPotentialSupporters(planStep)) {
+      potentialSupportersOfPlanStepPreconditions(planStep) = EfficientPlan.clonePotentialSupporters(potentialSupportersOfPlanStepPreconditions(planStep))
+      ownsPotentialSupporters(planStep) = true
+    }
+    potentialSupportersOfPlanStepPreconditions(planStep)(precondition)
+  }
+
+  /** the potential threater of a causal link, which can be changed without affecting any other plan */
+  def modifiableCausalLinksPotentialThreater(causalLink: Int): mutable.BitSet = {
+    if (!ownsCausalLinksPotentialThreater(causalLink)) {
+      causalLinksPotentialThreater(causalLink) = causalLinksPotentialThreater(causalLink).clone()
+      ownsCausalLinksPotentialThreater(causalLink) = true
+    }
+    causalLinksPotentialThreater(causalLink)
+  }
+
   /** the open preconditions flaws of the parent of this plan --- and the number of newly added tasks.
     * The assumption is that the tasks sz(planstep) - nonHandledTasks .. sz(planstep)-1 are new
     */
@@ -134,20 +157,59 @@ case class EfficientPlan(domain: EfficientDomain, planStepTasks: Array[Int], pla
     precomputedOpenPreconditionFlaws = None
     appliedModification = None
     precomputedCausalThreatFlaws = None
+    parentFlaws = null
+  }
+
+  // the flaws of the plan this plan has been created from by modify (if they were known), from which the flaws of this plan are computed incrementally.
+  // Plan steps are never renumbered by a modification and the plan steps that are new in this plan are those with a number of at least parentFlaws.numberOfPlanSteps
+  private var parentFlaws: EfficientPlan.FlawSkeleton = null
+
+  // the flaws of this plan in a form that does not reference the plan, which is shared by all plans created from this one
+  private var computedOpenPreconditions: Array[EfficientOpenPrecondition] = null
+  private var computedAbstractPlanSteps: Array[EfficientAbstractPlanStep]  = null
+  private var cachedFlawSkeleton       : EfficientPlan.FlawSkeleton          = null
+
+  private def flawSkeleton: EfficientPlan.FlawSkeleton = {
+    if (cachedFlawSkeleton == null && computedOpenPreconditions != null && computedAbstractPlanSteps != null) {
+      val openPreconditionSkeleton = new Array[Int](2 * computedOpenPreconditions.length)
+      var i = 0
+      while (i < computedOpenPreconditions.length) {
+        openPreconditionSkeleton(2 * i) = computedOpenPreconditions(i).planStep
+        openPreconditionSkeleton(2 * i + 1) = computedOpenPreconditions(i).preconditionIndex
+        i += 1
+      }
+      cachedFlawSkeleton = new EfficientPlan.FlawSkeleton(numberOfAllPlanSteps, openPreconditionSkeleton, computedAbstractPlanSteps map { _.planStep })
+    }
+    cachedFlawSkeleton
   }
 
 
   /** all abstract tasks of this plan */
   lazy val abstractPlanSteps: Array[EfficientAbstractPlanStep] = {
-    var i = 2 // init and goal are never abstract
     val flawBuffer = new ArrayBuffer[EfficientAbstractPlanStep]()
+    // only the abstract plan steps of the parent can have been decomposed, all other abstract plan steps are new
+    val firstPlanStepToCheck = if (parentFlaws == null) 2 else {
+      var j = 0
+      while (j < parentFlaws.abstractPlanSteps.length) {
+        val planStep = parentFlaws.abstractPlanSteps(j)
+        if (isPlanStepPresentInPlan(planStep)) flawBuffer append new EfficientAbstractPlanStep(this, planStep)
+        j += 1
+      }
+      parentFlaws.numberOfPlanSteps
+    }
+
+    var i = firstPlanStepToCheck // init and goal are never abstract
     while (i < planStepTasks.length) {
       if (planStepDecomposedByMethod(i) == -1 && !domain.tasks(planStepTasks(i)).isPrimitive) {
         flawBuffer append new EfficientAbstractPlanStep(this, i)
       }
       i += 1
     }
-    flawBuffer.toArray
+    computedAbstractPlanSteps = flawBuffer.toArray
+    if (problemConfiguration.checkIncrementalFlaws && parentFlaws != null && !((computedAbstractPlanSteps map { _.planStep }) sameElements
+      (Range(2, planStepTasks.length) filter { ps => planStepDecomposedByMethod(ps) == -1 && !domain.tasks(planStepTasks(ps)).isPrimitive })))
+      throw new IllegalStateException("incrementally computed abstract plan steps differ from the recomputed ones")
+    computedAbstractPlanSteps
   }
 
 
@@ -179,13 +241,41 @@ case class EfficientPlan(domain: EfficientDomain, planStepTasks: Array[Int], pla
   lazy val openPreconditions: Array[EfficientOpenPrecondition] = {
     val flawBuffer = new ArrayBuffer[EfficientOpenPrecondition]()
     // nothing is given so recompute all
-    if (precomputedOpenPreconditionFlaws.isEmpty) {
+    if (precomputedOpenPreconditionFlaws.isEmpty && parentFlaws == null) {
       var planStep = 1
       while (planStep < planStepTasks.length) {
         computeOpenPreconditions(planStep, flawBuffer)
         planStep += 1
       }
-      flawBuffer.toArray
+      computedOpenPreconditions = flawBuffer.toArray
+      computedOpenPreconditions
+    } else if (precomputedOpenPreconditionFlaws.isEmpty) {
+      // the parent's open preconditions stay open unless their plan step has been decomposed or they have been supported by a new causal link.
+      // Preconditions of the new plan steps are checked completely, as they come after all old ones, the flaws have the same order as if they were recomputed
+      val parentOpenPreconditions = parentFlaws.openPreconditions
+      var i = 0
+      while (i < parentOpenPreconditions.length) {
+        val planStep = parentOpenPreconditions(i)
+        val precondition = parentOpenPreconditions(i + 1)
+        if (isPlanStepPresentInPlan(planStep) && !(planStepSupportedPreconditions(planStep) contains precondition))
+          flawBuffer append new EfficientOpenPrecondition(this, planStep, precondition)
+        i += 2
+      }
+
+      var planStep = parentFlaws.numberOfPlanSteps
+      while (planStep < planStepTasks.length) {
+        computeOpenPreconditions(planStep, flawBuffer)
+        planStep += 1
+      }
+      computedOpenPreconditions = flawBuffer.toArray
+
+      if (problemConfiguration.checkIncrementalFlaws) {
+        val recomputed = new ArrayBuffer[EfficientOpenPrecondition]()
+        Range(1, planStepTasks.length) foreach { ps => computeOpenPreconditions(ps, recomputed) }
+        if (computedOpenPreconditions.toSeq != recomputed)
+          throw new IllegalStateException("incrementally computed open preconditions differ from the recomputed ones")
+      }
+      computedOpenPreconditions
     } else {
       val flawBuffer = new ArrayBuffer[EfficientOpenPrecondition]()
       // 1. take all flaws of my "parent" plan and update them according to the newly added tasks
@@ -213,7 +303,12 @@ case class EfficientPlan(domain: EfficientDomain, planStepTasks: Array[Int], pla
     }
   }
 
-  /** all causal threads in this plan */
+  /** all causal threads in this plan.
+    *
+    * The threats are maintained incrementally via the potential threaters of each causal link: modify only adds the new plan steps to the potential threaters of the old
+    * links and all present plan steps to those of the new links, while every plan step that does not threat a link any more is removed here. Thus only the plan steps touched by
+    * the last modification are checked against the links.
+    */
   lazy val causalThreats: Array[EfficientCausalThreat] = {
     val flawBuffer = new ArrayBuffer[EfficientCausalThreat]()
     var causalLinkNumber = 0
@@ -223,7 +318,7 @@ case class EfficientPlan(domain: EfficientDomain, planStepTasks: Array[Int], pla
 
       // check whether the link is still present
       assert(causalLink != null)
-      if (isPlanStepPresentInPlan(causalLink.producer) && isPlanStepPresentInPlan(causalLink.consumer)) {
+      if (causalLinksPotentialThreater(causalLinkNumber).nonEmpty && isPlanStepPresentInPlan(causalLink.producer) && isPlanStepPresentInPlan(causalLink.consumer)) {
 
         val producer = domain.tasks(planStepTasks(causalLink.producer))
         val consumer = domain.tasks(planStepTasks(causalLink.consumer))
@@ -263,7 +358,7 @@ case class EfficientPlan(domain: EfficientDomain, planStepTasks: Array[Int], pla
           }
 
           if (!isThreating)
-            potentialThreaterList remove potentialThreater
+            modifiableCausalLinksPotentialThreater(causalLinkNumber) remove potentialThreater
         }
 
 
@@ -296,9 +391,36 @@ case class EfficientPlan(domain: EfficientDomain, planStepTasks: Array[Int], pla
       }
       causalLinkNumber += 1
     }
+
+    if (problemConfiguration.checkIncrementalFlaws) {
+      val recomputed = recomputeCausalThreats()
+      val incremental = flawBuffer map { t => (t.causalLink, t.threatingPlanStep, t.indexOfThreatingEffect) }
+      if (incremental.toSet != recomputed.toSet || incremental.length != recomputed.length)
+        throw new IllegalStateException("incrementally computed causal threats differ from the recomputed ones")
+    }
+
     flawBuffer.toArray
   }
 
+  /** checks all present plan steps against all causal links, returns the threats as (link, threatening plan step, effect). Only used to check the incremental computation */
+  private def recomputeCausalThreats(): Seq[(EfficientCausalLink, Int, Int)] =
+    causalLinks filter { cl => isPlanStepPresentInPlan(cl.producer) && isPlanStepPresentInPlan(cl.consumer) } flatMap { causalLink =>
+      val producer = domain.tasks(planStepTasks(causalLink.producer))
+      val producerLiteral = producer.effect(causalLink.conditionIndexOfProducer)
+      val linkArguments = producer.getArgumentsOfLiteral(planStepParameters(causalLink.producer), producerLiteral)
+
+      Range(2, planStepTasks.length) filter isPlanStepPresentInPlan filter { ps =>
+        !ordering.lteq(ps, causalLink.producer) && !ordering.lteq(causalLink.consumer, ps)
+      } flatMap { ps =>
+        val planStep = domain.tasks(planStepTasks(ps))
+        planStep.effect.indices filter { e =>
+          val effect = planStep.effect(e)
+          effect.predicate == producerLiteral.predicate && effect.isPositive != producerLiteral.isPositive &&
+            variableConstraints.computeMGU(linkArguments, planStep.getArgumentsOfLiteral(planStepParameters(ps), effect)).isDefined
+        } map { e => (causalLink, ps, e) }
+      }
+    }
+
 
   lazy val flaws: Array[EfficientFlaw] = {
     val flawBuffer = new ArrayBuffer[EfficientFlaw]()
@@ -314,6 +436,9 @@ case class EfficientPlan(domain: EfficientDomain, planStepTasks: Array[Int], pla
     flawBuffer.toArray
   }
 
+  /** a fingerprint of this plan that does not depend on the numbering of its plan steps and variables, see [[EfficientPlanFingerprint]] */
+  lazy val fingerprint: EfficientPlanFingerprint = EfficientPlanFingerprint(this)
+
   /** all variables which are not bound to a constant, yet */
   lazy val unboundVariables: Array[EfficientUnboundVariable] = {
     val flawBuffer = new ArrayBuffer[EfficientUnboundVariable]()
@@ -339,14 +464,22 @@ case class EfficientPlan(domain: EfficientDomain, planStepTasks: Array[Int], pla
     val newPlanStepSupportedPreconditions = new Array[mutable.BitSet](numberOfPlanStepsInNewPlan)
     val newPotentialSupportersOfPlanStepPreconditions = new Array[Array[mutable.BitSet]](numberOfPlanStepsInNewPlan)
     val newCausalLinksPotentialThreater = new Array[mutable.BitSet](causalLinks.length + modification.addedCausalLinks.length)
-    // initialise threater table
-    var causalLinkIndex = 0
-    while (causalLinkIndex < newCausalLinksPotentialThreater.length) {
-      if (causalLinkIndex < causalLinks.length)
-        newCausalLinksPotentialThreater(causalLinkIndex) = causalLinksPotentialThreater(causalLinkIndex).clone()
-      else
-        newCausalLinksPotentialThreater(causalLinkIndex) = mutable.BitSet()
 
+    // the bit sets of all old plan steps and causal links are shared with the new plan. They are copied only if one of the plans changes them
+    System.arraycopy(planStepSupportedPreconditions, 0, newPlanStepSupportedPreconditions, 0, firstFreePlanStepID)
+    System.arraycopy(potentialSupportersOfPlanStepPreconditions, 0, newPotentialSupportersOfPlanStepPreconditions, 0, firstFreePlanStepID)
+    System.arraycopy(causalLinksPotentialThreater, 0, newCausalLinksPotentialThreater, 0, causalLinks.length)
+    java.util.Arrays.fill(ownsPotentialSupporters, false)
+    java.util.Arrays.fill(ownsCausalLinksPotentialThreater, false)
+    val newOwnsSupportedPreconditions = new Array[Boolean](numberOfPlanStepsInNewPlan)
+    val newOwnsPotentialSupporters = new Array[Boolean](numberOfPlanStepsInNewPlan)
+    val newOwnsCausalLinksPotentialThreater = new Array[Boolean](newCausalLinksPotentialThreater.length)
+
+    // initialise threater table for the new causal links
+    var causalLinkIndex = causalLinks.length
+    while (causalLinkIndex < newCausalLinksPotentialThreater.length) {
+      newCausalLinksPotentialThreater(causalLinkIndex) = mutable.BitSet()
+      newOwnsCausalLinksPotentialThreater(causalLinkIndex) = true
       causalLinkIndex += 1
     }
 
@@ -358,20 +491,6 @@ case class EfficientPlan(domain: EfficientDomain, planStepTasks: Array[Int], pla
     var newPlanStepDecomposedByMethod = planStepDecomposedByMethod
 
 
-    var oldPS = 0
-    while (oldPS < firstFreePlanStepID) {
-      newPlanStepSupportedPreconditions(oldPS) = planStepSupportedPreconditions(oldPS).clone()
-      var preconditionNumber = 0
-      val numberOfPreconditions = potentialSupportersOfPlanStepPreconditions(oldPS).length
-      newPotentialSupportersOfPlanStepPreconditions(oldPS) = new Array[mutable.BitSet](numberOfPreconditions)
-      while (preconditionNumber < numberOfPreconditions) {
-        if (!(newPlanStepSupportedPreconditions(oldPS) contains preconditionNumber))
-          newPotentialSupportersOfPlanStepPreconditions(oldPS)(preconditionNumber) = potentialSupportersOfPlanStepPreconditions(oldPS)(preconditionNumber).clone()
-        preconditionNumber += 1
-      }
-      oldPS += 1
-    }
-
 
     // only create the new arrays if a task was actually added
     if (!EfficientPlan.useIncrementalConstruction || modification.addedPlanSteps.length != 0) {
@@ -385,15 +504,11 @@ case class EfficientPlan(domain: EfficientDomain, planStepTasks: Array[Int], pla
       }
 
       // 1. new plan steps and the init -> ps -> goal orderings
-      var oldPS = 0
-      while (oldPS < firstFreePlanStepID) {
-        newPlanStepTasks(oldPS) = planStepTasks(oldPS)
-        newPlanStepParameters(oldPS) = planStepParameters(oldPS)
-        if (newPlanStepDecomposedByMethod != null) {
-          newPlanStepParentInDecompositionTree(oldPS) = planStepParentInDecompositionTree(oldPS)
-          newPlanStepIsInstanceOfSubPlanPlanStep(oldPS) = planStepIsInstanceOfSubPlanPlanStep(oldPS)
-        }
-        oldPS += 1
+      System.arraycopy(planStepTasks, 0, newPlanStepTasks, 0, firstFreePlanStepID)
+      System.arraycopy(planStepParameters, 0, newPlanStepParameters, 0, firstFreePlanStepID)
+      if (newPlanStepDecomposedByMethod != null) {
+        System.arraycopy(planStepParentInDecompositionTree, 0, newPlanStepParentInDecompositionTree, 0, firstFreePlanStepID)
+        System.arraycopy(planStepIsInstanceOfSubPlanPlanStep, 0, newPlanStepIsInstanceOfSubPlanPlanStep, 0, firstFreePlanStepID)
       }
 
       var newPS = 0
@@ -402,6 +517,8 @@ case class EfficientPlan(domain: EfficientDomain, planStepTasks: Array[Int], pla
         newPlanStepTasks(newPSIndex) = modification.addedPlanSteps(newPS)._1
         newPlanStepParameters(newPSIndex) = modification.addedPlanSteps(newPS)._2
         newPlanStepSupportedPreconditions(newPSIndex) = mutable.BitSet()
+        newOwnsSupportedPreconditions(newPSIndex) = true
+        newOwnsPotentialSupporters(newPSIndex) = true
 
         if (newPlanStepDecomposedByMethod != null) {
           newPlanStepParentInDecompositionTree(newPSIndex) = modification.addedPlanSteps(newPS)._4
@@ -433,7 +550,13 @@ case class EfficientPlan(domain: EfficientDomain, planStepTasks: Array[Int], pla
           val possibleEffects = domain.taskToEffectPredicates(newPlanStepTasks(newPSIndex))
           // positive link is threated by negative effect
           val opposedEffect = if (linkIsPositive) possibleEffects._2 else possibleEffects._1
-          if (opposedEffect contains linkpredicate) newCausalLinksPotentialThreater(oldCausalLinkIndex).add(newPSIndex)
+          if (opposedEffect contains linkpredicate) {
+            if (!newOwnsCausalLinksPotentialThreater(oldCausalLinkIndex)) {
+              newCausalLinksPotentialThreater(oldCausalLinkIndex) = newCausalLinksPotentialThreater(oldCausalLinkIndex).clone()
+              newOwnsCausalLinksPotentialThreater(oldCausalLinkIndex) = true
+            }
+            newCausalLinksPotentialThreater(oldCausalLinkIndex).add(newPSIndex)
+          }
 
           oldCausalLinkIndex += 1
         }
@@ -461,8 +584,14 @@ case class EfficientPlan(domain: EfficientDomain, planStepTasks: Array[Int], pla
           val otherPSSupporter = domain.tasksPreconditionCanBeSupportedBy(otherPSTaskID)
           precondition = 0
           while (precondition < otherPSSupporter.length) {
-            if (!(newPlanStepSupportedPreconditions(otherPlanStep) contains precondition) && (otherPSSupporter(precondition) contains thisPSTaskID))
+            if (!(newPlanStepSupportedPreconditions(otherPlanStep) contains precondition) && (otherPSSupporter(precondition) contains thisPSTaskID)) {
+              if (!newOwnsPotentialSupporters(otherPlanStep)) {
+                newPotentialSupportersOfPlanStepPreconditions(otherPlanStep) =
+                  EfficientPlan.clonePotentialSupporters(newPotentialSupportersOfPlanStepPreconditions(otherPlanStep))
+                newOwnsPotentialSupporters(otherPlanStep) = true
+              }
               newPotentialSupportersOfPlanStepPreconditions(otherPlanStep)(precondition) add newPSIndex
+            }
             precondition += 1
           }
 
@@ -525,7 +654,12 @@ case class EfficientPlan(domain: EfficientDomain, planStepTasks: Array[Int], pla
           // this is a new causal link
           newCausalLinks(causalLinkIndex) = modification.addedCausalLinks(causalLinkIndex - causalLinks.length)
           // closes an open precondition
-          newPlanStepSupportedPreconditions(newCausalLinks(causalLinkIndex).consumer) add newCausalLinks(causalLinkIndex).conditionIndexOfConsumer
+          val consumer = newCausalLinks(causalLinkIndex).consumer
+          if (!newOwnsSupportedPreconditions(consumer)) {
+            newPlanStepSupportedPreconditions(consumer) = newPlanStepSupportedPreconditions(consumer).clone()
+            newOwnsSupportedPreconditions(consumer) = true
+          }
+          newPlanStepSupportedPreconditions(consumer) add newCausalLinks(causalLinkIndex).conditionIndexOfConsumer
 
           val producer = domain.tasks(newPlanStepTasks(newCausalLinks(causalLinkIndex).producer))
           val producerLiteral = producer.effect(newCausalLinks(causalLinkIndex).conditionIndexOfProducer)
@@ -580,11 +714,15 @@ case class EfficientPlan(domain: EfficientDomain, planStepTasks: Array[Int], pla
                                 newPlanStepIsInstanceOfSubPlanPlanStep, newPlanStepSupportedPreconditions, newPotentialSupportersOfPlanStepPreconditions, newCausalLinksPotentialThreater,
                                 newVariableConstraints, newOrdering, newCausalLinks, problemConfiguration,
                                 depth = depth + 1)(newPSDepths, newCLDepths)
+    System.arraycopy(newOwnsPotentialSupporters, 0, newPlan.ownsPotentialSupporters, 0, numberOfPlanStepsInNewPlan)
+    System.arraycopy(newOwnsCausalLinksPotentialThreater, 0, newPlan.ownsCausalLinksPotentialThreater, 0, newCausalLinksPotentialThreater.length)
 
     //println("NP " + newPlan.planStepTasks.length + " of " + newPlan.numberOfPlanSteps)
     //println("C " + modification.getClass + " " + modification.addedPlanSteps.length + " " + modification.addedOrderings.length)
 
     //newPlan.setPrecomputedOpenPreconditions(openPreconditions, modification)
+    // if the flaws of this plan are known, the new plan can compute its flaws from them
+    newPlan.parentFlaws = flawSkeleton
 
     newPlan
   }
@@ -724,6 +862,21 @@ object EfficientPlan {
 
   val useIncrementalConstruction = false
 
+  /** the flaws of a plan without any reference to the plan itself, such that its children can compute their flaws incrementally without keeping the plan alive.
+    * The open preconditions are stored as pairs of plan step and precondition index. */
+  private class FlawSkeleton(val numberOfPlanSteps: Int, val openPreconditions: Array[Int], val abstractPlanSteps: Array[Int])
+
+  /** copies the potential supporters of a single plan step. Preconditions that are already supported might have no table (i.e. null) */
+  private def clonePotentialSupporters(supporters: Array[mutable.BitSet]): Array[mutable.BitSet] = {
+    val clone = new Array[mutable.BitSet](supporters.length)
+    var precondition = 0
+    while (precondition < supporters.length) {
+      if (supporters(precondition) != null) clone(precondition) = supporters(precondition).clone()
+      precondition += 1
+    }
+    clone
+  }
+
   private def computeDecompositionSupportersPerLiteral(domain: EfficientDomain, planStepTasks: Array[Int], planStepDecomposedByMethod: Array[Int]): Array[Array[Int]] = {
     val supporters = new Array[mutable.BitSet](2 * domain.predicates.length)
     var i = 0
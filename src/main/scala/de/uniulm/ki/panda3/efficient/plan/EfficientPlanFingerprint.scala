@@ -0,0 +1,247 @@
+// PANDA 3 -- a domain-independent planner for classical and hierarchical planning
+// Copyright (C) 2014-2018 the original author or authors.
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package de.uniulm.ki.panda3.efficient.plan
+
+import de.uniulm.ki.panda3.efficient.switchConstant
+
+import scala.collection.mutable.ArrayBuffer
+
+/**
+  * A fingerprint of the part of a plan that is relevant for the search, i.e. its present plan steps, its causal links, its ordering and the bindings of its variables.
+  * It does not depend on the numbers of plan steps and variables, s.t. two plans that have been created by applying the same modifications in different orders have the
+  * same fingerprint.
+  *
+  * To compute it, every plan step gets a label from its task, its parameters and its neighbours in the ordering and the causal links, which is refined for some rounds
+  * (like the Weisfeiler-Lehman test). The plan steps are sorted by these labels and the plan is encoded w.r.t. this numbering. Two fingerprints are equal iff their
+  * encodings are, so equal fingerprints always belong to equal plans. Plan steps with equal labels are ordered by their number, in this case two equal plans may have
+  * different fingerprints.
+  */
+class EfficientPlanFingerprint private(val hash: Long, private val encoding: Array[Int]) {
+
+  override def hashCode(): Int = (hash ^ (hash >>> 32)).toInt
+
+  override def equals(o: Any): Boolean = o match {
+    case that: EfficientPlanFingerprint => hash == that.hash && java.util.Arrays.equals(encoding, that.encoding)
+    case _                              => false
+  }
+
+  /** the size of the encoding in ints */
+  def size: Int = encoding.length
+}
+
+object EfficientPlanFingerprint {
+  private val REFINEMENT_ROUNDS = 2
+
+  private val CONSTANT    = 0x2545F4914F6CDD1DL
+  private val VARIABLE    = 0x9E3779B97F4A7C15L
+  private val SUCCESSOR   = 0xBF58476D1CE4E5B9L
+  private val PREDECESSOR = 0x94D049BB133111EBL
+  private val CONSUMER    = 0xD6E8FEB86659FD93L
+  private val PRODUCER    = 0xA0761D6478BD642FL
+
+  /** the finaliser of splitmix64 */
+  private def mix(x: Long): Long = {
+    var z = x
+    z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L
+    z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL
+    z ^ (z >>> 31)
+  }
+
+  private def mix(a: Long, b: Long): Long = mix(a * 31 + b)
+
+  def apply(plan: EfficientPlan): EfficientPlanFingerprint = {
+    val csp = plan.variableConstraints
+
+    // the present plan steps
+    val planSteps = new ArrayBuffer[Int]()
+    var ps = 0
+    while (ps < plan.numberOfAllPlanSteps) {
+      if (plan.isPlanStepPresentInPlan(ps)) planSteps append ps
+      ps += 1
+    }
+    val n = planSteps.length
+    val indexOf = Array.fill(plan.numberOfAllPlanSteps)(-1)
+    var i = 0
+    while (i < n) {
+      indexOf(planSteps(i)) = i
+      i += 1
+    }
+
+    // parameters as representatives, constants are stored negatively
+    val arguments = Array.tabulate(n) { i =>
+      planStepArguments(plan, planSteps(i))
+    }
+
+    val before = Array.tabulate(n) { i => Array.tabulate(n) { j => i != j && plan.ordering.lteq(planSteps(i), planSteps(j)) } }
+    val links = plan.causalLinks filter { cl => indexOf(cl.producer) != -1 && indexOf(cl.consumer) != -1 }
+
+    // initial labels
+    var labels = Array.tabulate(n) { i =>
+      var label = mix(plan.planStepTasks(planSteps(i)))
+      val args = arguments(i)
+      var a = 0
+      while (a < args.length) {
+        label = if (args(a) < 0) mix(label, mix(CONSTANT, args(a))) else mix(label, mix(VARIABLE, csp.getRemainingDomain(args(a)).size))
+        a += 1
+      }
+      label
+    }
+
+    // refinement
+    val variableLabels = new Array[Long](csp.numberOfVariables)
+    var round = 0
+    while (round < REFINEMENT_ROUNDS) {
+      java.util.Arrays.fill(variableLabels, 0L)
+      i = 0
+      while (i < n) {
+        val args = arguments(i)
+        var a = 0
+        while (a < args.length) {
+          if (args(a) >= 0) variableLabels(args(a)) += mix(labels(i), a)
+          a += 1
+        }
+        i += 1
+      }
+
+      val newLabels = new Array[Long](n)
+      i = 0
+      while (i < n) {
+        var label = labels(i)
+        val args = arguments(i)
+        var a = 0
+        while (a < args.length) {
+          if (args(a) >= 0) label = mix(label, variableLabels(args(a)))
+          a += 1
+        }
+        // neighbours are combined commutatively
+        var neighbours = 0L
+        var j = 0
+        while (j < n) {
+          if (before(i)(j)) neighbours += mix(SUCCESSOR, labels(j))
+          if (before(j)(i)) neighbours += mix(PREDECESSOR, labels(j))
+          j += 1
+        }
+        var l = 0
+        while (l < links.length) {
+          val link = links(l)
+          val linkLabel = mix(link.conditionIndexOfProducer, link.conditionIndexOfConsumer)
+          if (indexOf(link.producer) == i) neighbours += mix(CONSUMER, mix(labels(indexOf(link.consumer)), linkLabel))
+          if (indexOf(link.consumer) == i) neighbours += mix(PRODUCER, mix(labels(indexOf(link.producer)), linkLabel))
+          l += 1
+        }
+        newLabels(i) = mix(label, neighbours)
+        i += 1
+      }
+      labels = newLabels
+      round += 1
+    }
+
+    // canonical numbering of plan steps and variables
+    val order = Range(0, n).sortWith { case (x, y) => labels(x) < labels(y) || (labels(x) == labels(y) && x < y) }.toArray
+    val canonicalPlanStep = new Array[Int](n)
+    i = 0
+    while (i < n) {
+      canonicalPlanStep(order(i)) = i
+      i += 1
+    }
+    val canonicalVariable = Array.fill(csp.numberOfVariables)(-1)
+    val variables = new ArrayBuffer[Int]()
+
+    val encoding = new ArrayBuffer[Int]()
+    encoding append n
+    i = 0
+    while (i < n) {
+      encoding append plan.planStepTasks(planSteps(order(i)))
+      val args = arguments(order(i))
+      var a = 0
+      while (a < args.length) {
+        if (args(a) < 0) encoding append args(a)
+        else {
+          if (canonicalVariable(args(a)) == -1) {
+            canonicalVariable(args(a)) = variables.length
+            variables append args(a)
+          }
+          encoding append canonicalVariable(args(a))
+        }
+        a += 1
+      }
+      i += 1
+    }
+
+    // the variables' domains and inequalities to other variables of the plan
+    encoding append variables.length
+    variables foreach { v =>
+      val remainingDomain = csp.getRemainingDomain(v).toArray.sorted
+      encoding append remainingDomain.length
+      encoding appendAll remainingDomain
+      val unequal = csp.getVariableUnequalTo(v).toArray collect { case u if csp.isRepresentativeAVariable(u) => canonicalVariable(csp.getRepresentativeVariable(u)) } filter {
+        _ != -1
+      }
+      encoding append unequal.length
+      encoding appendAll unequal.sorted
+    }
+
+    encoding append links.length
+    val canonicalLinks = links map { l => (canonicalPlanStep(indexOf(l.producer)), canonicalPlanStep(indexOf(l.consumer)), l.conditionIndexOfProducer, l.conditionIndexOfConsumer) }
+    canonicalLinks.sorted foreach { case (p, c, pi, ci) => encoding append p; encoding append c; encoding append pi; encoding append ci }
+
+    // the ordering as a bit matrix
+    var word = 0
+    var bit = 0
+    i = 0
+    while (i < n) {
+      var j = 0
+      while (j < n) {
+        if (before(order(i))(order(j))) word |= 1 << bit
+        bit += 1
+        if (bit == 32) {
+          encoding append word
+          word = 0
+          bit = 0
+        }
+        j += 1
+      }
+      i += 1
+    }
+    if (bit != 0) encoding append word
+
+    // the hash only depends on the labels, which do not depend on the numbering of plan steps
+    var hash = mix(n)
+    i = 0
+    while (i < n) {
+      hash += mix(labels(i))
+      i += 1
+    }
+
+    new EfficientPlanFingerprint(mix(hash, links.length), encoding.toArray)
+  }
+
+  private def planStepArguments(plan: EfficientPlan, planStep: Int): Array[Int] = {
+    val csp = plan.variableConstraints
+    val parameters = plan.planStepParameters(planStep)
+    val arguments = new Array[Int](parameters.length)
+    var a = 0
+    while (a < parameters.length) {
+      arguments(a) =
+        if (parameters(a) < 0) parameters(a)
+        else if (csp.isRepresentativeAVariable(parameters(a))) csp.getRepresentativeVariable(parameters(a))
+        else switchConstant(csp.getRepresentativeConstant(parameters(a)))
+      a += 1
+    }
+    arguments
+  }
+}
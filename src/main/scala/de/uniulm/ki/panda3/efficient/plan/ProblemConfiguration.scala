@@ -17,8 +17,9 @@
 package de.uniulm.ki.panda3.efficient.plan
 
 /**
+  * @param checkIncrementalFlaws if set, the incrementally computed flaws of all plans are checked against a full recomputation. This is slow and only intended for debugging.
   * @author Gregor Behnke (gregor.behnke@uni-ulm.de)
   */
-case class ProblemConfiguration(taskInsertionAllowed: Boolean, decompositionAllowed: Boolean) {
+case class ProblemConfiguration(taskInsertionAllowed: Boolean, decompositionAllowed: Boolean, checkIncrementalFlaws: Boolean = false) {
 
 }
@@ -46,15 +46,19 @@ case class EfficientCausalThreat(plan: EfficientPlan, causalLink: EfficientCausa
     ect.causalLink == causalLink && ect.threatingPlanStep == threatingPlanStep && ect.indexOfThreatingEffect == indexOfThreatingEffect && ect.mgu.sameElements(mgu)
   } else false
 
-  override lazy val estimatedNumberOfResolvers: Int = {
-    val makeUnUnifiable = EfficientMakeLiteralsUnUnifiable.estimate(plan, this, plan.argumentsOfPlanStepsEffect(threatingPlanStep, indexOfThreatingEffect),
-                                                                    plan.argumentsOfPlanStepsEffect(causalLink.producer, causalLink.conditionIndexOfProducer))
-    val addOrdering = EfficientAddOrdering.estimate(plan, this, causalLink, threatingPlanStep)
+  override lazy val estimatedNumberOfResolvers: Int = estimatedNumberOfResolversUpTo(Integer.MAX_VALUE)
+
+  override def estimatedNumberOfResolversUpTo(bound: Int): Int = {
+    var numberOfResolvers = EfficientAddOrdering.estimate(plan, this, causalLink, threatingPlanStep)
+    if (numberOfResolvers <= bound)
+      numberOfResolvers += EfficientMakeLiteralsUnUnifiable.estimate(plan, this, plan.argumentsOfPlanStepsEffect(threatingPlanStep, indexOfThreatingEffect),
+                                                                     plan.argumentsOfPlanStepsEffect(causalLink.producer, causalLink.conditionIndexOfProducer))
 
     // TODO is there any target predicate ????
-    val decompose = if (!plan.domain.tasks(plan.planStepTasks(threatingPlanStep)).isPrimitive) EfficientDecomposePlanStep.estimate(plan, this, threatingPlanStep,-1,false) else 0
+    if (numberOfResolvers <= bound && !plan.domain.tasks(plan.planStepTasks(threatingPlanStep)).isPrimitive)
+      numberOfResolvers += EfficientDecomposePlanStep.estimate(plan, this, threatingPlanStep, -1, false)
 
-    makeUnUnifiable + addOrdering + decompose
+    numberOfResolvers
   }
 
   /** returns a string by which this object may be referenced */
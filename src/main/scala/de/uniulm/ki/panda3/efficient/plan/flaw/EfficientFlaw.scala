@@ -33,6 +33,17 @@ trait EfficientFlaw extends PrettyPrintable{
 
   val estimatedNumberOfResolvers : Int
 
+  /**
+    * The resolvers of this flaw in the same order as in resolver. Flaws whose resolvers come from several sources generate them only when the iterator reaches them.
+    */
+  def resolverIterator: Iterator[EfficientModification] = resolver.iterator
+
+  /**
+    * Returns estimatedNumberOfResolvers if it is at most bound and otherwise some number larger than bound.
+    * Flaws whose estimate is a sum stop summing as soon as bound is exceeded.
+    */
+  def estimatedNumberOfResolversUpTo(bound: Int): Int = estimatedNumberOfResolvers
+
   def severLinkToPlan : EfficientFlaw
 
   def equalToSeveredFlaw(flaw : EfficientFlaw) : Boolean
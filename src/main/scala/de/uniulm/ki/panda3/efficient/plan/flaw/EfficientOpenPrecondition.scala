@@ -33,58 +33,55 @@ case class EfficientOpenPrecondition(plan: EfficientPlan, planStep: Int, precond
   private var precomputedResolver: Option[Array[EfficientModification]] = None
 
 
-  override lazy val estimatedNumberOfResolvers: Int = if (precomputedResolver.isDefined) precomputedResolver.get.size
-  else {
-    val linkInsertions = EfficientInsertCausalLink.estimate(plan, this, planStep, preconditionIndex)
-    val planStepInsertions = EfficientInsertPlanStepWithLink.estimate(plan, this, planStep, preconditionIndex)
+  /** the plan steps whose decomposition might support the precondition */
+  private def decomposableProducers: Array[Int] = if (!plan.problemConfiguration.decompositionAllowed) Array() else {
+    // TODO decompose only those plan steps that can lead to the necessary effect
+    val precondition = plan.domain.tasks(plan.planStepTasks(planStep)).precondition(preconditionIndex)
+    val literalIndex = 2 * precondition.predicate + (if (precondition.isPositive) 0 else 1)
+    // don't decompose plan steps that cannot possibly support the precondition
+    plan.possibleSupportersByDecompositionPerLiteral(literalIndex) filterNot { plan.ordering.gt(_, planStep) }
+  }
 
-    var numberOfResolvers = linkInsertions + planStepInsertions
+  private def precondition = plan.domain.tasks(plan.planStepTasks(planStep)).precondition(preconditionIndex)
 
-    // TODO decompose only those plan steps that can lead to the necessary effect
-    /*var possibleProducer = 2
-    while (possibleProducer < plan.firstFreePlanStepID) {
-      if (!plan.domain.tasks(plan.planStepTasks(possibleProducer)).isPrimitive && plan.planStepDecomposedByMethod(possibleProducer) == -1)
-        numberOfResolvers += EfficientDecomposePlanStep.estimate(plan, this, possibleProducer)
-      possibleProducer += 1
-    }*/
-
-    if (plan.problemConfiguration.decompositionAllowed) {
-      val precondition = plan.domain.tasks(plan.planStepTasks(planStep)).precondition(preconditionIndex)
-      val literalIndex = 2 * precondition.predicate + (if (precondition.isPositive) 0 else 1)
-      val possibleProducer = plan.possibleSupportersByDecompositionPerLiteral(literalIndex)
-      var indexOnPossibleProducer = 0
-      while (indexOnPossibleProducer < possibleProducer.length) {
-        if (!plan.ordering.gt(possibleProducer(indexOnPossibleProducer), planStep)) // don't decompose plan steps that cannot possibly support the precondition
-          numberOfResolvers += EfficientDecomposePlanStep.estimate(plan, this, possibleProducer(indexOnPossibleProducer), precondition.predicate, precondition.isPositive)
-        indexOnPossibleProducer += 1
-      }
-    }
+  /** the resolvers grouped by the way they are generated, each group is only computed when it is applied */
+  private def resolverGroups: Iterator[() => Array[EfficientModification]] =
+    Iterator[() => Array[EfficientModification]](() => EfficientInsertCausalLink(plan, this, planStep, preconditionIndex),
+                                                () => EfficientInsertPlanStepWithLink(plan, this, planStep, preconditionIndex)) ++
+      (decomposableProducers.iterator map { producer => () => EfficientDecomposePlanStep(plan, this, producer, precondition.predicate, precondition.isPositive) })
+
+  /** the estimated number of resolvers of each group, the cheapest estimates come first */
+  private def estimateGroups: Iterator[() => Int] =
+    Iterator[() => Int](() => EfficientInsertPlanStepWithLink.estimate(plan, this, planStep, preconditionIndex),
+                        () => EfficientInsertCausalLink.estimate(plan, this, planStep, preconditionIndex)) ++
+      (decomposableProducers.iterator map { producer => () => EfficientDecomposePlanStep.estimate(plan, this, producer, precondition.predicate, precondition.isPositive) })
 
+
+  override lazy val estimatedNumberOfResolvers: Int = estimatedNumberOfResolversUpTo(Integer.MAX_VALUE)
+
+  override def estimatedNumberOfResolversUpTo(bound: Int): Int = if (precomputedResolver.isDefined) precomputedResolver.get.length
+  else {
+    var numberOfResolvers = 0
+    val estimates = estimateGroups
+    while (numberOfResolvers <= bound && estimates.hasNext) {
+      numberOfResolvers += estimates.next()()
+    }
     numberOfResolvers
   }
 
+  @volatile private var resolverComputed = false
 
   override lazy val resolver: Array[EfficientModification] = if (precomputedResolver.isDefined) precomputedResolver.get
   else {
     val buffer = new ArrayBuffer[EfficientModification]()
-    buffer appendAll EfficientInsertCausalLink(plan, this, planStep, preconditionIndex)
-    buffer appendAll EfficientInsertPlanStepWithLink(plan, this, planStep, preconditionIndex)
-
-    if (plan.problemConfiguration.decompositionAllowed) {
-      // TODO decompose only those plan steps that can lead to the necessary effect
-      val precondition = plan.domain.tasks(plan.planStepTasks(planStep)).precondition(preconditionIndex)
-      val literalIndex = 2 * precondition.predicate + (if (precondition.isPositive) 0 else 1)
-      val possibleProducer = plan.possibleSupportersByDecompositionPerLiteral(literalIndex)
-      var indexOnPossibleProducer = 0
-      while (indexOnPossibleProducer < possibleProducer.length) {
-        if (!plan.ordering.gt(possibleProducer(indexOnPossibleProducer), planStep)) // don't decompose plan steps that cannot possibly support the precondition
-          buffer appendAll EfficientDecomposePlanStep(plan, this, possibleProducer(indexOnPossibleProducer), precondition.predicate, precondition.isPositive)
-        indexOnPossibleProducer += 1
-      }
-    }
+    resolverGroups foreach { group => buffer appendAll group() }
+    resolverComputed = true
     buffer.toArray
   }
 
+  override def resolverIterator: Iterator[EfficientModification] =
+    if (precomputedResolver.isDefined || resolverComputed) resolver.iterator else resolverGroups flatMap { group => group() }
+
   def severLinkToPlan: EfficientOpenPrecondition = severLinkToPlan(dismissDecompositionModifications = false) // TODO
 
   def severLinkToPlan(dismissDecompositionModifications: Boolean): EfficientOpenPrecondition = {
@@ -98,7 +98,7 @@ object EfficientInsertCausalLink {
 
         if (!foundSupport) {
           //println("No support")
-          plan.potentialSupportersOfPlanStepPreconditions(consumer)(consumerIndex) remove producer
+          plan.modifiablePotentialSupporters(consumer, consumerIndex) remove producer
         }
 
       }
@@ -135,7 +135,7 @@ object EfficientInsertCausalLink {
 
       if (!foundSupport) {
         //println("No support ---")
-        plan.potentialSupportersOfPlanStepPreconditions(consumer)(consumerIndex) remove producer
+        plan.modifiablePotentialSupporters(consumer, consumerIndex) remove producer
       }
       //producer += 1
     }
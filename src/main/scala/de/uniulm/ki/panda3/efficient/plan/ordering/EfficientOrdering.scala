@@ -18,81 +18,111 @@ package de.uniulm.ki.panda3.efficient.plan.ordering
 
 import de.uniulm.ki.panda3.symbolic.plan.ordering.TaskOrdering._
 
+import scala.collection.mutable.ArrayBuffer
+
 /**
-  * The assumption is, that there are exactly sz(orderingConstraints) many tasks, which are numbered 0..sz(orderingConstraints)-1
+  * The assumption is, that there are exactly numberOfPlanSteps many tasks, which are numbered 0..numberOfPlanSteps-1
+  *
+  * The ordering is stored as its transitive closure in a bit matrix: bit j of row i is set iff i is ordered before j. Rows are shared between an
+  * ordering and the orderings derived from it and are only copied if one of them writes into a shared row.
   *
-  * The matrix contained in this object describes the relation between two tasks using the constants of the companion object [[de.uniulm.ki.panda3.symbolic.plan.ordering.TaskOrdering]]
+  * Relations between tasks are reported using the constants of the companion object [[de.uniulm.ki.panda3.symbolic.plan.ordering.TaskOrdering]]
   *
   * @author Gregor Behnke (gregor.behnke@uni-ulm.de)
   */
-class EfficientOrdering(val orderingConstraints: Array[Array[Byte]] = Array(), var isConsistent: Boolean = true) extends PartialOrdering[Int] {
+class EfficientOrdering private(val numberOfPlanSteps: Int, private val rows: Array[Array[Long]], private val ownedRows: Array[Boolean], var isConsistent: Boolean)
+  extends PartialOrdering[Int] {
+
+  def this() = this(0, Array(), Array(), true)
+
+  @inline private def words(planSteps: Int): Int = (planSteps + 63) >>> 6
+
+  @inline private def isBefore(before: Int, after: Int): Boolean = (rows(before)(after >>> 6) & (1L << after)) != 0
+
+  /** returns the row, such that it can be changed without affecting any other ordering */
+  private def writableRow(planStep: Int): Array[Long] = {
+    if (!ownedRows(planStep)) {
+      rows(planStep) = rows(planStep).clone()
+      ownedRows(planStep) = true
+    }
+    rows(planStep)
+  }
 
   /**
-    * Propagate newly inserted ordering constraints using Bellman-Ford
+    * the ordering as a matrix of relations, i.e. entry (i,j) is BEFORE, AFTER, SAME, or DONTKNOW.
     */
-  private def propagate(edgesFrom: Array[Int], edgesTo: Array[Int]): Unit = {
-    assert(edgesFrom.length == edgesTo.length)
-    var edge = 0
-    //println("E " + edgesFrom.length + " " + edgesTo.length + " " + orderingConstraints.length*orderingConstraints.length)
-    while (edge < edgesFrom.length && isConsistent) {
-      var from = 0
-      val ordEdgeFromEdgeTo = orderingConstraints(edgesFrom(edge))(edgesTo(edge))
-      while (from < orderingConstraints.length && isConsistent) {
-        val ordFromEdgeFrom = orderingConstraints(from)(edgesFrom(edge))
-        if (ordFromEdgeFrom != DONTKNOW) {
-          var to = 0
-          while (to < orderingConstraints.length && isConsistent) {
-            // check whether from -> edgesFrom[i] -> edgesTo[i] -> to entails something
-            val ordEdgeToTo = orderingConstraints(edgesTo(edge))(to)
-            if (ordEdgeToTo != DONTKNOW) {
-              // check whether "before" is implied
-              if (ordFromEdgeFrom <= SAME && ordEdgeFromEdgeTo <= SAME && ordEdgeToTo <= SAME) {
-                val inferredOrdering = math.min(ordFromEdgeFrom, math.min(ordEdgeFromEdgeTo, ordEdgeToTo))
-                if (orderingConstraints(from)(to) == DONTKNOW || orderingConstraints(from)(to) == inferredOrdering) orderingConstraints(from)(to) = inferredOrdering.toByte
-                else isConsistent = false
-              }
-              // check whether "after" is implied
-              if (ordFromEdgeFrom >= SAME && ordEdgeFromEdgeTo >= SAME && ordEdgeToTo >= SAME) {
-                val inferredOrdering = math.max(ordFromEdgeFrom, math.max(ordEdgeFromEdgeTo, ordEdgeToTo))
-                if (orderingConstraints(from)(to) == DONTKNOW || orderingConstraints(from)(to) == inferredOrdering) orderingConstraints(from)(to) = inferredOrdering.toByte
-                else isConsistent = false
-              }
-            }
-            to += 1
-          }
-        }
-        from += 1
-      }
-      edge += 1
-    }
+  def orderingConstraints: Array[Array[Byte]] = Array.tabulate(numberOfPlanSteps, numberOfPlanSteps) { case (i, j) =>
+    if (i == j) SAME else if (isBefore(i, j)) BEFORE else if (isBefore(j, i)) AFTER else DONTKNOW
   }
 
   // Functions needed to be a partial ordering
   override def tryCompare(x: Int, y: Int): Option[Int] =
-    if (x >= orderingConstraints.length || y >= orderingConstraints.length) None
-    else if (orderingConstraints(x)(y) == DONTKNOW) None else Some(orderingConstraints(x)(y))
+    if (x >= numberOfPlanSteps || y >= numberOfPlanSteps) None
+    else if (x == y) Some(SAME)
+    else if (isBefore(x, y)) Some(BEFORE)
+    else if (isBefore(y, x)) Some(AFTER)
+    else None
 
-  override def lteq(x: Int, y: Int): Boolean = if (x >= orderingConstraints.length || y >= orderingConstraints.length) false else orderingConstraints(x)(y) <= SAME
+  override def lteq(x: Int, y: Int): Boolean = if (x >= numberOfPlanSteps || y >= numberOfPlanSteps) false else x == y || isBefore(x, y)
 
 
   /**
-    * deep-clone this CSP
+    * clone this ordering. The rows are shared until one of the orderings changes them
     */
   def copy(): EfficientOrdering = addPlanSteps(0)
 
   /**
     * add the given amount of plan steps without any connection to the rest of the plan steps
     *
-    * the new plan steps will be numbered sz(orderingConstraints) .. sz(orderingConstraints) + newPlanSteps - 1
+    * the new plan steps will be numbered numberOfPlanSteps .. numberOfPlanSteps + newPlanSteps - 1
     */
-  def addPlanSteps(newPlanSteps: Int): EfficientOrdering = addPlanStepsWithMaybeFromBase(fromBase = false, -1, None, newPlanSteps)
+  def addPlanSteps(newPlanSteps: Int): EfficientOrdering = {
+    val newOrdering = extendedOrdering(numberOfPlanSteps + newPlanSteps)
+    var i = numberOfPlanSteps
+    while (i < newOrdering.numberOfPlanSteps) {
+      newOrdering.rows(i) = new Array[Long](words(newOrdering.numberOfPlanSteps))
+      newOrdering.ownedRows(i) = true
+      i += 1
+    }
+    newOrdering
+  }
 
   /**
-    * indexBaseInNew will assume the index of oldPlanStep, while the newly added plan steps will receive the next sz(internalOrdering)-1 numbers
+    * The newly added plan steps will receive the next sz(precomputedOrderingMatrix) numbers. They inherit all orderings of the base plan step, while
+    * the base plan step itself is not ordered w.r.t. them.
     */
   def addPlanStepsFromBase(basePlanStep: Int, newPlanSteps: Int, precomputedOrderingMatrix: Array[Array[Byte]]): EfficientOrdering = {
     assert(precomputedOrderingMatrix.length == newPlanSteps)
-    addPlanStepsWithMaybeFromBase(fromBase = true, basePlanStep, Some(precomputedOrderingMatrix), newPlanSteps)
+    val newOrdering = extendedOrdering(numberOfPlanSteps + newPlanSteps)
+
+    // everything before the base is before all new plan steps
+    var i = 0
+    while (i < numberOfPlanSteps) {
+      if (i != basePlanStep && isBefore(i, basePlanStep)) {
+        val row = newOrdering.writableRow(i)
+        var newPlanStep = numberOfPlanSteps
+        while (newPlanStep < newOrdering.numberOfPlanSteps) {
+          row(newPlanStep >>> 6) |= 1L << newPlanStep
+          newPlanStep += 1
+        }
+      }
+      i += 1
+    }
+
+    // the new plan steps are before everything the base is before, plus their own ordering
+    while (i < newOrdering.numberOfPlanSteps) {
+      val row = java.util.Arrays.copyOf(rows(basePlanStep), words(newOrdering.numberOfPlanSteps))
+      val internalRow = precomputedOrderingMatrix(i - numberOfPlanSteps)
+      var j = 0
+      while (j < newPlanSteps) {
+        if (internalRow(j) == BEFORE) row((numberOfPlanSteps + j) >>> 6) |= 1L << (numberOfPlanSteps + j)
+        j += 1
+      }
+      newOrdering.rows(i) = row
+      newOrdering.ownedRows(i) = true
+      i += 1
+    }
+    newOrdering
   }
 
 
@@ -100,11 +130,25 @@ class EfficientOrdering(val orderingConstraints: Array[Array[Byte]] = Array(), v
     * adds the ordering constraint before < after to the ordering. This will automatically re-compute the transitive hull of the ordering relation
     */
   def addOrderingConstraint(before: Int, after: Int): Unit =
-    if (orderingConstraints(before)(after) == SAME || orderingConstraints(before)(after) == AFTER) isConsistent = false
-    else {
-      orderingConstraints(before)(after) = BEFORE
-      orderingConstraints(after)(before) = AFTER
-      propagate(Array(before, after), Array(after, before))
+    if (before == after || isBefore(after, before)) isConsistent = false
+    else if (!isBefore(before, after)) {
+      // everything that is before or equal to "before" will now be before "after" and everything after it
+      val afterRow = rows(after)
+      val afterWord = after >>> 6
+      val afterBit = 1L << after
+      var from = 0
+      while (from < numberOfPlanSteps) {
+        if (from == before || isBefore(from, before)) {
+          val row = writableRow(from)
+          var w = 0
+          while (w < afterRow.length) {
+            row(w) |= afterRow(w)
+            w += 1
+          }
+          row(afterWord) |= afterBit
+        }
+        from += 1
+      }
     }
 
   /**
@@ -114,88 +158,91 @@ class EfficientOrdering(val orderingConstraints: Array[Array[Byte]] = Array(), v
     * E.g. if 1 is removed from {0<1<2,3}, the result will be {0<1,2}, not {0,1,2}
     */
   def removePlanStep(ps: Int): EfficientOrdering = {
-    val newOrdering = new Array[Array[Byte]](orderingConstraints.length - 1)
+    val newNumberOfPlanSteps = numberOfPlanSteps - 1
+    val newRows = new Array[Array[Long]](newNumberOfPlanSteps)
+    val psWord = ps >>> 6
+    val lowerBits = (1L << ps) - 1
+
     var i = 0
-    while (i < newOrdering.length) {
-      newOrdering(i) = new Array[Byte](newOrdering.length)
-      var j = 0
-      while (j < newOrdering.length) {
-        newOrdering(i)(j) = orderingConstraints(i + (if (i >= ps) 1 else 0))(j + (if (j >= ps) 1 else 0))
-        j += 1
+    while (i < newNumberOfPlanSteps) {
+      val oldRow = rows(if (i >= ps) i + 1 else i)
+      val newRow = new Array[Long](words(newNumberOfPlanSteps))
+      // words in front of ps stay as they are, all bits after ps are shifted by one
+      System.arraycopy(oldRow, 0, newRow, 0, Math.min(psWord, newRow.length))
+      var w = psWord
+      while (w < newRow.length) {
+        val current = oldRow(w)
+        val next = if (w + 1 < oldRow.length) oldRow(w + 1) else 0L
+        val shifted = (current >>> 1) | (next << 63)
+        newRow(w) = if (w == psWord) (current & lowerBits) | (shifted & ~lowerBits) else shifted
+        w += 1
       }
+      newRows(i) = newRow
       i += 1
     }
-    new EfficientOrdering(newOrdering, isConsistent)
+    new EfficientOrdering(newNumberOfPlanSteps, newRows, Array.fill(newNumberOfPlanSteps)(true), isConsistent)
   }
 
 
   /**
-    * internal function that actually performs the copying-around needed to copy, add, delete and replace plan steps.
+    * creates an ordering with the given number of plan steps, whose first numberOfPlanSteps rows are shared with this ordering
     */
-  private def addPlanStepsWithMaybeFromBase(fromBase: Boolean, base: Int, internalOrdering: Option[Array[Array[Byte]]], newPlanSteps: Int): EfficientOrdering = {
-    val originalSize = orderingConstraints.length
-    val newOrdering = new Array[Array[Byte]](originalSize + (if (fromBase) internalOrdering.get.length else newPlanSteps))
+  private def extendedOrdering(newNumberOfPlanSteps: Int): EfficientOrdering = {
+    val newRows = new Array[Array[Long]](newNumberOfPlanSteps)
+    val newOwnedRows = new Array[Boolean](newNumberOfPlanSteps)
+    val neededWords = words(newNumberOfPlanSteps)
+
     var i = 0
-    while (i < originalSize) {
-      newOrdering(i) = new Array[Byte](newOrdering.length)
-      var j = 0
-      while (j < originalSize) {
-        // copy the original matrix
-        newOrdering(i)(j) = orderingConstraints(i)(j)
-        j += 1
-      }
-      while (j < newOrdering.length) {
-        // copy the original matrix
-        if (fromBase && i != base) newOrdering(i)(j) = orderingConstraints(i)(base) else newOrdering(i)(j) = DONTKNOW
-        j += 1
+    while (i < numberOfPlanSteps) {
+      if (rows(i).length >= neededWords) newRows(i) = rows(i)
+      else {
+        newRows(i) = java.util.Arrays.copyOf(rows(i), neededWords)
+        newOwnedRows(i) = true
       }
       i += 1
     }
-    while (i < newOrdering.length) {
-      newOrdering(i) = new Array[Byte](newOrdering.length)
-      var j = 0
-      while (j < newOrdering.length) {
-        if (i == j) newOrdering(i)(j) = SAME
-        else if (!fromBase) newOrdering(i)(j) = DONTKNOW
-        else if (j < originalSize) {
-          // new planStep vs old planstep
-          if (j != base) newOrdering(i)(j) = orderingConstraints(base)(j) else newOrdering(i)(j) = DONTKNOW
-        } else {
-          // both planSteps are new
-          val iIndexOnNewOrdering = i - originalSize
-          val jIndexOnNewOrdering = j - originalSize
-          // apply
-          newOrdering(i)(j) = internalOrdering.get(iIndexOnNewOrdering)(jIndexOnNewOrdering)
-        }
-        j += 1
-      }
-      i += 1
-    }
-    new EfficientOrdering(newOrdering, isConsistent)
+    // rows are now shared, so this ordering has to copy them before changing them, too
+    java.util.Arrays.fill(ownedRows, false)
+
+    new EfficientOrdering(newNumberOfPlanSteps, newRows, newOwnedRows, isConsistent)
   }
 
   def minimalOrderingConstraintsWithoutInitAndGoal(): Array[(Int, Int)] = if (!isConsistent) Array()
   else {
-    val ord = orderingConstraints.map(_.clone())
-
-    // run floyd-warshall backwards
-    for (from <- ord.indices; middle <- ord.indices)
-      if (ord(from)(middle) != DONTKNOW)
-        for (to <- ord.indices)
-          if (from != middle && to != middle && from != to)
-            (ord(from)(middle), ord(middle)(to)) match {
-              case (AFTER, AFTER) | (SAME, AFTER) | (AFTER, SAME)     => ord(from)(to) = DONTKNOW
-              case (BEFORE, BEFORE) | (SAME, BEFORE) | (BEFORE, SAME) => ord(from)(to) = DONTKNOW
-              case (_, _)                                             => ()
-            }
-    (for (from <- 2 until ord.length; to <- 2 until ord.length; if ord(from)(to) == BEFORE) yield (from, to)).toArray
+    val buffer = new ArrayBuffer[(Int, Int)]()
+    val implied = new Array[Long](words(numberOfPlanSteps))
+
+    var from = 2
+    while (from < numberOfPlanSteps) {
+      // everything that is after a successor of from is implied by transitivity
+      java.util.Arrays.fill(implied, 0L)
+      var middle = 0
+      while (middle < numberOfPlanSteps) {
+        if (isBefore(from, middle)) {
+          var w = 0
+          while (w < implied.length) {
+            implied(w) |= rows(middle)(w)
+            w += 1
+          }
+        }
+        middle += 1
+      }
+
+      var to = 2
+      while (to < numberOfPlanSteps) {
+        if (isBefore(from, to) && (implied(to >>> 6) & (1L << to)) == 0) buffer append ((from, to))
+        to += 1
+      }
+      from += 1
+    }
+    buffer.toArray
   }
 
 
   def existsLinearisationWithPropertyFold[A](initialValue: A, foldOperation: (A, Int) => (A, Boolean)): Boolean = {
     // sources
-    val inDegree: Array[Int] = new Array[Int](orderingConstraints.length)
-    orderingConstraints.indices foreach { i => orderingConstraints(i).indices foreach { j => if (orderingConstraints(i)(j) == BEFORE)  inDegree(j) += 1 } }
+    val inDegree: Array[Int] = new Array[Int](numberOfPlanSteps)
+    Range(0, numberOfPlanSteps) foreach { i => Range(0, numberOfPlanSteps) foreach { j => if (isBefore(i, j)) inDegree(j) += 1 } }
 
     def dfs(sources: Array[Int], value: A, processed: Int): Boolean = if (processed == inDegree.length) true
     else {
@@ -210,7 +257,7 @@ class EfficientOrdering(val orderingConstraints: Array[Array[Byte]] = Array(), v
 
             var j = 0
             while (j < sources.length) {
-              if (orderingConstraints(i)(j) == BEFORE) newSources(j) -= 1
+              if (isBefore(i, j)) newSources(j) -= 1
               j += 1
             }
             // not a source any more
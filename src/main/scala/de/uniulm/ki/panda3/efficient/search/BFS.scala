@@ -29,9 +29,11 @@ import de.uniulm.ki.util._
 import scala.collection.mutable.ArrayBuffer
 
 /**
+  * If duplicateDetection is set, plans that have already been generated (see [[EfficientClosedList]]) are not added to the queue again.
+  *
   * @author Gregor Behnke (gregor.behnke@uni-ulm.de)
   */
-object BFS extends EfficientSearchAlgorithm[Unit] {
+class BFS(duplicateDetection: Boolean, closedListCapacity: Int) extends EfficientSearchAlgorithm[Unit] {
 
   override def startSearch(domain: EfficientDomain, initialPlan: EfficientPlan, nodeLimit: Option[Int], timeLimit: Option[Int], releaseEvery: Option[Int], printSearchInfo: Boolean,
                            buildTree: Boolean, informationCapsule: InformationCapsule, timeCapsule: TimeCapsule):
@@ -58,6 +60,11 @@ object BFS extends EfficientSearchAlgorithm[Unit] {
     var layerNumberOfNodes = 0
     var total = 0
 
+    // in a breadth first search, a plan is always reached first via a shortest path
+    val closedList: Option[EfficientClosedList] = if (duplicateDetection) Some(new EfficientClosedList(closedListCapacity)) else None
+    closedList foreach { _.isDuplicate(initialPlan, 0) }
+    var duplicateChecks = 0
+
     informationCapsule increment NUMBER_OF_NODES
     val timeLimitInMilliSeconds = timeLimit.getOrElse(Int.MaxValue).toLong * 1000
 
@@ -109,8 +116,9 @@ object BFS extends EfficientSearchAlgorithm[Unit] {
                 myNode.selectedFlaw = flawnum
               }
             } else {
-              val numberOfModifiactions = flaws(flawnum).estimatedNumberOfResolvers
-              total += numberOfModifiactions
+              val numberOfModifiactions = flaws(flawnum).estimatedNumberOfResolversUpTo(smallFlawNumMod)
+              // the bounded count is only good for selecting the flaw, the statistic needs the full estimate
+              if (printSearchInfo) total += flaws(flawnum).estimatedNumberOfResolvers
               if (numberOfModifiactions < smallFlawNumMod) {
                 smallFlawNumMod = numberOfModifiactions
                 myNode.selectedFlaw = flawnum
@@ -135,7 +143,10 @@ object BFS extends EfficientSearchAlgorithm[Unit] {
               // apply modification
               val newPlan: EfficientPlan = plan.modify(actualModifications(modNum))
 
-              if (newPlan.variableConstraints.potentiallyConsistent && newPlan.ordering.isConsistent) {
+              val consistent = newPlan.variableConstraints.potentiallyConsistent && newPlan.ordering.isConsistent
+              if (consistent && closedList.isDefined) duplicateChecks += 1
+              if (consistent && closedList.isDefined && closedList.get.isDuplicate(newPlan, 0)) informationCapsule increment NUMBER_OF_PRUNED_DUPLICATES
+              else if (consistent) {
                 informationCapsule increment NUMBER_OF_NODES
                 val nodeNumber = informationCapsule(NUMBER_OF_NODES)
                 val searchNode = if (buildTree) new EfficientSearchNode[Unit](nodeNumber, newPlan, myNode, Array(0),0) else
@@ -154,6 +165,9 @@ object BFS extends EfficientSearchAlgorithm[Unit] {
         if (buildTree) myNode.setNotDirty()
       }
 
+      if (closedList.isDefined)
+        informationCapsule.set(DUPLICATE_PRUNING_RATE, "%.4f".format(if (duplicateChecks == 0) 0.0 else informationCapsule(NUMBER_OF_PRUNED_DUPLICATES).toDouble / duplicateChecks))
+
       if (queue.isEmpty){
         // if we reached this point and the queue is empty, we have proven the problem to be unsolvable
         informationCapsule.set(SEARCH_SPACE_FULLY_EXPLORED, "true")
@@ -245,3 +259,5 @@ object BFS extends EfficientSearchAlgorithm[Unit] {
     (root, semaphore, resultFunction, AbortFunction({ _ => abort = true }))
   }
 }
+
+object BFS extends BFS(duplicateDetection = false, closedListCapacity = 0)
@@ -86,7 +86,7 @@ object DFS {
     var smallFlawNumMod = 0x3f3f3f3f
     while (flawnum < flaws.length) {
       //printTime("ToModcall")
-      val modnum = flaws(flawnum).estimatedNumberOfResolvers
+      val modnum = flaws(flawnum).estimatedNumberOfResolversUpTo(smallFlawNumMod)
       //modifications(flawnum) = flaws(flawnum).resolver
       //printTime("Modification")
       if (modnum < smallFlawNumMod) {
@@ -103,14 +103,12 @@ object DFS {
     if (smallFlawNumMod == 0) None
     else {
       var result: Option[EfficientPlan] = None
-      var modNum = 0
-      val resolver = flaws(smallFlaw).resolver
-      assert(resolver.length == smallFlawNumMod)
-      while (modNum < smallFlawNumMod && result.isEmpty) {
+      // resolvers are only generated as long as no solution has been found
+      val resolver = flaws(smallFlaw).resolverIterator
+      while (resolver.hasNext && result.isEmpty) {
         // apply modification
-        val newPlan = plan.modify(resolver(modNum))
+        val newPlan = plan.modify(resolver.next())
         result = dfs(newPlan, depth + 1)
-        modNum += 1
       }
       result
     }
@@ -0,0 +1,54 @@
+// PANDA 3 -- a domain-independent planner for classical and hierarchical planning
+// Copyright (C) 2014-2018 the original author or authors.
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package de.uniulm.ki.panda3.efficient.search
+
+import java.util
+
+import de.uniulm.ki.panda3.efficient.plan.{EfficientPlan, EfficientPlanFingerprint}
+
+/**
+  * The plans a search has already generated, identified by their fingerprints (see [[EfficientPlanFingerprint]]), together with the lowest distance value they have
+  * been reached with. If capacity is positive, at most this many plans are stored and the oldest ones are forgotten.
+  */
+class EfficientClosedList(capacity: Int) {
+  private var forgotten = 0
+
+  private val distances = new util.LinkedHashMap[EfficientPlanFingerprint, Integer]() {
+    override def removeEldestEntry(eldest: util.Map.Entry[EfficientPlanFingerprint, Integer]): Boolean =
+      if (capacity > 0 && size() > capacity) {
+        forgotten += 1
+        true
+      } else false
+  }
+
+  /**
+    * returns whether the plan has already been reached with a distance value that is at most the given one. If not, it is stored with the given distance value.
+    */
+  def isDuplicate(plan: EfficientPlan, distanceValue: Int): Boolean = {
+    val known = distances.get(plan.fingerprint)
+    if (known != null && known <= distanceValue) true
+    else {
+      distances.put(plan.fingerprint, distanceValue)
+      false
+    }
+  }
+
+  def size: Int = distances.size()
+
+  /** the number of plans that have been dropped as the closed list was full */
+  def evictions: Int = forgotten
+}
@@ -68,6 +68,8 @@ class EfficientSearchNode[Payload](nodeID: Int, nodePlan: EfficientPlan, nodePar
   var children     : Array[(EfficientSearchNode[Payload], Int)] = Array()
   /** any possible further payload */
   var payload      : Array[Payload]                             = _
+  /** the number of modifications applied to the initial plan to obtain this node's plan, only maintained by searches that need it */
+  var depth        : Int                                        = 0
 
   override def compare(that: EfficientSearchNode[Payload]): Int = {
     var heuristicCompare = 0
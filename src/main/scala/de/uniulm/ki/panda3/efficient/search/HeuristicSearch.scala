@@ -17,7 +17,7 @@
 package de.uniulm.ki.panda3.efficient.search
 
 import java.util
-import java.util.concurrent.{TimeUnit, Executors, Semaphore}
+import java.util.concurrent.{Callable, ForkJoinPool, TimeUnit, Executors, Semaphore}
 
 import de.uniulm.ki.panda3.configuration.{AbortFunction, EfficientSearchAlgorithm, ResultFunction}
 import de.uniulm.ki.panda3.efficient.domain.EfficientDomain
@@ -26,6 +26,7 @@ import de.uniulm.ki.panda3.efficient.heuristic.filter.{Filter, TreeFF}
 import de.uniulm.ki.panda3.efficient.plan.EfficientPlan
 import de.uniulm.ki.panda3.efficient.plan.modification.EfficientModification
 import de.uniulm.ki.panda3.efficient.search.flawSelector.EfficientFlawSelector
+import de.uniulm.ki.panda3.util.fastIntegerDataStructures.UUBucketPriorityQueue
 import de.uniulm.ki.util.{InformationCapsule, TimeCapsule}
 
 import scala.collection.mutable
@@ -33,11 +34,25 @@ import scala.collection.mutable.ArrayBuffer
 import scala.reflect.ClassTag
 
 /**
+  * If threads is larger than one, the children of a node are generated and evaluated in parallel. This is only done if all heuristics and filters are stateless
+  * (see [[de.uniulm.ki.panda3.efficient.heuristic.EfficientHeuristic.isStateless]]), otherwise the search falls back to the sequential evaluation. The children
+  * are still numbered and inserted into the queue in the order of their modifications.
+  *
+  * If bucketOpenList is set, the open list is a bucket queue on the (rounded down) value of the first heuristic, ties are broken by the second heuristic and
+  * then FIFO. For integral heuristic values this is the same order as the one of the default heap. If additionally openListCapacity is positive, the open list
+  * keeps at most this many nodes and drops the worst ones.
+  *
+  * If duplicateDetection is set, children whose plan has already been generated (up to the numbering of plan steps and variables, see
+  * [[de.uniulm.ki.panda3.efficient.plan.EfficientPlanFingerprint]]) with a lower or equal distance value are pruned before their heuristics are computed. The closed
+  * list keeps at most closedListCapacity plans (if it is positive) and forgets the oldest ones.
+  *
   * @author Gregor Behnke (gregor.behnke@uni-ulm.de)
   */
 case class HeuristicSearch[Payload <: AnyVal](heuristic: Array[EfficientHeuristic[Payload]], weight: Double, pruning: Array[Filter], flawSelector: EfficientFlawSelector,
                                               addNumberOfPlanSteps: Boolean,
-                                              addDepth: Boolean, continueOnSolution: Boolean, invertCosts: Boolean = false)(implicit m: ClassTag[Payload])
+                                              addDepth: Boolean, continueOnSolution: Boolean, invertCosts: Boolean = false, threads: Int = 1,
+                                              bucketOpenList: Boolean = false, openListCapacity: Int = 0, duplicateDetection: Boolean = false,
+                                              closedListCapacity: Int = 0)(implicit m: ClassTag[Payload])
   extends EfficientSearchAlgorithm[Payload] {
 
   override def startSearch(domain: EfficientDomain, initialPlan: EfficientPlan, nodeLimit: Option[Int], timeLimit: Option[Int], releaseEvery: Option[Int], printSearchInfo: Boolean,
@@ -72,9 +87,21 @@ case class HeuristicSearch[Payload <: AnyVal](heuristic: Array[EfficientHeuristi
 
     var abort = false
 
-    val searchQueue = new mutable.PriorityQueue[(EfficientSearchNode[Payload], Int)]()
+    assert(!bucketOpenList || heuristic.length <= 2, "the bucket open list supports at most two heuristics")
+    assert(openListCapacity == 0 || bucketOpenList, "only the bucket open list can be bounded")
+    val searchQueue: HeuristicSearch.OpenList[Payload] =
+      if (bucketOpenList) new HeuristicSearch.BucketOpenList[Payload](openListCapacity) else new HeuristicSearch.HeapOpenList[Payload]()
     var result: Seq[EfficientPlan] = Nil
-    searchQueue.enqueue((root, 0))
+    searchQueue.enqueue(root)
+
+    // in a depth first search, the distance values decrease with the depth, so a plan is never reopened
+    def closedListDistance(distanceValue: Int): Int = if (invertCosts) 0 else distanceValue
+
+    val closedList: Option[EfficientClosedList] = if (duplicateDetection) Some(new EfficientClosedList(closedListCapacity)) else None
+    closedList foreach { _.isDuplicate(initialPlan, closedListDistance(rootDistanceValue)) }
+    var duplicateChecks = 0
+
+    val boundedNumberOfModifications = flawSelector.needsOnlyMinimalNumberOfModifications
 
     var lowestHeuristicFound = Double.MaxValue
     var minFlaw = Integer.MAX_VALUE
@@ -86,11 +113,80 @@ case class HeuristicSearch[Payload <: AnyVal](heuristic: Array[EfficientHeuristi
 
     val timeLimitInMilliSeconds = timeLimit.getOrElse(Int.MaxValue).toLong * 1000
 
-    def heuristicSearch() = {
+    // the heuristics and filters are shared by all workers, so the children are only evaluated in parallel if none of them has any state
+    val parallelEvaluationPossible = (heuristic forall { _.isStateless }) && (pruning forall { _.isStateless })
+    if (threads > 1 && !parallelEvaluationPossible)
+      println("Not all heuristics and filters can be used by multiple threads, the children of a node are evaluated sequentially")
+    val childEvaluationPool: Option[ForkJoinPool] = if (threads > 1 && parallelEvaluationPossible) Some(new ForkJoinPool(threads)) else None
+
+    /**
+      * applies the modification to the plan of the given node and computes the filters for the result. This function and evaluateChild only touch the given information
+      * capsule and do not change any state of the search, s.t. they can be run in parallel for all children of a node.
+      */
+    def generateChild(node: EfficientSearchNode[Payload], depth: Int, modification: EfficientModification, capsule: InformationCapsule,
+                      measureTime: Boolean): HeuristicSearch.EvaluatedChild[Payload] = {
+      val newPlan: EfficientPlan = node.plan.modify(modification)
+
+      if (measureTime) timeCapsule start SEARCH_COMPUTE_FILTER
+      var planAllowed = true
+      var filterIndex = 0
+      while (filterIndex < pruning.length) {
+        planAllowed &= pruning(filterIndex).isPossiblySolvable(newPlan)
+        filterIndex += 1
+      }
+      if (measureTime) timeCapsule stop SEARCH_COMPUTE_FILTER
+
+      if (newPlan.variableConstraints.potentiallyConsistent && newPlan.ordering.isConsistent && planAllowed) {
+        val distanceValue = ((if (addNumberOfPlanSteps) newPlan.numberOfPrimitivePlanSteps else 0) + (if (addDepth) depth + 1 else 0)) * (if (invertCosts) -1 else 1)
+        // the fingerprint is computed here s.t. this is done in parallel, too
+        if (duplicateDetection) newPlan.fingerprint
+        new HeuristicSearch.EvaluatedChild[Payload](newPlan, true, distanceValue, capsule)
+      } else new HeuristicSearch.EvaluatedChild[Payload](newPlan, false, 0, capsule)
+    }
+
+    /** computes the heuristics for a child that has not been pruned */
+    def evaluateChild(node: EfficientSearchNode[Payload], depth: Int, modification: EfficientModification, child: HeuristicSearch.EvaluatedChild[Payload],
+                      measureTime: Boolean): Unit = {
+      val newPlan = child.plan
+      val distanceValue = child.distanceValue
+      val capsule = child.information
+      if (measureTime) timeCapsule start SEARCH_COMPUTE_HEURISTIC
+
+      // compute the heuristic array
+      val h = new Array[Double](heuristic.length)
+      val newPayload = new Array[Payload](heuristic.length)
+      var hPos = 0
+      var allFinite = true
+      while (hPos < h.length) {
+        val (hVal, pay) = heuristic(hPos).computeHeuristic(newPlan, node.payload(hPos), modification, depth, (node.heuristic(hPos) - node.distanceValue) / weight, capsule)
+        h(hPos) = distanceValue + weight * hVal
+        newPayload(hPos) = pay
+        allFinite &= h(hPos) < Int.MaxValue
+
+        hPos += 1
+      }
+      if (measureTime) timeCapsule stop SEARCH_COMPUTE_HEURISTIC
+
+      child.heuristic = h
+      child.payload = newPayload
+      child.allFinite = allFinite
+    }
+
+    /** runs the function for all children, in parallel if there is a pool. The results are in the order of the children */
+    def forAllChildren[T: ClassTag](numberOfChildren: Int)(f: Int => T): Array[T] = childEvaluationPool match {
+      case None       => Array.tabulate(numberOfChildren)(f)
+      case Some(pool) =>
+        val tasks = Array.tabulate(numberOfChildren) { i => new Callable[T] {override def call(): T = f(i)} }
+        val futures = pool.invokeAll(util.Arrays.asList(tasks: _*))
+        Array.tabulate(numberOfChildren) { i => futures.get(i).get() }
+    }
+
+    def heuristicSearch() = try {
       val initTime = System.currentTimeMillis()
       while (searchQueue.nonEmpty && (continueOnSolution || result.isEmpty) && nodeLimit.getOrElse(Int.MaxValue) >= nodes &&
         timeLimitInMilliSeconds >= timeCapsule.getCurrentElapsedTimeInThread(TOTAL_TIME) - 50) {
-        val (myNode, depth) = searchQueue.dequeue()
+        val myNode = searchQueue.dequeue()
+        val depth = myNode.depth
         val plan = myNode.plan
         timeCapsule start SEARCH_FLAW_COMPUTATION
         val flaws = plan.flaws
@@ -139,10 +235,15 @@ case class HeuristicSearch[Payload <: AnyVal](heuristic: Array[EfficientHeuristi
           }
 
           var flawnum = 0
+          var minimalNumberOfModifications = Integer.MAX_VALUE
           while (flawnum < flaws.length) {
             if (buildTree) {
               myNode.modifications(flawnum) = flaws(flawnum).resolver
               numberOfModificationsPerFlaw(flawnum) = myNode.modifications(flawnum).length
+            } else if (boundedNumberOfModifications) {
+              // flaws with more modifications than the best one so far are not selected anyway, so there is no need to count them all
+              numberOfModificationsPerFlaw(flawnum) = flaws(flawnum).estimatedNumberOfResolversUpTo(minimalNumberOfModifications)
+              minimalNumberOfModifications = Math.min(minimalNumberOfModifications, numberOfModificationsPerFlaw(flawnum))
             } else numberOfModificationsPerFlaw(flawnum) = flaws(flawnum).estimatedNumberOfResolvers
             flawnum += 1
           }
@@ -161,54 +262,62 @@ case class HeuristicSearch[Payload <: AnyVal](heuristic: Array[EfficientHeuristi
             if (buildTree) timeCapsule stop SEARCH_FLAW_RESOLVER
 
 
-            var modNum = 0
-            while (modNum < actualModifications.length) {
-              // apply modification
-              val newPlan: EfficientPlan = plan.modify(actualModifications(modNum))
-
-              timeCapsule start SEARCH_COMPUTE_FILTER
-              var planAllowed = true
-              var filterIndex = 0
-              while (filterIndex < pruning.length) {
-                planAllowed &= pruning(filterIndex).isPossiblySolvable(newPlan)
-                filterIndex += 1
+            // apply all modifications and evaluate the resulting plans. If a pool is given this is done in parallel
+            val sequential = childEvaluationPool.isEmpty
+            if (!sequential) timeCapsule start SEARCH_COMPUTE_HEURISTIC
+            val evaluatedChildren: Array[HeuristicSearch.EvaluatedChild[Payload]] = forAllChildren(actualModifications.length) { i =>
+              generateChild(myNode, depth, actualModifications(i), if (sequential) informationCapsule else new InformationCapsule(), measureTime = sequential)
+            }
+
+            // duplicates are pruned in the order of the modifications, s.t. the result does not depend on the evaluation order
+            closedList foreach { closed =>
+              var i = 0
+              while (i < evaluatedChildren.length) {
+                val child = evaluatedChildren(i)
+                if (child.admissible) {
+                  duplicateChecks += 1
+                  if (closed.isDuplicate(child.plan, closedListDistance(child.distanceValue))) {
+                    child.duplicate = true
+                    informationCapsule increment NUMBER_OF_PRUNED_DUPLICATES
+                  }
+                }
+                i += 1
               }
-              timeCapsule stop SEARCH_COMPUTE_FILTER
+            }
+
+            forAllChildren(actualModifications.length) { i =>
+              val child = evaluatedChildren(i)
+              if (child.admissible && !child.duplicate) evaluateChild(myNode, depth, actualModifications(i), child, measureTime = sequential)
+            }
+            if (!sequential) {
+              timeCapsule stop SEARCH_COMPUTE_HEURISTIC
+              evaluatedChildren foreach { child => informationCapsule addAll child.information }
+            }
+
+            // insert the children in the order of the modifications, such that node numbers do not depend on the evaluation order
+            var modNum = 0
+            while (modNum < evaluatedChildren.length) {
+              val evaluatedChild = evaluatedChildren(modNum)
+              val newPlan = evaluatedChild.plan
 
-              if (newPlan.variableConstraints.potentiallyConsistent && newPlan.ordering.isConsistent && planAllowed) {
+              // duplicates have already been counted
+              if (evaluatedChild.admissible && !evaluatedChild.duplicate) {
                 informationCapsule increment NUMBER_OF_NODES
                 informationCapsule.addToDistribution(PLAN_SIZE, newPlan.numberOfPlanSteps)
 
-                timeCapsule start SEARCH_COMPUTE_HEURISTIC
-                val distanceValue = ((if (addNumberOfPlanSteps) newPlan.numberOfPrimitivePlanSteps else 0) + (if (addDepth) depth + 1 else 0)) * (if (invertCosts) -1 else 1)
-
-                // compute the heuristic array
-                val h = new Array[Double](heuristic.length)
-                val newPayload = new Array[Payload](heuristic.length)
-                var hPos = 0
-                var allFinite = true
-                while (hPos < h.length) {
-                  val (hVal, pay) = heuristic(hPos).computeHeuristic(newPlan, myNode.payload(hPos), actualModifications(modNum), depth,
-                                                                     (myNode.heuristic(hPos) - myNode.distanceValue) / weight, informationCapsule)
-                  h(hPos) = distanceValue + weight * hVal
-                  newPayload(hPos) = pay
-                  allFinite &= h(hPos) < Int.MaxValue
-
-                  hPos += 1
-                }
-                timeCapsule stop SEARCH_COMPUTE_HEURISTIC
-
                 assert(newPlan.numberOfAllPlanSteps >= plan.numberOfAllPlanSteps, "old plan " + plan.numberOfAllPlanSteps + " new plan " + newPlan.numberOfAllPlanSteps)
 
                 val nodeNumber = informationCapsule(NUMBER_OF_NODES)
-                val searchNode: EfficientSearchNode[Payload] = if (buildTree) new EfficientSearchNode[Payload](nodeNumber, newPlan, myNode, h, distanceValue)
-                else new EfficientSearchNode[Payload](nodeNumber, newPlan, null, h, distanceValue)
-                searchNode.payload = newPayload
+                val searchNode: EfficientSearchNode[Payload] =
+                  if (buildTree) new EfficientSearchNode[Payload](nodeNumber, newPlan, myNode, evaluatedChild.heuristic, evaluatedChild.distanceValue)
+                  else new EfficientSearchNode[Payload](nodeNumber, newPlan, null, evaluatedChild.heuristic, evaluatedChild.distanceValue)
+                searchNode.payload = evaluatedChild.payload
+                searchNode.depth = depth + 1
 
-                if (allFinite) searchQueue enqueue ((searchNode, depth + 1)) else informationCapsule increment NUMBER_OF_DISCARDED_NODES
+                if (evaluatedChild.allFinite) searchQueue enqueue searchNode else informationCapsule increment NUMBER_OF_DISCARDED_NODES
 
                 children append ((searchNode, modNum))
-              } else informationCapsule increment NUMBER_OF_DISCARDED_NODES
+              } else if (!evaluatedChild.admissible) informationCapsule increment NUMBER_OF_DISCARDED_NODES
               modNum += 1
             }
           }
@@ -218,12 +327,20 @@ case class HeuristicSearch[Payload <: AnyVal](heuristic: Array[EfficientHeuristi
         if (buildTree) myNode.setNotDirty()
       }
 
-      if (searchQueue.isEmpty) {
+      if (searchQueue.evictions > 0) informationCapsule.add(NUMBER_OF_EVICTED_NODES, searchQueue.evictions)
+      closedList foreach { closed =>
+        informationCapsule.set(DUPLICATE_PRUNING_RATE, "%.4f".format(if (duplicateChecks == 0) 0.0 else informationCapsule(NUMBER_OF_PRUNED_DUPLICATES).toDouble / duplicateChecks))
+        if (printSearchInfo) println("Pruned " + informationCapsule(NUMBER_OF_PRUNED_DUPLICATES) + " of " + duplicateChecks + " generated plans as duplicates, " +
+                                       closed.size + " plans in the closed list")
+      }
+      if (searchQueue.isEmpty && searchQueue.evictions == 0) {
         // if we reached this point and the queue is empty, we have proven the problem to be unsolvable
         informationCapsule.set(SEARCH_SPACE_FULLY_EXPLORED, "true")
       }
 
       semaphore.release()
+    } finally {
+      childEvaluationPool foreach { _.shutdown() }
     }
 
     val resultSemaphore = new Semaphore(0)
@@ -314,3 +431,58 @@ case class HeuristicSearch[Payload <: AnyVal](heuristic: Array[EfficientHeuristi
     (root, semaphore, resultFunction, AbortFunction({ _ => abort = true }))
   }
 }
+
+object HeuristicSearch {
+
+  /** the result of applying a modification and evaluating the resulting plan. If the plan is not admissible, it has been pruned. The heuristic is only computed for
+    * admissible plans that are no duplicates */
+  private class EvaluatedChild[Payload](val plan: EfficientPlan, val admissible: Boolean, val distanceValue: Int, val information: InformationCapsule) {
+    var duplicate: Boolean        = false
+    var heuristic: Array[Double]  = _
+    var payload  : Array[Payload] = _
+    var allFinite: Boolean        = false
+  }
+
+  private trait OpenList[Payload] {
+    def enqueue(node: EfficientSearchNode[Payload]): Unit
+
+    def dequeue(): EfficientSearchNode[Payload]
+
+    def length: Int
+
+    def isEmpty: Boolean = length == 0
+
+    def nonEmpty: Boolean = length != 0
+
+    /** the number of nodes that have been dropped as the open list was full */
+    def evictions: Int = 0
+  }
+
+  private class HeapOpenList[Payload] extends OpenList[Payload] {
+    private val queue = new mutable.PriorityQueue[EfficientSearchNode[Payload]]()
+
+    override def enqueue(node: EfficientSearchNode[Payload]): Unit = queue enqueue node
+
+    override def dequeue(): EfficientSearchNode[Payload] = queue.dequeue()
+
+    override def length: Int = queue.length
+  }
+
+  private class BucketOpenList[Payload](capacity: Int) extends OpenList[Payload] {
+    private val queue = new UUBucketPriorityQueue[EfficientSearchNode[Payload]](true)
+    if (capacity > 0) queue.setCapacity(capacity)
+
+    override def enqueue(node: EfficientSearchNode[Payload]): Unit = {
+      val heuristic = node.heuristic
+      val key = Math.floor(heuristic(0)).toInt
+      val tieBreaker = if (heuristic.length > 1) Math.floor(heuristic(1)).toInt else 0
+      queue.add(node, key, tieBreaker)
+    }
+
+    override def dequeue(): EfficientSearchNode[Payload] = queue.poll()
+
+    override def length: Int = queue.size()
+
+    override def evictions: Int = queue.getNumberOfEvictions
+  }
+}
@@ -30,6 +30,12 @@ import scala.util.Random
 trait EfficientFlawSelector {
 
   def selectFlaw(plan: EfficientPlan, flaws: Array[EfficientFlaw], numberOfModifications: Array[Int]): Int
+
+  /**
+    * If true, the selector only needs the exact number of modifications of the flaws with the fewest modifications. For all others any larger number may be given, s.t. counting
+    * the modifications of a flaw can stop as soon as it exceeds the current minimum (see [[EfficientFlaw.estimatedNumberOfResolversUpTo]]).
+    */
+  def needsOnlyMinimalNumberOfModifications: Boolean = false
 }
 
 trait EfficientFlawSubsetSelector extends EfficientFlawSelector {
@@ -46,6 +52,10 @@ trait EfficientFlawSubsetSelector extends EfficientFlawSelector {
 }
 
 case class SequentialEfficientFlawSelector(subSelectors: Array[EfficientFlawSubsetSelector]) extends EfficientFlawSelector {
+
+  // all flaws but those with the minimal number of modifications are dismissed by the first selector, so later ones only see exact numbers
+  override def needsOnlyMinimalNumberOfModifications: Boolean = subSelectors.nonEmpty && subSelectors(0).needsOnlyMinimalNumberOfModifications
+
   def selectFlaw(plan: EfficientPlan, flaws: Array[EfficientFlaw], numberOfModifications: Array[Int]): Int = {
     var currentSelector = 0
     var stillActiveFlaws = flaws.length
@@ -76,6 +86,8 @@ case class SequentialEfficientFlawSelector(subSelectors: Array[EfficientFlawSubs
   */
 object LeastCostFlawRepair extends EfficientFlawSubsetSelector {
 
+  override def needsOnlyMinimalNumberOfModifications: Boolean = true
+
   def reduceSelection(plan: EfficientPlan, activeFlaws: Array[Boolean], flaws: Array[EfficientFlaw], numberOfModifications: Array[Int]): Int = {
     var minMod = Integer.MAX_VALUE
     var flawNum = 0
@@ -32,6 +32,7 @@ case class ActionMatchingDifference(referencePlan: Seq[Task], maximumDifference:
   override val ignoreOrder: Boolean = true
 
   override def apply(linearEncoding: LinearPrimitivePlanEncoding): Seq[Clause] = {
+    import linearEncoding.variables
 
     // generate clauses representing the matching
     val matchingClauses: Seq[Clause] = generateMatchingClauses(linearEncoding, matchPathAndReference)
@@ -31,6 +31,7 @@ case class ActionSetDifference(referencePlan: Seq[Task], maximumDifference: Int)
 
 
   override def apply(linearEncoding: LinearPrimitivePlanEncoding): Seq[Clause] = {
+    import linearEncoding.variables
 
     // at the most we can have this many differences between the two plans
     val maxBadness = linearEncoding.linearPlan.length + referencePlan.length
@@ -33,6 +33,7 @@ case class AlternatingAutomatonFormulaEncoding(automaton: AlternatingAutomaton,
   protected def stateRestriction(formula: PositiveBooleanFormula, position: Int) = id + "_auto_state_restriction_" + stateRestrictionsToIndex(formula) + "_" + position
 
   def apply(linearEncoding: LinearPrimitivePlanEncoding): Seq[Clause] = {
+    import linearEncoding.variables
     println(automaton.vertices map {_.longInfo} mkString "\n")
 
     val transitionRules: Seq[Clause] = linearEncoding.linearPlan.zipWithIndex flatMap { case (taskMap, position) =>
@@ -24,6 +24,7 @@ import de.uniulm.ki.panda3.symbolic.sat.verify.{Clause, EncodingWithLinearPlan,
 case class BüchiFormulaEncoding(automaton: BüchiAutomaton, id: String) extends LTLFormulaEncoding[LTLFormula, LTLFormula] {
 
   def apply(linearEncoding: LinearPrimitivePlanEncoding): Seq[Clause] = {
+    import linearEncoding.variables
     val automatonClauses: Seq[Clause] = linearEncoding.linearPlan.zipWithIndex flatMap { case (taskMap, position) =>
       // at most one of the states of the automaton is true
       val atMostOneState: Seq[Clause] = linearEncoding.atMostOneOf(automaton.vertices map { s => state(s, position) })
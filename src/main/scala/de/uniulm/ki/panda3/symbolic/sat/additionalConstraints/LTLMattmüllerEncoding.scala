@@ -45,6 +45,7 @@ case class LTLMattmüllerEncoding(lTLFormula: LTLFormula, id: String, improvedCh
   // LTL_0, A_0, LTL_1 , ... , A_N, LTL_(N+1)
   // Attention: N+1 == linearEncoding.taskSequenceLength
   def apply(inputLinearEncoding: LinearPrimitivePlanEncoding): Seq[Clause] = {
+    import inputLinearEncoding.variables
     val time0 = System.currentTimeMillis()
     val linearEncoding = inputLinearEncoding match {
       case ex: ExistsStep                      => ex
@@ -51,6 +51,7 @@ case class LTLOnParallelEncoding(lTLFormula: LTLFormula, id: String) extends Add
 
   override def apply(linearEncoding: LinearPrimitivePlanEncoding): Seq[Clause] = linearEncoding match {
     case e: ExistsStep =>
+      import linearEncoding.variables
       val ltlCheckPositions = e.intProblem.ltlCheckPositions(this)
 
       val predicatesWithIndex: Seq[(Predicate, Int)] = relevantPredicates.toSeq.zipWithIndex
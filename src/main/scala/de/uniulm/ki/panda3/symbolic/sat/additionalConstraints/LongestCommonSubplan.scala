@@ -32,6 +32,7 @@ case class LongestCommonSubplan(referencePlan: Seq[Task], minimumLength: Int, ig
   def matchingSizeAt(pathPosition: Int, size: Int): String = "matchingSize_" + pathPosition + "_" + size
 
   override def apply(linearEncoding: LinearPrimitivePlanEncoding): Seq[Clause] = {
+    import linearEncoding.variables
 
     // generate clauses representing the matching
     val matchingClauses = generateMatchingClauses(linearEncoding, matchPathAndReference)
@@ -29,6 +29,7 @@ trait MatchingBasedConstraints extends AdditionalSATConstraint {
   def ignoreOrder: Boolean
 
   protected def generateMatchingClauses(linearEncoding: EncodingWithLinearPlan, matchAtom: (Int, Int) => String) : Seq[Clause] = {
+    import linearEncoding.variables
     // every position and path can be matched only once
     val onlyOneMatchingPerPath = linearEncoding.linearPlan.indices flatMap { pathPosition =>
       val matchings = referencePlan.indices map { referencePosition => matchAtom(pathPosition, referencePosition) }
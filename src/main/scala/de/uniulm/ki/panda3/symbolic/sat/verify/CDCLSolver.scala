@@ -0,0 +1,586 @@
+// PANDA 3 -- a domain-independent planner for classical and hierarchical planning
+// Copyright (C) 2014-2018 the original author or authors.
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package de.uniulm.ki.panda3.symbolic.sat.verify
+
+import scala.collection.mutable.ArrayBuffer
+
+/**
+  * A small conflict-driven clause learning solver in the style of MiniSat (two watched literals, first UIP learning, VSIDS and Luby restarts). It runs
+  * inside the JVM and is mainly intended for testing and for small formulae, where starting an external solver dominates the runtime.
+  *
+  * Learnt clauses are rated by their literal block distance (the number of decision levels of their literals, as in Glucose). Every now and then the
+  * worse half of them is deleted, except for those with a distance of at most 2 and those that are currently the reason of an assignment.
+  *
+  * The search can be stopped by interrupting the thread that runs it, solve then throws an InterruptedException.
+  *
+  * Internally, the literal of variable v is 2v if positive and 2v+1 if negative.
+  */
+class CDCLSolver extends IncrementalSATSolver {
+
+  import CDCLSolver._
+
+  // false if the clauses are unsatisfiable without any assumptions
+  private var ok = true
+
+  private var numberOfVars = 0
+
+  // deleted clauses are null, their indices are reused
+  private val clauses      = new ArrayBuffer[Array[Int]]()
+  private val freeIndices  = new IntVector()
+  private var watches      = new Array[IntVector](2)
+  // the indices of all learnt clauses and their literal block distance
+  private val learnts      = new IntVector()
+  private val learntLBD    = new IntVector()
+  private var nextReduceDB = FIRST_REDUCE_DB
+  private var reductions   = 0
+
+  // per variable
+  private var assignment = new Array[Byte](1)
+  private var level      = new Array[Int](1)
+  private var reason     = new Array[Int](1)
+  private var activity   = new Array[Double](1)
+  private var polarity   = new Array[Boolean](1)
+  private var seen       = new Array[Boolean](1)
+  private var heapIndex  = new Array[Int](1)
+  // per decision level, used to compute literal block distances
+  private var levelStamp = new Array[Long](1)
+  private var stamp      = 0L
+
+  private val trail       = new IntVector()
+  private val trailLimits = new IntVector()
+  private var queueHead   = 0
+
+  // heap of unassigned variables, ordered by activity
+  private val heap = new IntVector()
+
+  private var variableIncrement = 1.0
+
+  private var lastModel: Array[Int] = Array()
+
+  var numberOfConflicts: Long = 0
+  var numberOfDecisions: Long = 0
+  var numberOfDeletedClauses: Long = 0
+
+  def numberOfVariables: Int = numberOfVars
+
+  def model: Array[Int] = lastModel
+
+  def addClause(disjuncts: Array[Int]): Unit = if (ok) {
+    assert(decisionLevel == 0)
+    disjuncts foreach { l => assert(l != 0); ensureVariable(Math.abs(l)) }
+
+    // remove duplicates and literals that are false, ignore clauses that are already satisfied
+    val literals = new IntVector()
+    var satisfied = false
+    var i = 0
+    while (i < disjuncts.length && !satisfied) {
+      val lit = toInternal(disjuncts(i))
+      val value = valueOf(lit)
+      if (value == TRUE || literals.contains(lit ^ 1)) satisfied = true
+      else if (value == UNDEFINED && !literals.contains(lit)) literals push lit
+      i += 1
+    }
+
+    if (!satisfied) literals.size match {
+      case 0 => ok = false
+      case 1 =>
+        enqueue(literals(0), NO_REASON)
+        ok = propagate() == NO_REASON
+      case _ => attach(literals.toArray)
+    }
+  }
+
+  def solve(assumptions: Array[Int]): Boolean = if (!ok) false else {
+    assumptions foreach { l => ensureVariable(Math.abs(l)) }
+    val internalAssumptions = assumptions map toInternal
+
+    var status = UNKNOWN
+    var restarts = 0
+    while (status == UNKNOWN) {
+      status = search(internalAssumptions, luby(restarts) * RESTART_BASE)
+      restarts += 1
+    }
+
+    if (status == INTERRUPTED) {
+      cancelUntil(0)
+      throw new InterruptedException("the CDCL solver has been interrupted")
+    }
+
+    if (status == SATISFIABLE)
+      lastModel = Range(1, numberOfVars + 1).map({ v => if (assignment(v) == TRUE) v else -v }).toArray
+
+    cancelUntil(0)
+    status == SATISFIABLE
+  }
+
+  private def search(assumptions: Array[Int], conflictBudget: Int): Int = {
+    var conflicts = 0
+    while (true) {
+      val conflict = propagate()
+      if (conflict != NO_REASON) {
+        numberOfConflicts += 1
+        conflicts += 1
+        if (decisionLevel == 0) {
+          ok = false
+          return UNSATISFIABLE
+        }
+
+        val (learnt, backtrackLevel) = analyse(conflict)
+        // has to be computed before backtracking, as it needs the levels of the literals
+        val lbd = literalBlockDistance(learnt)
+        cancelUntil(backtrackLevel)
+        if (learnt.length == 1) enqueue(learnt(0), NO_REASON)
+        else {
+          val index = attach(learnt)
+          learnts push index
+          learntLBD push lbd
+          enqueue(learnt(0), index)
+        }
+        variableIncrement /= VARIABLE_DECAY
+
+        if (conflicts >= conflictBudget) {
+          cancelUntil(0)
+          return UNKNOWN
+        }
+        if ((numberOfConflicts & INTERRUPT_CHECK_MASK) == 0 && Thread.interrupted()) return INTERRUPTED
+      } else {
+        if (numberOfConflicts >= nextReduceDB) {
+          reduceDB()
+          nextReduceDB += FIRST_REDUCE_DB + REDUCE_DB_INCREMENT * reductions
+        }
+
+        // decide the assumptions first, each one gets its own decision level
+        var next = NO_LITERAL
+        while (next == NO_LITERAL && decisionLevel < assumptions.length) {
+          val assumption = assumptions(decisionLevel)
+          valueOf(assumption) match {
+            case TRUE      => trailLimits push trail.size
+            case FALSE     => return UNSATISFIABLE
+            case UNDEFINED => next = assumption
+          }
+        }
+
+        if (next == NO_LITERAL) {
+          val variable = pickBranchVariable()
+          if (variable == 0) return SATISFIABLE
+          numberOfDecisions += 1
+          next = 2 * variable + (if (polarity(variable)) 0 else 1)
+        }
+
+        trailLimits push trail.size
+        enqueue(next, NO_REASON)
+      }
+    }
+    UNKNOWN
+  }
+
+  /** returns the index of a conflicting clause or NO_REASON */
+  private def propagate(): Int = {
+    var conflict = NO_REASON
+    while (conflict == NO_REASON && queueHead < trail.size) {
+      val falseLiteral = trail(queueHead) ^ 1
+      queueHead += 1
+
+      val watchers = watches(falseLiteral)
+      var i = 0
+      var j = 0
+      while (i < watchers.size) {
+        val clauseIndex = watchers(i)
+        i += 1
+        val clause = clauses(clauseIndex)
+        // the false literal is always at position 1
+        if (clause(0) == falseLiteral) {
+          clause(0) = clause(1)
+          clause(1) = falseLiteral
+        }
+
+        if (valueOf(clause(0)) == TRUE) {
+          watchers(j) = clauseIndex
+          j += 1
+        } else {
+          // look for a new literal to watch
+          var k = 2
+          while (k < clause.length && valueOf(clause(k)) == FALSE) k += 1
+
+          if (k < clause.length) {
+            clause(1) = clause(k)
+            clause(k) = falseLiteral
+            watches(clause(1)) push clauseIndex
+          } else {
+            watchers(j) = clauseIndex
+            j += 1
+            if (valueOf(clause(0)) == FALSE) {
+              conflict = clauseIndex
+              queueHead = trail.size
+              while (i < watchers.size) {
+                watchers(j) = watchers(i)
+                j += 1
+                i += 1
+              }
+            } else enqueue(clause(0), clauseIndex)
+          }
+        }
+      }
+      watchers.shrinkTo(j)
+    }
+    conflict
+  }
+
+  /** first UIP conflict analysis, returns the learnt clause (with the asserting literal in front) and the level to backtrack to */
+  private def analyse(conflict: Int): (Array[Int], Int) = {
+    val learnt = new IntVector()
+    learnt push NO_LITERAL
+
+    var pathCount = 0
+    var literal = NO_LITERAL
+    var clauseIndex = conflict
+    var trailIndex = trail.size - 1
+
+    do {
+      val clause = clauses(clauseIndex)
+      // the first literal of a reason is the implied literal itself
+      var j = if (literal == NO_LITERAL) 0 else 1
+      while (j < clause.length) {
+        val q = clause(j)
+        val v = q >> 1
+        if (!seen(v) && level(v) > 0) {
+          bumpActivity(v)
+          seen(v) = true
+          if (level(v) >= decisionLevel) pathCount += 1 else learnt push q
+        }
+        j += 1
+      }
+
+      while (!seen(trail(trailIndex) >> 1)) trailIndex -= 1
+      literal = trail(trailIndex)
+      trailIndex -= 1
+      clauseIndex = reason(literal >> 1)
+      seen(literal >> 1) = false
+      pathCount -= 1
+    } while (pathCount > 0)
+    learnt(0) = literal ^ 1
+
+    // the literal with the highest level has to be watched, as it will become unassigned last
+    var backtrackLevel = 0
+    var i = 1
+    while (i < learnt.size) {
+      val v = learnt(i) >> 1
+      seen(v) = false
+      if (level(v) > backtrackLevel) {
+        backtrackLevel = level(v)
+        val swap = learnt(1)
+        learnt(1) = learnt(i)
+        learnt(i) = swap
+      }
+      i += 1
+    }
+
+    (learnt.toArray, backtrackLevel)
+  }
+
+  private def attach(clause: Array[Int]): Int = {
+    val index = if (freeIndices.size == 0) {
+      clauses append clause
+      clauses.length - 1
+    } else {
+      val free = freeIndices(freeIndices.size - 1)
+      freeIndices.shrinkTo(freeIndices.size - 1)
+      clauses(free) = clause
+      free
+    }
+    watches(clause(0)) push index
+    watches(clause(1)) push index
+    index
+  }
+
+  /** the number of different decision levels of the literals of the clause */
+  private def literalBlockDistance(clause: Array[Int]): Int = {
+    if (decisionLevel >= levelStamp.length) levelStamp = java.util.Arrays.copyOf(levelStamp, 2 * (decisionLevel + 1))
+    stamp += 1
+    var distance = 0
+    var i = 0
+    while (i < clause.length) {
+      val l = level(clause(i) >> 1)
+      if (levelStamp(l) != stamp) {
+        levelStamp(l) = stamp
+        distance += 1
+      }
+      i += 1
+    }
+    distance
+  }
+
+  /** a clause may not be deleted as long as it is the reason for the assignment of its first literal */
+  private def locked(clauseIndex: Int): Boolean = {
+    val v = clauses(clauseIndex)(0) >> 1
+    reason(v) == clauseIndex && assignment(v) != UNDEFINED
+  }
+
+  /** deletes the half of the learnt clauses with the largest literal block distance, older clauses are deleted first if the distances are equal */
+  private def reduceDB(): Unit = {
+    reductions += 1
+    val byDistance = Range(0, learnts.size) sortBy { i => -learntLBD(i) }
+    val deleted = new Array[Boolean](learnts.size)
+    var numberDeleted = 0
+    byDistance foreach { i =>
+      if (numberDeleted < learnts.size / 2 && learntLBD(i) > GLUE_LBD && !locked(learnts(i))) {
+        deleted(i) = true
+        clauses(learnts(i)) = null
+        freeIndices push learnts(i)
+        numberDeleted += 1
+      }
+    }
+    if (numberDeleted > 0) {
+      numberOfDeletedClauses += numberDeleted
+
+      var j = 0
+      var i = 0
+      while (i < learnts.size) {
+        if (!deleted(i)) {
+          learnts(j) = learnts(i)
+          learntLBD(j) = learntLBD(i)
+          j += 1
+        }
+        i += 1
+      }
+      learnts.shrinkTo(j)
+      learntLBD.shrinkTo(j)
+
+      // nobody may watch a deleted clause, as its index will be reused
+      var literal = 2
+      while (literal <= 2 * numberOfVars + 1) {
+        val watchers = watches(literal)
+        var k = 0
+        var l = 0
+        while (k < watchers.size) {
+          if (clauses(watchers(k)) != null) {
+            watchers(l) = watchers(k)
+            l += 1
+          }
+          k += 1
+        }
+        watchers.shrinkTo(l)
+        literal += 1
+      }
+    }
+  }
+
+  private def enqueue(literal: Int, reasonClause: Int): Unit = {
+    val v = literal >> 1
+    assignment(v) = if ((literal & 1) == 0) TRUE else FALSE
+    level(v) = decisionLevel
+    reason(v) = reasonClause
+    trail push literal
+  }
+
+  private def decisionLevel: Int = trailLimits.size
+
+  private def cancelUntil(targetLevel: Int): Unit = if (decisionLevel > targetLevel) {
+    var i = trail.size - 1
+    while (i >= trailLimits(targetLevel)) {
+      val v = trail(i) >> 1
+      polarity(v) = assignment(v) == TRUE
+      assignment(v) = UNDEFINED
+      reason(v) = NO_REASON
+      if (heapIndex(v) == NOT_IN_HEAP) heapInsert(v)
+      i -= 1
+    }
+    trail.shrinkTo(trailLimits(targetLevel))
+    trailLimits.shrinkTo(targetLevel)
+    queueHead = trail.size
+  }
+
+  private def valueOf(literal: Int): Byte = {
+    val value = assignment(literal >> 1)
+    if ((literal & 1) == 0 || value == UNDEFINED) value else (-value).toByte
+  }
+
+  private def toInternal(literal: Int): Int = if (literal > 0) 2 * literal else -2 * literal + 1
+
+  private def ensureVariable(variable: Int): Unit = if (variable > numberOfVars) {
+    val size = variable + 1
+    if (size > assignment.length) {
+      val capacity = Math.max(size, 2 * assignment.length)
+      assignment = java.util.Arrays.copyOf(assignment, capacity)
+      level = java.util.Arrays.copyOf(level, capacity)
+      reason = java.util.Arrays.copyOf(reason, capacity)
+      activity = java.util.Arrays.copyOf(activity, capacity)
+      polarity = java.util.Arrays.copyOf(polarity, capacity)
+      seen = java.util.Arrays.copyOf(seen, capacity)
+      heapIndex = java.util.Arrays.copyOf(heapIndex, capacity)
+      watches = java.util.Arrays.copyOf(watches, 2 * capacity)
+    }
+
+    var v = numberOfVars + 1
+    while (v <= variable) {
+      reason(v) = NO_REASON
+      heapIndex(v) = NOT_IN_HEAP
+      watches(2 * v) = new IntVector()
+      watches(2 * v + 1) = new IntVector()
+      heapInsert(v)
+      v += 1
+    }
+    numberOfVars = variable
+  }
+
+  // VSIDS
+
+  private def bumpActivity(v: Int): Unit = {
+    activity(v) += variableIncrement
+    if (activity(v) > 1e100) {
+      var u = 1
+      while (u <= numberOfVars) {
+        activity(u) *= 1e-100
+        u += 1
+      }
+      variableIncrement *= 1e-100
+    }
+    if (heapIndex(v) != NOT_IN_HEAP) heapUp(heapIndex(v))
+  }
+
+  private def pickBranchVariable(): Int = {
+    while (heap.size > 0) {
+      val v = heapRemoveMax()
+      if (assignment(v) == UNDEFINED) return v
+    }
+    0
+  }
+
+  private def heapInsert(v: Int): Unit = {
+    heapIndex(v) = heap.size
+    heap push v
+    heapUp(heap.size - 1)
+  }
+
+  private def heapRemoveMax(): Int = {
+    val max = heap(0)
+    val last = heap(heap.size - 1)
+    heap.shrinkTo(heap.size - 1)
+    heapIndex(max) = NOT_IN_HEAP
+    if (heap.size > 0) {
+      heap(0) = last
+      heapIndex(last) = 0
+      heapDown(0)
+    }
+    max
+  }
+
+  private def heapUp(start: Int): Unit = {
+    val v = heap(start)
+    var i = start
+    while (i > 0 && activity(heap((i - 1) / 2)) < activity(v)) {
+      val parent = heap((i - 1) / 2)
+      heap(i) = parent
+      heapIndex(parent) = i
+      i = (i - 1) / 2
+    }
+    heap(i) = v
+    heapIndex(v) = i
+  }
+
+  private def heapDown(start: Int): Unit = {
+    val v = heap(start)
+    var i = start
+    var sifting = true
+    while (sifting && 2 * i + 1 < heap.size) {
+      val left = 2 * i + 1
+      val child = if (left + 1 < heap.size && activity(heap(left + 1)) > activity(heap(left))) left + 1 else left
+      if (activity(heap(child)) > activity(v)) {
+        heap(i) = heap(child)
+        heapIndex(heap(i)) = i
+        i = child
+      } else sifting = false
+    }
+    heap(i) = v
+    heapIndex(v) = i
+  }
+}
+
+object CDCLSolver {
+  private val TRUE     : Byte = 1
+  private val FALSE    : Byte = -1
+  private val UNDEFINED: Byte = 0
+
+  private val NO_REASON   = -1
+  private val NO_LITERAL  = -1
+  private val NOT_IN_HEAP = -1
+
+  private val SATISFIABLE   = 1
+  private val UNSATISFIABLE = -1
+  private val UNKNOWN       = 0
+  private val INTERRUPTED   = 2
+
+  private val VARIABLE_DECAY = 0.95
+  private val RESTART_BASE   = 100
+
+  // the learnt clauses are reduced after 2000, 2000 + 2300, 2000 + 2300 + 2600, ... conflicts
+  private val FIRST_REDUCE_DB     = 2000
+  private val REDUCE_DB_INCREMENT = 300
+  // learnt clauses with at most this literal block distance are never deleted
+  private val GLUE_LBD            = 2
+
+  // how often (in conflicts) the solver checks whether its thread has been interrupted
+  private val INTERRUPT_CHECK_MASK = 0xFF
+
+  /** the Luby sequence 1 1 2 1 1 2 4 1 1 2 ... */
+  def luby(index: Int): Int = {
+    var size = 1
+    var sequence = 0
+    while (size < index + 1) {
+      sequence += 1
+      size = 2 * size + 1
+    }
+    var x = index
+    while (size - 1 != x) {
+      size = (size - 1) >> 1
+      sequence -= 1
+      x = x % size
+    }
+    1 << sequence
+  }
+}
+
+/** a growable array of ints that does not box its elements */
+private[verify] class IntVector {
+  private var elements = new Array[Int](4)
+  private var length   = 0
+
+  def size: Int = length
+
+  def apply(i: Int): Int = elements(i)
+
+  def update(i: Int, value: Int): Unit = elements(i) = value
+
+  def push(value: Int): Unit = {
+    if (length == elements.length) elements = java.util.Arrays.copyOf(elements, 2 * length)
+    elements(length) = value
+    length += 1
+  }
+
+  def shrinkTo(newSize: Int): Unit = length = newSize
+
+  def contains(value: Int): Boolean = {
+    var i = 0
+    while (i < length) {
+      if (elements(i) == value) return true
+      i += 1
+    }
+    false
+  }
+
+  def toArray: Array[Int] = java.util.Arrays.copyOf(elements, length)
+}
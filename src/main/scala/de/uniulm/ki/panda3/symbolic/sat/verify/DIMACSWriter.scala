@@ -0,0 +1,109 @@
+// PANDA 3 -- a domain-independent planner for classical and hierarchical planning
+// Copyright (C) 2014-2018 the original author or authors.
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package de.uniulm.ki.panda3.symbolic.sat.verify
+
+import java.io.File
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.charset.StandardCharsets
+import java.nio.file.StandardOpenOption
+
+/**
+  * Writes a CNF formula in DIMACS format clause by clause. Literals are encoded directly into a byte buffer that is written to the file via a
+  * [[FileChannel]]. As the number of clauses is known only at the end, space for the header is reserved in front of the clauses and the header is
+  * written when the writer is closed. The header is padded with spaces to the reserved length.
+  */
+class DIMACSWriter(file: File) {
+
+  private val channel = FileChannel.open(file.toPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)
+  private val buffer  = DIMACSWriter.buffers.get()
+  private val digits  = new Array[Byte](11)
+
+  private var clauses = 0
+
+  buffer.clear()
+  buffer.put(Array.fill[Byte](DIMACSWriter.HEADER_LENGTH)(' '))
+
+  def numberOfClauses: Int = clauses
+
+  def addClause(disjuncts: Array[Int]): Unit = {
+    var i = 0
+    while (i < disjuncts.length) {
+      putLiteral(disjuncts(i))
+      buffer.put(' '.toByte)
+      i += 1
+    }
+    ensureSpace(2)
+    buffer.put('0'.toByte)
+    buffer.put('\n'.toByte)
+    clauses += 1
+  }
+
+  def addClause(clause: Clause): Unit = addClause(clause.disjuncts)
+
+  /** writes the remaining clauses and the header and closes the file, also if writing fails. The writer cannot be used afterwards. */
+  def close(numberOfVariables: Int): Unit = try {
+    flush()
+
+    // the header has to fill the reserved space exactly
+    val header = "p cnf " + numberOfVariables + " " + clauses
+    assert(header.length < DIMACSWriter.HEADER_LENGTH)
+    val headerBytes = (header + (" " * (DIMACSWriter.HEADER_LENGTH - header.length - 1)) + "\n").getBytes(StandardCharsets.US_ASCII)
+
+    val headerBuffer = ByteBuffer.wrap(headerBytes)
+    var position = 0
+    while (headerBuffer.hasRemaining) position += channel.write(headerBuffer, position)
+  } finally channel.close()
+
+  // literals have at most 11 characters, including the sign, plus the separating space
+  private def putLiteral(literal: Int): Unit = {
+    ensureSpace(12)
+    var remaining = Math.abs(literal.toLong)
+    var length = 0
+    do {
+      digits(length) = ('0' + (remaining % 10)).toByte
+      remaining /= 10
+      length += 1
+    } while (remaining != 0)
+
+    if (literal < 0) buffer.put('-'.toByte)
+    while (length > 0) {
+      length -= 1
+      buffer.put(digits(length))
+    }
+  }
+
+  private def ensureSpace(bytes: Int): Unit = if (buffer.remaining() < bytes) flush()
+
+  private def flush(): Unit = {
+    buffer.flip()
+    while (buffer.hasRemaining) channel.write(buffer)
+    buffer.clear()
+  }
+}
+
+object DIMACSWriter {
+  // enough for "p cnf " and two integers, the rest of the line is padded with spaces
+  val HEADER_LENGTH: Int = 64
+
+  val BUFFER_SIZE: Int = 1 << 20
+
+  // buffers are kept per thread, such that consecutive SAT calls don't allocate new direct memory
+  private val buffers = new ThreadLocal[ByteBuffer] {
+    override def initialValue(): ByteBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE)
+  }
+}
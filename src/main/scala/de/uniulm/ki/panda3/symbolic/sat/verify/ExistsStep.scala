@@ -31,7 +31,9 @@ import scala.collection.Seq
 case class ExistsStep(timeCapsule: TimeCapsule, domain: Domain, initialPlan: Plan, intProblem: IntProblem,
                       taskSequenceLengthQQ: Int, maxNumberOfActionsArg: Int,
                       ltlEncodings: Seq[AdditionalEdgesInDisablingGraph], overrideOverrideK: Option[Int] = None,
-                      tasksToIgnore: Set[Task] = Set()) extends LinearPrimitivePlanEncoding {
+                      tasksToIgnore: Set[Task] = Set(), override val variableAllocator: VariableAllocator = new VariableAllocator())
+  extends LinearPrimitivePlanEncoding {
+  // an exists step formula that is part of another encoding is given its allocator, i.e. it shares the variables of its actions and states with it
 
   override lazy val maxNumberOfActions: Int = maxNumberOfActionsArg
 
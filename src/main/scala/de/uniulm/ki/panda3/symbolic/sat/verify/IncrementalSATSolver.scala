@@ -0,0 +1,40 @@
+// PANDA 3 -- a domain-independent planner for classical and hierarchical planning
+// Copyright (C) 2014-2018 the original author or authors.
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package de.uniulm.ki.panda3.symbolic.sat.verify
+
+/**
+  * A SAT solver that keeps its clauses (and everything it has learned from them) between calls, similar to the IPASIR interface. Clauses can be added
+  * after a call to solve and a call can be restricted by assumptions, i.e. literals that are only asserted for this call.
+  *
+  * Variables and literals are numbered as in DIMACS.
+  */
+trait IncrementalSATSolver {
+
+  def addClause(disjuncts: Array[Int]): Unit
+
+  def addClause(clause: Clause): Unit = addClause(clause.disjuncts)
+
+  /** returns true iff the clauses added so far are satisfiable if all assumptions are true */
+  def solve(assumptions: Array[Int]): Boolean
+
+  def solve(): Boolean = solve(Array())
+
+  /** the literals that are true in the model found by the last successful call to solve */
+  def model: Array[Int]
+
+  def numberOfVariables: Int
+}
@@ -28,7 +28,7 @@ import scala.collection.Seq
   * @author Gregor Behnke (gregor.behnke@uni-ulm.de)
   */
 case class KautzSelman(timeCapsule: TimeCapsule, domain: Domain, initialPlan: Plan, intProblem: IntProblem,
-                       taskSequenceLengthQQ: Int) extends LinearPrimitivePlanEncoding with EncodingWithLinearPlan {
+                       taskSequenceLengthQQ: Int, override val variableAllocator: VariableAllocator = new VariableAllocator()) extends LinearPrimitivePlanEncoding with EncodingWithLinearPlan {
   override lazy val offsetToK = 0
 
   override lazy val overrideK = Some(0)
@@ -40,10 +40,10 @@ trait KautzSelmanMappingEncoding[Payload, IntermediatePayload] extends PathBased
     invariantFormula ++ stateTransitionFormulaOfLength(taskSequenceLength)
   }
 
-  def restrictionPathsPerPosition(pathsPerPosition: Map[Int, Seq[(Int, Int, String)]]): Seq[Clause] =
-    pathsPerPosition.toSeq flatMap { case (a, s) => atMostOneOf(s map { _._3 }) }
+  def restrictionPathsPerPosition(pathsPerPosition: Map[Int, Seq[(Int, Int, Int)]]): Seq[Clause] =
+    pathsPerPosition.toSeq flatMap { case (a, s) => atMostOneOf((s map { _._3 }).toArray) }
 
-  def ifActionAtPositionThenConnected(actionAtoms: Seq[(String, Task)], pathsPerPosition: Map[Int, Seq[(Int, Int, String)]], position: Int): Seq[Clause] =
+  def ifActionAtPositionThenConnected(actionAtoms: Seq[(String, Task)], pathsPerPosition: Map[Int, Seq[(Int, Int, Int)]], position: Int): Seq[Clause] =
     atMostOneOf(actionAtoms map { _._1 })
 }
 
@@ -62,7 +62,7 @@ trait ExsitsStepMappingEncoding[Payload, IntermediatePayload] extends PathBasedE
   lazy val tasksOnePath        : Map[Task, Seq[Int]] = tasksWithOnePosition map { t => t -> primitivePaths.find(_._2.contains(t)).get._1 } toMap
 
   val exsitsStepEncoding = ExistsStep(timeCapsule, domain, initialPlan, intProblem, taskSequenceLength, maxNumberOfActions, additionalDisablingGraphEdges, Some(K),
-                                      taskOccurenceMap.getOrElse(0, Set()))
+                                      taskOccurenceMap.getOrElse(0, Set()), variables)
 
   lazy val stateTransitionFormulaProvider: Seq[Clause] = exsitsStepEncoding.stateTransitionFormula
 
@@ -88,7 +88,7 @@ trait ExsitsStepMappingEncoding[Payload, IntermediatePayload] extends PathBasedE
   protected def pathToPosWithTask(path: Seq[Int], position: Int, task: Task): String =
     "withTaskPathToPos_" + path.mkString(";") + "-" + position + ":" + taskIndex(task)
 
-  def restrictionPathsPerPosition(pathsPerPosition: Map[Int, Seq[(Int, Int, String)]]): Seq[Clause] = {
+  def restrictionPathsPerPosition(pathsPerPosition: Map[Int, Seq[(Int, Int, Int)]]): Seq[Clause] = {
     println("SOG paths: " + sogpaths.size)
     //println(sogpaths.map(_.map(_._1).mkString(" ")).mkString("\n"))
 
@@ -115,8 +115,8 @@ trait ExsitsStepMappingEncoding[Payload, IntermediatePayload] extends PathBasedE
         primitivePaths(pathIndex)._2 diff tasksWithOnePosition flatMap { t => // effectless actions can be merged!
           val actionAtom = pathAction(path.length, path, t)
           impliesSingle(pathToPosWithTask(path, position, t), actionAtom) ::
-            impliesSingle(pathToPosWithTask(path, position, t), connectionAtom) ::
-            impliesRightAndSingle(actionAtom :: connectionAtom :: Nil, pathGroupToPosWithTask(pathGroupID(path), position, t)) :: Nil
+            impliesSingle(atom(pathToPosWithTask(path, position, t)), connectionAtom) ::
+            impliesRightAndSingle(Array(atom(actionAtom), connectionAtom), atom(pathGroupToPosWithTask(pathGroupID(path), position, t))) :: Nil
         }
       }
     }
@@ -140,7 +140,7 @@ trait ExsitsStepMappingEncoding[Payload, IntermediatePayload] extends PathBasedE
     taskToPosWithTask ++ actionsAtPositionsAreCaused
   }
 
-  def ifActionAtPositionThenConnected(actionAtoms: Seq[(String, Task)], pathsPerPosition: Map[Int, Seq[(Int, Int, String)]], position: Int): Seq[Clause] = {
+  def ifActionAtPositionThenConnected(actionAtoms: Seq[(String, Task)], pathsPerPosition: Map[Int, Seq[(Int, Int, Int)]], position: Int): Seq[Clause] = {
     actionAtoms flatMap { case (atom, task) =>
       val possibleAchievers = pathsPerPosition(position) collect { case (pathIndex, _, _) if primitivePaths(pathIndex)._2 contains task =>
         pathGroupToPosWithTask(pathGroupID(primitivePaths(pathIndex)._1), position, task)
@@ -172,7 +172,7 @@ trait ExsitsStepMappingEncodingPlane[Payload, IntermediatePayload] extends PathB
   lazy val tasksOnePath        : Map[Task, Seq[Int]] = tasksWithOnePosition map { t => t -> primitivePaths.find(_._2.contains(t)).get._1 } toMap
 
   val exsitsStepEncoding = ExistsStep(timeCapsule, domain, initialPlan, intProblem, taskSequenceLength, maxNumberOfActions, additionalDisablingGraphEdges, Some(K),
-                                      taskOccurenceMap.getOrElse(0, Set()))
+                                      taskOccurenceMap.getOrElse(0, Set()), variables)
 
   lazy val stateTransitionFormulaProvider: Seq[Clause] = exsitsStepEncoding.stateTransitionFormula
 
@@ -180,7 +180,7 @@ trait ExsitsStepMappingEncodingPlane[Payload, IntermediatePayload] extends PathB
     "withTaskPathToPos_" + path.mkString(";") + "-" + position + ":" + taskIndex(task)
 
 
-  def restrictionPathsPerPosition(pathsPerPosition: Map[Int, Seq[(Int, Int, String)]]): Seq[Clause] = {
+  def restrictionPathsPerPosition(pathsPerPosition: Map[Int, Seq[(Int, Int, Int)]]): Seq[Clause] = {
     println(taskOccurenceMap.toSeq.sortBy(_._1) map { case (a, bs) => "Occ: " + a + ": " + bs.size + " " + "actions" } mkString "\n")
 
     val taskToPosWithTask: Seq[Clause] = Range(0, taskSequenceLength) flatMap { case position =>
@@ -190,8 +190,8 @@ trait ExsitsStepMappingEncodingPlane[Payload, IntermediatePayload] extends PathB
           val actionAtom = pathAction(path.length, path, t)
 
           impliesSingle(pathToPosWithTask(path, position, t), actionAtom) ::
-            impliesSingle(pathToPosWithTask(path, position, t), connectionAtom) ::
-            impliesRightAndSingle(actionAtom :: connectionAtom :: Nil, pathToPosWithTask(path, position, t)) :: Nil
+            impliesSingle(atom(pathToPosWithTask(path, position, t)), connectionAtom) ::
+            impliesRightAndSingle(Array(atom(actionAtom), connectionAtom), atom(pathToPosWithTask(path, position, t))) :: Nil
         }
       }
     }
@@ -199,7 +199,7 @@ trait ExsitsStepMappingEncodingPlane[Payload, IntermediatePayload] extends PathB
     taskToPosWithTask
   }
 
-  def ifActionAtPositionThenConnected(actionAtoms: Seq[(String, Task)], pathsPerPosition: Map[Int, Seq[(Int, Int, String)]], position: Int): Seq[Clause] = {
+  def ifActionAtPositionThenConnected(actionAtoms: Seq[(String, Task)], pathsPerPosition: Map[Int, Seq[(Int, Int, Int)]], position: Int): Seq[Clause] = {
     actionAtoms flatMap { case (atom, task) =>
       val possibleAchievers = pathsPerPosition(position) collect { case (pathIndex, _, _) if primitivePaths(pathIndex)._2 contains task =>
         pathToPosWithTask(primitivePaths(pathIndex)._1, position, task)
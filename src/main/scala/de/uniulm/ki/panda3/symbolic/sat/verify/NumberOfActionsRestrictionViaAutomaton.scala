@@ -18,7 +18,7 @@ package de.uniulm.ki.panda3.symbolic.sat.verify
 
 import de.uniulm.ki.panda3.symbolic.domain.{ActionCost, Task}
 
-import scala.collection.Seq
+import scala.collection.{Seq, mutable}
 
 /**
   * @author Gregor Behnke (gregor.behnke@uni-ulm.de)
@@ -75,20 +75,35 @@ trait NumberOfActionsRestrictionViaAutomaton[P, I] extends PathBasedEncoding[P,
   }
 
 
-  def actionAt(path: Seq[Int]): String = "action@" + path.mkString(";")
+  // variables stating that the path contains an action (with cost one)
+  private val actionAtVariables = new mutable.HashMap[Seq[Int], Int]()
+
+  // for a range of paths, one variable for each number of actions they might contain
+  private val numberOfActionsVariables = new mutable.HashMap[(Int, Int), DenseVariableBlock]()
+
+  def actionAt(path: Seq[Int]): String = if (actionAtVariables contains path) variables.named(actionAtVariables(path)) else "action@" + path.mkString(";")
 
   def numberOfActionsBetween(pathA: Int, pathB: Int, num: Int) = "number_of_actions=" + num + "-" + pathA + "-" + pathB
 
+  // maximumNumber is the largest number of actions that can be contained in any range
+  private def numberOfActionsBetweenVariable(pathA: Int, pathB: Int, num: Int, maximumNumber: Int): Int =
+    numberOfActionsVariables.getOrElseUpdate((pathA, pathB), variables.denseBlock(maximumNumber + 1) { case Seq(n) => numberOfActionsBetween(pathA, pathB, n) })(num)
+
   def numberOfActionsFormula2(vertexOrder: Seq[(Seq[Int], Set[Task])]): Seq[Clause] = if (taskSequenceLength == -1) Nil else {
+    val maximumNumber = Math.max(vertexOrder.length, primitivePaths.length)
+    val actionAtBlock = variables.denseBlock(vertexOrder.length) { case Seq(i) => "action@" + vertexOrder(i)._1.mkString(";") }
+    vertexOrder.zipWithIndex foreach { case ((path, _), i) => actionAtVariables(path) = actionAtBlock(i) }
+
     val actionAtClauses = vertexOrder flatMap { case (path, ts) =>
+      val actionAtPath = actionAtVariables(path)
       val ifPresent = ts map { t =>
         if (t.cost.hasCostOne)
-          impliesSingle(pathAction(path.length, path, t), actionAt(path))
+          impliesSingle(pathActionVariable(path, t), actionAtPath)
         else if (t.cost.hasCostZero)
-          impliesNot(pathAction(path.length, path, t), actionAt(path))
+          impliesNot(pathActionVariable(path, t), actionAtPath)
         else {assert(false, "can only handle costs 0 and 1"); ??? }
       }
-      val ifNotPresent = notImpliesAllNot(actionAt(path) :: Nil, ts.toSeq filter { _.cost.hasCostOne } map { pathAction(path.length, path, _) })
+      val ifNotPresent = notImpliesAllNot(Array(actionAtPath), (ts.toSeq filter { _.cost.hasCostOne } map { pathActionVariable(path, _) }).toArray)
       ifPresent ++ ifNotPresent
     }
 
@@ -100,8 +115,10 @@ trait NumberOfActionsRestrictionViaAutomaton[P, I] extends PathBasedEncoding[P,
     // base case
     val countingBase =
       paths.zipWithIndex flatMap { case (p, i) =>
-        val elementary = impliesSingle(actionAt(p), numberOfActionsBetween(i, i, 1)) :: notImplies(actionAt(p) :: Nil, numberOfActionsBetween(i, i, 0)) :: Nil
-        val nonPresent = Range(2, paths.length + 1) map { x => Clause((numberOfActionsBetween(i, i, x), false)) }
+        val actionAtPath = actionAtVariables(p)
+        val elementary = impliesSingle(actionAtPath, numberOfActionsBetweenVariable(i, i, 1, maximumNumber)) ::
+          Clause(Array(actionAtPath, numberOfActionsBetweenVariable(i, i, 0, maximumNumber))) :: Nil
+        val nonPresent = Range(2, paths.length + 1) map { x => Clause(Array(-numberOfActionsBetweenVariable(i, i, x, maximumNumber))) }
         elementary ++ nonPresent
       }
 
@@ -120,8 +137,8 @@ trait NumberOfActionsRestrictionViaAutomaton[P, I] extends PathBasedEncoding[P,
 
           val x = Range(0, paths.length + 1) flatMap { target =>
             Range(0, target + 1) flatMap { left =>
-              impliesRightAnd(numberOfActionsBetween(first, middle, left) :: numberOfActionsBetween(middle + 1, last, target - left) :: Nil,
-                              numberOfActionsBetween(first, last, target) :: Nil)
+              impliesRightAnd(Array(numberOfActionsBetweenVariable(first, middle, left, maximumNumber), numberOfActionsBetweenVariable(middle + 1, last, target - left, maximumNumber)),
+                              Array(numberOfActionsBetweenVariable(first, last, target, maximumNumber)))
             }
           }
           println(" clauses " + x.length)
@@ -172,7 +189,7 @@ trait NumberOfActionsRestrictionViaAutomaton[P, I] extends PathBasedEncoding[P,
   }
 
   override def planLengthDependentFormula(actualPlanLength: Int): Seq[Clause] = if (actualPlanLength == -1) Nil else
-    Range(actualPlanLength + 1, primitivePaths.length + 1) map { l => Clause((numberOfActionsBetween(0, primitivePaths.length - 1, l), false)) }
+    Range(actualPlanLength + 1, primitivePaths.length + 1) map { l => Clause(Array(-numberOfActionsBetweenVariable(0, primitivePaths.length - 1, l, primitivePaths.length))) }
 }
 
 sealed trait RestrictionMethod
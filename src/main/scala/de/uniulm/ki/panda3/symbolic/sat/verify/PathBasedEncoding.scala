@@ -18,12 +18,9 @@ package de.uniulm.ki.panda3.symbolic.sat.verify
 
 import de.uniulm.ki.panda3.configuration.Timings._
 import de.uniulm.ki.panda3.symbolic.compiler.SHOPMethodCompiler
-import de.uniulm.ki.panda3.symbolic.{DefaultLongInfo, PrettyPrintable}
 import de.uniulm.ki.panda3.symbolic.domain.{ConstantActionCost, DecompositionMethod, Task}
 import de.uniulm.ki.util._
 
-import scala.annotation.elidable
-import scala.annotation.elidable._
 import scala.collection.{Seq, mutable}
 
 /**
@@ -39,23 +36,69 @@ trait PathBasedEncoding[Payload, IntermediatePayload] extends VerifyEncoding {
     "action^" + l + "_" + p.mkString(";") + "," + taskIndex(t)
                                                                                                  })*/
 
-  protected def pathAction(l: Int, p: Seq[Int], t: Task) = {
-    assert(p.length == l, "path " + p.mkString("(", ",", ")") + " does not have length " + l)
-    "pathaction!" + l + "_" + p.mkString(";") + "," + taskIndex(t)
+  /**
+    * The variables of a node in the path decomposition tree, i.e. one variable for every task that is possible at the node and one for every method
+    * that might be applied to it. Tasks and methods are given by their indices.
+    */
+  protected class PathVariables(first: Int, val path: Seq[Int], tasks: Array[Int], methods: Array[Int]) extends VariableBlock(first, tasks.length + methods.length) {
+
+    // returns 0 if the task is not possible at this node
+    def action(task: Int): Int = {
+      val offset = java.util.Arrays.binarySearch(tasks, task)
+      if (offset < 0) 0 else first + offset
+    }
+
+    // returns 0 if the method cannot be applied at this node
+    def method(methodIdx: Int): Int = {
+      val offset = java.util.Arrays.binarySearch(methods, methodIdx)
+      if (offset < 0) 0 else first + tasks.length + offset
+    }
+
+    def name(offset: Int): String =
+      if (offset < tasks.length) pathActionName(path, tasks(offset)) else methodName(path, methods(offset - tasks.length))
+  }
+
+  private val pathVariables = new mutable.HashMap[Seq[Int], PathVariables]()
+
+  private def allocatePathVariables(tree: PathDecompositionTree[Payload]): Unit = {
+    val tasks = (tree.possibleTasks.toArray map taskIndex).sorted
+    val methods = (tree.possibleMethods map { _._2 }).distinct.sorted
+    pathVariables(tree.path) = variables.allocate(tasks.length + methods.length) { first => new PathVariables(first, tree.path, tasks, methods) }
+    tree.children foreach allocatePathVariables
   }
 
+  private def pathActionName(path: Seq[Int], task: Int): String = "pathaction!" + path.length + "_" + path.mkString(";") + "," + task
 
-  val actionCostCounter: ((Int, Seq[Int], Task, Int)) => String =
-    memoise[(Int, Seq[Int], Task, Int), String]({ case (l, p, t, c) => "actionCostCounter^" + l + "_" + p.mkString("(", ",", ")") + "," + taskIndex(t) + "=" + c })
+  private def methodName(path: Seq[Int], methodIdx: Int): String = "method^" + path.length + "_" + path.mkString(";") + "," + methodIdx
 
+  // tasks and methods that are not part of the path decomposition tree are represented by their name, as are all atoms
+  protected def pathActionVariable(path: Seq[Int], task: Task): Int = pathVariables.get(path) match {
+    case Some(pv) if pv.action(taskIndex(task)) != 0 => pv.action(taskIndex(task))
+    case _                                           => atom(pathActionName(path, taskIndex(task)))
+  }
+
+  protected def methodVariable(path: Seq[Int], methodIdx: Int): Int = pathVariables.get(path) match {
+    case Some(pv) if pv.method(methodIdx) != 0 => pv.method(methodIdx)
+    case _                                     => atom(methodName(path, methodIdx))
+  }
+
+  protected def pathAction(l: Int, p: Seq[Int], t: Task): String = {
+    assert(p.length == l, "path " + p.mkString("(", ",", ")") + " does not have length " + l)
+    val variable = pathActionVariable(p, t)
+    if (variables.nameOf(variable).isDefined) variables.named(variable) else pathActionName(p, taskIndex(t))
+  }
 
   // layer, path to that action, actual method
-  protected val method: ((Int, Seq[Int], Int)) => String = memoise[(Int, Seq[Int], Int), String]({ case (l, pos, methodIdx) => "method^" + l + "_" + pos.mkString(";") + "," + methodIdx })
+  protected def method(l: Int, pos: Seq[Int], methodIdx: Int): String = {
+    assert(pos.length == l, "path " + pos.mkString("(", ",", ")") + " does not have length " + l)
+    val variable = methodVariable(pos, methodIdx)
+    if (variables.nameOf(variable).isDefined) variables.named(variable) else methodName(pos, methodIdx)
+  }
 
 
   ///// methods to make the formula generation configurable
 
-  protected def additionalClausesForMethod(layer: Int, path: Seq[Int], method: DecompositionMethod, methodString: String, methodChildrenPositions: Map[Int, Int]): Seq[Clause]
+  protected def additionalClausesForMethod(layer: Int, path: Seq[Int], method: DecompositionMethod, methodVariable: Int, methodChildrenPositions: Map[Int, Int]): Seq[Clause]
 
   protected def initialPayload(possibleTasks: Set[Task], path: Seq[Int]): Payload
 
@@ -74,7 +117,7 @@ trait PathBasedEncoding[Payload, IntermediatePayload] extends VerifyEncoding {
     val path = tree.path
 
     //println("GENPATH: L=" + layer + " p=" + path + " |pTasks|=" + possibleTasks.size + " \\Delta=" + domain.maximumMethodSize)
-    val possibleTasksToActions: Array[String] = possibleTasks map { t => pathAction(layer, path, t) } toArray
+    val possibleTasksToActions: Array[Int] = possibleTasks map { t => pathActionVariable(path, t) } toArray
 
     // write myself
     val possibleTasksClauses: Seq[Clause] = atMostOneOf(possibleTasksToActions)
@@ -89,12 +132,12 @@ trait PathBasedEncoding[Payload, IntermediatePayload] extends VerifyEncoding {
     // 1. part: select method if necessary
     val decomposeAbstract: Seq[Clause] = possibleAbstracts flatMap { case (abstractTask, abstractIndex) =>
       // select a method
-      val atPossibleMethods = possibleMethods filter { _._1.abstractTask == abstractTask } map { case (m, idx) => (m, method(layer, path, idx)) }
+      val atPossibleMethods: Array[Int] = possibleMethods filter { _._1.abstractTask == abstractTask } map { case (_, idx) => methodVariable(path, idx) }
 
       // one method must be applied
-      val oneMustBeApplied = impliesRightOr(possibleTasksToActions(abstractIndex) :: Nil, atPossibleMethods map { _._2 })
-      val applicationForcesAbstractTask = atPossibleMethods map { _._2 } map { m => impliesSingle(m, possibleTasksToActions(abstractIndex)) }
-      val atMostOneCanBeApplied = atMostOneOf(atPossibleMethods map { _._2 }) // really not necessary
+      val oneMustBeApplied = impliesRightOr(Array(possibleTasksToActions(abstractIndex)), atPossibleMethods)
+      val applicationForcesAbstractTask = atPossibleMethods map { m => impliesSingle(m, possibleTasksToActions(abstractIndex)) }
+      val atMostOneCanBeApplied = atMostOneOf(atPossibleMethods) // really not necessary
 
       applicationForcesAbstractTask ++ atMostOneCanBeApplied :+ oneMustBeApplied
     }
@@ -109,11 +152,13 @@ trait PathBasedEncoding[Payload, IntermediatePayload] extends VerifyEncoding {
       val primitivePositions = tree.primitivePositions
       val numberOfChildren = tree.children.length
 
-      val possibleChildTasks: Array[Map[Task, String]] = Range(0, numberOfChildren) map { npos =>
+      val possibleChildTasks: Array[Map[Task, Int]] = Range(0, numberOfChildren) map { npos =>
         val npath = path :+ npos
-        tree.children(npos).possibleTasks map { t => t -> pathAction(layer + 1, npath, t) } toMap
+        tree.children(npos).possibleTasks map { t => t -> pathActionVariable(npath, t) } toMap
       } toArray
 
+      def allActionsOfChild(index: Int): Iterable[Int] = tree.children(index).possibleTasks map { task => possibleChildTasks(index)(task) }
+
 
       ///////////////////////////////
       // recursive calls
@@ -128,13 +173,13 @@ trait PathBasedEncoding[Payload, IntermediatePayload] extends VerifyEncoding {
       val keepPrimitives: Seq[Clause] = primitivePositions.zipWithIndex flatMap { case (primitivePosition, primitiveIndexOnPrimitiveList) =>
 
         // put the primitive where we are told to put it and don't allow anything else
-        val otherActions = Range(0, numberOfChildren) filter { _ != primitivePosition } flatMap { i => tree.children(i).possibleTasks map { task => possibleChildTasks(i)(task) } }
+        val otherActions = (Range(0, numberOfChildren) filter { _ != primitivePosition } flatMap allActionsOfChild).toArray
 
         //val globalIndexOfPrimitive = possiblePrimitives(primitiveIndexOnPrimitiveList)._2
         val task = possiblePrimitives(primitiveIndexOnPrimitiveList)
-        val actionString = pathAction(layer, path, task)
+        val actionVariable = pathActionVariable(path, task)
 
-        impliesRightAnd(actionString :: Nil, possibleChildTasks(primitivePosition)(task) :: Nil) ++ impliesAllNot(actionString, otherActions)
+        impliesRightAnd(Array(actionVariable), Array(possibleChildTasks(primitivePosition)(task))) ++ impliesAllNot(actionVariable, otherActions)
       }
 
 
@@ -148,20 +193,20 @@ trait PathBasedEncoding[Payload, IntermediatePayload] extends VerifyEncoding {
         val methodIndex = possibleMethods(methodIndexOnApplicableMethods)._2
         val methodTasks = if (omittingMethodPreconditionsForThisMethod)
           decompositionMethod.subPlan.planStepSchemaArrayWithoutMethodPreconditions else decompositionMethod.subPlan.planStepSchemaArray
-        val methodToken = method(layer, path, methodIndex)
+        val methodToken = methodVariable(path, methodIndex)
         ////
         //println(methodToken + " " + decompositionMethod.name)
         //println(methodTasks.map(_.name).mkString(" "))
 
         val usedPositions = new mutable.BitSet()
-        val childAtoms: Seq[String] = methodToPositions(methodIndexOnApplicableMethods).zipWithIndex map {
+        val childAtoms: Array[Int] = methodToPositions(methodIndexOnApplicableMethods).zipWithIndex map {
           case (childPosition, childIndex) =>
             usedPositions add childPosition
             val a = possibleChildTasks(childPosition)
             val b = methodTasks(childIndex)
             a(b)
         }
-        val unusedActions = Range(0, numberOfChildren) filterNot usedPositions flatMap { case index => tree.children(index).possibleTasks map { task => possibleChildTasks(index)(task) } }
+        val unusedActions = (Range(0, numberOfChildren) filterNot usedPositions flatMap allActionsOfChild).toArray
 
 
         // prepare method representation for additionalClauses
@@ -174,16 +219,16 @@ trait PathBasedEncoding[Payload, IntermediatePayload] extends VerifyEncoding {
             ps.id -> methodToPositions(methodIndexOnApplicableMethods)(psIndex)
         } toMap
 
-        impliesRightAnd(methodToken :: Nil, childAtoms) ++ impliesAllNot(methodToken, unusedActions) ++
+        impliesRightAnd(Array(methodToken), childAtoms) ++ impliesAllNot(methodToken, unusedActions) ++
           additionalClausesForMethod(layer, path, decompositionMethod, methodToken, methodChildrenPositions) // TODO: This was originally taskOrdering)
       }
 
       // if there is nothing select at the current position we are not allowed to create new tasks
       val noneApplied: Seq[Clause] = {
-        val allChildren = Range(0, numberOfChildren) flatMap { index => tree.children(index).possibleTasks map { task => possibleChildTasks(index)(task) } }
-        val allMethods = possibleMethods map { case (_, methodIndex) => method(layer, path, methodIndex) }
+        val allChildren = Range(0, numberOfChildren) flatMap allActionsOfChild
+        val allMethods = possibleMethods map { case (_, methodIndex) => methodVariable(path, methodIndex) }
 
-        notImpliesAllNot(possibleTasksToActions, allChildren ++ allMethods)
+        notImpliesAllNot(possibleTasksToActions, (allChildren ++ allMethods).toArray)
       }
 
       possibleTasksClauses ++ keepPrimitives ++ decomposeAbstract ++ noneApplied ++ methodChildren ++ recursiveFormula
@@ -279,6 +324,7 @@ trait PathBasedEncoding[Payload, IntermediatePayload] extends VerifyEncoding {
     println("done")
     println("PDT has " + paths.length + " leafs")
     assert(pathDecompositionTree.isNormalised)
+    allocatePathVariables(pathDecompositionTree)
 
     println("SHOP LEAFS " + paths.count(_._2.forall(_.effectAsPredicateSet.isEmpty)))
 
@@ -302,12 +348,12 @@ trait PathBasedEncoding[Payload, IntermediatePayload] extends VerifyEncoding {
       val pdtMutextes: Seq[((Seq[Int], Task), (Seq[Int], Task))] = pathDecompositionTree.mutexes
       println(" found " + pdtMutextes.length + " mutexes ... generating formula ... ")
       val clauses = pdtMutextes map { case ((path1, task1), (path2, task2)) =>
-        val atom1 = pathAction(path1.length, path1, task1)
-        val atom2 = pathAction(path2.length, path2, task2)
+        val atom1 = pathActionVariable(path1, task1)
+        val atom2 = pathActionVariable(path2, task2)
 
-        println("Mutex " + atom1 + " " + atom2)
+        println("Mutex " + pathActionName(path1, taskIndex(task1)) + " " + pathActionName(path2, taskIndex(task2)))
 
-        Clause((atom1, false) :: (atom2, false) :: Nil)
+        impliesNot(atom1, atom2)
       }
       timeCapsule stop GENERATE_MUTEXES
       println("done")
@@ -321,8 +367,8 @@ trait PathBasedEncoding[Payload, IntermediatePayload] extends VerifyEncoding {
       val childPath = path :+ childIndex
 
       //println(path + " " + childPath)
-      val taskAtChild = pathAction(childPath.length, childPath, task)
-      val methodAtFather = method(path.length, path, mindex)
+      val taskAtChild = pathActionVariable(childPath, task)
+      val methodAtFather = methodVariable(path, mindex)
 
       impliesSingle(taskAtChild, methodAtFather)
     }
@@ -330,7 +376,7 @@ trait PathBasedEncoding[Payload, IntermediatePayload] extends VerifyEncoding {
     timeCapsule start GENERATE_CLAUSES
     print("Generating clauses representing decomposition ... ")
     val initialPlanClauses = generateDecompositionFormula(pathDecompositionTree)
-    val assertedTask: Clause = Clause(pathAction(0, Nil, initialPlanOrdering.head.schema))
+    val assertedTask: Clause = Clause(Array(pathActionVariable(Nil, initialPlanOrdering.head.schema)))
     println("done")
     timeCapsule stop GENERATE_CLAUSES
 
@@ -385,8 +431,11 @@ trait PathBasedEncoding[Payload, IntermediatePayload] extends VerifyEncoding {
         val temp = tasks filter { _.cost match {case ConstantActionCost(0) => false; case _ => true} } map { task =>
           val costValue: Int = task.cost match {case ConstantActionCost(c) => c case _ => assert(false, "non constant action costs"); ???}
           assert(costValue > 0, "negative action costs cannot be handled")
-          val actionAtom = pathAction(path.length, path, task)
-          val additionalCounters: Seq[String] = Range(2, costValue + 1) map { case costItem => actionCostCounter(path.length, path, task, costItem) }
+          val actionAtom = pathActionVariable(path, task)
+          val counterVariables = variables.denseBlock(costValue - 1) { case Seq(c) =>
+            "actionCostCounter^" + path.length + "_" + path.mkString("(", ",", ")") + "," + taskIndex(task) + "=" + (c + 2)
+          }
+          val additionalCounters: Seq[Int] = Range(0, costValue - 1) map { c => counterVariables(c) }
           val additionalClauses = additionalCounters map { counter => impliesSingle(actionAtom, counter) }
 
           (additionalCounters :+ actionAtom, additionalClauses)
@@ -395,7 +444,7 @@ trait PathBasedEncoding[Payload, IntermediatePayload] extends VerifyEncoding {
         (temp flatMap { _._1 }, temp flatMap { _._2 })
       }
 
-      val allActionsAtoms: Seq[String] = actionAtomsWithCost.flatMap(_._1)
+      val allActionsAtoms: Array[Int] = actionAtomsWithCost.flatMap(_._1)
       val allCostClauses = actionAtomsWithCost.flatMap(_._2)
 
       val t0005 = System.currentTimeMillis()
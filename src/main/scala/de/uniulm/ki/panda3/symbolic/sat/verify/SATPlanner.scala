@@ -143,14 +143,10 @@ object SATPlanner {
     val formulaTime = System.currentTimeMillis()
     println("Variables : " + encoder.atoms.length + " Constraints: " + encoder.decompositionFormula.length)
     println("Time needed to compute the formula: " + (formulaTime - startTime) + "ms")
-    val encodedString = encoder.miniSATString(usedFormula)
-    val stringTime = System.currentTimeMillis()
-    println("Time needed to convert the formula into a string: " + (stringTime - formulaTime) + "ms")
-
     writeStringToFile(usedFormula mkString "\n", new File("/home/gregor/formula"))
-    writeStringToFile(encodedString, new File("/home/gregor/foo"))
+    encoder.writeDIMACS(usedFormula, new File("/home/gregor/foo"))
     val stringToFileTime = System.currentTimeMillis()
-    println("Time needed to wirte the string to file: " + (stringToFileTime - stringTime) + "ms")
+    println("Time needed to write the formula to file: " + (stringToFileTime - formulaTime) + "ms")
 
     try {
       println("Starting minisat")
@@ -219,6 +215,5 @@ object SATPlanner {
 
     //println(encoder.atoms mkString "\n")
 
-    //println(encodedString)
   }*/
 }
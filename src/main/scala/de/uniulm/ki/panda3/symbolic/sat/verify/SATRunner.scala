@@ -16,7 +16,7 @@
 
 package de.uniulm.ki.panda3.symbolic.sat.verify
 
-import java.io.{BufferedWriter, File, FileWriter}
+import java.io.File
 import java.util.UUID
 import java.util.concurrent.Semaphore
 
@@ -46,7 +46,7 @@ case class SATRunner(domain: Domain, initialPlan: Plan, intProblem: IntProblem,
                      reductionMethod: SATReductionMethod, usePDTMutexes: Boolean,
                      timeCapsule: TimeCapsule, informationCapsule: InformationCapsule,
                      encodingToUse: POEncoding, extractSolutionWithHierarchy: Boolean,
-                     randomSeed: Long, solverThreads: Int) {
+                     randomSeed: Long, solverThreads: Int, keepVariableNames: Boolean = false) {
 
   private val fileDir = System.getProperty("os.name").toLowerCase() match {
     case osname if osname startsWith "windows"  => ""
@@ -64,6 +64,13 @@ case class SATRunner(domain: Domain, initialPlan: Plan, intProblem: IntProblem,
 
   private var solverLastStarted: Long = 0
 
+  // the built-in solver is kept for all calls of run, i.e. for all K. The formula of a call is only active under an assumption that is retracted at its
+  // end, so the solver keeps everything it has learned. It is dropped if a call does not end regularly, e.g. due to the time limit
+  @volatile private var incrementalSolver: Option[IncrementalSATSolver] = None
+
+  // the variables of the next formula given to the built-in solver are numbered after those of the previous ones
+  private var firstFreeVariable = 1
+
   private def getPID(): Int = {
     val rt = java.lang.management.ManagementFactory.getRuntimeMXBean
     val jvm = rt.getClass.getDeclaredField("jvm")
@@ -125,6 +132,15 @@ case class SATRunner(domain: Domain, initialPlan: Plan, intProblem: IntProblem,
         println("Still waiting ... running for " + (System.currentTimeMillis() - startTime) + " will abort at " + (if (expansionPossible) timelimit else timeLimitForLastRun))
     }
 
+    // the built-in solver checks whether its thread has been interrupted and stops by itself, so it does not have to be killed
+    val interruptSolver = runner.result.isEmpty && satSolver == BUILTINCDCL && thread.isAlive
+    if (runner.result.isEmpty) incrementalSolver = None
+    if (interruptSolver) {
+      thread.interrupt()
+      val interruptTime = System.currentTimeMillis()
+      while (runner.result.isEmpty && thread.isAlive && System.currentTimeMillis() - interruptTime < 1000) Thread.sleep(10)
+    }
+
     if (satProcess.isDefined && System.getProperty("os.name").toLowerCase().startsWith("linux")) {
       //satProcess.destroy()
 
@@ -169,7 +185,8 @@ case class SATRunner(domain: Domain, initialPlan: Plan, intProblem: IntProblem,
     timeCapsule stopOrIgnore Timings.VERIFY_TOTAL
 
 
-    if (runner.result.isEmpty) {
+    // an interrupted run returns that there is no solution, but it has actually run into the time limit
+    if (runner.result.isEmpty || interruptSolver) {
       val errorState = System.currentTimeMillis() - startTime <= (if (expansionPossible) timelimit else timeLimitForLastRun)
       if (errorState) Thread.sleep(500)
       (None, errorState, expansionPossible)
@@ -235,10 +252,6 @@ case class SATRunner(domain: Domain, initialPlan: Plan, intProblem: IntProblem,
     try {
       informationCapsule.set(Information.PLAN_LENGTH, planLength)
 
-      // clear index cache of clause class
-      Clause.clearCache()
-
-
       val additionalConstraintsGenerators: Seq[AdditionalSATConstraint] =
         büchiAutomata.zipWithIndex.map({
                                          case (b: BüchiAutomaton, i)       => BüchiFormulaEncoding(b, "büchi_" + i)
@@ -255,18 +268,31 @@ case class SATRunner(domain: Domain, initialPlan: Plan, intProblem: IntProblem,
       //val restrictionMethod: RestrictionMethod = SlotGloballyRestriction
       val restrictionMethod: RestrictionMethod = SlotOverTimeRestriction
 
+      // the formula of the built-in solver is extended by the one for this K, whose variables are numbered after all variables the solver already has
+      val builtInSolver: Option[IncrementalSATSolver] = satSolver match {
+        case BUILTINCDCL =>
+          if (incrementalSolver.isEmpty) {
+            incrementalSolver = Some(new CDCLSolver())
+            firstFreeVariable = 1
+          }
+          incrementalSolver
+        case _           => None
+      }
+      val variableAllocator = new VariableAllocator(keepVariableNames, if (builtInSolver.isDefined) firstFreeVariable else 1)
+
       val additionalDisablingGraphEdges = additionalConstraintsGenerators collect { case e: AdditionalEdgesInDisablingGraph => e }
 
       // start verification
       val encoder = //TreeEncoding(domain, initialPlan, sequenceToVerify.length, offSetToK)
         if (domain.isClassical) {
           encodingToUse match {
-            case KautzSelmanEncoding => KautzSelman(timeCapsule, domain, initialPlan, intProblem, planLength)
-            case ExistsStepEncoding  => ExistsStep(timeCapsule, domain, initialPlan, intProblem, planLength, -1, additionalDisablingGraphEdges)
+            case KautzSelmanEncoding => KautzSelman(timeCapsule, domain, initialPlan, intProblem, planLength, variableAllocator)
+            case ExistsStepEncoding  => ExistsStep(timeCapsule, domain, initialPlan, intProblem, planLength, -1, additionalDisablingGraphEdges,
+                                                   variableAllocator = variableAllocator)
           }
         }
         else if (domain.isTotallyOrdered && initialPlan.orderingConstraints.isTotalOrder())
-          TotallyOrderedEncoding(timeCapsule, domain, initialPlan, intProblem, reductionMethod, planLength, offSetToK, defineK, restrictionMethod, usePDTMutexes)
+          TotallyOrderedEncoding(timeCapsule, domain, initialPlan, intProblem, reductionMethod, planLength, offSetToK, defineK, restrictionMethod, usePDTMutexes, variableAllocator)
         //else GeneralEncoding(domain, initialPlan, Range(0,planLength) map {_ => null.asInstanceOf[Task]}, offSetToK, defineK).asInstanceOf[VerifyEncoding]
         else {
           encodingToUse match {
@@ -274,29 +300,29 @@ case class SATRunner(domain: Domain, initialPlan: Plan, intProblem: IntProblem,
               exitIfNot(domain.isTotallyOrdered, "The domain is not totally ordered. The totSAT encoding can only be applied to a totally ordered domain.", noStack = true)
               exitIfNot(initialPlan.orderingConstraints.isTotalOrder(),
                         "The initial plan is not totally ordered. The totSAT encoding can only be applied to a totally ordered planning problem.", noStack = true)
-              TotallyOrderedEncoding(timeCapsule, domain, initialPlan, intProblem, reductionMethod, planLength, offSetToK, defineK, restrictionMethod, usePDTMutexes)
+              TotallyOrderedEncoding(timeCapsule, domain, initialPlan, intProblem, reductionMethod, planLength, offSetToK, defineK, restrictionMethod, usePDTMutexes, variableAllocator)
             case TreeBeforeEncoding            =>
-              TreeVariableOrderEncodingKautzSelman(timeCapsule, domain, initialPlan, intProblem, planLength, offSetToK, usePDTMutexes, defineK)
+              TreeVariableOrderEncodingKautzSelman(timeCapsule, domain, initialPlan, intProblem, planLength, offSetToK, usePDTMutexes, defineK, variableAllocator)
             case TreeBeforeExistsStepEncoding  =>
-              TreeVariableOrderEncodingExistsStep(timeCapsule, domain, initialPlan, intProblem, planLength, planLength, offSetToK, usePDTMutexes, defineK, additionalDisablingGraphEdges)
+              TreeVariableOrderEncodingExistsStep(timeCapsule, domain, initialPlan, intProblem, planLength, planLength, offSetToK, usePDTMutexes, defineK, additionalDisablingGraphEdges, variableAllocator)
             case ClassicalForbiddenEncoding    =>
-              SOGKautzSelmanForbiddenEncoding(timeCapsule, domain, initialPlan, intProblem, planLength, offSetToK, defineK, false, usePDTMutexes)
+              SOGKautzSelmanForbiddenEncoding(timeCapsule, domain, initialPlan, intProblem, planLength, offSetToK, defineK, false, usePDTMutexes, variableAllocator)
             case ExistsStepForbiddenEncoding   =>
-              SOGExistsStepForbiddenEncoding(timeCapsule, domain, initialPlan, intProblem, planLength, planLength, offSetToK, defineK, false, usePDTMutexes, additionalDisablingGraphEdges)
+              SOGExistsStepForbiddenEncoding(timeCapsule, domain, initialPlan, intProblem, planLength, planLength, offSetToK, defineK, false, usePDTMutexes, additionalDisablingGraphEdges, variableAllocator)
             case ClassicalImplicationEncoding  =>
-              SOGKautzSelmanForbiddenEncoding(timeCapsule, domain, initialPlan, intProblem, planLength, offSetToK, defineK, true, usePDTMutexes)
+              SOGKautzSelmanForbiddenEncoding(timeCapsule, domain, initialPlan, intProblem, planLength, offSetToK, defineK, true, usePDTMutexes, variableAllocator)
             case ExistsStepImplicationEncoding =>
-              SOGExistsStepForbiddenEncoding(timeCapsule, domain, initialPlan, intProblem, planLength, planLength, offSetToK, defineK, true, usePDTMutexes, additionalDisablingGraphEdges)
+              SOGExistsStepForbiddenEncoding(timeCapsule, domain, initialPlan, intProblem, planLength, planLength, offSetToK, defineK, true, usePDTMutexes, additionalDisablingGraphEdges, variableAllocator)
             case ClassicalN4Encoding           =>
-              SOGClassicalN4Encoding(timeCapsule, domain, initialPlan, intProblem, planLength, offSetToK, usePDTMutexes, defineK)
+              SOGClassicalN4Encoding(timeCapsule, domain, initialPlan, intProblem, planLength, offSetToK, usePDTMutexes, defineK, variableAllocator)
             case POCLDirectEncoding            =>
-              SOGPOCLDirectEncoding(timeCapsule, domain, initialPlan, intProblem, planLength, reductionMethod, offSetToK, defineK, restrictionMethod, usePDTMutexes)
+              SOGPOCLDirectEncoding(timeCapsule, domain, initialPlan, intProblem, planLength, reductionMethod, offSetToK, defineK, restrictionMethod, usePDTMutexes, variableAllocator)
             case POCLDeleteEncoding            =>
-              SOGPOCLDeleteEncoding(timeCapsule, domain, initialPlan, intProblem, planLength, reductionMethod, offSetToK, defineK, restrictionMethod, usePDTMutexes)
+              SOGPOCLDeleteEncoding(timeCapsule, domain, initialPlan, intProblem, planLength, reductionMethod, offSetToK, defineK, restrictionMethod, usePDTMutexes, variableAllocator)
             case POCLForbidEncoding            =>
-              SOGPOCLForbidEffectEncoding(timeCapsule, domain, initialPlan, intProblem, planLength, reductionMethod, offSetToK, defineK, restrictionMethod, usePDTMutexes)
+              SOGPOCLForbidEffectEncoding(timeCapsule, domain, initialPlan, intProblem, planLength, reductionMethod, offSetToK, defineK, restrictionMethod, usePDTMutexes, variableAllocator)
             case POStateEncoding               =>
-              SOGPOREncoding(timeCapsule, domain, initialPlan, intProblem, planLength, reductionMethod, offSetToK, usePDTMutexes, defineK)
+              SOGPOREncoding(timeCapsule, domain, initialPlan, intProblem, planLength, reductionMethod, offSetToK, usePDTMutexes, defineK, variableAllocator)
           }
         }
 
@@ -326,7 +352,7 @@ case class SATRunner(domain: Domain, initialPlan: Plan, intProblem: IntProblem,
       val stateFormula = encoder.stateTransitionFormula ++ encoder.initialState ++ (if (includeGoal) encoder.goalState else Nil) ++ encoder.noAbstractsFormula
       timeCapsule stop GENERATE_STATE_FORMULA
 
-      val planningFormula = (encoder.decompositionFormula ++ stateFormula).toArray
+      val planningFormula = encoder.decompositionFormula.view ++ stateFormula
 
       val additionalConstraintsFormula = additionalConstraintsGenerators flatMap { constraint =>
         encoder match {
@@ -336,7 +362,8 @@ case class SATRunner(domain: Domain, initialPlan: Plan, intProblem: IntProblem,
         }
       }
 
-      val usedFormulaGeneral = planningFormula ++ additionalConstraintsFormula
+      // the length independent part of the formula is copied only once, as it is used for all plan lengths
+      val usedFormulaGeneral = (planningFormula ++ additionalConstraintsFormula).toArray
 
       println("NUMBER OF CLAUSES " + usedFormulaGeneral.length)
       val primitiveClauses: Int =
@@ -373,25 +400,27 @@ case class SATRunner(domain: Domain, initialPlan: Plan, intProblem: IntProblem,
       var next = if (runOptimiser) 1 else planLength
       var foundSolution: Option[(Seq[PlanStep], Map[PlanStep, DecompositionMethod], Map[PlanStep, (PlanStep, PlanStep)])] = None
 
+      // the length independent formula is added to the built-in solver only once, all clauses of this K are active only under formulaActivation
+      val formulaActivation: Int = if (builtInSolver.isDefined) variableAllocator.newVariables(1) else 0
+      builtInSolver foreach { solver => usedFormulaGeneral foreach { clause => solver addClause (clause.disjuncts :+ -formulaActivation) } }
+
       while ((next > 0 || next == planLength) && (lo + 1 < hi || hi == -1)) {
         timeCapsule startOrLetRun Timings.VERIFY_TOTAL
         //println("\t\t\t\t\tRunning with plan length " + next + " lo " + lo + " " + hi)
         // generate appropriate formula
-        val usedFormula = usedFormulaGeneral ++ encoder.planLengthDependentFormula(next)
+        val lengthDependentFormula = encoder.planLengthDependentFormula(next)
+        // not copied, the clauses are written to the DIMACS file directly from both parts
+        val usedFormula = usedFormulaGeneral.view ++ lengthDependentFormula
 
-        //val bMAp = Clause.atomIndices.map(_.swap)
+        //val bMAp = encoder.variables.atomIndices.map(_.swap)
         //writeStringToFile(usedFormula map { c => c.disjuncts map { case a => (if (a < 0) "not " else "") + bMAp(Math.abs(a) - 1) } mkString "\t" } mkString "\n", "formula.txt")
 
         timeCapsule start Timings.TRANSFORM_DIMACS
         //println("READY TO WRITE")
         val uniqFileIdentifier = UUID.randomUUID().toString
         //println("UUID " + uniqFileIdentifier)
-        val writer = new BufferedWriter(new FileWriter(new File(fileDir + "__cnfString" + uniqFileIdentifier)))
-        val atomMap: Map[String, Int] = encoder.miniSATString(usedFormula, writer)
-        //println("FLUSH")
-        writer.flush()
-        writer.close()
-        //println("CLOSE")
+        val atomMap: Map[String, Int] =
+          if (builtInSolver.isDefined) encoder.variables.atomIndices.toMap else encoder.writeDIMACS(usedFormula, new File(fileDir + "__cnfString" + uniqFileIdentifier))
         timeCapsule stop Timings.TRANSFORM_DIMACS
 
         val tritivallUnsatisfiable = encoder match {
@@ -429,14 +458,7 @@ case class SATRunner(domain: Domain, initialPlan: Plan, intProblem: IntProblem,
           println("Problem is trivially unsatisfiable ... exiting")
           timeCapsule stop Timings.VERIFY_TOTAL
           println("Removing files ... ")
-          System.getProperty("os.name").toLowerCase match {
-            case osname if osname startsWith "windows" =>
-              ("cmd.exe /q /c del " + fileDir + "__cnfString" + uniqFileIdentifier) !!
-
-            case osname if osname startsWith "mac os x" => ("rm " + fileDir + "__cnfString" + uniqFileIdentifier) !
-            case _                                      => ("rm " + fileDir + "__cnfString" + uniqFileIdentifier) !
-
-          }
+          new File(fileDir + "__cnfString" + uniqFileIdentifier).delete()
           // abort the search
           lo = 1
           hi = 0
@@ -449,7 +471,24 @@ case class SATRunner(domain: Domain, initialPlan: Plan, intProblem: IntProblem,
 
           //writeStringToFile(usedFormula map {_.disjuncts mkString "\t"} mkString "\n", new File("__formulaString"))
 
-          try {
+          // the clauses depending on the plan length are only active under an assumption, so they can be dropped for the next length
+          val incrementalResult: Option[(String, Set[Int])] = builtInSolver map { solver =>
+            val activation = encoder.variables.newVariables(1)
+            lengthDependentFormula foreach { clause => solver addClause (clause.disjuncts :+ -activation) }
+
+            println("Starting " + satSolver.longInfo)
+            solverLastStarted = System.currentTimeMillis()
+            val solved = solver.solve(Array(formulaActivation, activation))
+            val totalTime = (System.currentTimeMillis() - solverLastStarted).toInt
+            solver addClause Array(-activation)
+
+            timeCapsule.addTo(SAT_SOLVER, totalTime)
+            timeCapsule.set(SAT_SOLVER_K + "%04d".format(encoder.K), totalTime)
+
+            if (solved) ("SAT", solver.model.toSet) else ("UNSAT", Set[Int]())
+          }
+
+          if (incrementalResult.isEmpty) try {
             val stdout = new StringBuilder
             val stderr = new StringBuilder
             val logger = ProcessLogger({ s => stdout append (s + "\n") }, { s => stderr append (s + "\n") })
@@ -475,6 +514,8 @@ case class SATRunner(domain: Domain, initialPlan: Plan, intProblem: IntProblem,
                 solverPath.get + " --verbose=0 " + fileDir + "__cnfString" + uniqFileIdentifier
               case _: DefaultDIMACSSolver          =>
                 solverPath.get + " -no-drup -rnd-seed=" + randomSeed + " -verb=0 " + fileDir + "__cnfString" + uniqFileIdentifier
+              case BUILTINCDCL                     =>
+                throw new IllegalStateException("unreachable: the built-in solver is run as builtInSolver inside the JVM and never started as an external program")
             }
             writeStringToFile(outerScriptString + solverCallString, scriptFileName)
 
@@ -496,11 +537,7 @@ case class SATRunner(domain: Domain, initialPlan: Plan, intProblem: IntProblem,
             }
 
             // remove runscript
-            System.getProperty("os.name").toLowerCase match {
-              case osname if osname startsWith "windows"  => ("cmd.exe /q /c del " + scriptFileName) !!
-              case osname if osname startsWith "mac os x" => ("rm " + scriptFileName) !
-              case _                                      => ("rm " + scriptFileName) !
-            }
+            new File(scriptFileName).delete()
             // get time measurement
             val totalTime = System.getProperty("os.name").toLowerCase match {
               case osname if osname startsWith "windows"  => 0
@@ -531,12 +568,11 @@ case class SATRunner(domain: Domain, initialPlan: Plan, intProblem: IntProblem,
           timeCapsule stop Timings.VERIFY_TOTAL
 
           print("Logging statistical information about the run ... ")
-          val formulaVariables: Seq[String] = atomMap.keys.toSeq
           val averageClauseLength = (usedFormula map { _.disjuncts.length } sum).toDouble / usedFormula.length
           val assertClauses = usedFormula count { c => c.disjuncts.length == 1 && c.disjuncts.head > 0 }
           //val oneSided = usedFormula count { c => val x = c.disjuncts.head._2; c.disjuncts forall { _._2 == x } }
           val horn = usedFormula count { c => c.disjuncts.count(_ > 0) <= 1 }
-          informationCapsule.set(Information.NUMBER_OF_VARIABLES, formulaVariables.size)
+          informationCapsule.set(Information.NUMBER_OF_VARIABLES, encoder.variables.numberOfAllocatedVariables)
           informationCapsule.set(Information.NUMBER_OF_CLAUSES, usedFormula.length)
           informationCapsule.set(Information.AVERAGE_SIZE_OF_CLAUSES, "" + averageClauseLength)
           informationCapsule.set(Information.NUMBER_OF_ASSERT, assertClauses)
@@ -548,51 +584,49 @@ case class SATRunner(domain: Domain, initialPlan: Plan, intProblem: IntProblem,
           informationCapsule.set(Information.METHOD_CHILDREN_CLAUSES, encoder.numberOfChildrenClauses)
           println("done")
 
-          // postprocessing
-          print("Reading solver output ... ")
-          val t1 = System.currentTimeMillis()
-          val solverSource = Source.fromFile(fileDir + "__res" + uniqFileIdentifier + ".txt")
-          val t2 = System.currentTimeMillis()
-          val solverOutput = solverSource.mkString
-          val t3 = System.currentTimeMillis()
-          println("done")
-          //println("done  " + (t2 - t1) + " " + (t3 - t2))
-          print("Preparing solver output ... ")
-          val t4 = System.currentTimeMillis()
-          val (solveState, literals): (String, Set[Int]) = satSolver match {
-            case MINISAT                                                  =>
-              val splitted = solverOutput.split("\n")
-              if (splitted.length == 1) (splitted(0), Set[Int]()) else (splitted(0), (splitted(1).split(" ") filter { _ != "" } map { _.toInt } filter { _ != 0 }).toSet)
-            case CRYPTOMINISAT | RISS6 | CADICAL | _: DefaultDIMACSSolver =>
-
-              val nonCommentOutput = removeCommentAtBeginning(solverOutput)
-              if (nonCommentOutput.length < 100) println("STARTOUTPUT\n" + nonCommentOutput.replace(' ', '_') + "\nENDOUTPUT")
-
-              val stateSplit = nonCommentOutput.split("\n", 2)
-              val cleanState = stateSplit.head.replaceAll("s ", "")
-
-              if (stateSplit.length == 1) (cleanState, Set[Int]())
-              else {
-                val singleItems: Seq[String] = stateSplit(1).split("\n").filterNot(_.startsWith("c")).flatMap(_.split(" "))
-                val lits = singleItems.collect({ case s if s != "" && s != "\nv" && s != "v" && s != "0" && s != "0\n" => s.toInt }).toSet
-
-                (cleanState, lits)
-              }
-          }
-          val t5 = System.currentTimeMillis()
-          println("done")
-          //println("done " + (t5 - t4))
-
-          // delete files
-          System.getProperty("os.name").toLowerCase match {
-            case osname if osname startsWith "windows" =>
-              ("cmd.exe /q /c del " + fileDir + "__cnfString" + uniqFileIdentifier) !!
-
-              ("cmd.exe /q /c del " + fileDir + "__res" + uniqFileIdentifier) !!
+          val (solveState, literals): (String, Set[Int]) = incrementalResult getOrElse {
+            // postprocessing
+            print("Reading solver output ... ")
+            val t1 = System.currentTimeMillis()
+            val solverSource = Source.fromFile(fileDir + "__res" + uniqFileIdentifier + ".txt")
+            val t2 = System.currentTimeMillis()
+            val solverOutput = solverSource.mkString
+            val t3 = System.currentTimeMillis()
+            println("done")
+            //println("done  " + (t2 - t1) + " " + (t3 - t2))
+            print("Preparing solver output ... ")
+            val t4 = System.currentTimeMillis()
+            val result: (String, Set[Int]) = satSolver match {
+              case MINISAT                                                  =>
+                val splitted = solverOutput.split("\n")
+                if (splitted.length == 1) (splitted(0), Set[Int]()) else (splitted(0), (splitted(1).split(" ") filter { _ != "" } map { _.toInt } filter { _ != 0 }).toSet)
+              case CRYPTOMINISAT | RISS6 | CADICAL | _: DefaultDIMACSSolver =>
+
+                val nonCommentOutput = removeCommentAtBeginning(solverOutput)
+                if (nonCommentOutput.length < 100) println("STARTOUTPUT\n" + nonCommentOutput.replace(' ', '_') + "\nENDOUTPUT")
+
+                val stateSplit = nonCommentOutput.split("\n", 2)
+                val cleanState = stateSplit.head.replaceAll("s ", "")
+
+                if (stateSplit.length == 1) (cleanState, Set[Int]())
+                else {
+                  val singleItems: Seq[String] = stateSplit(1).split("\n").filterNot(_.startsWith("c")).flatMap(_.split(" "))
+                  val lits = singleItems.collect({ case s if s != "" && s != "\nv" && s != "v" && s != "0" && s != "0\n" => s.toInt }).toSet
+
+                  (cleanState, lits)
+                }
+              case BUILTINCDCL                                              =>
+                throw new IllegalStateException("unreachable: the result of the built-in solver is taken from builtInSolver, it never writes any output that could be parsed")
+            }
+            val t5 = System.currentTimeMillis()
+            println("done")
+            //println("done " + (t5 - t4))
 
-            case osname if osname startsWith "mac os x" => ("rm " + fileDir + "__cnfString" + uniqFileIdentifier + " " + fileDir + "__res" + uniqFileIdentifier + ".txt") !
-            case _                                      => ("rm " + fileDir + "__cnfString" + uniqFileIdentifier + " " + fileDir + "__res" + uniqFileIdentifier + ".txt") !
+            // delete files
+            new File(fileDir + "__cnfString" + uniqFileIdentifier).delete()
+            new File(fileDir + "__res" + uniqFileIdentifier + ".txt").delete()
 
+            result
           }
 
 
@@ -603,7 +637,9 @@ case class SATRunner(domain: Domain, initialPlan: Plan, intProblem: IntProblem,
           // postprocessing
           if (solved) {
             println("")
-            val allTrueAtoms: Set[String] = (atomMap filter { case (atom, index) => literals contains (index + 1) }).keys.toSet
+            // variables of blocks have no entry in the atom map, their names are generated only for those that are true
+            val allTrueAtoms: Set[String] = (atomMap filter { case (atom, index) => literals contains (index + 1) }).keys.toSet ++
+              (literals filter { _ > 0 } flatMap encoder.variableName)
 
             //writeStringToFile(allTrueAtoms mkString "\n", new File("true.txt"))
             //System exit 0
@@ -623,7 +659,7 @@ case class SATRunner(domain: Domain, initialPlan: Plan, intProblem: IntProblem,
 
             println("extracting solution")
             val (graphNodes, graphEdges, solutionSequence, methodsForAbstractTasks, parentsInDecompositionTree) =
-              extractSolutionAndDecompositionGraph(encoder, atomMap, literals, formulaVariables, allTrueAtoms)
+              extractSolutionAndDecompositionGraph(encoder, atomMap, literals, allTrueAtoms)
 
 
             if (checkSolution) runSolutionIntegrityCheck(encoder, graphNodes, graphEdges)
@@ -665,15 +701,26 @@ case class SATRunner(domain: Domain, initialPlan: Plan, intProblem: IntProblem,
         }
       }
 
+      // the formula of this K is not needed any more, the one of the next K is numbered after it
+      builtInSolver foreach { solver =>
+        solver addClause Array(-formulaActivation)
+        firstFreeVariable = variableAllocator.numberOfVariables + 1
+      }
+
       foundSolution
     } catch {
-      case t: Throwable =>
+      case _: InterruptedException =>
+        // the time limit has been reached
+        incrementalSolver = None
+        None
+      case t: Throwable            =>
         t.printStackTrace()
+        incrementalSolver = None
         None
     }
 
 
-  private def extractSolutionAndDecompositionGraph(encoder: VerifyEncoding, atomMap: Map[String, Int], literals: Set[Int], formulaVariables: Seq[String], allTrueAtoms: Set[String]):
+  private def extractSolutionAndDecompositionGraph(encoder: VerifyEncoding, atomMap: Map[String, Int], literals: Set[Int], allTrueAtoms: Set[String]):
   (Seq[String], Seq[(String, String)], Seq[PlanStep], Map[PlanStep, DecompositionMethod], Map[PlanStep, (PlanStep, PlanStep)]) =
     encoder match {
       case g: GeneralEncoding =>
@@ -786,7 +833,7 @@ case class SATRunner(domain: Domain, initialPlan: Plan, intProblem: IntProblem,
 
         (Nil, Nil, primitiveSolution, Map(), Map())
       case pbe: PathBasedEncoding[_, _] =>
-        val nodes = formulaVariables filter { _.startsWith("pathaction!") } filter allTrueAtoms.contains
+        val nodes = allTrueAtoms.toSeq filter { _.startsWith("pathaction!") }
 
         //println((allTrueAtoms filter {_.startsWith("method_path_to_pos_")}).toSeq.sorted mkString "\n")
         //println((allTrueAtoms filter {_.startsWith("forbidden_")}).toSeq.sorted mkString "\n")
@@ -838,7 +885,7 @@ case class SATRunner(domain: Domain, initialPlan: Plan, intProblem: IntProblem,
 
         val shortPS = nodes filterNot { _.contains("-") } map actionStringToTask map { ps => ps.id + " " + ps.schema.name + "\t" + domain.tasks.indexOf(ps.schema) }
 
-        val allMethods = formulaVariables filter { _.startsWith("method^") } filter allTrueAtoms.contains
+        val allMethods = allTrueAtoms.toSeq filter { _.startsWith("method^") }
 
         //println(allMethods.sorted mkString "\n")
         //println(allTrueAtoms.filter(_.startsWith("pathaction")).toSeq.sorted mkString "\n")
@@ -43,12 +43,32 @@ trait SOGClassicalEncoding extends SOGEncoding with EncodingWithLinearPlan with
     Range(0, taskSequenceLength + 1) map { case i => domain.predicates map { p => p -> { statePredicate(K - 1, i, p) } } toMap }
   }
 
+  // the actions of the linear plan are shared with other encodings (e.g. the exists step encoding) via their names
+  protected lazy val linearPlanVariables: scala.Seq[Map[Task, Int]] = linearPlan map { _ map { case (t, a) => t -> atom(a) } }
+
+
+  protected lazy val primitivePathIndices: Map[Seq[Int], Int] = primitivePaths.map(_._1).zipWithIndex.toMap
+
+  private lazy val pathToPosVariables =
+    variables.denseBlock(primitivePaths.length, taskSequenceLength) { case Seq(pindex, position) => super.pathToPos(primitivePaths(pindex)._1, position) }
+
+  private lazy val pathActiveVariables = variables.denseBlock(primitivePaths.length) { case Seq(pindex) => super.pathActive(primitivePaths(pindex)._1) }
+
+  protected def pathToPosVariable(path: Seq[Int], position: Int): Int = pathToPosVariables(primitivePathIndices(path), position)
+
+  override protected def pathToPos(path: Seq[Int], position: Int): String =
+    if ((primitivePathIndices contains path) && position >= 0 && position < taskSequenceLength) variables.named(pathToPosVariable(path, position))
+    else super.pathToPos(path, position)
+
+  override protected def pathActive(p1: Seq[Int]): String =
+    if (primitivePathIndices contains p1) variables.named(pathActiveVariables(primitivePathIndices(p1))) else super.pathActive(p1)
+
 
   override lazy val noAbstractsFormula: Seq[Clause] = noAbstractsFormulaOfLength(taskSequenceLength)
 
-  def restrictionPathsPerPosition(pathsPerPosition: Map[Int, Seq[(Int, Int, String)]]): Seq[Clause]
+  def restrictionPathsPerPosition(pathsPerPosition: Map[Int, Seq[(Int, Int, Int)]]): Seq[Clause]
 
-  def ifActionAtPositionThenConnected(actionAtoms: Seq[(String, Task)], pathsPerPosition: Map[Int, Seq[(Int, Int, String)]], position: Int): Seq[Clause]
+  def ifActionAtPositionThenConnected(actionAtoms: Seq[(String, Task)], pathsPerPosition: Map[Int, Seq[(Int, Int, Int)]], position: Int): Seq[Clause]
 
   protected lazy val connectionFormula: Seq[Clause] = {
     // force computation of SOG
@@ -61,33 +81,34 @@ trait SOGClassicalEncoding extends SOGEncoding with EncodingWithLinearPlan with
     // select mapping
     /////
 
-    val pathAndPosition: Seq[(Int, Int, String)] =
-      primitivePaths.zipWithIndex flatMap { case ((path, _), pindex) => Range(0, taskSequenceLength) map { position => (pindex, position, pathToPos(path, position)) } }
+    val pathAndPosition: Seq[(Int, Int, Int)] =
+      primitivePaths.indices flatMap { pindex => Range(0, taskSequenceLength) map { position => (pindex, position, pathToPosVariables(pindex, position)) } }
 
     // for every path the set of positions it can be linked to
-    val positionsPerPath: Map[Int, Seq[(Int, Int, String)]] = pathAndPosition groupBy { _._1 }
+    val positionsPerPath: Map[Int, Seq[(Int, Int, Int)]] = pathAndPosition groupBy { _._1 }
     // for every position the paths it can be matched to
-    val pathsPerPosition: Map[Int, Seq[(Int, Int, String)]] = pathAndPosition groupBy { _._2 }
+    val pathsPerPosition: Map[Int, Seq[(Int, Int, Int)]] = pathAndPosition groupBy { _._2 }
 
     // each position can be mapped to at most one path and vice versa
     val atMostOneConstraintsA = restrictionPathsPerPosition(pathsPerPosition)
-    val atMostOneConstraintsB = positionsPerPath.toSeq flatMap { case (a, s) => atMostOneOf(s map { _._3 }) }
+    val atMostOneConstraintsB = positionsPerPath.toSeq flatMap { case (a, s) => atMostOneOf((s map { _._3 }).toArray) }
     val atMostOneConstraints = atMostOneConstraintsA ++ atMostOneConstraintsB
     println("A " + atMostOneConstraintsA.size + " and " + atMostOneConstraintsB.size)
 
 
     // if the path is part of a solution, then it must contain a task
     val selected = primitivePaths.zipWithIndex flatMap { case ((path, tasks), pindex) =>
-      val actionAtoms = tasks.toSeq map { pathAction(path.length, path, _) }
-      val pathString = pathActive(path)
-      notImpliesAllNot(pathString :: Nil, actionAtoms).+:(impliesRightOr(pathString :: Nil, actionAtoms))
+      val actionAtoms = (tasks.toSeq map { pathActionVariable(path, _) }).toArray
+      val pathAtom = pathActiveVariables(pindex)
+      notImpliesAllNot(Array(pathAtom), actionAtoms).+:(impliesRightOr(Array(pathAtom), actionAtoms))
     }
     println("B " + selected.length)
 
     // if a path contains an action it has to be mapped to a position
-    val onlySelectableIfChosen = primitivePaths.zipWithIndex flatMap { case ((path, tasks), pindex) =>
-      val pathString = pathActive(path)
-      notImpliesAllNot(pathString :: Nil, positionsPerPath(pindex) map { _._3 }) :+ impliesRightOr(pathString :: Nil, positionsPerPath(pindex) map { _._3 })
+    val onlySelectableIfChosen = primitivePaths.indices flatMap { pindex =>
+      val pathAtom = pathActiveVariables(pindex)
+      val positionAtoms = (positionsPerPath(pindex) map { _._3 }).toArray
+      notImpliesAllNot(Array(pathAtom), positionAtoms) :+ impliesRightOr(Array(pathAtom), positionAtoms)
     }
     println("C " + onlySelectableIfChosen.length)
 
@@ -95,7 +116,9 @@ trait SOGClassicalEncoding extends SOGEncoding with EncodingWithLinearPlan with
     val onlyPrimitiveIfChosen = Range(0, taskSequenceLength) flatMap { case position =>
       val actionAtoms = domain.primitiveTasks filterNot ignoreActionInStateTransition map { t => (action(K - 1, position, t), t) }
       val ifPresentConnected = ifActionAtPositionThenConnected(actionAtoms, pathsPerPosition, position)
-      val onlyIfConnected = notImpliesAllNot(pathsPerPosition(position) map { _._3 }, actionAtoms map { _._1 }) // TODO can be better
+      // actions of the linear plan already have their variables, only actions that lie on no path have to be looked up by name
+      val actionVariables = actionAtoms map { case (a, t) => linearPlanVariables(position).getOrElse(t, atom(a)) }
+      val onlyIfConnected = notImpliesAllNot((pathsPerPosition(position) map { _._3 }).toArray, actionVariables.toArray)
 
       ifPresentConnected ++ onlyIfConnected
     }
@@ -103,9 +126,9 @@ trait SOGClassicalEncoding extends SOGEncoding with EncodingWithLinearPlan with
 
     // if a path contain an action, then the position it is mapped to contains the same action
     val sameAction = primitivePaths.zipWithIndex flatMap { case ((path, tasks), pindex) =>
-      tasks.toSeq map { t => (t, pathAction(path.length, path, t)) } flatMap { case (t, actionAtom) =>
+      tasks.toSeq map { t => (t, pathActionVariable(path, t)) } flatMap { case (t, actionAtom) =>
         positionsPerPath(pindex) map { case (_, position, connectionAtom) =>
-          impliesRightAndSingle(actionAtom :: connectionAtom :: Nil, action(K - 1, position, t))
+          impliesRightAndSingle(Array(actionAtom, connectionAtom), linearPlanVariables(position)(t))
         }
       }
     }
@@ -126,13 +149,27 @@ trait SOGClassicalForbiddenEncoding extends SOGClassicalEncoding {
 
   protected override val omitMethodPreconditionActions = true
 
-  protected def pathPosForbidden(path: Seq[Int], position: Int): String = "forbidden_" + path.mkString(";") + "-" + position
+  private lazy val pathPosForbiddenVariables =
+    variables.denseBlock(primitivePaths.length, taskSequenceLength) { case Seq(pindex, position) => "forbidden_" + primitivePaths(pindex)._1.mkString(";") + "-" + position }
+
+  protected def pathPosForbidden(path: Seq[Int], position: Int): Int = pathPosForbiddenVariables(primitivePathIndices(path), position)
+
+  // for every node of the PDT, whether its method is matched to a position and whether it can't be matched to it, as it is too late or too early.
+  // Positions range from -1 to taskSequenceLength
+  private val methodPositionVariables = new mutable.HashMap[Seq[Int], DenseVariableBlock]()
+
+  private def methodPositionVariable(path: Seq[Int], kind: Int, position: Int): Int =
+    methodPositionVariables.getOrElseUpdate(path, variables.denseBlock(3, taskSequenceLength + 2) {
+      case Seq(0, p) => "method_path_to_pos_" + path.mkString(";") + "-" + (p - 1)
+      case Seq(1, p) => "forbidden_method_path_to_pos_after_" + path.mkString(";") + "-" + (p - 1)
+      case Seq(2, p) => "forbidden_method_path_to_pos_before_" + path.mkString(";") + "-" + (p - 1)
+    })(kind, position + 1)
 
-  protected def pathToPosMethod(path: Seq[Int], position: Int): String = "method_path_to_pos_" + path.mkString(";") + "-" + position
+  protected def pathToPosMethod(path: Seq[Int], position: Int): Int = methodPositionVariable(path, 0, position)
 
-  protected def pathToPosMethodForbiddenAfter(path: Seq[Int], position: Int): String = "forbidden_method_path_to_pos_after_" + path.mkString(";") + "-" + position
+  protected def pathToPosMethodForbiddenAfter(path: Seq[Int], position: Int): Int = methodPositionVariable(path, 1, position)
 
-  protected def pathToPosMethodForbiddenBefore(path: Seq[Int], position: Int): String = "forbidden_method_path_to_pos_before_" + path.mkString(";") + "-" + position
+  protected def pathToPosMethodForbiddenBefore(path: Seq[Int], position: Int): Int = methodPositionVariable(path, 2, position)
 
   def forbiddennessSubtractor: Int = 1
 
@@ -152,7 +189,7 @@ trait SOGClassicalForbiddenEncoding extends SOGClassicalEncoding {
 
       // start from 1 as we have to access the predecessor position
       Range(forbiddennessSubtractor, taskSequenceLength) flatMap { pos =>
-        impliesRightAnd(pathToPos(path, pos) :: Nil, successors map { case (succP, _) => pathPosForbidden(succP, pos - forbiddennessSubtractor) })
+        impliesRightAnd(Array(pathToPosVariable(path, pos)), (successors map { case (succP, _) => pathPosForbidden(succP, pos - forbiddennessSubtractor) }).toArray)
       }
     }
     println("F " + forbiddenConnections.length)
@@ -163,7 +200,7 @@ trait SOGClassicalForbiddenEncoding extends SOGClassicalEncoding {
       assert(!successors.exists(_._1 == path))
 
       Range(0, taskSequenceLength) flatMap { pos =>
-        impliesRightAnd(pathPosForbidden(path, pos) :: Nil, successors map { case (succP, _) => pathPosForbidden(succP, pos) })
+        impliesRightAnd(Array(pathPosForbidden(path, pos)), (successors map { case (succP, _) => pathPosForbidden(succP, pos) }).toArray)
       }
     }
     println("G " + forbiddennessImplications.length)
@@ -176,7 +213,7 @@ trait SOGClassicalForbiddenEncoding extends SOGClassicalEncoding {
     println("H " + forbiddennessGetsInherited.length)
 
     val forbiddenActuallyDoesSomething = primitivePaths.zipWithIndex flatMap { case ((path, tasks), pindex) =>
-      Range(0, taskSequenceLength) map { pos => impliesNot(pathPosForbidden(path, pos), pathToPos(path, pos)) }
+      Range(0, taskSequenceLength) map { pos => impliesNot(pathPosForbidden(path, pos), pathToPosVariable(path, pos)) }
     }
     println("I " + forbiddenActuallyDoesSomething.length)
 
@@ -186,10 +223,10 @@ trait SOGClassicalForbiddenEncoding extends SOGClassicalEncoding {
     val methodPrecs = if (omitMethodPreconditionActions) {
       def methodPrecDFS(node: PathDecompositionTree[SOG]): Seq[Clause] = if (node.possibleMethods.isEmpty) Nil else {
         // matchable positions
-        val allMatchings = Range(0, taskSequenceLength) map { pos => pathToPosMethod(node.path, pos) }
+        val allMatchings = (Range(0, taskSequenceLength) map { pos => pathToPosMethod(node.path, pos) }).toArray
         val atLeastOneAssignment = node.possibleMethods map { case (m, mid) =>
-          val methodAtom = method(node.layer, node.path, mid)
-          impliesRightOr(methodAtom :: Nil, allMatchings)
+          val methodAtom = methodVariable(node.path, mid)
+          impliesRightOr(Array(methodAtom), allMatchings)
         }
 
         val primitivePathsBelowMeSet = node.primitivePaths.map(_._1).toSet
@@ -207,7 +244,7 @@ trait SOGClassicalForbiddenEncoding extends SOGClassicalEncoding {
 
           val generation = node.primitivePaths flatMap { case (path, _) =>
 
-            predecessors map { pred => impliesSingle(pathToPos(pred, pos), pathToPosMethodForbiddenBefore(node.path, pos)) }
+            predecessors map { pred => impliesSingle(pathToPosVariable(pred, pos), pathToPosMethodForbiddenBefore(node.path, pos)) }
           }
 
           inheritence ++ generation
@@ -219,7 +256,7 @@ trait SOGClassicalForbiddenEncoding extends SOGClassicalEncoding {
 
           val generation = node.primitivePaths map { case (path, _) =>
             //Range(pos + 1, taskSequenceLength) map { laterPos =>
-            impliesSingle(pathToPos(path, pos), pathToPosMethodForbiddenAfter(node.path, pos + 1))
+            impliesSingle(pathToPosVariable(path, pos), pathToPosMethodForbiddenAfter(node.path, pos + 1))
 
             //}
           }
@@ -239,7 +276,7 @@ trait SOGClassicalForbiddenEncoding extends SOGClassicalEncoding {
         // if assigned and method, prec is true
         val methodPrecsAreTrue = node.possibleMethods flatMap { case (m, mid) =>
           if (!m.subPlan.planStepSchemaArrayWithoutMethodPreconditions.isEmpty) {
-            val methodAtom = method(node.layer, node.path, mid)
+            val methodAtom = methodVariable(node.path, mid)
 
             val prec = m.subPlan.orderingConstraints.fullGraph.sources.filter(ps => ps.schema.isPrimitive && ps.schema.effect.isEmpty &&
               ps.schema.name.contains(SHOPMethodCompiler.SHOP_METHOD_PRECONDITION_PREFIX)).
@@ -248,9 +285,9 @@ trait SOGClassicalForbiddenEncoding extends SOGClassicalEncoding {
             prec flatMap { p =>
               Range(0, taskSequenceLength) map { pos =>
                 val pathPosAtom = pathToPosMethod(node.path, pos)
-                val stateAtom = statePredicate(K - 1, pos, p)
+                val stateAtom = atom(statePredicate(K - 1, pos, p))
 
-                val condition = methodAtom :: pathPosAtom :: Nil
+                val condition = Array(methodAtom, pathPosAtom)
                 impliesRightAndSingle(condition, stateAtom)
               }
             }
@@ -285,7 +322,7 @@ trait SOGClassicalForbiddenEncoding extends SOGClassicalEncoding {
 
 case class SOGKautzSelmanForbiddenEncoding(timeCapsule: TimeCapsule, domain: Domain, initialPlan: Plan, intProblem: IntProblem,
                                            taskSequenceLengthQQ: Int, offsetToK: Int, overrideK: Option[Int] = None,
-                                           useImplicationForbiddenness: Boolean, usePDTMutexes: Boolean)
+                                           useImplicationForbiddenness: Boolean, usePDTMutexes: Boolean, override val variableAllocator: VariableAllocator = new VariableAllocator())
   extends SOGClassicalForbiddenEncoding with KautzSelmanMappingEncoding[SOG, NonExpandedSOG] {
 
   lazy val taskSequenceLength: Int = if (taskSequenceLengthQQ != -1) taskSequenceLengthQQ else primitivePaths.length
@@ -295,7 +332,8 @@ case class SOGKautzSelmanForbiddenEncoding(timeCapsule: TimeCapsule, domain: Dom
 case class SOGExistsStepForbiddenEncoding(timeCapsule: TimeCapsule, domain: Domain, initialPlan: Plan, intProblem: IntProblem,
                                           numberOfTimesteps: Int, maxNumberOfActionsArg: Int,
                                           offsetToK: Int, overrideK: Option[Int] = None,
-                                          useImplicationForbiddenness: Boolean, usePDTMutexes: Boolean, additionalDisablingGraphEdges: Seq[AdditionalEdgesInDisablingGraph])
+                                          useImplicationForbiddenness: Boolean, usePDTMutexes: Boolean, additionalDisablingGraphEdges: Seq[AdditionalEdgesInDisablingGraph],
+                                          override val variableAllocator: VariableAllocator = new VariableAllocator())
   extends SOGClassicalForbiddenEncoding with ExsitsStepMappingEncoding[SOG, NonExpandedSOG] {
 
   override lazy val maxNumberOfActions: Int = maxNumberOfActionsArg
@@ -328,15 +366,15 @@ case class SOGExistsStepForbiddenEncoding(timeCapsule: TimeCapsule, domain: Doma
 
 case class SOGClassicalN4Encoding(timeCapsule: TimeCapsule,
                                   domain: Domain, initialPlan: Plan, intProblem: IntProblem, taskSequenceLengthQQ: Int, offsetToK: Int, usePDTMutexes: Boolean,
-                                  overrideK: Option[Int] = None)
+                                  overrideK: Option[Int] = None, override val variableAllocator: VariableAllocator = new VariableAllocator())
   extends SOGClassicalEncoding {
 
   lazy val taskSequenceLength: Int = primitivePaths.length
 
-  override def restrictionPathsPerPosition(pathsPerPosition: Map[Int, Seq[(Int, Int, String)]]): Seq[Clause] =
-    pathsPerPosition.toSeq flatMap { case (a, s) => atMostOneOf(s map { _._3 }) }
+  override def restrictionPathsPerPosition(pathsPerPosition: Map[Int, Seq[(Int, Int, Int)]]): Seq[Clause] =
+    pathsPerPosition.toSeq flatMap { case (a, s) => atMostOneOf((s map { _._3 }).toArray) }
 
-  def ifActionAtPositionThenConnected(actionAtoms: Seq[(String, Task)], pathsPerPosition: Map[Int, Seq[(Int, Int, String)]], position: Int): Seq[Clause] =
+  def ifActionAtPositionThenConnected(actionAtoms: Seq[(String, Task)], pathsPerPosition: Map[Int, Seq[(Int, Int, Int)]], position: Int): Seq[Clause] =
     atMostOneOf(actionAtoms map { _._1 })
 
   // this generates the actual state transition formula
@@ -359,7 +397,7 @@ case class SOGClassicalN4Encoding(timeCapsule: TimeCapsule,
           // all positions
           Range(0, taskSequenceLength) foreach { case position1 =>
             Range(position1 + 1, taskSequenceLength) foreach { case position2 =>
-              builder append Clause((pathToPos(pathBefore, position2), false) :: (pathToPos(pathAfter, position1), false) :: Nil)
+              builder append impliesNot(pathToPosVariable(pathBefore, position2), pathToPosVariable(pathAfter, position1))
             }
           }
         }
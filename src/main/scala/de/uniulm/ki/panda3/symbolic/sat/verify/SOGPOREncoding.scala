@@ -30,7 +30,8 @@ import scala.collection.mutable.ArrayBuffer
   * @author Gregor Behnke (gregor.behnke@uni-ulm.de)
   */
 case class SOGPOREncoding(timeCapsule: TimeCapsule, domain: Domain, initialPlan: Plan, intProblem : IntProblem,
-                          taskSequenceLengthQQ: Int, reductionMethod: SATReductionMethod, offsetToK: Int, usePDTMutexes: Boolean, overrideK: Option[Int] = None) extends SOGPartialNoPath {
+                          taskSequenceLengthQQ: Int, reductionMethod: SATReductionMethod, offsetToK: Int, usePDTMutexes: Boolean, overrideK: Option[Int] = None,
+                          override val variableAllocator: VariableAllocator = new VariableAllocator()) extends SOGPartialNoPath {
   lazy val taskSequenceLength: Int = taskSequenceLengthQQ
 
   protected val directlyBefore: ((Seq[Int], Seq[Int])) => String =
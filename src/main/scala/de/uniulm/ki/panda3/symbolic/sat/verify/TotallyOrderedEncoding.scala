@@ -26,7 +26,7 @@ import de.uniulm.ki.panda3.symbolic.sat.verify.sogoptimiser.GreedyNumberOfChildr
 import de.uniulm.ki.util._
 import de.uniulm.ki.panda3.configuration.Timings._
 
-import scala.collection.Seq
+import scala.collection.{Seq, mutable}
 
 /**
   * @author Gregor Behnke (gregor.behnke@uni-ulm.de)
@@ -34,7 +34,7 @@ import scala.collection.Seq
 case class TotallyOrderedEncoding(timeCapsule: TimeCapsule,
                                   domain: Domain, initialPlan: Plan, intProblem: IntProblem,
                                   reductionMethod: SATReductionMethod, taskSequenceLength: Int, offsetToK: Int, overrideK: Option[Int] = None,
-                                  restrictionMethod: RestrictionMethod, usePDTMutexes: Boolean)
+                                  restrictionMethod: RestrictionMethod, usePDTMutexes: Boolean, override val variableAllocator: VariableAllocator = new VariableAllocator())
   extends TreeEncoding with EncodingWithLinearPlan with NumberOfActionsRestrictionViaAutomaton[Unit, Unit] {
 
   assert(domain.isTotallyOrdered, "The domain is not totally ordered. The totSAT encoding can only be applied to a totally ordered domain.")
@@ -45,20 +45,27 @@ case class TotallyOrderedEncoding(timeCapsule: TimeCapsule,
   val numberOfChildrenClauses: Int = 0
 
 
-  protected val statePredicate: ((Int, Int, Predicate)) => String =
-    memoise[(Int, Int, Predicate), String]({ case (l, pos, pred) => "predicate^" + l + "_" + pos + "," + predicateIndex(pred) })
+  // the state variables of a layer, one for every predicate in front of and after every primitive path
+  private val stateVariables = new mutable.HashMap[Int, DenseVariableBlock]()
 
+  protected def statePredicateVariable(layer: Int, position: Int, predicate: Predicate): Int =
+    stateVariables.getOrElseUpdate(layer, variables.denseBlock(primitivePaths.length + 1, domain.predicates.length) {
+      case Seq(pos, pred) => "predicate^" + layer + "_" + pos + "," + pred
+    }).apply(position, predicateIndex(predicate))
 
-  override protected def additionalClausesForMethod(layer: Int, path: Seq[Int], method: DecompositionMethod, methodString: String, methodChildrenPositions: Map[Int, Int]): Seq[Clause] = Nil
+  protected def statePredicate(layer: Int, position: Int, predicate: Predicate): String = variables.named(statePredicateVariable(layer, position, predicate))
+
+
+  override protected def additionalClausesForMethod(layer: Int, path: Seq[Int], method: DecompositionMethod, methodVariable: Int, methodChildrenPositions: Map[Int, Int]): Seq[Clause] = Nil
 
   private def primitivesApplicable(layer: Int, position: Int): Seq[Clause] = primitivePaths(position)._2.toSeq filter { _.isPrimitive } flatMap {
     case task: ReducedTask =>
       task.precondition.conjuncts map {
         case Literal(pred, isPositive, _) => // there won't be any parameters
           if (isPositive)
-            impliesSingle(pathAction(primitivePaths(position)._1.length, primitivePaths(position)._1, task), statePredicate(layer, position, pred))
+            impliesSingle(pathActionVariable(primitivePaths(position)._1, task), statePredicateVariable(layer, position, pred))
           else
-            impliesNot(pathAction(primitivePaths(position)._1.length, primitivePaths(position)._1, task), statePredicate(layer, position, pred))
+            impliesNot(pathActionVariable(primitivePaths(position)._1, task), statePredicateVariable(layer, position, pred))
       }
     case _                 => noSupport(FORUMLASNOTSUPPORTED)
   }
@@ -70,9 +77,9 @@ case class TotallyOrderedEncoding(timeCapsule: TimeCapsule,
         case Literal(pred, isPositive, _) if !((task.effect.conjuncts exists { l => l.predicate == pred && l.isNegative == isPositive }) && !isPositive) =>
           // there won't be any parameters
           if (isPositive)
-            impliesSingle(pathAction(primitivePaths(position)._1.length, primitivePaths(position)._1, task), statePredicate(layer, position + 1, pred))
+            impliesSingle(pathActionVariable(primitivePaths(position)._1, task), statePredicateVariable(layer, position + 1, pred))
           else
-            impliesNot(pathAction(primitivePaths(position)._1.length, primitivePaths(position)._1, task), statePredicate(layer, position + 1, pred))
+            impliesNot(pathActionVariable(primitivePaths(position)._1, task), statePredicateVariable(layer, position + 1, pred))
       }
     case _                 => noSupport(FORUMLASNOTSUPPORTED)
   }
@@ -85,8 +92,9 @@ case class TotallyOrderedEncoding(timeCapsule: TimeCapsule,
           val changingActions: Seq[Task] = (if (makeItPositive) domain.primitiveChangingPredicate(predicate)._1 else domain.primitiveChangingPredicate(predicate)._2) filter
             primitivePaths(position)._2.contains
 
-          val taskLiterals = changingActions map { pathAction(primitivePaths(position)._1.length, primitivePaths(position)._1, _) } map { (_, true) }
-          Clause(taskLiterals.+:(statePredicate(layer, position, predicate), makeItPositive).+:(statePredicate(layer, position + 1, predicate), !makeItPositive))
+          val taskLiterals = changingActions map { pathActionVariable(primitivePaths(position)._1, _) }
+          Clause(Array(literal(statePredicateVariable(layer, position + 1, predicate), !makeItPositive), literal(statePredicateVariable(layer, position, predicate), makeItPositive))
+                   ++ taskLiterals)
       }
   }
 
@@ -98,7 +106,9 @@ case class TotallyOrderedEncoding(timeCapsule: TimeCapsule,
 
     timeCapsule start GENERATE_INVARIANT_FORMULA
     val invariant = Range(0, primitivePaths.length + 1) flatMap { case position =>
-      intProblem.symbolicInvariantArray map { case ((ap, ab), (bp, bb)) => Clause((statePredicate(K - 1, position, ap), ab) :: (statePredicate(K - 1, position, bp), bb) :: Nil) }
+      intProblem.symbolicInvariantArray map { case ((ap, ab), (bp, bb)) =>
+        Clause(Array(literal(statePredicateVariable(K - 1, position, ap), ab), literal(statePredicateVariable(K - 1, position, bp), bb)))
+      }
     }
     timeCapsule stop GENERATE_INVARIANT_FORMULA
 
@@ -116,16 +126,16 @@ case class TotallyOrderedEncoding(timeCapsule: TimeCapsule,
   override lazy val numberOfPrimitiveTransitionSystemClauses = stateTransitionFormula.length
 
   override lazy val noAbstractsFormula: Seq[Clause] =
-    primitivePaths flatMap { case (position, tasks) => tasks filter { _.isAbstract } map { task => Clause((pathAction(position.length, position, task), false)) } }
+    primitivePaths flatMap { case (position, tasks) => tasks filter { _.isAbstract } map { task => Clause(Array(-pathActionVariable(position, task))) } }
 
   override lazy val goalState: Seq[Clause] =
-    initialPlan.goal.substitutedPreconditions map { case Literal(predicate, isPos, _) => Clause((statePredicate(K, primitivePaths.length, predicate), isPos)) }
+    initialPlan.goal.substitutedPreconditions map { case Literal(predicate, isPos, _) => Clause(Array(literal(statePredicateVariable(K, primitivePaths.length, predicate), isPos))) }
 
   lazy val initialState: Seq[Clause] = {
     val initiallyTruePredicates = initialPlan.init.substitutedEffects collect { case Literal(pred, true, _) => pred }
 
-    val initTrue = initiallyTruePredicates map { predicate => Clause((statePredicate(K, 0, predicate), true)) }
-    val initFalse = domain.predicates diff initiallyTruePredicates map { pred => Clause((statePredicate(K, 0, pred), false)) }
+    val initTrue = initiallyTruePredicates map { predicate => Clause(Array(statePredicateVariable(K, 0, predicate))) }
+    val initFalse = domain.predicates diff initiallyTruePredicates map { pred => Clause(Array(-statePredicateVariable(K, 0, pred))) }
 
     initTrue ++ initFalse
   }
@@ -51,7 +51,7 @@ trait TreeVariableOrderEncoding extends TreeEncoding with LinearPrimitivePlanEnc
     orderBefore(commonPath.length, commonPath, beforeInMethod, afterInMethod)
                                                                                           })
 
-  override protected def additionalClausesForMethod(layer: Int, path: Seq[Int], method: DecompositionMethod, methodString: String, methodChildrenPositions: Map[Int, Int]): Seq[Clause] = {
+  override protected def additionalClausesForMethod(layer: Int, path: Seq[Int], method: DecompositionMethod, methodVariable: Int, methodChildrenPositions: Map[Int, Int]): Seq[Clause] = {
     val orderings = method.subPlan.orderingConstraints.allOrderingConstraints() filterNot { _.containsAny(method.subPlan.initAndGoal: _*) }
 
     val orderingAtoms = orderings map { case OrderingConstraint(before, after) =>
@@ -61,12 +61,12 @@ trait TreeVariableOrderEncoding extends TreeEncoding with LinearPrimitivePlanEnc
       orderBefore(layer, path, beforeIndex, afterIndex)
     }
 
-    impliesRightAnd(methodString :: Nil, orderingAtoms)
+    impliesRightAnd(Array(methodVariable), (orderingAtoms map atom).toArray)
   }
 
-  def restrictionPathsPerPosition(pathsPerPosition: Map[Int, Seq[(Int, Int, String)]]): Seq[Clause]
+  def restrictionPathsPerPosition(pathsPerPosition: Map[Int, Seq[(Int, Int, Int)]]): Seq[Clause]
 
-  def ifActionAtPositionThenConnected(actionAtoms: Seq[(String, Task)], pathsPerPosition: Map[Int, Seq[(Int, Int, String)]], position: Int): Seq[Clause]
+  def ifActionAtPositionThenConnected(actionAtoms: Seq[(String, Task)], pathsPerPosition: Map[Int, Seq[(Int, Int, Int)]], position: Int): Seq[Clause]
 
   override def stateTransitionFormula: Seq[Clause] = {
     println("TREE P:" + primitivePaths.length + " S: " + taskSequenceLength)
@@ -76,9 +76,10 @@ trait TreeVariableOrderEncoding extends TreeEncoding with LinearPrimitivePlanEnc
 
     val positionsPerPath: Map[Int, Seq[(Int, Int, String)]] = pathAndPosition groupBy { _._1 }
     val pathsPerPosition: Map[Int, Seq[(Int, Int, String)]] = pathAndPosition groupBy { _._2 }
+    val pathsPerPositionVariables: Map[Int, Seq[(Int, Int, Int)]] = pathsPerPosition map { case (position, ps) => position -> (ps map { case (p, pos, a) => (p, pos, atom(a)) }) }
 
 
-    val atMostOneConstraints = restrictionPathsPerPosition(pathsPerPosition) ++ (positionsPerPath.toSeq flatMap { case (a, s) => atMostOneOf(s map { _._3 }) })
+    val atMostOneConstraints = restrictionPathsPerPosition(pathsPerPositionVariables) ++ (positionsPerPath.toSeq flatMap { case (a, s) => atMostOneOf(s map { _._3 }) })
     println("A " + atMostOneConstraints.size)
 
     val selected = primitivePaths.zipWithIndex flatMap { case ((path, tasks), pindex) =>
@@ -96,7 +97,7 @@ trait TreeVariableOrderEncoding extends TreeEncoding with LinearPrimitivePlanEnc
 
     val onlyPrimitiveIfChosen = Range(0, taskSequenceLength) flatMap { case position =>
       val actionAtoms = domain.primitiveTasks map { t => (action(K - 1, position, t), t) }
-      val ifPresentConnected = ifActionAtPositionThenConnected(actionAtoms, pathsPerPosition, position)
+      val ifPresentConnected = ifActionAtPositionThenConnected(actionAtoms, pathsPerPositionVariables, position)
       val onlyIfConnected = notImpliesAllNot(pathsPerPosition(position) map { _._3 }, actionAtoms map { _._1 })
 
       ifPresentConnected ++ onlyIfConnected
@@ -153,7 +154,8 @@ trait TreeVariableOrderEncoding extends TreeEncoding with LinearPrimitivePlanEnc
 }
 
 case class TreeVariableOrderEncodingKautzSelman(timeCapsule: TimeCapsule, domain: Domain, initialPlan: Plan, intProblem: IntProblem,
-                                                taskSequenceLengthQQ: Int, offsetToK: Int, usePDTMutexes: Boolean, overrideK: Option[Int] = None)
+                                                taskSequenceLengthQQ: Int, offsetToK: Int, usePDTMutexes: Boolean, overrideK: Option[Int] = None,
+                                                override val variableAllocator: VariableAllocator = new VariableAllocator())
   extends TreeVariableOrderEncoding with KautzSelmanMappingEncoding[Unit, Unit] {
 
   lazy val taskSequenceLength: Int = primitivePaths.length
@@ -161,7 +163,8 @@ case class TreeVariableOrderEncodingKautzSelman(timeCapsule: TimeCapsule, domain
 
 case class TreeVariableOrderEncodingExistsStep(timeCapsule: TimeCapsule, domain: Domain, initialPlan: Plan, intProblem: IntProblem,
                                                numberOfTimesteps: Int, maxNumberOfActionsArg : Int, offsetToK: Int,
-                                               usePDTMutexes: Boolean, overrideK: Option[Int] = None, additionalDisablingGraphEdges : Seq[AdditionalEdgesInDisablingGraph])
+                                               usePDTMutexes: Boolean, overrideK: Option[Int] = None, additionalDisablingGraphEdges : Seq[AdditionalEdgesInDisablingGraph],
+                                               override val variableAllocator: VariableAllocator = new VariableAllocator())
   extends TreeVariableOrderEncoding with ExsitsStepMappingEncoding[Unit, Unit] {
 
   override lazy val maxNumberOfActions : Int = maxNumberOfActionsArg
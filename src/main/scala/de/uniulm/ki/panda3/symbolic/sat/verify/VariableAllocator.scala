@@ -0,0 +1,144 @@
+// PANDA 3 -- a domain-independent planner for classical and hierarchical planning
+// Copyright (C) 2014-2018 the original author or authors.
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package de.uniulm.ki.panda3.symbolic.sat.verify
+
+import scala.collection.mutable
+import scala.collection.mutable.ArrayBuffer
+
+/**
+  * A range of consecutive SAT variables. Variables are numbered as in DIMACS, i.e. the first variable is 1.
+  */
+abstract class VariableBlock(val first: Int, val size: Int) {
+
+  def contains(variable: Int): Boolean = variable >= first && variable < first + size
+
+  /** name of the variable with the given offset in this block. Names are only needed for debugging and to extract solutions */
+  def name(offset: Int): String
+}
+
+/**
+  * A block containing one variable for every combination of indices, e.g. for every layer, position and predicate.
+  */
+class DenseVariableBlock(first: Int, dimensions: Array[Int], namer: Seq[Int] => String) extends VariableBlock(first, dimensions.product) {
+
+  def apply(i: Int): Int = {
+    assert(dimensions.length == 1 && i >= 0 && i < dimensions(0))
+    first + i
+  }
+
+  def apply(i: Int, j: Int): Int = {
+    assert(dimensions.length == 2 && i >= 0 && i < dimensions(0) && j >= 0 && j < dimensions(1))
+    first + i * dimensions(1) + j
+  }
+
+  def apply(i: Int, j: Int, k: Int): Int = {
+    assert(dimensions.length == 3 && i >= 0 && i < dimensions(0) && j >= 0 && j < dimensions(1) && k >= 0 && k < dimensions(2))
+    first + (i * dimensions(1) + j) * dimensions(2) + k
+  }
+
+  def name(offset: Int): String = {
+    val indices = new Array[Int](dimensions.length)
+    var remaining = offset
+    var d = dimensions.length - 1
+    while (d >= 0) {
+      indices(d) = remaining % dimensions(d)
+      remaining /= dimensions(d)
+      d -= 1
+    }
+    namer(indices)
+  }
+}
+
+/**
+  * Numbers the variables of a single formula. Variables are either handed out in blocks or represent atoms given by their name (which are still used
+  * by many encodings), both can be mixed in one formula. Clauses over named atoms get the allocator of their formula implicitly.
+  *
+  * Variables of a block have no string representation, their names are only generated if they are asked for. If keepNames is set, all names are
+  * also written to [[atomIndices]], i.e. the side table then contains every variable of the formula.
+  *
+  * The first variable can be chosen, such that the formula can be given to a solver that already contains other formulae.
+  */
+class VariableAllocator(keepNames: Boolean = false, firstVariable: Int = 1) {
+  assert(firstVariable > 0)
+
+  /** names of atoms, mapped to their variable - 1 */
+  val atomIndices = new mutable.HashMap[String, Int]()
+
+  private var nextVariable = firstVariable
+
+  // blocks are allocated with increasing numbers, i.e. this buffer is sorted
+  private val blocks = new ArrayBuffer[VariableBlock]()
+
+  /** the largest variable allocated so far, i.e. the number of variables in the DIMACS header */
+  def numberOfVariables: Int = nextVariable - 1
+
+  /** the number of variables allocated by this allocator */
+  def numberOfAllocatedVariables: Int = nextVariable - firstVariable
+
+  /** reserves the given number of new variables, which don't belong to any block or atom, and returns the first one */
+  def newVariables(number: Int): Int = {
+    val first = nextVariable
+    nextVariable += number
+    first
+  }
+
+  /** the variable representing the atom with the given name */
+  def variable(atom: String): Int = atomIndices.getOrElseUpdate(atom, newVariables(1) - 1) + 1
+
+  private def registerName(atom: String, variable: Int): Unit = {
+    val previous = atomIndices.getOrElseUpdate(atom, variable - 1)
+    assert(previous == variable - 1, "atom " + atom + " is already represented by another variable")
+  }
+
+  /** allocates a new block, the given function constructs it from its first variable */
+  def allocate[B <: VariableBlock](size: Int)(block: Int => B): B = {
+    val newBlock = block(newVariables(size))
+    assert(newBlock.size == size)
+    if (size > 0) {
+      blocks append newBlock
+      if (keepNames) Range(0, size) foreach { offset => registerName(newBlock.name(offset), newBlock.first + offset) }
+    }
+    newBlock
+  }
+
+  def denseBlock(dimensions: Int*)(namer: Seq[Int] => String): DenseVariableBlock = {
+    val dims = dimensions.toArray
+    allocate(dims.product) { first => new DenseVariableBlock(first, dims, namer) }
+  }
+
+  /** the name of a variable allocated by this allocator */
+  def nameOf(variable: Int): Option[String] = {
+    var lo = 0
+    var hi = blocks.length - 1
+    while (lo <= hi) {
+      val mid = (lo + hi) >>> 1
+      val block = blocks(mid)
+      if (variable < block.first) hi = mid - 1
+      else if (variable >= block.first + block.size) lo = mid + 1
+      else return Some(block.name(variable - block.first))
+    }
+    None
+  }
+
+  /** returns the name of the variable and makes sure that the atom with this name is the variable itself */
+  def named(variable: Int): String = {
+    val name = nameOf(variable)
+    assert(name.isDefined, "variable " + variable + " has not been allocated by this allocator")
+    registerName(name.get, variable)
+    name.get
+  }
+}
@@ -16,7 +16,7 @@
 
 package de.uniulm.ki.panda3.symbolic.sat.verify
 
-import java.io.{BufferedWriter, File, FileInputStream, OutputStream}
+import java.io.{File, FileInputStream, OutputStream}
 
 import de.uniulm.ki.panda3.symbolic._
 import de.uniulm.ki.panda3.symbolic.compiler.{ClosedWorldAssumption, ExpandSortHierarchy, SHOPMethodCompiler, ToPlainFormulaRepresentation}
@@ -27,7 +27,6 @@ import de.uniulm.ki.panda3.symbolic.parser.hddl.HDDLParser
 import de.uniulm.ki.panda3.symbolic.plan.Plan
 import de.uniulm.ki.panda3.symbolic.plan.element.{OrderingConstraint, PlanStep}
 import de.uniulm.ki.panda3.symbolic.sat.IntProblem
-import de.uniulm.ki.panda3.symbolic.sat.verify.Clause.atomIndices
 import de.uniulm.ki.util._
 
 import scala.collection._
@@ -90,40 +89,65 @@ trait VerifyEncoding {
   def taskIndex(task: Task): Int = taskIndices(task)
 
 
+  // VARIABLES
+  // encodings allocate their own variables in blocks, atoms given as strings are mapped to variables by Clause, which gets this allocator implicitly
+  implicit lazy val variables: VariableAllocator = variableAllocator
+
+  /** numbers the variables of this encoding, it can be given to the encoding e.g. to keep the names of all variables or to share the numbering */
+  def variableAllocator: VariableAllocator = new VariableAllocator()
+
+  /** the variable representing the atom with the given name */
+  def atom(name: String): Int = variables.variable(name)
+
+  def literal(variable: Int, isPositive: Boolean): Int = if (isPositive) variable else -variable
+
+  /** name of a variable allocated by this encoding, used to extract the solution */
+  def variableName(variable: Int): Option[String] = variables.nameOf(variable)
+
+
   // LOGICALS ABBREVIATIONS
   def atLeastOneOf(atoms: Seq[String]): Clause = Clause(atoms map { (_, true) })
 
+  def atLeastOneOf(atoms: Array[Int]): Clause = Clause(atoms.clone())
+
   protected var atMostCounter = 0
 
   // at most one of, but only if qualifier is true
-  def atMostOneOf(atoms: Seq[String], qualifier: Option[String] = None): Seq[Clause] = {
+  def atMostOneOf(atoms: Seq[String], qualifier: Option[String] = None): Seq[Clause] =
+    atMostOneOf((atoms map atom).toArray, qualifier match {case None => 0; case Some(q) => atom(q)})
+
+  def atMostOneOf(atoms: Array[Int]): Seq[Clause] = atMostOneOf(atoms, 0)
+
+  // at most one of, but only if qualifier is true. 0 denotes that there is no qualifier
+  def atMostOneOf(atoms: Array[Int], qualifier: Int): Seq[Clause] = {
     val buffer = new ArrayBuffer[Clause]()
     atMostCounter += 1
+    val counter = atMostCounter
 
-    val qualifierList: Seq[(String, Boolean)] = qualifier match {
-      case None    => Nil
-      case Some(q) => (q, false) :: Nil
-    }
+    val qualifierList: Array[Int] = if (qualifier == 0) Array() else Array(-qualifier)
 
     AtMostOneType.chosenType match {
       case BinaryEncoding =>
-        val numberOfBits: Int = Math.ceil(Math.log(atoms.length) / Math.log(2)).toInt
-        val bits = Range(0, numberOfBits) map { b => ("atMost_" + atMostCounter + "_" + b, b) }
-
-        atoms.zipWithIndex foreach { case (atom, index) =>
-          bits foreach { case (bitString, b) =>
-            if ((index & (1 << b)) == 0) buffer append Clause(((atom, false) :: (bitString, false) :: Nil) ++ qualifierList)
-            else buffer append Clause(((atom, false) :: (bitString, true) :: Nil) ++ qualifierList)
+        val numberOfBits: Int = if (atoms.length < 2) 0 else Math.ceil(Math.log(atoms.length) / Math.log(2)).toInt
+        val bits = variables.denseBlock(numberOfBits) { case Seq(b) => "atMost_" + counter + "_" + b }
+
+        var index = 0
+        while (index < atoms.length) {
+          var b = 0
+          while (b < numberOfBits) {
+            if ((index & (1 << b)) == 0) buffer append Clause(Array(-atoms(index), -bits(b)) ++ qualifierList)
+            else buffer append Clause(Array(-atoms(index), bits(b)) ++ qualifierList)
+            b += 1
           }
+          index += 1
         }
 
       case BinomialEncoding =>
-        val atomArray = atoms.toArray
         var i = 0
-        while (i < atomArray.length) {
+        while (i < atoms.length) {
           var j = i + 1
-          while (j < atomArray.length) {
-            buffer append Clause((atomArray(i), false) :: (atomArray(j), false) :: Nil ++ qualifierList)
+          while (j < atoms.length) {
+            buffer append Clause(Array(-atoms(i), -atoms(j)) ++ qualifierList)
             j += 1
           }
           i += 1
@@ -131,20 +155,20 @@ trait VerifyEncoding {
 
       case CommanderEncoding  =>
         // group into lists of three
-        val groups = atoms.sliding(3, 3).toSeq
+        val groups = atoms.sliding(3, 3).toArray
 
-        groups foreach { group => group foreach { a1 => group foreach { a2 => if (a1 != a2) buffer append Clause((a1, false) :: (a2, false) :: Nil ++ qualifierList) } } }
+        groups foreach { group => group foreach { a1 => group foreach { a2 => if (a1 != a2) buffer append Clause(Array(-a1, -a2) ++ qualifierList) } } }
 
         if (groups.length > 1) {
-          val groupAtoms: Seq[String] = groups.zipWithIndex map {
-            case (g, i) =>
-              val groupAtom = "atMost_" + atMostCounter + "_ g_" + i
+          val groupVariables = variables.denseBlock(groups.length) { case Seq(i) => "atMost_" + counter + "_ g_" + i }
+          val groupAtoms: Array[Int] = groups.indices map { i =>
+            val groupAtom = groupVariables(i)
 
-              buffer append impliesRightOr(groupAtom :: Nil ++ qualifierList.map(_._1), g)
-              buffer appendAll notImpliesAllNot(groupAtom :: Nil, g, qualifierList.map(_._1))
+            buffer append Clause((Array(-groupAtom) ++ qualifierList) ++ groups(i))
+            buffer appendAll (groups(i) map { a => Clause(Array(groupAtom) ++ qualifierList :+ -a) })
 
-              groupAtom
-          } toSeq
+            groupAtom
+          } toArray
 
           buffer appendAll atMostOneOf(groupAtoms)
         }
@@ -156,27 +180,25 @@ trait VerifyEncoding {
     buffer.toSeq
   }
 
-  def atMostKOf(atoms: Seq[String], K: Int): Seq[Clause] = {
+  def atMostKOf(atoms: Seq[String], K: Int): Seq[Clause] = atMostKOf((atoms map atom).toArray, K)
+
+  def atMostKOf(atomInts: Array[Int], K: Int): Seq[Clause] = {
     val buffer = new ListBuffer[Clause]()
     atMostCounter += 1
-    val N = atoms.length
-
-    val registers: Array[Array[String]] = Range(0, N + 1) map { i => Range(0, K + 1) map { j => "atMost_" + atMostCounter + "_" + i + "_" + j } toArray } toArray
+    val counter = atMostCounter
+    val N = atomInts.length
 
-    //println("AT MOST")
-    val registersInts: Array[Array[Int]] = registers map { _ map { r => Clause.atomIndices.getOrElseUpdate(r, Clause.atomIndices.size) + 1 } }
-    val atomInts: Array[Int] = atoms.map({ a => Clause.atomIndices.getOrElseUpdate(a, Clause.atomIndices.size) + 1 }).toArray
-    //println("INTS")
+    val registers = variables.denseBlock(N + 1, K + 1) { case Seq(i, j) => "atMost_" + counter + "_" + i + "_" + j }
 
     var i = 1
     while (i < N + 1) {
-      if (i < N) buffer append Clause(Array(-atomInts(i - 1), registersInts(i)(1)))
-      buffer append Clause(Array(-atomInts(i - 1), -registersInts(i - 1)(K)))
+      if (i < N) buffer append Clause(Array(-atomInts(i - 1), registers(i, 1)))
+      buffer append Clause(Array(-atomInts(i - 1), -registers(i - 1, K)))
 
       var j = 1
       while (i > 1 && j < K + 1) {
-        buffer append Clause(Array(-registersInts(i - 1)(j), registersInts(i)(j)))
-        if (j > 1) buffer append Clause(Array(-atomInts(i - 1), -registersInts(i - 1)(j - 1), registersInts(i)(j)))
+        buffer append Clause(Array(-registers(i - 1, j), registers(i, j)))
+        if (j > 1) buffer append Clause(Array(-atomInts(i - 1), -registers(i - 1, j - 1), registers(i, j)))
         j += 1
       }
       i += 1
@@ -184,7 +206,7 @@ trait VerifyEncoding {
 
     var j = 2
     while (j < K + 1) {
-      buffer append Clause(Array(-registersInts(1)(j)))
+      buffer append Clause(Array(-registers(1, j)))
       j += 1
     }
 
@@ -249,6 +271,26 @@ trait VerifyEncoding {
 
   def allImply(left: Seq[String], target: String): Seq[Clause] = left flatMap { x => impliesRightAnd(x :: Nil, target :: Nil) }
 
+  // the same abbreviations for variables
+  def exactlyOneOf(atoms: Array[Int]): Seq[Clause] = atMostOneOf(atoms).+:(atLeastOneOf(atoms))
+
+  def impliesNot(left: Int, right: Int): Clause = Clause(Array(-left, -right))
+
+  def impliesSingle(left: Int, right: Int): Clause = Clause(Array(-left, right))
+
+  def impliesAllNot(left: Int, right: Array[Int]): Seq[Clause] = right map { impliesNot(left, _) }
+
+  def notImpliesAllNot(left: Array[Int], right: Array[Int]): Seq[Clause] = right map { r => Clause(left :+ -r) }
+
+  def impliesRightAnd(leftConjunct: Array[Int], rightConjunct: Array[Int]): Seq[Clause] = {
+    val negLeft = leftConjunct map { -_ }
+    rightConjunct map { r => Clause(negLeft :+ r) }
+  }
+
+  def impliesRightAndSingle(leftConjunct: Array[Int], right: Int): Clause = Clause((leftConjunct map { -_ }).+:(right))
+
+  def impliesRightOr(leftConjunct: Array[Int], rightDisjunct: Array[Int]): Clause = Clause((leftConjunct map { -_ }) ++ rightDisjunct)
+
 
   lazy val possibleAndImpossibleActionsPerLayer: Map[Int, (Seq[Task], Seq[Task])] = Range(-1, K) map { layer =>
     val possibleAndImpossibleActions = if (domain.taskSchemaTransitionGraph.isAcyclic) {
@@ -280,50 +322,14 @@ trait VerifyEncoding {
 
   def planLengthDependentFormula(actualPlanLength: Int): Seq[Clause] = Nil
 
-  def miniSATString(formulas: Array[Clause], writer: BufferedWriter): scala.Predef.Map[String, Int] = {
-
-    // generate the atoms to int map
-    /*val atomIndices = new mutable.HashMap[String, Int]()
-    var i = 0
-    while (i < formulas.length) {
-      val lits = formulas(i).disjuncts
-      var j = 0
-      while (j < lits.length) {
-        val l = lits(j)._1
-        if (!(atomIndices contains l))
-          atomIndices(l) = atomIndices.size
-        j += 1
-      }
-      i += 1
-    }*/
-
-    // generate the DIMACS string
+  /** writes the formula in DIMACS format into the given file and returns the names of all atoms that have one. The clauses are written while the
+    * formula is traversed, so it does not have to be materialised, e.g. it can be a view on several parts. */
+  def writeDIMACS(formulas: Traversable[Clause], file: File): scala.Predef.Map[String, Int] = {
+    val writer = new DIMACSWriter(file)
+    try formulas foreach { clause => writer addClause clause.disjuncts }
+    finally writer close variables.numberOfVariables
 
-    val header = "p cnf " + Clause.atomIndices.size + " " + formulas.length + "\n"
-
-    //val stringBuffer = new StringBuffer()
-    //stringBuffer append header
-    writer write header
-
-    var i = 0
-    while (i < formulas.length) {
-      val lits = formulas(i).disjuncts
-      var j = 0
-      while (j < lits.length) {
-        //val atomInt = (atomIndices(lits(j)._1) + 1) * (if (lits(j)._2) 1 else -1)
-        //stringBuffer append atomInt
-        writer write ("" + lits(j))
-        //stringBuffer append ' '
-        writer write ' '
-        j += 1
-      }
-      //stringBuffer append "0\n"
-      writer write "0\n"
-      i += 1
-    }
-
-    //stringBuffer.toString
-    Clause.atomIndices.toMap
+    variables.atomIndices.toMap
   }
 }
 
@@ -507,32 +513,30 @@ case class Clause(disjuncts: Array[Int]) {
   override def toString: String = "Clause(" + disjuncts.mkString(",") + ")"
 }
 
+/** clauses over atoms given by their names, the atoms are mapped to the variables of the formula the clause belongs to */
 object Clause {
-  val atomIndices = new mutable.HashMap[String, Int]()
-
-  def clearCache(): Unit = atomIndices.clear()
 
-  def apply(disjuncts: Array[(String, Boolean)]): Clause = {
+  def apply(disjuncts: Array[(String, Boolean)])(implicit variables: VariableAllocator): Clause = {
     val compressed = new Array[Int](disjuncts.length)
     var i = 0
     while (i < disjuncts.length) {
-      val atomIndex = atomIndices.getOrElseUpdate(disjuncts(i)._1, atomIndices.size)
+      val atomVariable = variables.variable(disjuncts(i)._1)
       if (disjuncts(i)._2)
-        compressed(i) = atomIndex + 1
+        compressed(i) = atomVariable
       else
-        compressed(i) = -1 * atomIndex - 1
+        compressed(i) = -atomVariable
       i += 1
     }
     Clause(compressed)
   }
 
-  def apply(disjuncts: Seq[(String, Boolean)]): Clause = Clause(disjuncts.toArray)
+  def apply(disjuncts: Seq[(String, Boolean)])(implicit variables: VariableAllocator): Clause = Clause(disjuncts.toArray)
 
-  def apply(atom: String): Clause = Clause((atom, true) :: Nil)
+  def apply(atom: String)(implicit variables: VariableAllocator): Clause = Clause((atom, true) :: Nil)
 
-  def apply(atoms: Array[String]): Clause = Clause(atoms map { a => (a, true) })
+  def apply(atoms: Array[String])(implicit variables: VariableAllocator): Clause = Clause(atoms map { a => (a, true) })
 
-  def apply(literal: (String, Boolean)): Clause = Clause(literal :: Nil)
+  def apply(literal: (String, Boolean))(implicit variables: VariableAllocator): Clause = Clause(literal :: Nil)
 }
 
 
@@ -110,16 +110,12 @@ case class VerifyRunner(domain: Domain, initialPlan: Plan, satsolver: Solvertype
       timeCapsule start VerifyRunner.VERIFY_TOTAL
       timeCapsule start VerifyRunner.GENERATE_FORMULA
       val stateFormula = encoder.stateTransitionFormula ++ encoder.initialState ++ (if (includeGoal) encoder.goalState else Nil) ++ encoder.givenActionsFormula
-      val usedFormula = encoder.decompositionFormula ++ stateFormula
+      val usedFormula = encoder.decompositionFormula.view ++ stateFormula
       timeCapsule stop VerifyRunner.GENERATE_FORMULA
 
       timeCapsule start VerifyRunner.TRANSFORM_DIMACS
       println("READY TO WRITE")
-      val writer = new BufferedWriter(new FileWriter(new File(VerifyRunner.fileDir + "__cnfString")))
-      val atomMap = encoder.miniSATString(usedFormula.toArray, writer)
-      println("FLUSH")
-      writer.flush()
-      writer.close()
+      encoder.writeDIMACS(usedFormula, new File(VerifyRunner.fileDir + "__cnfString"))
       println("CLOSE")
       timeCapsule stop VerifyRunner.TRANSFORM_DIMACS
 
@@ -165,7 +161,7 @@ case class VerifyRunner(domain: Domain, initialPlan: Plan, satsolver: Solvertype
 
 
       //val formulaVariables: Seq[String] = (usedFormula flatMap { _.disjuncts map { _._1 } }).distinct
-      informationCapsule.set(VerifyRunner.NUMBER_OF_VARIABLES, atomMap.size)
+      informationCapsule.set(VerifyRunner.NUMBER_OF_VARIABLES, encoder.variables.numberOfVariables)
       informationCapsule.set(VerifyRunner.NUMBER_OF_CLAUSES, usedFormula.length)
       informationCapsule.set(VerifyRunner.STATE_FORMULA, stateFormula.length)
       //informationCapsule.set(VerifyRunner.ORDER_CLAUSES, encoder.decompositionFormula count { _.disjuncts forall { case (a, _) => a.startsWith("before") || a.startsWith("childof") } })
@@ -187,7 +183,8 @@ case class VerifyRunner(domain: Domain, initialPlan: Plan, satsolver: Solvertype
       }
 
       // delete files
-      ("rm " + VerifyRunner.fileDir + "__cnfString " + VerifyRunner.fileDir + "__res.txt") !
+      new File(VerifyRunner.fileDir + "__cnfString").delete()
+      new File(VerifyRunner.fileDir + "__res.txt").delete()
 
       // report on the result
       println("MiniSAT says: " + solveState)
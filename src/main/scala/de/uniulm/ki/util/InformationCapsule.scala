@@ -24,6 +24,8 @@ class Distribution() {
 
   def add(value: Double): Unit = innerDistribution.put(value, innerDistribution(value) + 1)
 
+  def addAll(other: Distribution): Unit = other.innerDistribution foreach { case (value, count) => innerDistribution.put(value, innerDistribution(value) + count) }
+
   def numberOfSamples(): Int = innerDistribution.values sum
 
   def mean(): Double = (innerDistribution map { case (a, b) => a * b } sum) / numberOfSamples()
@@ -66,6 +68,21 @@ class InformationCapsule extends DataCapsule {
   }
 
 
+  def integerInformation: Map[String, Int] = internalInformationInt.toMap
+
+  def stringInformation: Map[String, String] = internalInformationString.toMap
+
+  /** adds all numbers and distributions of the other capsule to this one. Strings of the other capsule overwrite the ones in this capsule */
+  def addAll(other: InformationCapsule): Unit = {
+    other.internalInformationInt foreach { case (key, value) => add(key, value) }
+    other.internalInformationString foreach { case (key, value) => set(key, value) }
+    other.internalInformationDistribution foreach { case (key, otherDistribution) =>
+      val distribution = internalInformationDistribution.getOrElse(key, new Distribution())
+      distribution addAll otherDistribution
+      internalInformationDistribution.put(key, distribution)
+    }
+  }
+
   // add item to distribution
   def addToDistribution(key: String, value: Double): Unit = {
     val distribution = internalInformationDistribution(key)
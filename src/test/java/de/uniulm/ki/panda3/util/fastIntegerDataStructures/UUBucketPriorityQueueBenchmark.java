@@ -0,0 +1,110 @@
+// PANDA 3 -- a domain-independent planner for classical and hierarchical planning
+// Copyright (C) 2014-2018 the original author or authors.
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package de.uniulm.ki.panda3.util.fastIntegerDataStructures;
+
+import java.util.PriorityQueue;
+import java.util.Random;
+
+/**
+ * Compares the throughput of the bucket queue with a binary heap of objects on the access pattern of a best-first
+ * search: one node is removed and a few children with similar f-values are added.
+ * <p>
+ * Usage: UUBucketPriorityQueueBenchmark [operations] [branching factor]
+ */
+public class UUBucketPriorityQueueBenchmark {
+
+    private static class Node implements Comparable<Node> {
+        final int f;
+        final int h;
+        final int id;
+
+        Node(int f, int h, int id) {
+            this.f = f;
+            this.h = h;
+            this.id = id;
+        }
+
+        @Override
+        public int compareTo(Node that) {
+            if (this.f != that.f)
+                return Integer.compare(this.f, that.f);
+            if (this.h != that.h)
+                return Integer.compare(this.h, that.h);
+            return Integer.compare(this.id, that.id);
+        }
+    }
+
+    public static void main(String[] args) {
+        int operations = args.length > 0 ? Integer.parseInt(args[0]) : 5000000;
+        int branching = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+
+        // warm up both implementations
+        for (int i = 0; i < 3; i++) {
+            runHeap(operations / 10, branching);
+            runBuckets(operations / 10, branching);
+        }
+
+        long time = System.nanoTime();
+        long heapChecksum = runHeap(operations, branching);
+        long heapTime = System.nanoTime() - time;
+
+        time = System.nanoTime();
+        long bucketChecksum = runBuckets(operations, branching);
+        long bucketTime = System.nanoTime() - time;
+
+        if (heapChecksum != bucketChecksum)
+            throw new IllegalStateException("The queues returned the nodes in different orders");
+
+        System.out.println("java.util.PriorityQueue: " + (heapTime / 1000000) + "ms, " + (long) (operations / (heapTime / 1e9)) + " polls/sec");
+        System.out.println("UUBucketPriorityQueue:   " + (bucketTime / 1000000) + "ms, " + (long) (operations / (bucketTime / 1e9)) + " polls/sec");
+    }
+
+    private static long runHeap(int operations, int branching) {
+        Random random = new Random(42);
+        PriorityQueue<Node> queue = new PriorityQueue<>();
+        int nextId = 0;
+        queue.add(new Node(100, 100, nextId++));
+        long checksum = 0;
+        for (int i = 0; i < operations && !queue.isEmpty(); i++) {
+            Node node = queue.poll();
+            checksum = 31 * checksum + node.id;
+            for (int c = 0; c < branching; c++) {
+                int h = Math.max(0, node.h + random.nextInt(3) - 1);
+                queue.add(new Node(node.f - node.h + 1 + h, h, nextId++));
+            }
+        }
+        return checksum;
+    }
+
+    private static long runBuckets(int operations, int branching) {
+        Random random = new Random(42);
+        UUBucketPriorityQueue<Node> queue = new UUBucketPriorityQueue<>();
+        int nextId = 0;
+        queue.add(new Node(100, 100, nextId++), 100, 100);
+        long checksum = 0;
+        for (int i = 0; i < operations && !queue.isEmpty(); i++) {
+            Node node = queue.poll();
+            checksum = 31 * checksum + node.id;
+            for (int c = 0; c < branching; c++) {
+                int h = Math.max(0, node.h + random.nextInt(3) - 1);
+                Node child = new Node(node.f - node.h + 1 + h, h, nextId++);
+                queue.add(child, child.f, child.h);
+            }
+        }
+        return checksum;
+    }
+}
@@ -0,0 +1,157 @@
+// PANDA 3 -- a domain-independent planner for classical and hierarchical planning
+// Copyright (C) 2014-2018 the original author or authors.
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package de.uniulm.ki.panda3.configuration
+
+import java.io.FileInputStream
+import java.nio.file.Files
+
+import de.uniulm.ki.panda3.progression.htn.search.searchRoutine.PriorityQueueSearch
+import de.uniulm.ki.panda3.symbolic.search.SearchState
+import de.uniulm.ki.util.InformationCapsule
+import org.scalatest.FlatSpec
+
+class ModelCacheTest extends FlatSpec {
+
+  val domain  = "src/test/resources/de/uniulm/ki/panda3/symbolic/parser/xml/SmartPhone-HierarchicalNoAxioms.xml"
+  val problem = "src/test/resources/de/uniulm/ki/panda3/symbolic/parser/xml/OrganizeMeeting_VeryVerySmall.xml"
+
+  "The model cache" must "be used by the progression search on a second run" in {
+    val cacheDirectory = Files.createTempDirectory("panda-model-cache").toFile
+    val (parsing, preprocessing, search) = PredefinedConfigurations.defaultConfigurations("ICAPS-2018-RC(FF,gastar)")
+    val config = PlanningConfiguration(printGeneralInformation = false, printAdditionalData = false, randomSeed = 42, timeLimit = None,
+                                       parsing, preprocessing, search, PostprocessingConfiguration(Set(SearchStatus, SearchResult, SearchStatistics)),
+                                       modelCacheDirectory = Some(cacheDirectory.getPath))
+
+    val cold = config.runResultSearch(new FileInputStream(domain), new FileInputStream(problem))
+    assert(cold(SearchStatus) == SearchState.SOLUTION)
+    assert(cold(SearchStatistics).stringInformation(Information.MODEL_CACHE) == "miss")
+    assert(cacheDirectory.listFiles().length == 1)
+
+    val warm = config.runResultSearch(new FileInputStream(domain), new FileInputStream(problem))
+    assert(warm(SearchStatus) == SearchState.SOLUTION)
+    assert(warm(SearchStatistics).stringInformation(Information.MODEL_CACHE) == "hit")
+    // the domain statistics are restored from the cache and the search is the same
+    Seq(Information.NUMBER_OF_ACTIONS, Information.NUMBER_OF_METHODS, PriorityQueueSearch.NUM_SEARCH_NODES) foreach { key =>
+      assert(cold(SearchStatistics).integerInformation contains key)
+      assert(warm(SearchStatistics).integerInformation(key) == cold(SearchStatistics).integerInformation(key))
+    }
+
+    cacheDirectory.listFiles() foreach { _.delete() }
+    cacheDirectory.delete()
+  }
+
+  it must "restore the preprocessed model exactly" in {
+    val cacheDirectory = Files.createTempDirectory("panda-model-cache").toFile
+    val (parsing, preprocessing, search) = PredefinedConfigurations.defaultConfigurations("ICAPS-2018-RC(FF,gastar)")
+    val config = PlanningConfiguration(printGeneralInformation = false, printAdditionalData = false, randomSeed = 42, timeLimit = None,
+                                       parsing, preprocessing, search, PostprocessingConfiguration(Set(PreprocessedDomainAndPlan, SearchStatistics)))
+    val result = config.runResultSearch(new FileInputStream(domain), new FileInputStream(problem))
+    val (freshDomain, freshPlan) = result(PreprocessedDomainAndPlan)
+
+    val cache = ModelCache(cacheDirectory.getPath)
+    val key = cache.key("domain".getBytes, "problem".getBytes, "")
+    assert(cache.store(key, (freshDomain, freshPlan), result(SearchStatistics)))
+    val (cachedDomain, cachedPlan) = cache.load(key, new InformationCapsule).get.domainAndPlan
+
+    assert(cachedDomain.predicates == freshDomain.predicates)
+    assert(cachedDomain.tasks == freshDomain.tasks)
+    assert(cachedDomain.tasks.map(_.getClass) == freshDomain.tasks.map(_.getClass))
+    assert(cachedDomain.decompositionMethods.map(_.name) == freshDomain.decompositionMethods.map(_.name))
+    assert(cachedDomain.decompositionMethods == freshDomain.decompositionMethods)
+    assert(cachedPlan == freshPlan)
+    assert(cachedPlan.init.schema == freshPlan.init.schema)
+    assert(cachedPlan.goal.schema == freshPlan.goal.schema)
+
+    val freshSasPlus = freshDomain.sasPlusRepresentation.get
+    val cachedSasPlus = cachedDomain.sasPlusRepresentation.get
+    assert(cachedSasPlus.sasPlusIndexToTask == freshSasPlus.sasPlusIndexToTask)
+    assert(cachedSasPlus.sasPlusIndexToPredicate == freshSasPlus.sasPlusIndexToPredicate)
+    val freshProblem = freshSasPlus.sasPlusProblem
+    val cachedProblem = cachedSasPlus.sasPlusProblem
+    assert(cachedProblem.numOfVars == freshProblem.numOfVars)
+    assert(cachedProblem.numOfOperators == freshProblem.numOfOperators)
+    assert(cachedProblem.numOfStateFeatures == freshProblem.numOfStateFeatures)
+    assert(cachedProblem.s0List sameElements freshProblem.s0List)
+    assert(cachedProblem.gList sameElements freshProblem.gList)
+    assert(cachedProblem.costs sameElements freshProblem.costs)
+    assert(cachedProblem.opNames sameElements freshProblem.opNames)
+    Seq((cachedProblem.precLists, freshProblem.precLists), (cachedProblem.addLists, freshProblem.addLists), (cachedProblem.delLists, freshProblem.delLists)) foreach {
+      case (cachedLists, freshLists) => assert(cachedLists.map(_.toSeq).toSeq == freshLists.map(_.toSeq).toSeq)
+    }
+
+    cacheDirectory.listFiles() foreach { _.delete() }
+    cacheDirectory.delete()
+  }
+
+  it must "not be used if the analyses of the preprocessing are needed" in {
+    val cacheDirectory = Files.createTempDirectory("panda-model-cache").toFile
+    val (parsing, preprocessing, search) = PredefinedConfigurations.defaultConfigurations("ICAPS-2018-RC(FF,gastar)")
+    val config = PlanningConfiguration(printGeneralInformation = false, printAdditionalData = false, randomSeed = 42, timeLimit = None,
+                                       parsing, preprocessing, search, PostprocessingConfiguration(Set(SearchStatus, SearchStatistics, FinalTaskDecompositionGraph)),
+                                       modelCacheDirectory = Some(cacheDirectory.getPath))
+
+    val result = config.runResultSearch(new FileInputStream(domain), new FileInputStream(problem))
+    assert(result(SearchStatus) == SearchState.SOLUTION)
+    assert(!(result(SearchStatistics).stringInformation contains Information.MODEL_CACHE))
+    assert(cacheDirectory.listFiles().isEmpty)
+
+    cacheDirectory.delete()
+  }
+
+  it must "ignore broken models" in {
+    val cacheDirectory = Files.createTempDirectory("panda-model-cache").toFile
+    val cache = ModelCache(cacheDirectory.getPath)
+    val key = cache.key("domain".getBytes, "problem".getBytes, "")
+    Files.write(cache.file(key).toPath, "PANDA-MODEL garbage".getBytes)
+
+    val brokenInformation = new InformationCapsule
+    assert(cache.load(key, brokenInformation).isEmpty)
+    assert(brokenInformation.stringInformation(Information.MODEL_CACHE_ERROR) startsWith cache.file(key).toString)
+
+    // a model that does not exist is not an error
+    val missingInformation = new InformationCapsule
+    assert(cache.load(cache.key("domain".getBytes, "problem".getBytes, "other"), missingInformation).isEmpty)
+    assert(!(missingInformation.stringInformation contains Information.MODEL_CACHE_ERROR))
+
+    cacheDirectory.listFiles() foreach { _.delete() }
+    cacheDirectory.delete()
+  }
+
+  it must "report and replace a broken model in the statistics of the search" in {
+    val cacheDirectory = Files.createTempDirectory("panda-model-cache").toFile
+    val (parsing, preprocessing, search) = PredefinedConfigurations.defaultConfigurations("ICAPS-2018-RC(FF,gastar)")
+    val config = PlanningConfiguration(printGeneralInformation = false, printAdditionalData = false, randomSeed = 42, timeLimit = None,
+                                       parsing, preprocessing, search, PostprocessingConfiguration(Set(SearchStatus, SearchStatistics)),
+                                       modelCacheDirectory = Some(cacheDirectory.getPath))
+
+    config.runResultSearch(new FileInputStream(domain), new FileInputStream(problem))
+    val modelFile = cacheDirectory.listFiles().head
+    Files.write(modelFile.toPath, "PANDA-MODEL garbage".getBytes)
+
+    val broken = config.runResultSearch(new FileInputStream(domain), new FileInputStream(problem))
+    assert(broken(SearchStatus) == SearchState.SOLUTION)
+    assert(broken(SearchStatistics).stringInformation(Information.MODEL_CACHE) == "miss")
+    assert(broken(SearchStatistics).stringInformation(Information.MODEL_CACHE_ERROR) startsWith modelFile.toString)
+
+    val repaired = config.runResultSearch(new FileInputStream(domain), new FileInputStream(problem))
+    assert(repaired(SearchStatistics).stringInformation(Information.MODEL_CACHE) == "hit")
+    assert(!(repaired(SearchStatistics).stringInformation contains Information.MODEL_CACHE_ERROR))
+
+    cacheDirectory.listFiles() foreach { _.delete() }
+    cacheDirectory.delete()
+  }
+}
@@ -0,0 +1,139 @@
+// PANDA 3 -- a domain-independent planner for classical and hierarchical planning
+// Copyright (C) 2014-2018 the original author or authors.
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package de.uniulm.ki.panda3.efficient.domain.datastructures.primitivereachability
+
+import java.io.FileInputStream
+
+import de.uniulm.ki.panda3.configuration._
+import de.uniulm.ki.panda3.efficient.Wrapping
+import de.uniulm.ki.panda3.symbolic.domain.datastructures.primitivereachability.{GroundedPlanningGraph, GroundedPlanningGraphConfiguration}
+import de.uniulm.ki.panda3.symbolic.logic.GroundLiteral
+import de.uniulm.ki.panda3.symbolic.search.SearchState
+import org.scalatest.FlatSpec
+
+class EfficientGroundedPlanningGraphTest extends FlatSpec {
+
+  val domainFile  = "src/test/java/UUBenchmarksets/fromHTN/transport/domains/domain-htn.lisp"
+  val problemFile = "src/test/java/UUBenchmarksets/fromHTN/transport/problems/pfile5"
+
+  lazy val (wrapper, initialState) = {
+    val preprocessing = PreprocessingConfiguration(compileNegativePreconditions = true, compileUnitMethods = false, compileOrderInMethods = None,
+                                                   compileInitialPlan = false, removeUnnecessaryPredicates = false, removeNoOps = false, convertToSASP = false,
+                                                   allowSASPFromStrips = false, splitIndependentParameters = false, ensureMethodsHaveLastTask = false,
+                                                   ensureMethodsHaveAtMostTwoTasks = false, compileUselessAbstractTasks = false, liftedReachability = true,
+                                                   groundedReachability = None, groundedTaskDecompositionGraph = None, iterateReachabilityAnalysis = false,
+                                                   groundDomain = false, stopDirectlyAfterGrounding = false)
+    val config = PlanningConfiguration(printGeneralInformation = false, printAdditionalData = false, randomSeed = 42, timeLimit = None,
+                                       ParsingConfiguration(eliminateEquality = false, stripHybrid = false), preprocessing,
+                                       PlanBasedSearch(None, BFSType, Nil, Nil, LCFR), PostprocessingConfiguration(Set()))
+    val parsed = config.runParsing(new FileInputStream(domainFile), new FileInputStream(problemFile))._1
+    val (processed, _, _) = config.runParsingPostProcessing(parsed._1, parsed._2)
+    val ((domainAndPlan, _), _) = config.runPreprocessing(processed._1, processed._2)
+    val wrapper = Wrapping(domainAndPlan)
+    val initialState = domainAndPlan._2.groundedInitialState collect { case GroundLiteral(p, true, args) => (wrapper.unwrap(p), args map wrapper.unwrap toArray) }
+    (wrapper, initialState.toArray)
+  }
+
+  def sameLayers(layers1: Array[Array[(Int, Array[Int])]], layers2: Array[Array[(Int, Array[Int])]]): Boolean =
+    layers1.length == layers2.length && (layers1 zip layers2 forall { case (layer1, layer2) =>
+      layer1.length == layer2.length && (layer1 zip layer2 forall { case ((id1, args1), (id2, args2)) => id1 == id2 && (args1 sameElements args2) })
+    })
+
+  "The parallel build of the planning graph" must "yield the same graph as the sequential one" in {
+    val sequential = EfficientGroundedPlanningGraphImplementation(wrapper.efficientDomain, initialState)
+    val parallel = EfficientGroundedPlanningGraphImplementation(wrapper.efficientDomain, initialState, EGPGConfiguration(threads = 4))
+
+    assert(sequential.graphSize > 2)
+    assert(parallel.graphSize == sequential.graphSize)
+    assert(parallel.actionRankLast == sequential.actionRankLast)
+    assert(parallel.factRankLast == sequential.factRankLast)
+
+    val numberOfActions = sequential.actionRankLast.last
+    val numberOfFacts = sequential.factRankLast.last
+    Range(0, numberOfActions) foreach { a =>
+      assert(parallel.actionSpikeIDs(a) == sequential.actionSpikeIDs(a))
+      assert(parallel.actionSpikeArgs(a) sameElements sequential.actionSpikeArgs(a))
+      assert(parallel.precs(a) == sequential.precs(a))
+      assert(parallel.adds(a) == sequential.adds(a))
+      assert(parallel.dels(a) == sequential.dels(a))
+    }
+    Range(0, numberOfFacts) foreach { f =>
+      assert(parallel.factSpikeIDs(f) == sequential.factSpikeIDs(f))
+      assert(parallel.factSpikeArgs(f) sameElements sequential.factSpikeArgs(f))
+      assert(parallel.firstAppearanceOfFacts(f) == sequential.firstAppearanceOfFacts(f))
+    }
+    Range(0, sequential.graphSize) foreach { layer =>
+      assert(parallel.factMutexes(layer).toSeq == sequential.factMutexes(layer).toSeq)
+      assert(parallel.factMutexesAB(layer).toSeq == sequential.factMutexesAB(layer).toSeq)
+      assert(parallel.permanentActionMutexes(layer).toSeq == sequential.permanentActionMutexes(layer).toSeq)
+      assert(parallel.temporaryActionMutexes(layer).toSeq == sequential.temporaryActionMutexes(layer).toSeq)
+    }
+  }
+
+  it must "yield the same layers for the heuristics as the sequential one" in {
+    val sequential = EfficientGroundedPlanningGraphFromImplementation(EfficientGroundedPlanningGraphImplementation(wrapper.efficientDomain, initialState))
+    val parallel = EfficientGroundedPlanningGraphFromImplementation(EfficientGroundedPlanningGraphImplementation(wrapper.efficientDomain, initialState,
+                                                                                                                  EGPGConfiguration(threads = 4)))
+
+    assert(sequential.actionLayer.length > 2)
+    assert(sameLayers(parallel.actionLayer, sequential.actionLayer))
+    assert(sameLayers(parallel.stateLayer, sequential.stateLayer))
+  }
+
+  val smartPhoneDomain  = "src/test/resources/de/uniulm/ki/panda3/symbolic/parser/xml/SmartPhone-HierarchicalNoAxioms.xml"
+  val smartPhoneProblem = "src/test/resources/de/uniulm/ki/panda3/symbolic/parser/xml/OrganizeMeeting_VeryVerySmall.xml"
+
+  def smartPhoneConfiguration(threads: Option[Int]): PlanningConfiguration =
+    PlanningConfiguration(printGeneralInformation = false, printAdditionalData = false, randomSeed = 42, timeLimit = None,
+                          PredefinedConfigurations.htnParsing, PredefinedConfigurations.groundingPreprocess,
+                          PlanBasedSearch(None, GreedyType, ADD :: Nil, Nil, LCFR, planningGraphThreads = threads), PostprocessingConfiguration(Set(SearchStatus)))
+
+  Seq(false, true) foreach { mutexes =>
+    it must "reach the same actions and facts in every layer as the symbolic graph " + (if (mutexes) "with" else "without") + " mutexes" in {
+      val config = smartPhoneConfiguration(None)
+      val parsed = config.runParsing(new FileInputStream(smartPhoneDomain), new FileInputStream(smartPhoneProblem))._1
+      val (processed, _, _) = config.runParsingPostProcessing(parsed._1, parsed._2)
+      val (((domain, plan), _), _) = config.runPreprocessing(processed._1, processed._2)
+      val wrapper = Wrapping(domain, plan)
+      val initialState = plan.groundedInitialState filter { _.isPositive } toSet
+      val efficientInitialState = initialState map { case GroundLiteral(p, _, args) => (wrapper.unwrap(p), args map wrapper.unwrap toArray) } toArray
+
+      val symbolic = EfficientGroundedPlanningGraphFromSymbolic(GroundedPlanningGraph(domain, initialState, GroundedPlanningGraphConfiguration(computeMutexes = mutexes)), wrapper)
+      val efficient = EfficientGroundedPlanningGraphFromImplementation(EfficientGroundedPlanningGraphImplementation(wrapper.efficientDomain, efficientInitialState,
+                                                                                                                   EGPGConfiguration(computeMutexes = mutexes, threads = 4)))
+
+      // the graphs may repeat their last layer a different number of times
+      def asSets(layers: Array[Array[(Int, Array[Int])]]): Seq[Set[(Int, Seq[Int])]] = layers.toSeq map { _.map({ case (id, args) => (id, args.toSeq) }).toSet }
+      Seq((symbolic.actionLayer, efficient.actionLayer), (symbolic.stateLayer, efficient.stateLayer)) foreach { case (symbolicLayers, efficientLayers) =>
+        val symbolicSets = asSets(symbolicLayers)
+        val efficientSets = asSets(efficientLayers)
+        assert(symbolicSets.length > 2)
+        Range(0, Math.max(symbolicSets.length, efficientSets.length)) foreach { layer =>
+          assert(symbolicSets(Math.min(layer, symbolicSets.length - 1)) == efficientSets(Math.min(layer, efficientSets.length - 1)))
+        }
+      }
+    }
+  }
+
+  it must "be usable by the heuristics of the plan-based search" in {
+    val results = Seq(None, Some(1), Some(4)) map { threads =>
+      smartPhoneConfiguration(threads).runResultSearch(new FileInputStream(smartPhoneDomain), new FileInputStream(smartPhoneProblem))(SearchStatus)
+    }
+
+    assert(results == Seq(SearchState.SOLUTION, SearchState.SOLUTION, SearchState.SOLUTION))
+  }
+}
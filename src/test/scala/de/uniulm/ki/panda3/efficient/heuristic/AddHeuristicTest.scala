@@ -0,0 +1,86 @@
+// PANDA 3 -- a domain-independent planner for classical and hierarchical planning
+// Copyright (C) 2014-2018 the original author or authors.
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package de.uniulm.ki.panda3.efficient.heuristic
+
+import de.uniulm.ki.panda3.efficient.domain.{EfficientTask, HasEfficientExampleDomain1}
+import de.uniulm.ki.panda3.efficient.domain.datastructures.primitivereachability.{EfficientFactIndex, EfficientGroundedPlanningGraph}
+import de.uniulm.ki.panda3.efficient.logic.EfficientLiteral
+import org.scalatest.FlatSpec
+
+import scala.util.Random
+
+// scalastyle:off magic.number
+class AddHeuristicTest extends FlatSpec with HasEfficientExampleDomain1 {
+
+  "The fact index" must "number all facts consecutively" in {
+    val random = new Random(42)
+    // predicate 0 has few different arguments and is stored in a table, predicate 1 has many and is searched, predicate 2 has no arguments
+    val facts = (Range(0, 500) map { _ => (0, Array(random.nextInt(10), random.nextInt(5))) }) ++
+      (Range(0, 500) map { _ => (1, Array(random.nextInt(1000), random.nextInt(1000), random.nextInt(1000))) }) :+ ((2, Array[Int]())) :+ ((2, Array[Int]()))
+    val index = new EfficientFactIndex(4, facts.toArray)
+
+    val distinctFacts = (facts map { case (p, args) => (p, args.toSeq) }).distinct
+    assert(index.numberOfFacts == distinctFacts.length)
+    assert((facts map { case (p, args) => index(p, args) }).toSet == Range(0, index.numberOfFacts).toSet)
+    facts foreach { case (p, args) =>
+      val fact = index(p, args)
+      assert(index.factPredicates(fact) == p)
+      assert(index.factArguments(fact) sameElements args)
+    }
+
+    assert(index(0, Array(10, 0)) == -1)
+    assert(index(1, Array(1000, 0, 0)) == -1)
+    assert(index(3, Array()) == -1)
+    assert(index(4, Array()) == -1)
+  }
+
+  "The ADD heuristic" must "compute the costs of the facts along the planning graph" in {
+    val planningGraph = new EfficientGroundedPlanningGraph {
+      // task4(0,1) achieves 0() and 1(1), task1(2) needs 0() to achieve 1(2), task5(1) achieves nothing new
+      val actionLayer: Array[Array[(Int, Array[Int])]] = Array(Array((5, Array(0, 1))), Array((5, Array(0, 1)), (2, Array(2)), (6, Array(1))))
+      val stateLayer : Array[Array[(Int, Array[Int])]] = Array(Array((1, Array(0)), (1, Array(1)), (0, Array())), Array((1, Array(0)), (1, Array(1)), (0, Array()), (1, Array(2))))
+    }
+    val add = AddHeuristic(planningGraph, domain, Array((1, Array(0))), resuingAsVHPOP = false)
+
+    assert(add.costOf(1, Array(0)) == 0)
+    assert(add.costOf(1, Array(1)) == 1)
+    assert(add.costOf(0, Array()) == 1)
+    assert(add.costOf(1, Array(2)) == 2)
+    assert(add.costOf(2, Array(0)) == Double.MaxValue)
+    assert(add.minimalCostPerPredicate sameElements Array(1.0, 0.0, Integer.MAX_VALUE.toDouble))
+  }
+
+  it must "not use the cost of a fact for a negative precondition on it" in {
+    // task6(0,1) : -1(0),+0() : +2(0,1) and task7(0,1) : +1(0),+0() : +2(1,0)
+    val task6 = new EfficientTask(true, Array(0, 0), Array(), Array(new EfficientLiteral(1, false, Array(0)), new EfficientLiteral(0, true, Array())),
+                                  Array(new EfficientLiteral(2, true, Array(0, 1))), 0, true, false, false)
+    val task7 = new EfficientTask(true, Array(0, 0), Array(), Array(new EfficientLiteral(1, true, Array(0)), new EfficientLiteral(0, true, Array())),
+                                  Array(new EfficientLiteral(2, true, Array(1, 0))), 0, true, false, false)
+    val negativeDomain = domain.copy(tasks = domain.tasks :+ task6 :+ task7)
+    val planningGraph = new EfficientGroundedPlanningGraph {
+      val actionLayer: Array[Array[(Int, Array[Int])]] = Array(Array((5, Array(0, 1))), Array((5, Array(0, 1)), (7, Array(0, 1)), (8, Array(0, 1))))
+      val stateLayer : Array[Array[(Int, Array[Int])]] = Array(Array((1, Array(0)), (1, Array(1)), (0, Array())),
+                                                               Array((1, Array(0)), (1, Array(1)), (0, Array()), (2, Array(0, 1)), (2, Array(1, 0))))
+    }
+    // 1(0) holds initially, so the negative precondition of task6 is the only difference between the two actions
+    val add = AddHeuristic(planningGraph, negativeDomain, Array((1, Array(0))), resuingAsVHPOP = false)
+
+    assert(add.costOf(0, Array()) == 1)
+    assert(add.costOf(2, Array(1, 0)) == 2)
+    assert(add.costOf(2, Array(0, 1)) == Double.MaxValue)
+  }
+}
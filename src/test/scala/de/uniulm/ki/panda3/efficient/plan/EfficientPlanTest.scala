@@ -25,6 +25,8 @@ import de.uniulm.ki.panda3.efficient.plan.modification.{EfficientInsertCausalLin
 import de.uniulm.ki.panda3.efficient.plan.ordering.EfficientOrdering
 import org.scalatest.FlatSpec
 
+import scala.collection.mutable
+
 /**
   * @author Gregor Behnke (gregor.behnke@uni-ulm.de)
   */
@@ -146,4 +148,51 @@ class EfficientPlanTest extends FlatSpec with HasEfficientExampleDomain1 {
     })
   }
 
+  /** a copy of the contents of all bit set tables of the plan */
+  def bitSetTables(plan: EfficientPlan): (Seq[Option[Set[Int]]], Seq[Option[Seq[Option[Set[Int]]]]], Seq[Option[Set[Int]]]) = {
+    def contents(set: mutable.BitSet): Option[Set[Int]] = Option(set).map(_.toSet)
+
+    (plan.planStepSupportedPreconditions.toSeq.map(contents),
+      plan.potentialSupportersOfPlanStepPreconditions.toSeq.map(row => Option(row).map(_.toSeq.map(contents))),
+      plan.causalLinksPotentialThreater.toSeq.map(contents))
+  }
+
+  /** changes every table of the plan that can be changed, like the search does when it prunes supporters and threats */
+  def changeAllTables(plan: EfficientPlan, marker: Int): Unit = {
+    plan.openPreconditions foreach { flaw => plan.modifiablePotentialSupporters(flaw.planStep, flaw.preconditionIndex) add marker }
+    plan.causalLinks.indices foreach { causalLink => plan.modifiableCausalLinksPotentialThreater(causalLink) add marker }
+  }
+
+  "Copy-on-write tables" must "not be changed in the parent if a child is modified" in {
+    // a plan with a causal link, whose tables already are shared with the plan it has been created from
+    val flaw = (simpleOpenPreconditionPlan.openPreconditions find { _.planStep == 3 }).get
+    val parent = simpleOpenPreconditionPlan modify (flaw.resolver find { case EfficientInsertPlanStepWithLink(_, _, (2, _, _, _, _), _, _, _) => true; case _ => false }).get
+    // computing the resolvers prunes the tables of the parent itself
+    val resolvers = parent.openPreconditions flatMap { _.resolver }
+    parent.causalThreats
+    val parentTables = bitSetTables(parent)
+
+    val children = resolvers.toSeq map { parent modify _ }
+    assert(children.length > 1)
+    // the children share rows with their parent, otherwise this test would be meaningless
+    assert(children exists { child => child.causalLinksPotentialThreater.indices exists { cl => cl < parent.causalLinksPotentialThreater.length &&
+      (child.causalLinksPotentialThreater(cl) eq parent.causalLinksPotentialThreater(cl)) } })
+    assert(children exists { child => parent.potentialSupportersOfPlanStepPreconditions.indices exists { ps =>
+      child.potentialSupportersOfPlanStepPreconditions(ps) eq parent.potentialSupportersOfPlanStepPreconditions(ps) } })
+
+    children foreach { child =>
+      val childTables = bitSetTables(child)
+      // computing the flaws of a child prunes its own tables
+      child.causalThreats
+      changeAllTables(child, 1000)
+      assert(bitSetTables(child) != childTables)
+      assert(bitSetTables(parent) == parentTables)
+    }
+
+    // and the other way round
+    val childTables = children map bitSetTables
+    changeAllTables(parent, 2000)
+    assert(bitSetTables(parent) != parentTables)
+    assert((children map bitSetTables) == childTables)
+  }
 }
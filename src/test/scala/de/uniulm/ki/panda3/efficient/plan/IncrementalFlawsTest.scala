@@ -0,0 +1,111 @@
+// PANDA 3 -- a domain-independent planner for classical and hierarchical planning
+// Copyright (C) 2014-2018 the original author or authors.
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package de.uniulm.ki.panda3.efficient.plan
+
+import java.io.FileInputStream
+
+import de.uniulm.ki.panda3.configuration._
+import de.uniulm.ki.panda3.efficient.Wrapping
+import de.uniulm.ki.panda3.symbolic.search.SearchState
+import org.scalatest.FlatSpec
+
+import scala.collection.mutable
+
+class IncrementalFlawsTest extends FlatSpec {
+
+  val smartPhone: (String, String) = ("src/test/resources/de/uniulm/ki/panda3/symbolic/parser/xml/SmartPhone-HierarchicalNoAxioms.xml",
+    "src/test/resources/de/uniulm/ki/panda3/symbolic/parser/xml/OrganizeMeeting_VeryVerySmall.xml")
+  val satellite : (String, String) = ("src/test/resources/de/uniulm/ki/panda3/symbolic/parser/xml/satellite2.xml",
+    "src/test/resources/de/uniulm/ki/panda3/symbolic/parser/xml/satellite2-P-abstract-2obs-2sat-2mod.xml")
+
+  val preprocessing = PreprocessingConfiguration(compileNegativePreconditions = true, compileUnitMethods = false,
+                                                 compileOrderInMethods = None,
+                                                 compileInitialPlan = false, removeUnnecessaryPredicates = false, removeNoOps = false,
+                                                 convertToSASP = false, allowSASPFromStrips = false, splitIndependentParameters = false,
+                                                 ensureMethodsHaveLastTask = false,
+                                                 ensureMethodsHaveAtMostTwoTasks = false,
+                                                 compileUselessAbstractTasks = false,
+                                                 liftedReachability = true, groundedReachability = Some(PlanningGraphWithMutexes),
+                                                 groundedTaskDecompositionGraph = Some(TwoWayTDG),
+                                                 iterateReachabilityAnalysis = false, groundDomain = true, stopDirectlyAfterGrounding = false)
+
+  def configuration(search: PlanBasedSearch): PlanningConfiguration =
+    PlanningConfiguration(printGeneralInformation = false, printAdditionalData = false, randomSeed = 42, timeLimit = None,
+                          ParsingConfiguration(eliminateEquality = false, stripHybrid = false), preprocessing, search.copy(printSearchInfo = false),
+                          PostprocessingConfiguration(Set(SearchStatus, SearchResult, SearchStatistics)))
+
+  def run(search: PlanBasedSearch, instance: (String, String), checkIncrementalFlaws: Boolean): ResultMap =
+    configuration(search.copy(checkIncrementalFlaws = checkIncrementalFlaws)).runResultSearch(new FileInputStream(instance._1), new FileInputStream(instance._2))
+
+  /** the initial plan of the instance, whose flaws are checked against a full recomputation */
+  def checkedInitialPlan(instance: (String, String)): EfficientPlan = {
+    val config = configuration(PlanBasedSearch(None, BFSType, Nil, Nil, LCFR))
+    val parsed = config.runParsing(new FileInputStream(instance._1), new FileInputStream(instance._2))._1
+    val (processed, _, _) = config.runParsingPostProcessing(parsed._1, parsed._2)
+    val ((domainAndPlan, _), _) = config.runPreprocessing(processed._1, processed._2)
+    val plan = Wrapping(domainAndPlan).unwrap(domainAndPlan._2)
+    plan.copy(problemConfiguration = plan.problemConfiguration.copy(checkIncrementalFlaws = true))(plan.depthPerPlanStep, plan.depthPerCausalLink)
+  }
+
+  /** a copy of the plan that shares all its arrays, but computes its flaws from scratch */
+  def recomputed(plan: EfficientPlan): EfficientPlan = plan.copy()(plan.depthPerPlanStep, plan.depthPerCausalLink)
+
+  def openPreconditions(plan: EfficientPlan): Seq[(Int, Int)] = plan.openPreconditions map { op => (op.planStep, op.preconditionIndex) }
+
+  def abstractPlanSteps(plan: EfficientPlan): Seq[Int] = plan.abstractPlanSteps map { _.planStep }
+
+  Seq(("A*", PlanBasedSearch(None, AStarActionsType(2), NumberOfOpenPreconditions :: Nil, Nil, LCFR), satellite),
+      ("BFS", PlanBasedSearch(None, BFSType, Nil, Nil, LCFR), smartPhone)) foreach { case (name, search, instance) =>
+    "The incrementally computed flaws" must "be the same as the recomputed ones in " + name in {
+      val plain = run(search, instance, checkIncrementalFlaws = false)
+      val checked = run(search, instance, checkIncrementalFlaws = true)
+
+      assert(plain(SearchStatus) == SearchState.SOLUTION)
+      assert(checked(SearchStatus) == SearchState.SOLUTION)
+      assert(checked(SearchStatistics).integerInformation(Information.NUMBER_OF_NODES) == plain(SearchStatistics).integerInformation(Information.NUMBER_OF_NODES))
+    }
+  }
+
+  "The children of a plan" must "compute their own flaws incrementally, even if they modify the shared arrays differently" in {
+    val queue = mutable.Queue(checkedInitialPlan(smartPhone))
+    var numberOfPlans = 0
+    var diverging = 0
+
+    while (queue.nonEmpty && numberOfPlans < 100) {
+      val plan = queue.dequeue()
+      numberOfPlans += 1
+      val planOpenPreconditions = openPreconditions(plan)
+      val planAbstractPlanSteps = abstractPlanSteps(plan)
+
+      plan.flaws foreach { flaw =>
+        // the checks throw an exception if the incrementally computed flaws of a child are wrong
+        val children = flaw.resolver map plan.modify
+        val childFlaws = children map { child => (openPreconditions(child), abstractPlanSteps(child), child.causalThreats.length) }
+        if (childFlaws.distinct.length > 1) diverging += 1
+        children foreach { child => child.flaws; queue enqueue child }
+      }
+
+      // the children have copied every array they changed
+      val parent = recomputed(plan)
+      assert(openPreconditions(parent) == planOpenPreconditions)
+      assert(abstractPlanSteps(parent) == planAbstractPlanSteps)
+    }
+
+    assert(numberOfPlans == 100)
+    assert(diverging > 0)
+  }
+}
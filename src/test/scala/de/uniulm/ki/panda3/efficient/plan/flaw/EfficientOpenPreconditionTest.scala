@@ -76,4 +76,23 @@ class EfficientOpenPreconditionTest extends FlatSpec with HasEfficientExampleDom
     })
 
   }
+
+  it must "be generated lazily in the same order" in {
+    val resolvers = (simpleOpenPreconditionPlan.openPreconditions find { _.planStep == 3 }).get.resolver
+    // a fresh flaw has not computed its resolvers yet
+    val lazyResolvers = EfficientOpenPrecondition(simpleOpenPreconditionPlan, 3, 0).resolverIterator.toArray
+
+    assert(lazyResolvers.length == resolvers.length)
+    assert((lazyResolvers map { _.getClass }) sameElements (resolvers map { _.getClass }))
+    assert((lazyResolvers collect { case EfficientInsertCausalLink(_, _, link, _) => link }) sameElements (resolvers collect { case EfficientInsertCausalLink(_, _, link, _) => link }))
+  }
+
+  "Bounded numbers of modifications" must "be exact up to the bound" in {
+    val flaw = EfficientOpenPrecondition(simpleOpenPreconditionPlan, 3, 0)
+    val estimate = flaw.estimatedNumberOfResolvers
+    assert(estimate >= flaw.resolver.length)
+    assert(flaw.estimatedNumberOfResolversUpTo(estimate) == estimate)
+    assert(flaw.estimatedNumberOfResolversUpTo(Integer.MAX_VALUE) == estimate)
+    Range(0, estimate) foreach { bound => assert(flaw.estimatedNumberOfResolversUpTo(bound) > bound) }
+  }
 }
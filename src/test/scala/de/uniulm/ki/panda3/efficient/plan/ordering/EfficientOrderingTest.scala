@@ -224,24 +224,24 @@ class EfficientOrderingTest extends FlatSpec {
     assert(!ordering.gt(3, 2))
     assert(!ordering.lt(3, 2))
   }
-}
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
 
+  "Derived orderings" must "not change the ordering they are derived from" in {
+    val parent = new EfficientOrdering().addPlanSteps(70)
+    parent.addOrderingConstraint(0, 65)
+    val child = parent.addPlanSteps(2)
+    child.addOrderingConstraint(65, 3)
+    child.addOrderingConstraint(70, 0)
+    parent.addOrderingConstraint(3, 1)
+
+    assert(child.lt(70, 3))
+    assert(!child.lt(3, 1))
+    assert(parent.lt(0, 65))
+    assert(!parent.lt(0, 3))
+    assert(parent.lt(3, 1))
+
+    val removed = child.removePlanStep(1)
+    assert(removed.lt(64, 2))
+    assert(removed.lt(69, 64))
+    assert(removed.numberOfPlanSteps == 71)
+  }
+}
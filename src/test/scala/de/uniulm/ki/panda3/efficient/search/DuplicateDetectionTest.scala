@@ -0,0 +1,67 @@
+// PANDA 3 -- a domain-independent planner for classical and hierarchical planning
+// Copyright (C) 2014-2018 the original author or authors.
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package de.uniulm.ki.panda3.efficient.search
+
+import java.io.FileInputStream
+
+import de.uniulm.ki.panda3.configuration._
+import de.uniulm.ki.panda3.symbolic.search.SearchState
+import org.scalatest.FlatSpec
+
+class DuplicateDetectionTest extends FlatSpec {
+
+  val smartPhone: (String, String) = ("src/test/resources/de/uniulm/ki/panda3/symbolic/parser/xml/SmartPhone-HierarchicalNoAxioms.xml",
+    "src/test/resources/de/uniulm/ki/panda3/symbolic/parser/xml/OrganizeMeeting_VeryVerySmall.xml")
+  val satellite : (String, String) = ("src/test/resources/de/uniulm/ki/panda3/symbolic/parser/xml/satellite2.xml",
+    "src/test/resources/de/uniulm/ki/panda3/symbolic/parser/xml/satellite2-P-abstract-2obs-2sat-2mod.xml")
+
+  val preprocessing = PreprocessingConfiguration(compileNegativePreconditions = true, compileUnitMethods = false,
+                                                 compileOrderInMethods = None,
+                                                 compileInitialPlan = false, removeUnnecessaryPredicates = false, removeNoOps = false,
+                                                 convertToSASP = false, allowSASPFromStrips = false, splitIndependentParameters = false,
+                                                 ensureMethodsHaveLastTask = false,
+                                                 ensureMethodsHaveAtMostTwoTasks = false,
+                                                 compileUselessAbstractTasks = false,
+                                                 liftedReachability = true, groundedReachability = Some(PlanningGraphWithMutexes),
+                                                 groundedTaskDecompositionGraph = Some(TwoWayTDG),
+                                                 iterateReachabilityAnalysis = false, groundDomain = true, stopDirectlyAfterGrounding = false)
+
+  def run(search: PlanBasedSearch, instance: (String, String), duplicateDetection: Boolean): ResultMap = {
+    val config = PlanningConfiguration(printGeneralInformation = false, printAdditionalData = false, randomSeed = 42, timeLimit = None,
+                                       ParsingConfiguration(eliminateEquality = false, stripHybrid = false), preprocessing,
+                                       search.copy(printSearchInfo = false, duplicateDetection = duplicateDetection),
+                                       PostprocessingConfiguration(Set(SearchStatus, SearchResult, SearchStatistics)))
+    config.runResultSearch(new FileInputStream(instance._1), new FileInputStream(instance._2))
+  }
+
+  Seq(("A*", PlanBasedSearch(None, AStarActionsType(2), NumberOfOpenPreconditions :: Nil, Nil, LCFR), satellite),
+      ("A* with two threads", PlanBasedSearch(None, AStarActionsType(2), NumberOfOpenPreconditions :: Nil, Nil, LCFR, threads = 2), satellite),
+      ("BFS", PlanBasedSearch(None, BFSType, Nil, Nil, LCFR), smartPhone)) foreach { case (name, search, instance) =>
+    "The duplicate detection" must "prune plans without losing the solution in " + name in {
+      val plain = run(search, instance, duplicateDetection = false)
+      val pruned = run(search, instance, duplicateDetection = true)
+
+      assert(plain(SearchStatus) == SearchState.SOLUTION)
+      assert(pruned(SearchStatus) == SearchState.SOLUTION)
+      assert(pruned(SearchResult).get.planStepsWithoutInitGoal.length == plain(SearchResult).get.planStepsWithoutInitGoal.length)
+
+      assert(pruned(SearchStatistics).integerInformation(Information.NUMBER_OF_PRUNED_DUPLICATES) > 0)
+      assert(pruned(SearchStatistics).stringInformation(Information.DUPLICATE_PRUNING_RATE).toDouble > 0)
+      assert(pruned(SearchStatistics).integerInformation(Information.NUMBER_OF_NODES) < plain(SearchStatistics).integerInformation(Information.NUMBER_OF_NODES))
+    }
+  }
+}
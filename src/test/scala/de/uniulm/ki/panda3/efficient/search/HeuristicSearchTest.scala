@@ -0,0 +1,96 @@
+// PANDA 3 -- a domain-independent planner for classical and hierarchical planning
+// Copyright (C) 2014-2018 the original author or authors.
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package de.uniulm.ki.panda3.efficient.search
+
+import java.io.FileInputStream
+
+import de.uniulm.ki.panda3.configuration._
+import de.uniulm.ki.panda3.efficient.Wrapping
+import de.uniulm.ki.panda3.efficient.heuristic.{EfficientHeuristic, EfficientNumberOfFlaws, EfficientNumberOfOpenPreconditions, EfficientRandomHeuristic}
+import de.uniulm.ki.panda3.efficient.plan.{EfficientPlan, EfficientPlanFingerprint}
+import de.uniulm.ki.panda3.efficient.plan.flaw.EfficientFlaw
+import de.uniulm.ki.panda3.efficient.search.flawSelector.{EfficientFlawSelector, LeastCostFlawRepair}
+import de.uniulm.ki.util.{InformationCapsule, TimeCapsule}
+import org.scalatest.FlatSpec
+
+import scala.collection.mutable.ArrayBuffer
+import scala.util.Random
+
+class HeuristicSearchTest extends FlatSpec {
+
+  val satellite: (String, String) = ("src/test/resources/de/uniulm/ki/panda3/symbolic/parser/xml/satellite2.xml",
+    "src/test/resources/de/uniulm/ki/panda3/symbolic/parser/xml/satellite2-P-abstract-2obs-2sat-2mod.xml")
+
+  val preprocessing = PreprocessingConfiguration(compileNegativePreconditions = true, compileUnitMethods = false,
+                                                 compileOrderInMethods = None,
+                                                 compileInitialPlan = false, removeUnnecessaryPredicates = false, removeNoOps = false,
+                                                 convertToSASP = false, allowSASPFromStrips = false, splitIndependentParameters = false,
+                                                 ensureMethodsHaveLastTask = false,
+                                                 ensureMethodsHaveAtMostTwoTasks = false,
+                                                 compileUselessAbstractTasks = false,
+                                                 liftedReachability = true, groundedReachability = Some(PlanningGraphWithMutexes),
+                                                 groundedTaskDecompositionGraph = Some(TwoWayTDG),
+                                                 iterateReachabilityAnalysis = false, groundDomain = true, stopDirectlyAfterGrounding = false)
+
+  lazy val wrapper: Wrapping = {
+    val config = PlanningConfiguration(printGeneralInformation = false, printAdditionalData = false, randomSeed = 42, timeLimit = None,
+                                       ParsingConfiguration(eliminateEquality = false, stripHybrid = false), preprocessing,
+                                       PlanBasedSearch(Some(0), BFSType, Nil, Nil, LCFR, printSearchInfo = false),
+                                       PostprocessingConfiguration(Set(PreprocessedDomainAndPlan)))
+    Wrapping(config.runResultSearch(new FileInputStream(satellite._1), new FileInputStream(satellite._2))(PreprocessedDomainAndPlan))
+  }
+
+  /** selects the same flaws as LCFR and records the plans in the order in which they are expanded */
+  class RecordingFlawSelector extends EfficientFlawSelector {
+    val expandedPlans = new ArrayBuffer[EfficientPlanFingerprint]()
+
+    override def needsOnlyMinimalNumberOfModifications: Boolean = LeastCostFlawRepair.needsOnlyMinimalNumberOfModifications
+
+    def selectFlaw(plan: EfficientPlan, flaws: Array[EfficientFlaw], numberOfModifications: Array[Int]): Int = {
+      expandedPlans append plan.fingerprint
+      LeastCostFlawRepair.selectFlaw(plan, flaws, numberOfModifications)
+    }
+  }
+
+  def expandedPlans(threads: Int): (Seq[EfficientPlanFingerprint], Seq[EfficientPlan]) = {
+    val flawSelector = new RecordingFlawSelector
+    val search = HeuristicSearch[Unit](Array[EfficientHeuristic[Unit]](EfficientNumberOfOpenPreconditions, EfficientNumberOfFlaws), 2, Array(), flawSelector,
+                                       addNumberOfPlanSteps = true, addDepth = false, continueOnSolution = false, threads = threads)
+    val timeCapsule = new TimeCapsule()
+    timeCapsule start Timings.TOTAL_TIME
+    val (_, _, result, _) = search.startSearch(wrapper.efficientDomain, wrapper.unwrap(wrapper.initialPlan), None, None, None, printSearchInfo = false,
+                                               buildTree = false, new InformationCapsule(), timeCapsule)
+    val solutions = result(())
+    (flawSelector.expandedPlans, solutions)
+  }
+
+  "The parallel evaluation of children" must "expand the same plans in the same order as the sequential one" in {
+    val (sequentialOrder, sequentialSolutions) = expandedPlans(threads = 1)
+    val (parallelOrder, parallelSolutions) = expandedPlans(threads = 4)
+
+    assert(sequentialSolutions.length == 1)
+    assert(parallelSolutions.length == 1)
+    assert(sequentialOrder.length > 1)
+    assert(parallelOrder == sequentialOrder)
+  }
+
+  it must "only be used with stateless heuristics" in {
+    assert(EfficientNumberOfOpenPreconditions.isStateless)
+    assert(EfficientNumberOfFlaws.isStateless)
+    assert(!EfficientRandomHeuristic(new Random(42)).isStateless)
+  }
+}
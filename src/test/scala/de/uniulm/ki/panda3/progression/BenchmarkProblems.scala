@@ -0,0 +1,80 @@
+// PANDA 3 -- a domain-independent planner for classical and hierarchical planning
+// Copyright (C) 2014-2018 the original author or authors.
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package de.uniulm.ki.panda3.progression
+
+import java.io.FileInputStream
+import java.util
+
+import de.uniulm.ki.panda3.configuration._
+import de.uniulm.ki.panda3.progression.htn.representation.SasPlusProblem
+
+import scala.util.Random
+
+/**
+  * The SAS+ models of some of the test domains and random states on them, shared by the benchmarks of the progression search.
+  */
+object BenchmarkProblems {
+
+  val defaultInstances: Seq[(String, String)] =
+    ("src/test/resources/de/uniulm/ki/panda3/symbolic/parser/xml/SmartPhone-HierarchicalNoAxioms.xml",
+      "src/test/resources/de/uniulm/ki/panda3/symbolic/parser/xml/OrganizeMeeting_VeryVerySmall.xml") ::
+      ("src/test/resources/de/uniulm/ki/panda3/symbolic/parser/xml/satellite2.xml",
+        "src/test/resources/de/uniulm/ki/panda3/symbolic/parser/xml/satellite2-P-abstract-2obs-2sat-2mod.xml") ::
+      ("src/test/resources/de/uniulm/ki/panda3/symbolic/parser/xml/UMTranslog.xml",
+        "src/test/resources/de/uniulm/ki/panda3/symbolic/parser/xml/UMTranslog-P-1-AirplanesHub.xml") ::
+      ("src/test/java/UUBenchmarksets/fromHTN/rover/domains/rover-domain.lisp",
+        "src/test/java/UUBenchmarksets/fromHTN/rover/problems/pfile5") :: Nil
+
+  /** the instances given as pairs of domain and problem on the command line, or the default ones */
+  def instances(args: Seq[String]): Seq[(String, String)] =
+    if (args.isEmpty) defaultInstances else args.grouped(2).map { case Seq(d, p) => (d, p) }.toSeq
+
+  /** the SAS+ model the progression search would use for the problem */
+  def loadSasPlusProblem(domainFile: String, problemFile: String): SasPlusProblem = {
+    val (parsing, preprocessing, search) = PredefinedConfigurations.defaultConfigurations("ICAPS-2018-RC(FF,gastar)")
+    val config = PlanningConfiguration(printGeneralInformation = false, printAdditionalData = false, randomSeed = 42, timeLimit = None,
+                                       parsing, preprocessing, search, PostprocessingConfiguration(Set()))
+    val parsed = config.runParsing(new FileInputStream(domainFile), new FileInputStream(problemFile))._1
+    val (processed, _, _) = config.runParsingPostProcessing(parsed._1, parsed._2)
+    val ((domainAndPlan, _), _) = config.runPreprocessing(processed._1, processed._2)
+    domainAndPlan._1.sasPlusRepresentation.get.sasPlusProblem
+  }
+
+  /** states reached by random walks from the initial state, each with a goal consisting of the facts of a state reached by a further random walk */
+  def randomSamples(p: SasPlusProblem, number: Int, random: Random): Array[(util.BitSet, util.BitSet)] = {
+    def walk(from: util.BitSet, steps: Int): util.BitSet = {
+      val state = from.clone().asInstanceOf[util.BitSet]
+      Range(0, steps) foreach { _ =>
+        val applicable = Range(0, p.numOfOperators) filter { op => p.precLists(op) forall state.get }
+        if (applicable.nonEmpty) {
+          val op = applicable(random.nextInt(applicable.length))
+          p.delLists(op) foreach { f => state.set(f, false) }
+          p.addLists(op) foreach { f => state.set(f, true) }
+        }
+      }
+      state
+    }
+
+    Range(0, number).flatMap { _ =>
+      val state = walk(p.getS0, random.nextInt(20))
+      val goal = walk(state, 5 + random.nextInt(30))
+      // some heuristics remove the facts of the state from the goal, do this beforehand such that the samples can be reused
+      goal.andNot(state)
+      if (goal.isEmpty) None else Some((state, goal))
+    }.toArray
+  }
+}
@@ -0,0 +1,56 @@
+// PANDA 3 -- a domain-independent planner for classical and hierarchical planning
+// Copyright (C) 2014-2018 the original author or authors.
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package de.uniulm.ki.panda3.progression.heuristics.htn.RelaxedComposition
+
+import java.io.FileInputStream
+
+import de.uniulm.ki.panda3.configuration._
+import de.uniulm.ki.panda3.progression.heuristics.sasp.SasHeuristic.SasHeuristics
+import de.uniulm.ki.panda3.progression.htn.search.searchRoutine.PriorityQueueSearch
+import de.uniulm.ki.panda3.symbolic.search.SearchState
+import org.scalatest.FlatSpec
+
+class IncrementalRelaxedCompositionTest extends FlatSpec {
+
+  val domain  = "src/test/resources/de/uniulm/ki/panda3/symbolic/parser/xml/SmartPhone-HierarchicalNoAxioms.xml"
+  val problem = "src/test/resources/de/uniulm/ki/panda3/symbolic/parser/xml/OrganizeMeeting_VeryVerySmall.xml"
+
+  def run(heuristic: HierarchicalHeuristicRelaxedComposition): ResultMap = {
+    val (parsing, preprocessing, _) = PredefinedConfigurations.defaultConfigurations("ICAPS-2018-RC(FF,gastar)")
+    val search = ProgressionSearch(GreedyType, Some(heuristic), PriorityQueueSearch.abstractTaskSelection.random)
+    val config = PlanningConfiguration(printGeneralInformation = false, printAdditionalData = false, randomSeed = 42, timeLimit = None,
+                                       parsing, preprocessing, search, PostprocessingConfiguration(Set(SearchStatus, SearchResult, SearchStatistics)))
+    config.runResultSearch(new FileInputStream(domain), new FileInputStream(problem))
+  }
+
+  "The incremental hAdd" must "compute the same heuristic values as the full computation" in {
+    // the check mode would throw an exception for any difference in the fact costs
+    val incrementalResult = run(HierarchicalHeuristicRelaxedComposition(SasHeuristics.hIncAdd, checkIncrementalComputation = true))
+    val fullResult = run(HierarchicalHeuristicRelaxedComposition(SasHeuristics.hAdd))
+
+    assert(incrementalResult(SearchStatus) == SearchState.SOLUTION)
+    assert(incrementalResult(SearchStatistics).integerInformation(PriorityQueueSearch.NUM_SEARCH_NODES) ==
+             fullResult(SearchStatistics).integerInformation(PriorityQueueSearch.NUM_SEARCH_NODES))
+  }
+
+  Seq(SasHeuristics.hIncFF, SasHeuristics.hIncMax) foreach { heuristic =>
+    "The heuristic " + heuristic must "find a solution with checked incremental computations" in {
+      val result = run(HierarchicalHeuristicRelaxedComposition(heuristic, checkIncrementalComputation = true))
+      assert(result(SearchStatus) == SearchState.SOLUTION)
+    }
+  }
+}
@@ -0,0 +1,81 @@
+// PANDA 3 -- a domain-independent planner for classical and hierarchical planning
+// Copyright (C) 2014-2018 the original author or authors.
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package de.uniulm.ki.panda3.progression.heuristics.sasp.ExplorationQueueBasedHeuristics
+
+import java.lang.management.ManagementFactory
+import java.util
+
+import de.uniulm.ki.panda3.progression.BenchmarkProblems
+import de.uniulm.ki.panda3.progression.heuristics.sasp.SasHeuristic
+import de.uniulm.ki.panda3.progression.heuristics.sasp.SasHeuristic.SasHeuristics
+import de.uniulm.ki.panda3.progression.htn.representation.SasPlusProblem
+
+import scala.util.Random
+
+/**
+  * Measures calls per second and allocated bytes per call of the exploration queue based heuristics on the SAS+ models of some of the test domains.
+  * The heuristics are evaluated on states and goals that are obtained via random walks from the initial state.
+  *
+  * Usage: ExplorationQueueHeuristicsBenchmark [calls per heuristic] [domain problem]*
+  */
+object ExplorationQueueHeuristicsBenchmark {
+
+  val heuristics: Seq[(String, SasPlusProblem => SasHeuristic)] =
+    ("hAdd", { p: SasPlusProblem => new hAddhFFEq(p, SasHeuristics.hAdd) }) ::
+      ("hFF", { p: SasPlusProblem => new hAddhFFEq(p, SasHeuristics.hFF) }) ::
+      ("hMax", { p: SasPlusProblem => new hMaxEq(p) }) ::
+      ("hLmCut", { p: SasPlusProblem => new hLmCutEq(p, false) }) :: Nil
+
+  def main(args: Array[String]): Unit = {
+    val calls = if (args.nonEmpty) args(0).toInt else 20000
+
+    BenchmarkProblems.instances(args.drop(1)) foreach { case (domainFile, problemFile) =>
+      val sasPlus = BenchmarkProblems.loadSasPlusProblem(domainFile, problemFile)
+      val samples = BenchmarkProblems.randomSamples(sasPlus, 500, new Random(42))
+      println(problemFile + ": " + sasPlus.numOfStateFeatures + " facts, " + sasPlus.numOfOperators + " operators, " + samples.length + " samples")
+
+      // LM-cut needs a precondition for every operator (which the relaxed composition encoding ensures)
+      val applicableHeuristics = if (sasPlus.numPrecs contains 0) heuristics filterNot { _._1 == "hLmCut" } else heuristics
+      applicableHeuristics foreach { case (name, create) =>
+        val heuristic = create(sasPlus)
+        // warm up
+        run(heuristic, samples, calls / 2)
+
+        val threadBean = ManagementFactory.getThreadMXBean.asInstanceOf[com.sun.management.ThreadMXBean]
+        val threadId = Thread.currentThread().getId
+        val bytesBefore = threadBean.getThreadAllocatedBytes(threadId)
+        val time = System.nanoTime()
+        val checksum = run(heuristic, samples, calls)
+        val duration = System.nanoTime() - time
+        val bytes = threadBean.getThreadAllocatedBytes(threadId) - bytesBefore
+
+        println("\t%-8s %10d calls/sec %10d bytes/call   (checksum %d)".format(name, (calls / (duration / 1e9)).toLong, bytes / calls, checksum))
+      }
+    }
+  }
+
+  private def run(heuristic: SasHeuristic, samples: Array[(util.BitSet, util.BitSet)], calls: Int): Long = {
+    var checksum = 0L
+    var i = 0
+    while (i < calls) {
+      val (state, goal) = samples(i % samples.length)
+      checksum += heuristic.calcHeu(state, goal)
+      i += 1
+    }
+    checksum
+  }
+}
@@ -0,0 +1,92 @@
+// PANDA 3 -- a domain-independent planner for classical and hierarchical planning
+// Copyright (C) 2014-2018 the original author or authors.
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package de.uniulm.ki.panda3.progression.htn
+
+import java.io.FileInputStream
+import java.util.concurrent.{Callable, Executors, TimeUnit}
+
+import scala.collection.JavaConversions
+
+import de.uniulm.ki.panda3.configuration._
+import de.uniulm.ki.panda3.progression.htn.search.searchRoutine.PriorityQueueSearch
+import de.uniulm.ki.panda3.symbolic.domain.SimpleDecompositionMethod
+import de.uniulm.ki.panda3.symbolic.search.SearchState
+import org.scalatest.FlatSpec
+
+class ProPlanningInstanceTest extends FlatSpec {
+
+  val instances: Seq[(String, String)] =
+    ("src/test/resources/de/uniulm/ki/panda3/symbolic/parser/xml/SmartPhone-HierarchicalNoAxioms.xml",
+      "src/test/resources/de/uniulm/ki/panda3/symbolic/parser/xml/OrganizeMeeting_VeryVerySmall.xml") ::
+      ("src/test/resources/de/uniulm/ki/panda3/symbolic/parser/xml/satellite2.xml",
+        "src/test/resources/de/uniulm/ki/panda3/symbolic/parser/xml/satellite2-P-abstract-2obs-2sat-2mod.xml") :: Nil
+
+  def run(domain: String, problem: String): (SearchState, Int, Int) = {
+    val (parsing, preprocessing, search) = PredefinedConfigurations.defaultConfigurations("ICAPS-2018-RC(FF,gastar)")
+    val config = PlanningConfiguration(printGeneralInformation = false, printAdditionalData = false, randomSeed = 42, timeLimit = None,
+                                       parsing, preprocessing, search, PostprocessingConfiguration(Set(SearchStatus, SearchResult, SearchStatistics)))
+    val result = config.runResultSearch(new FileInputStream(domain), new FileInputStream(problem))
+    (result(SearchStatus), result(SearchResult).get.planStepsWithoutInitGoal.length, result(SearchStatistics).integerInformation(PriorityQueueSearch.NUM_SEARCH_NODES))
+  }
+
+  "The progression search" must "solve two problems concurrently like it solves them one after another" in {
+    val sequential = instances map { case (domain, problem) => run(domain, problem) }
+    sequential foreach { case (status, _, _) => assert(status == SearchState.SOLUTION) }
+
+    val pool = Executors.newFixedThreadPool(instances.length)
+    try {
+      // run every problem twice, so that both problems are planned for at the same time
+      val futures = instances ++ instances map { case (domain, problem) => pool.submit(new Callable[(SearchState, Int, Int)] {
+        override def call(): (SearchState, Int, Int) = run(domain, problem)
+      })
+      }
+      val concurrent = futures map { _.get(5, TimeUnit.MINUTES) }
+      assert(concurrent == sequential ++ sequential)
+    } finally {
+      pool.shutdownNow()
+    }
+  }
+
+  it must "not change the flat problem of the domain when reducing it" in {
+    val (parsing, preprocessing, search) = PredefinedConfigurations.defaultConfigurations("ICAPS-2018-RC(FF,gastar)")
+    val config = PlanningConfiguration(printGeneralInformation = false, printAdditionalData = false, randomSeed = 42, timeLimit = None,
+                                       parsing, preprocessing, search, PostprocessingConfiguration(Set(SearchStatus)))
+    val ((parsedDomain, parsedPlan), _) = config.runParsing(new FileInputStream(instances.last._1), new FileInputStream(instances.last._2))
+    val ((fullyParsedDomain, fullyParsedPlan), _, _) = config.runParsingPostProcessing(parsedDomain, parsedPlan)
+    val (((d, p), _), _) = config.runPreprocessing(fullyParsedDomain, fullyParsedPlan)
+    val methods = JavaConversions.mapAsJavaMap(d.methodsForAbstractTasks map { case (at, ms) =>
+      at -> JavaConversions.setAsJavaSet(ms collect { case s: SimpleDecompositionMethod => s } toSet)
+    })
+
+    val flatProblem = d.sasPlusRepresentation.get.sasPlusProblem
+    val operators = flatProblem.numOfOperators
+    val stateFeatures = flatProblem.numOfStateFeatures
+    val precLists = flatProblem.precLists map { _.toSeq } toSeq
+
+    // the second call has to see the same unreduced problem as the first one
+    val first = new ProPlanningInstance().createInitialNode(d, p, methods, 42)
+    val second = new ProPlanningInstance().createInitialNode(d, p, methods, 42)
+
+    assert(flatProblem.numOfOperators == operators)
+    assert(flatProblem.numOfStateFeatures == stateFeatures)
+    assert((flatProblem.precLists map { _.toSeq } toSeq) == precLists)
+    assert(!(first.context.flatProblem eq flatProblem))
+    assert(first.context.flatProblem.numOfOperators == second.context.flatProblem.numOfOperators)
+    assert(first.context.flatProblem.numOfStateFeatures == second.context.flatProblem.numOfStateFeatures)
+    assert(first.context.flatProblem.numOfOperators < operators)
+  }
+}
@@ -0,0 +1,93 @@
+// PANDA 3 -- a domain-independent planner for classical and hierarchical planning
+// Copyright (C) 2014-2018 the original author or authors.
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package de.uniulm.ki.panda3.progression.htn.search
+
+import java.io.FileInputStream
+import java.util
+
+import de.uniulm.ki.panda3.configuration._
+import de.uniulm.ki.panda3.progression.htn.representation.SasPlusProblem
+import org.scalatest.FlatSpec
+
+import scala.util.Random
+
+class PackedStateSpaceTest extends FlatSpec {
+
+  val domain  = "src/test/resources/de/uniulm/ki/panda3/symbolic/parser/xml/satellite2.xml"
+  val problem = "src/test/resources/de/uniulm/ki/panda3/symbolic/parser/xml/satellite2-P-abstract-2obs-2sat-2mod.xml"
+
+  lazy val sasPlus: SasPlusProblem = {
+    val (parsing, preprocessing, search) = PredefinedConfigurations.defaultConfigurations("ICAPS-2018-RC(FF,gastar)")
+    val config = PlanningConfiguration(printGeneralInformation = false, printAdditionalData = false, randomSeed = 42, timeLimit = None,
+                                       parsing, preprocessing, search, PostprocessingConfiguration(Set()))
+    val parsed = config.runParsing(new FileInputStream(domain), new FileInputStream(problem))._1
+    val (processed, _, _) = config.runParsingPostProcessing(parsed._1, parsed._2)
+    val ((domainAndPlan, _), _) = config.runPreprocessing(processed._1, processed._2)
+    domainAndPlan._1.sasPlusRepresentation.get.sasPlusProblem
+  }
+
+  "Packed states" must "behave like bit sets on random walks" in {
+    val p = sasPlus
+    val space = new PackedStateSpace(p, 42)
+    val random = new Random(42)
+
+    Range(0, 50) foreach { _ =>
+      val bitSet = p.getS0
+      var state = space.create(bitSet)
+      Range(0, 30) foreach { _ =>
+        Range(0, p.numOfOperators) foreach { a => assert(space.isApplicable(state, a) == (p.precLists(a) forall bitSet.get)) }
+        val applicable = Range(0, p.numOfOperators) filter { a => space.isApplicable(state, a) }
+        if (applicable.nonEmpty) {
+          val a = applicable(random.nextInt(applicable.length))
+          p.delLists(a) foreach { f => bitSet.set(f, false) }
+          p.addLists(a) foreach { f => bitSet.set(f, true) }
+          state = space.apply(state, a)
+        }
+
+        assert(state.toBitSet == bitSet)
+        assert(state.cardinality() == bitSet.cardinality())
+        val viaOr = new util.BitSet()
+        state.orInto(viaOr)
+        assert(viaOr == bitSet)
+        assert(Iterator.iterate(state.nextSetBit(0))(f => state.nextSetBit(f + 1)).takeWhile(_ >= 0).toSeq ==
+                 Iterator.iterate(bitSet.nextSetBit(0))(f => bitSet.nextSetBit(f + 1)).takeWhile(_ >= 0).toSeq)
+
+        // the incrementally maintained hashes are the ones of a newly created state
+        val fresh = space.create(bitSet)
+        assert(fresh == state)
+        assert(fresh.zobristHash() == state.zobristHash())
+        assert(fresh.zobristHash2() == state.zobristHash2())
+      }
+    }
+  }
+
+  "The successor generator" must "find exactly the applicable actions on random walks" in {
+    val p = sasPlus
+    val space = new PackedStateSpace(p, 42)
+    val random = new Random(42)
+
+    Range(0, 50) foreach { _ =>
+      var state = space.create(p.getS0)
+      Range(0, 30) foreach { _ =>
+        val viaGenerator = space.applicableActions(state)
+        val applicable = Range(0, p.numOfOperators) filter { a => space.isApplicable(state, a) }
+        Range(0, p.numOfOperators) foreach { a => assert(((viaGenerator(a >>> 6) & (1L << a)) != 0) == applicable.contains(a)) }
+        if (applicable.nonEmpty) state = space.apply(state, applicable(random.nextInt(applicable.length)))
+      }
+    }
+  }
+}
@@ -0,0 +1,104 @@
+// PANDA 3 -- a domain-independent planner for classical and hierarchical planning
+// Copyright (C) 2014-2018 the original author or authors.
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+
+package de.uniulm.ki.panda3.progression.htn.search
+
+import de.uniulm.ki.panda3.progression.BenchmarkProblems
+
+import scala.util.Random
+
+/**
+  * Compares testing the first primitive tasks of a search node one by one against the packed state with querying the successor generator once per node.
+  * The frontiers consist of random actions, the states are obtained via random walks from the initial state.
+  *
+  * Usage: SuccessorGeneratorBenchmark [rounds] [domain problem]*
+  */
+object SuccessorGeneratorBenchmark {
+
+  val frontierSizes: Seq[Int] = 1 :: 2 :: 4 :: 8 :: 16 :: 32 :: 64 :: 128 :: 256 :: Nil
+
+  def main(args: Array[String]): Unit = {
+    val rounds = if (args.nonEmpty) args(0).toInt else 200
+
+    BenchmarkProblems.instances(args.drop(1)) foreach { case (domainFile, problemFile) =>
+      val sasPlus = BenchmarkProblems.loadSasPlusProblem(domainFile, problemFile)
+      val space = new PackedStateSpace(sasPlus, 42)
+      val random = new Random(42)
+      val states = BenchmarkProblems.randomSamples(sasPlus, 500, random) map { case (s, _) => space.create(s) }
+      println(problemFile + ": " + sasPlus.numOfStateFeatures + " facts, " + sasPlus.numOfOperators + " operators, " +
+                space.getSuccessorGenerator.numNodes() + " generator nodes")
+
+      frontierSizes foreach { size =>
+        val frontiers = states map { _ => Array.fill(size)(random.nextInt(sasPlus.numOfOperators)) }
+        // warm up
+        direct(space, states, frontiers, rounds / 2)
+        generator(space, states, frontiers, rounds / 2)
+
+        val directTime = System.nanoTime()
+        val directChecksum = direct(space, states, frontiers, rounds)
+        val directDuration = System.nanoTime() - directTime
+        val generatorTime = System.nanoTime()
+        val generatorChecksum = generator(space, states, frontiers, rounds)
+        val generatorDuration = System.nanoTime() - generatorTime
+        assert(directChecksum == generatorChecksum)
+
+        val nodes = rounds.toLong * states.length
+        println("\tfrontier %4d: direct %6d ns/node, successor generator %6d ns/node, generator preferred: %-5s   (applicable %d)".format(
+          size, directDuration / nodes, generatorDuration / nodes, space.prefersSuccessorGenerator(size), directChecksum / rounds))
+      }
+    }
+  }
+
+  private def direct(space: PackedStateSpace, states: Array[PackedState], frontiers: Array[Array[Int]], rounds: Int): Long = {
+    var applicable = 0L
+    var r = 0
+    while (r < rounds) {
+      var i = 0
+      while (i < states.length) {
+        val frontier = frontiers(i)
+        var j = 0
+        while (j < frontier.length) {
+          if (space.isApplicable(states(i), frontier(j))) applicable += 1
+          j += 1
+        }
+        i += 1
+      }
+      r += 1
+    }
+    applicable
+  }
+
+  private def generator(space: PackedStateSpace, states: Array[PackedState], frontiers: Array[Array[Int]], rounds: Int): Long = {
+    var applicable = 0L
+    var r = 0
+    while (r < rounds) {
+      var i = 0
+      while (i < states.length) {
+        val frontier = frontiers(i)
+        val actions = space.applicableActions(states(i))
+        var j = 0
+        while (j < frontier.length) {
+          if ((actions(frontier(j) >>> 6) & (1L << frontier(j))) != 0) applicable += 1
+          j += 1
+        }
+        i += 1
+      }
+      r += 1
+    }
+    applicable
+  }
+}
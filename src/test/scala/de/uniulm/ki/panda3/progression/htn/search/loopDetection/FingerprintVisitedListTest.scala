@@ -0,0 +1,95 @@
+// PANDA 3 -- a domain-independent planner for classical and hierarchical planning
+// Copyright (C) 2014-2018 the original author or authors.
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package de.uniulm.ki.panda3.progression.htn.search.loopDetection
+
+import java.io.FileInputStream
+import java.util
+
+import scala.collection.JavaConversions
+import scala.collection.JavaConverters._
+import scala.collection.mutable
+
+import de.uniulm.ki.panda3.configuration._
+import de.uniulm.ki.panda3.progression.htn.ProPlanningInstance
+import de.uniulm.ki.panda3.progression.htn.search.{ProgressionNetwork, ProgressionPlanStep}
+import de.uniulm.ki.panda3.symbolic.domain.SimpleDecompositionMethod
+import org.scalatest.FlatSpec
+
+class FingerprintVisitedListTest extends FlatSpec {
+
+  val domain  = "src/test/resources/de/uniulm/ki/panda3/symbolic/parser/xml/SmartPhone-HierarchicalNoAxioms.xml"
+  val problem = "src/test/resources/de/uniulm/ki/panda3/symbolic/parser/xml/OrganizeMeeting_VeryVerySmall.xml"
+
+  lazy val initialNode: ProgressionNetwork = {
+    val (parsing, preprocessing, search) = PredefinedConfigurations.defaultConfigurations("ICAPS-2018-RC(FF,gastar)")
+    val configuration = PlanningConfiguration(printGeneralInformation = false, printAdditionalData = false, randomSeed = 42, timeLimit = None,
+                                              parsing, preprocessing, search, PostprocessingConfiguration(Set(SearchStatus)))
+    val ((parsedDomain, parsedPlan), _) = configuration.runParsing(new FileInputStream(domain), new FileInputStream(problem))
+    val ((fullyParsedDomain, fullyParsedPlan), _, _) = configuration.runParsingPostProcessing(parsedDomain, parsedPlan)
+    val (((d, p), _), _) = configuration.runPreprocessing(fullyParsedDomain, fullyParsedPlan)
+    val methods = d.methodsForAbstractTasks map { case (at, ms) => at -> JavaConversions.setAsJavaSet(ms collect { case s: SimpleDecompositionMethod => s } toSet) }
+
+    new ProPlanningInstance().createInitialNode(d, p, JavaConversions.mapAsJavaMap(methods), 42)
+  }
+
+  /** generates the first networks of the search space in breadth first order, including all duplicates */
+  lazy val networks: Seq[ProgressionNetwork] = {
+    val generated = mutable.ArrayBuffer(initialNode)
+    var next = 0
+    while (next < generated.length && generated.length < 2000) {
+      val n = generated(next)
+      n.getFirstPrimitiveTasks.asScala filter { ps => n.isApplicable(ps.action) } foreach { ps => generated append n.apply(ps) }
+      n.getFirstAbstractTasks.asScala foreach { abs => abs.methods.asScala foreach { m => generated append n.decompose(abs, m) } }
+      next += 1
+    }
+    generated
+  }
+
+  "The fingerprint visited list" must "detect the same duplicates as the exact one" in {
+    val exact = new FingerprintVisitedList(true)
+    val fingerprint = new FingerprintVisitedList(false)
+
+    networks foreach { n => assert(exact.addIfNotIn(n) == fingerprint.addIfNotIn(n)) }
+    assert(exact.getNumHits > 0)
+    assert(exact.getNumHits == fingerprint.getNumHits)
+    assert(exact.size == fingerprint.size)
+    assert(exact.getNumCollisions == 0)
+  }
+
+  it must "handle very deep networks" in {
+    val steps = networks flatMap { n => n.getFirstPrimitiveTasks.asScala ++ n.getFirstAbstractTasks.asScala }
+    val first = steps.head
+    val other = (steps find { _.taskIndex != first.taskIndex }).get
+
+    // a chain of copies of the first step, whose last step can be replaced by the other one
+    def chain(length: Int, last: ProgressionPlanStep): ProgressionNetwork = {
+      val chainSteps = Array.fill(length - 1) { new ProgressionPlanStep(first.getTask, first.taskIndex) } :+
+        new ProgressionPlanStep(last.getTask, last.taskIndex)
+      chainSteps.sliding(2) foreach { case Array(before, after) => before.successorList.add(after) }
+      new ProgressionNetwork(initialNode.context, new util.BitSet(), util.Arrays.asList(chainSteps.head))
+    }
+
+    Seq(true, false) foreach { exactCheck =>
+      val visited = new FingerprintVisitedList(exactCheck)
+      assert(!visited.addIfNotIn(chain(100000, first)))
+      assert(visited.addIfNotIn(chain(100000, first)))
+      assert(!visited.addIfNotIn(chain(100000, other)))
+      assert(!visited.addIfNotIn(chain(99999, first)))
+      assert(visited.size == 3)
+    }
+  }
+}
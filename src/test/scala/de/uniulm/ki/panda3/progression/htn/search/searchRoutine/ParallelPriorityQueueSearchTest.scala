@@ -0,0 +1,124 @@
+// PANDA 3 -- a domain-independent planner for classical and hierarchical planning
+// Copyright (C) 2014-2018 the original author or authors.
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package de.uniulm.ki.panda3.progression.htn.search.searchRoutine
+
+import java.io.FileInputStream
+
+import scala.collection.JavaConversions
+import scala.collection.JavaConverters._
+import scala.collection.mutable
+
+import de.uniulm.ki.panda3.configuration._
+import de.uniulm.ki.panda3.progression.heuristics.htn.GroundedProgressionHeuristic
+import de.uniulm.ki.panda3.progression.heuristics.sasp.SasHeuristic.SasHeuristics
+import de.uniulm.ki.panda3.progression.htn.ProPlanningInstance
+import de.uniulm.ki.panda3.progression.htn.search.ProgressionNetwork
+import de.uniulm.ki.panda3.symbolic.domain.SimpleDecompositionMethod
+import de.uniulm.ki.panda3.symbolic.search.SearchState
+import org.scalatest.FlatSpec
+
+class ParallelPriorityQueueSearchTest extends FlatSpec {
+
+  val domain  = "src/test/resources/de/uniulm/ki/panda3/symbolic/parser/xml/SmartPhone-HierarchicalNoAxioms.xml"
+  val problem = "src/test/resources/de/uniulm/ki/panda3/symbolic/parser/xml/OrganizeMeeting_VeryVerySmall.xml"
+
+  val heuristics: Seq[SearchHeuristic] = TDGLandmarkCount :: HierarchicalHeuristicRelaxedComposition(SasHeuristics.hFF) ::
+    HierarchicalHeuristicRelaxedComposition(SasHeuristics.hIncFF) :: HierarchicalHeuristicRelaxedComposition(SasHeuristics.hIncLmCut) :: Nil
+
+  def config(search: SearchConfiguration): PlanningConfiguration = {
+    val (parsing, preprocessing, _) = PredefinedConfigurations.defaultConfigurations("ICAPS-2018-RC(FF,gastar)")
+    PlanningConfiguration(printGeneralInformation = false, printAdditionalData = false, randomSeed = 42, timeLimit = None,
+                          parsing, preprocessing, search, PostprocessingConfiguration(Set(SearchStatus, SearchResult, SearchStatistics)))
+  }
+
+  /** the initial search node of the problem, whose heuristic has been built */
+  def initialNode(heuristic: SearchHeuristic): ProgressionNetwork = {
+    val configuration = config(ProgressionSearch(GreedyType, Some(heuristic), PriorityQueueSearch.abstractTaskSelection.random))
+    val ((parsedDomain, parsedPlan), _) = configuration.runParsing(new FileInputStream(domain), new FileInputStream(problem))
+    val ((fullyParsedDomain, fullyParsedPlan), _, _) = configuration.runParsingPostProcessing(parsedDomain, parsedPlan)
+    val (((d, p), _), _) = configuration.runPreprocessing(fullyParsedDomain, fullyParsedPlan)
+    val methods = d.methodsForAbstractTasks map { case (at, ms) => at -> JavaConversions.setAsJavaSet(ms collect { case s: SimpleDecompositionMethod => s } toSet) }
+
+    val instance = new ProPlanningInstance()
+    val node = instance.createInitialNode(d, p, JavaConversions.mapAsJavaMap(methods), 42)
+    node.heuristic = instance.createHeuristic(heuristic, node)
+    node.heuristic.build(node)
+    node
+  }
+
+  /**
+    * Expands the first nodes in breadth first order and returns the heuristic values of their successors (-1 for dead ends). The successors of the i-th
+    * expanded node are evaluated by worker(i) if it is defined, and by the heuristic of their parent otherwise.
+    */
+  def heuristicValues(root: ProgressionNetwork, worker: Int => Option[GroundedProgressionHeuristic]): Seq[Int] = {
+    val values = new mutable.ArrayBuffer[Int]()
+    val queue = mutable.Queue(root)
+    var expanded = 0
+
+    def evaluate(child: ProgressionNetwork, heuristic: GroundedProgressionHeuristic): Unit = {
+      child.heuristic = heuristic
+      // the value has to be read now, the non-incremental heuristics reuse their objects
+      if (heuristic.goalRelaxedReachable()) {
+        values append heuristic.getHeuristic
+        queue enqueue child
+      } else values append -1
+    }
+
+    while (queue.nonEmpty && expanded < 200) {
+      val n = queue.dequeue()
+      val w = worker(expanded)
+      n.getFirstPrimitiveTasks.asScala filter { ps => n.isApplicable(ps.action) } foreach { ps =>
+        val child = n.apply(ps)
+        evaluate(child, w map { _.update(n.heuristic, child, ps) } getOrElse n.heuristic.update(child, ps))
+      }
+      if (!n.getFirstAbstractTasks.isEmpty) {
+        val oneAbs = n.getFirstAbstractTasks.get(0)
+        oneAbs.methods.asScala foreach { m =>
+          val child = n.decompose(oneAbs, m)
+          evaluate(child, w map { _.update(n.heuristic, child, oneAbs, m) } getOrElse n.heuristic.update(child, oneAbs, m))
+        }
+      }
+      expanded += 1
+    }
+    values
+  }
+
+  heuristics foreach { heuristic =>
+    "The worker copies of the heuristic " + heuristic.longInfo must "compute the same values as the heuristics of the parent nodes" in {
+      val root = initialNode(heuristic)
+      val sequential = heuristicValues(root, _ => None)
+
+      // the parents are spread over three workers like in the parallel search, the first one uses the heuristic of the initial node
+      val workers = root.heuristic +: (1 until 3 map { _ => root.heuristic.copyForWorker() })
+      val parallel = heuristicValues(root, i => Some(workers(i % workers.length)))
+
+      assert(sequential.nonEmpty)
+      assert(sequential == parallel)
+    }
+  }
+
+  Seq(GreedyType, AStarActionsType(1)) foreach { algorithm =>
+    "The parallel search" must "solve the problem like the sequential one with " + algorithm.longInfo in {
+      val results = Seq(1, 4) map { threads =>
+        config(ProgressionSearch(algorithm, Some(HierarchicalHeuristicRelaxedComposition(SasHeuristics.hIncFF)), PriorityQueueSearch.abstractTaskSelection.random,
+                                 threads = threads)).runResultSearch(new FileInputStream(domain), new FileInputStream(problem))
+      }
+      results foreach { result => assert(result(SearchStatus) == SearchState.SOLUTION) }
+      assert(results(1)(SearchStatistics).integerInformation(ParallelPriorityQueueSearch.NUM_WORKERS) == 4)
+    }
+  }
+}
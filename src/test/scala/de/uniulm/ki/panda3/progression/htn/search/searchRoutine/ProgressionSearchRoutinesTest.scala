@@ -0,0 +1,140 @@
+// PANDA 3 -- a domain-independent planner for classical and hierarchical planning
+// Copyright (C) 2014-2018 the original author or authors.
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package de.uniulm.ki.panda3.progression.htn.search.searchRoutine
+
+import java.io.FileInputStream
+
+import scala.collection.mutable.ArrayBuffer
+
+import de.uniulm.ki.panda3.configuration._
+import de.uniulm.ki.panda3.progression.heuristics.sasp.SasHeuristic.SasHeuristics
+import de.uniulm.ki.panda3.symbolic.domain.Task
+import de.uniulm.ki.panda3.symbolic.search.SearchState
+import org.scalatest.FlatSpec
+
+class ProgressionSearchRoutinesTest extends FlatSpec {
+
+  val instances: Seq[(String, String)] =
+    ("src/test/resources/de/uniulm/ki/panda3/symbolic/parser/xml/SmartPhone-HierarchicalNoAxioms.xml",
+      "src/test/resources/de/uniulm/ki/panda3/symbolic/parser/xml/OrganizeMeeting_VeryVerySmall.xml") ::
+      ("src/test/resources/de/uniulm/ki/panda3/symbolic/parser/xml/satellite2.xml",
+        "src/test/resources/de/uniulm/ki/panda3/symbolic/parser/xml/satellite2-P-abstract-2obs-2sat-2mod.xml") :: Nil
+
+  def run(algorithm: SearchAlgorithmType, domain: String, problem: String, heuristic: SasHeuristics = SasHeuristics.hFF, anytime: Boolean = false,
+          modify: ProgressionSearch => ProgressionSearch = identity): ResultMap = {
+    val (parsing, preprocessing, _) = PredefinedConfigurations.defaultConfigurations("ICAPS-2018-RC(FF,gastar)")
+    val search = modify(ProgressionSearch(algorithm, Some(HierarchicalHeuristicRelaxedComposition(heuristic)), PriorityQueueSearch.abstractTaskSelection.random, anytime = anytime))
+    val config = PlanningConfiguration(printGeneralInformation = false, printAdditionalData = false, randomSeed = 42, timeLimit = None,
+                                       parsing, preprocessing, search, PostprocessingConfiguration(Set(SearchStatus, SearchResult, SearchStatistics)))
+    config.runResultSearch(new FileInputStream(domain), new FileInputStream(problem))
+  }
+
+  "The search algorithm parser" must "know the progression search routines" in {
+    assert(SearchAlgorithmType.parse("lazy-greedy") == LazyGreedyType)
+    assert(SearchAlgorithmType.parse("ehc") == EnforcedHillClimbingType(EnforcedHillClimbingType.DEFAULT_RESTARTS, complete = false))
+    assert(SearchAlgorithmType.parse("ehc(3)") == EnforcedHillClimbingType(3, complete = false))
+    assert(SearchAlgorithmType.parse("complete-ehc(0)") == EnforcedHillClimbingType(0, complete = true))
+  }
+
+  Seq(LazyGreedyType, EnforcedHillClimbingType(EnforcedHillClimbingType.DEFAULT_RESTARTS, complete = true), EnforcedHillClimbingType(0, complete = true)) foreach { algorithm =>
+    instances foreach { case (domain, problem) =>
+      "The " + algorithm.longInfo must "find a solution for " + problem in {
+        val result = run(algorithm, domain, problem)
+        assert(result(SearchStatus) == SearchState.SOLUTION)
+        assert(result(SearchResult).isDefined)
+        assert(result(SearchStatistics).integerInformation(PriorityQueueSearch.NUM_EVALUATIONS) > 0)
+      }
+    }
+  }
+
+  "The enforced hill climbing" must "find a solution for " + instances.head._2 in {
+    val result = run(EnforcedHillClimbingType(EnforcedHillClimbingType.DEFAULT_RESTARTS, complete = false), instances.head._1, instances.head._2)
+    assert(result(SearchStatus) == SearchState.SOLUTION)
+  }
+
+  it must "fail if the initial network turns out to be a dead end" in {
+    // T can be decomposed into "a T", which leads back to the initial network, or into "c1 c2", which is a dead end
+    val (parsing, preprocessing, _) = PredefinedConfigurations.defaultConfigurations("ICAPS-2018-RC(FF,gastar)")
+    val search = ProgressionSearch(EnforcedHillClimbingType(EnforcedHillClimbingType.DEFAULT_RESTARTS, complete = false),
+                                   Some(HierarchicalHeuristicRelaxedComposition(SasHeuristics.hFF)), PriorityQueueSearch.abstractTaskSelection.random)
+    val config = PlanningConfiguration(printGeneralInformation = false, printAdditionalData = false, randomSeed = 42, timeLimit = None,
+                                       parsing, preprocessing.copy(compileInitialPlan = false), search,
+                                       PostprocessingConfiguration(Set(SearchStatus, SearchResult, SearchStatistics)))
+    val result = config.runResultSearch(new FileInputStream("src/test/resources/de/uniulm/ki/panda3/progression/loopDomain.hddl"),
+                                        new FileInputStream("src/test/resources/de/uniulm/ki/panda3/progression/loopProblem.hddl"))
+    assert(result(SearchStatus) != SearchState.SOLUTION)
+    assert(result(SearchResult).isEmpty)
+    assert(result(SearchStatistics).integerInformation(EnforcedHillClimbing.RESTARTS) > 0)
+  }
+
+  instances foreach { case (domain, problem) =>
+    "The complete enforced hill climbing" must "find a solution for " + problem + " when pruning with helpful actions" in {
+      assert(SearchHeuristic.parse("hhrc(h=ff-ha)") == HierarchicalHeuristicRelaxedComposition(SasHeuristics.hFFwithHA) :: Nil)
+      val result = run(EnforcedHillClimbingType(EnforcedHillClimbingType.DEFAULT_RESTARTS, complete = true), domain, problem, SasHeuristics.hFFwithHA)
+      assert(result(SearchStatus) == SearchState.SOLUTION)
+    }
+  }
+
+  instances foreach { case (domain, problem) =>
+    "The anytime search" must "find a solution for " + problem + " and run all weighted A* phases" in {
+      val plain = run(GreedyType, domain, problem)
+      val result = run(GreedyType, domain, problem, anytime = true)
+      assert(result(SearchStatus) == SearchState.SOLUTION)
+      assert(result(SearchResult).isDefined)
+      assert(result(SearchStatistics).integerInformation(PriorityQueueSearch.ANYTIME_PHASES) == 4)
+      assert(result(SearchStatistics).integerInformation(PriorityQueueSearch.ANYTIME_LAST_WEIGHT) == 1)
+      // the solution can only get better
+      assert(result(SearchResult).get.planSteps.length <= plain(SearchResult).get.planSteps.length)
+    }
+  }
+
+  "The anytime search" must "pass every improved plan to the solution listener" in {
+    val plans = new ArrayBuffer[Seq[Task]]()
+    val result = run(GreedyType, instances.last._1, instances.last._2, anytime = true, modify = _.copy(solutionListener = Some((plan: Seq[Task]) => plans append plan)))
+    assert(result(SearchStatus) == SearchState.SOLUTION)
+    assert(plans.nonEmpty)
+    plans zip plans.tail foreach { case (before, after) => assert(after.length < before.length) }
+    assert(plans.last.length == result(SearchResult).get.planStepsWithoutInitGoal.length)
+  }
+
+  instances foreach { case (domain, problem) =>
+    "The multi-queue open list" must "find a solution for " + problem + " with the relaxed composition and the TDG landmark count" in {
+      val result = run(GreedyType, domain, problem, SasHeuristics.hFFwithHA, modify = _.copy(additionalHeuristics = TDGLandmarkCount :: Nil, alternationWeights = 2 :: 1 :: Nil))
+      assert(result(SearchStatus) == SearchState.SOLUTION)
+      assert(result(SearchResult).isDefined)
+      assert(result(SearchStatistics).integerInformation contains PriorityQueueSearch.OPEN_LIST_BOOSTS)
+    }
+  }
+
+  "The multi-queue open list" must "find a solution with a single queue and preferred queues" in {
+    val result = run(GreedyType, instances.last._1, instances.last._2, SasHeuristics.hFFwithHA, modify = _.copy(openList = PriorityQueueSearch.openListType.alternation))
+    assert(result(SearchStatus) == SearchState.SOLUTION)
+  }
+
+  "The search configuration parser" must "know the additional heuristics and alternation weights" in {
+    val search = ProgressionSearch(GreedyType, Some(HierarchicalHeuristicRelaxedComposition(SasHeuristics.hFF)), PriorityQueueSearch.abstractTaskSelection.random)
+    val modified = search.modifyOnOptionString("-additionalHeuristics")._2(Some("tdg-lmc")).modifyOnOptionString("-alternationWeights")._2(Some("3,1"))
+    assert(modified.additionalHeuristics == TDGLandmarkCount :: Nil)
+    assert(modified.alternationWeights == 3 :: 1 :: Nil)
+  }
+
+  it must "know the anytime flag" in {
+    val search = ProgressionSearch(GreedyType, Some(HierarchicalHeuristicRelaxedComposition(SasHeuristics.hFF)), PriorityQueueSearch.abstractTaskSelection.random)
+    assert(!search.anytime)
+    assert(search.modifyOnOptionString("-anytime")._2(None).anytime)
+  }
+}
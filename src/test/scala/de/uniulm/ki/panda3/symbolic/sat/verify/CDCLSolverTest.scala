@@ -0,0 +1,137 @@
+// PANDA 3 -- a domain-independent planner for classical and hierarchical planning
+// Copyright (C) 2014-2018 the original author or authors.
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package de.uniulm.ki.panda3.symbolic.sat.verify
+
+import org.scalatest.FlatSpec
+
+import scala.util.Random
+
+class CDCLSolverTest extends FlatSpec {
+
+  // pigeon i is in hole j
+  private def pigeonHole(pigeons: Int, holes: Int): Seq[Array[Int]] = {
+    def in(i: Int, j: Int): Int = i * holes + j + 1
+
+    val somewhere = Range(0, pigeons) map { i => Range(0, holes) map { j => in(i, j) } toArray }
+    val notShared = for (j <- Range(0, holes); i1 <- Range(0, pigeons); i2 <- Range(i1 + 1, pigeons)) yield Array(-in(i1, j), -in(i2, j))
+
+    somewhere ++ notShared
+  }
+
+  private def satisfies(model: Array[Int], clauses: Seq[Array[Int]]): Boolean = {
+    val trueLiterals = model.toSet
+    clauses forall { _ exists trueLiterals.contains }
+  }
+
+  "The CDCL solver" must "find a model of a satisfiable formula" in {
+    val solver = new CDCLSolver()
+    val clauses = pigeonHole(5, 5)
+    clauses foreach solver.addClause
+
+    assert(solver.solve())
+    assert(satisfies(solver.model, clauses))
+  }
+
+  it must "detect an unsatisfiable formula" in {
+    val solver = new CDCLSolver()
+    pigeonHole(6, 5) foreach solver.addClause
+
+    assert(!solver.solve())
+  }
+
+  it must "agree with brute force on random 3-SAT formulae" in {
+    val random = new Random(42)
+    Range(0, 200) foreach { _ =>
+      val clauses = Range(0, 42) map { _ => Array.fill(3)((random.nextInt(10) + 1) * (if (random.nextBoolean()) 1 else -1)) }
+      val bruteForce = Range(0, 1 << 10) exists { assignment =>
+        val model = Range(1, 11) map { v => if ((assignment & (1 << (v - 1))) != 0) v else -v } toArray
+
+        satisfies(model, clauses)
+      }
+
+      val solver = new CDCLSolver()
+      clauses foreach solver.addClause
+      val solved = solver.solve()
+
+      assert(solved == bruteForce)
+      if (solved) assert(satisfies(solver.model, clauses))
+    }
+  }
+
+  it must "respect assumptions and keep its clauses between calls" in {
+    val solver = new CDCLSolver()
+    val clauses = pigeonHole(4, 4)
+    clauses foreach solver.addClause
+
+    // pigeon 0 and pigeon 1 can't both be in hole 0
+    assert(!solver.solve(Array(1, 5)))
+    assert(solver.solve(Array(1)))
+    assert(solver.model contains 1)
+
+    // guard an additional constraint with an activation literal
+    val activation = solver.numberOfVariables + 1
+    solver.addClause(Array(-1, -activation))
+    assert(solver.solve(Array(activation)))
+    assert(solver.model contains -1)
+    assert(!solver.solve(Array(activation, 1)))
+
+    // deactivating it makes the other assumption satisfiable again
+    solver.addClause(Array(-activation))
+    assert(solver.solve(Array(1)))
+    assert(satisfies(solver.model, clauses))
+  }
+
+  it must "delete learnt clauses without losing its completeness" in {
+    val solver = new CDCLSolver()
+    pigeonHole(8, 7) foreach solver.addClause
+
+    assert(!solver.solve())
+    assert(solver.numberOfDeletedClauses > 0)
+
+    val random = new Random(42)
+    Range(0, 5) foreach { _ =>
+      val clauses = Range(0, 400) map { _ => Array.fill(3)((random.nextInt(100) + 1) * (if (random.nextBoolean()) 1 else -1)) }
+      val randomSolver = new CDCLSolver()
+      clauses foreach randomSolver.addClause
+      if (randomSolver.solve()) assert(satisfies(randomSolver.model, clauses))
+    }
+  }
+
+  it must "stop when its thread is interrupted" in {
+    val solver = new CDCLSolver()
+    pigeonHole(12, 11) foreach solver.addClause
+
+    @volatile var outcome: Option[Throwable] = None
+    val thread = new Thread(new Runnable {
+      override def run(): Unit = try {
+        solver.solve()
+      } catch {
+        case t: Throwable => outcome = Some(t)
+      }
+    })
+    thread.start()
+    Thread.sleep(200)
+    thread.interrupt()
+    thread.join(10000)
+
+    assert(!thread.isAlive)
+    assert(outcome exists { _.isInstanceOf[InterruptedException] })
+    // the solver can still be used afterwards
+    solver.addClause(Array(-1))
+    assert(solver.numberOfVariables == 12 * 11)
+  }
+}
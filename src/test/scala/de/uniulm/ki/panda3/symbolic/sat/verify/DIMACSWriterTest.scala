@@ -0,0 +1,47 @@
+// PANDA 3 -- a domain-independent planner for classical and hierarchical planning
+// Copyright (C) 2014-2018 the original author or authors.
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package de.uniulm.ki.panda3.symbolic.sat.verify
+
+import java.io.File
+import java.nio.charset.StandardCharsets
+import java.nio.file.Files
+
+import org.scalatest.FlatSpec
+
+import scala.collection.JavaConversions
+
+class DIMACSWriterTest extends FlatSpec {
+
+  "The DIMACS writer" must "write the header in front of the clauses" in {
+    val file = File.createTempFile("panda-dimacs", ".cnf")
+    val writer = new DIMACSWriter(file)
+    writer addClause Array(1, -2)
+    writer addClause Array(-1000000000, 3, Int.MinValue + 1)
+    writer addClause Array[Int]()
+    writer close 1000000000
+
+    val bytes = Files.readAllBytes(file.toPath)
+    val lines = JavaConversions.asScalaBuffer(Files.readAllLines(file.toPath, StandardCharsets.US_ASCII))
+    file.delete()
+
+    // the header is a single line that fills the reserved space
+    assert(bytes(DIMACSWriter.HEADER_LENGTH - 1) == '\n')
+    assert(lines.head.length == DIMACSWriter.HEADER_LENGTH - 1)
+    assert(lines.head.trim.split(" ").toSeq == Seq("p", "cnf", "1000000000", "3"))
+    assert(lines.tail == Seq("1 -2 0", "-1000000000 3 -2147483647 0", "0"))
+  }
+}
@@ -0,0 +1,77 @@
+// PANDA 3 -- a domain-independent planner for classical and hierarchical planning
+// Copyright (C) 2014-2018 the original author or authors.
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package de.uniulm.ki.panda3.symbolic.sat.verify
+
+import java.io.FileInputStream
+
+import de.uniulm.ki.panda3.configuration._
+import de.uniulm.ki.panda3.symbolic.domain.Domain
+import de.uniulm.ki.panda3.symbolic.plan.Plan
+import de.uniulm.ki.panda3.symbolic.sat.IntProblem
+import de.uniulm.ki.panda3.symbolic.search.SearchState
+import de.uniulm.ki.util.{InformationCapsule, TimeCapsule}
+import org.scalatest.FlatSpec
+
+class SATRunnerTest extends FlatSpec {
+
+  val domainFile  = "src/test/resources/de/uniulm/ki/panda3/symbolic/parser/xml/SmartPhone-HierarchicalNoAxioms.xml"
+  val problemFile = "src/test/resources/de/uniulm/ki/panda3/symbolic/parser/xml/OrganizeMeeting_VeryVerySmall.xml"
+
+  def configuration(runConfiguration: SATRunConfiguration): PlanningConfiguration =
+    PlanningConfiguration(printGeneralInformation = false, printAdditionalData = false, randomSeed = 42, timeLimit = None,
+                          PredefinedConfigurations.htnParsing, PredefinedConfigurations.groundingPreprocess,
+                          SATSearch(BUILTINCDCL, runConfiguration, atMostOneEncodingMethod = SequentialEncoding),
+                          PostprocessingConfiguration(Set(SearchStatus, SearchResult)))
+
+  lazy val (domain, plan): (Domain, Plan) = {
+    val config = configuration(SingleSATRun())
+    val ((parsedDomain, parsedPlan), _) = config.runParsing(new FileInputStream(domainFile), new FileInputStream(problemFile))
+    val ((fullyParsedDomain, fullyParsedPlan), _, _) = config.runParsingPostProcessing(parsedDomain, parsedPlan)
+    config.runPreprocessing(fullyParsedDomain, fullyParsedPlan)._1._1
+  }
+
+  lazy val minimumK: Int = plan.planStepSchemaArray map domain.minimumDecompositionHeightToPrimitive max
+
+  def satisfiableOnItsOwn(k: Int): Boolean = {
+    val encoder = SOGPOCLDeleteEncoding(new TimeCapsule(), domain, plan, IntProblem(domain, plan, Nil, Nil), -1, OnlyNormalise, 0, Some(k),
+                                        SlotOverTimeRestriction, usePDTMutexes = false)
+    val solver = new CDCLSolver()
+    encoder.decompositionFormula ++ encoder.stateTransitionFormula ++ encoder.initialState ++ encoder.goalState ++ encoder.noAbstractsFormula foreach
+      solver.addClause
+    solver.solve()
+  }
+
+  "The SAT runner with the built-in solver" must "give the same results for all K as solving every formula on its own" in {
+    AtMostOneType.chosenType = SequentialEncoding
+    val runner = SATRunner(domain, plan, IntProblem(domain, plan, Nil, Nil), BUILTINCDCL, None, Nil, Nil, Nil, None, Nil, OnlyNormalise, usePDTMutexes = false,
+                           new TimeCapsule(), new InformationCapsule(), POCLDeleteEncoding, extractSolutionWithHierarchy = false, randomSeed = 42, solverThreads = 1)
+
+    // the runner keeps its solver for all K, the formulae of the smaller K are still part of it
+    val results = Range(minimumK, minimumK + 3) map { k => runner.run(-1, 0, defineK = Some(k)).isDefined }
+    val expected = Range(minimumK, minimumK + 3) map satisfiableOnItsOwn
+
+    assert(expected contains true)
+    assert(results == expected)
+  }
+
+  it must "find a plan when it is run over increasing K" in {
+    val result = configuration(FullSATRun()).runResultSearch(new FileInputStream(domainFile), new FileInputStream(problemFile))
+
+    assert(result(SearchStatus) == SearchState.SOLUTION)
+    assert(result(SearchResult).isDefined)
+  }
+}
@@ -0,0 +1,115 @@
+// PANDA 3 -- a domain-independent planner for classical and hierarchical planning
+// Copyright (C) 2014-2018 the original author or authors.
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package de.uniulm.ki.panda3.symbolic.sat.verify
+
+import java.io.FileInputStream
+
+import de.uniulm.ki.panda3.configuration._
+import de.uniulm.ki.panda3.symbolic.domain.Domain
+import de.uniulm.ki.panda3.symbolic.plan.Plan
+import de.uniulm.ki.panda3.symbolic.sat.IntProblem
+import de.uniulm.ki.util.TimeCapsule
+import org.scalatest.FlatSpec
+
+import scala.collection.mutable
+
+class VariableNamesTest extends FlatSpec {
+
+  val domainFile  = "src/test/resources/de/uniulm/ki/panda3/symbolic/parser/xml/SmartPhone-HierarchicalNoAxioms.xml"
+  val problemFile = "src/test/resources/de/uniulm/ki/panda3/symbolic/parser/xml/OrganizeMeeting_VeryVerySmall.xml"
+
+  lazy val (domain, plan): (Domain, Plan) = {
+    val configuration = PlanningConfiguration(printGeneralInformation = false, printAdditionalData = false, randomSeed = 42, timeLimit = None,
+                                              PredefinedConfigurations.htnParsing, PredefinedConfigurations.groundingPreprocess,
+                                              SATSearch(BUILTINCDCL, SingleSATRun(), atMostOneEncodingMethod = SequentialEncoding),
+                                              PostprocessingConfiguration(Set(SearchStatus)))
+    val ((parsedDomain, parsedPlan), _) = configuration.runParsing(new FileInputStream(domainFile), new FileInputStream(problemFile))
+    val ((fullyParsedDomain, fullyParsedPlan), _, _) = configuration.runParsingPostProcessing(parsedDomain, parsedPlan)
+    configuration.runPreprocessing(fullyParsedDomain, fullyParsedPlan)._1._1
+  }
+
+  lazy val minimumK: Int = plan.planStepSchemaArray map domain.minimumDecompositionHeightToPrimitive max
+
+  val encodings: Seq[(String, (Int, Boolean) => VerifyEncoding)] =
+    ("POCL delete", { (k: Int, keepNames: Boolean) =>
+      SOGPOCLDeleteEncoding(new TimeCapsule(), domain, plan, IntProblem(domain, plan, Nil, Nil), -1, OnlyNormalise, 0, Some(k), SlotOverTimeRestriction,
+                            usePDTMutexes = false, variableAllocator = new VariableAllocator(keepNames))
+    }) ::
+      ("POCL direct", { (k: Int, keepNames: Boolean) =>
+        SOGPOCLDirectEncoding(new TimeCapsule(), domain, plan, IntProblem(domain, plan, Nil, Nil), -1, OnlyNormalise, 0, Some(k), SlotOverTimeRestriction,
+                              usePDTMutexes = false, variableAllocator = new VariableAllocator(keepNames))
+      }) ::
+      ("PO state", { (k: Int, keepNames: Boolean) =>
+        SOGPOREncoding(new TimeCapsule(), domain, plan, IntProblem(domain, plan, Nil, Nil), -1, OnlyNormalise, 0, usePDTMutexes = false, Some(k),
+                       variableAllocator = new VariableAllocator(keepNames))
+      }) :: Nil
+
+  def formula(encoder: VerifyEncoding): Seq[Clause] =
+    encoder.decompositionFormula ++ encoder.stateTransitionFormula ++ encoder.initialState ++ encoder.goalState ++ encoder.noAbstractsFormula ++
+      encoder.planLengthDependentFormula(-1)
+
+  def satisfiable(clauses: Seq[Clause]): Boolean = {
+    val solver = new CDCLSolver()
+    clauses foreach solver.addClause
+    solver.solve()
+  }
+
+  encodings foreach { case (name, encoding) =>
+    "The " + name + " encoding" must "produce the same clauses if it keeps the names of its variables" in {
+      AtMostOneType.chosenType = SequentialEncoding
+      val withNames = formula(encoding(minimumK, true))
+      val withoutNames = formula(encoding(minimumK, false))
+
+      assert(withNames.length == withoutNames.length)
+      withNames zip withoutNames foreach { case (a, b) => assert(a.disjuncts sameElements b.disjuncts) }
+    }
+
+    it must "be equivalent to the formula over the names of its variables" in {
+      AtMostOneType.chosenType = SequentialEncoding
+      val results = Range(minimumK, minimumK + 3) map { k =>
+        val encoder = encoding(k, true)
+        val clauses = formula(encoder)
+
+        // every variable has exactly one name
+        val names: Map[Int, String] = encoder.variables.atomIndices.map({ case (atom, index) => (index + 1) -> atom }).toMap
+        assert(names.size == encoder.variables.atomIndices.size)
+        assert(clauses forall { _.disjuncts forall { l => names contains Math.abs(l) } })
+
+        // the old representation: clauses over atoms given by their names, numbered by a new allocator
+        val namedAtoms = new VariableAllocator()
+        val renamed = clauses map { c => Clause(c.disjuncts map { l => (names(Math.abs(l)), l > 0) })(namedAtoms) }
+
+        // the clauses map one-to-one onto each other
+        val mapping = new mutable.HashMap[Int, Int]()
+        clauses zip renamed foreach { case (a, b) =>
+          assert(a.disjuncts.length == b.disjuncts.length)
+          a.disjuncts zip b.disjuncts foreach { case (x, y) =>
+            assert((x > 0) == (y > 0))
+            assert(mapping.getOrElseUpdate(Math.abs(x), Math.abs(y)) == Math.abs(y))
+          }
+        }
+        assert(mapping.values.toSet.size == mapping.size)
+
+        val result = satisfiable(clauses)
+        assert(result == satisfiable(renamed))
+        result
+      }
+
+      assert(results contains true)
+    }
+  }
+}
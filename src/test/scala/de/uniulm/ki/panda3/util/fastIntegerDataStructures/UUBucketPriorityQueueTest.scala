@@ -0,0 +1,106 @@
+// PANDA 3 -- a domain-independent planner for classical and hierarchical planning
+// Copyright (C) 2014-2018 the original author or authors.
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package de.uniulm.ki.panda3.util.fastIntegerDataStructures
+
+import org.scalatest.FlatSpec
+
+import scala.util.Random
+
+class UUBucketPriorityQueueTest extends FlatSpec {
+
+  "The bucket queue" must "return elements ordered by key, tie-breaker and insertion" in {
+    val random = new Random(42)
+    val queue = new UUBucketPriorityQueue[(Int, Int, Int)]()
+    val elements = Range(0, 5000) map { i => (random.nextInt(200) - 100, random.nextInt(5), i) }
+    elements foreach { case e@(key, tie, _) => queue.add(e, key, tie) }
+
+    assert(queue.size() == elements.length)
+    val polled = elements map { _ => queue.poll() }
+    assert(queue.isEmpty)
+    assert(polled == elements.sorted)
+  }
+
+  it must "return elements with equal keys last in first out if asked to" in {
+    val queue = new UUBucketPriorityQueue[String](false)
+    queue.add("a", 1)
+    queue.add("b", 1)
+    queue.add("c", 0)
+
+    assert(queue.poll() == "c")
+    assert(queue.poll() == "b")
+    assert(queue.poll() == "a")
+  }
+
+  it must "only return the latest entry of an updated element" in {
+    val queue = new UUBucketPriorityQueue[String]()
+    queue.update("a", 5, 0)
+    queue.update("b", 3, 0)
+    queue.update("a", 1, 0)
+    assert(queue.size() == 2)
+
+    assert(queue.peekKey() == 1)
+    assert(queue.poll() == "a")
+    assert(queue.poll() == "b")
+    assert(queue.poll() == null)
+    assert(queue.isEmpty)
+  }
+
+  it must "drop the worst elements if its capacity is exceeded" in {
+    val queue = new UUBucketPriorityQueue[Int]()
+    queue.setCapacity(10)
+    Range(0, 100).reverse foreach { i => queue.add(i, i / 3, i % 3) }
+
+    assert(queue.size() == 10)
+    assert(queue.getNumberOfEvictions == 90)
+    assert((Range(0, 10) map { _ => queue.poll() }) == Range(0, 10))
+  }
+
+  it must "keep the order if the keys span more values than there may be buckets" in {
+    val random = new Random(42)
+    val queue = new UUBucketPriorityQueue[(Int, Int, Int)](true, 64)
+    // the first elements fit into the buckets, the later ones force the queue to switch to a heap
+    val elements = Range(0, 5000) map { i => (if (i < 100) random.nextInt(50) else random.nextInt(100000) - 50000, random.nextInt(5), i) }
+    elements foreach { case e@(key, tie, _) => queue.add(e, key, tie) }
+
+    assert(queue.size() == elements.length)
+    assert(queue.peekKey() == elements.map(_._1).min)
+    val polled = elements map { _ => queue.poll() }
+    assert(queue.isEmpty)
+    assert(polled == elements.sorted)
+
+    // after clearing it, the queue uses buckets again
+    queue.add((0, 0, 0), Int.MaxValue)
+    queue.add((1, 0, 0), Int.MinValue)
+    queue.clear()
+    queue.add((2, 0, 0), 2)
+    queue.add((1, 0, 0), 1)
+    assert(queue.poll() == ((1, 0, 0)))
+    assert(queue.poll() == ((2, 0, 0)))
+  }
+
+  it must "support updates and a capacity after switching to a heap" in {
+    val queue = new UUBucketPriorityQueue[Int](false, 64)
+    queue.setCapacity(10)
+    Range(0, 100) foreach { i => queue.update(i, i * 1000, 0) }
+    queue.update(99, -1, 0)
+
+    assert(queue.size() == 10)
+    assert(queue.peekKey() == -1)
+    assert((Range(0, 10) map { _ => queue.poll() }) == 99 +: Range(0, 9))
+    assert(queue.isEmpty)
+  }
+}
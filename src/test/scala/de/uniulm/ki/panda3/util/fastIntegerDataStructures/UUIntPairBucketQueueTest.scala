@@ -0,0 +1,77 @@
+// PANDA 3 -- a domain-independent planner for classical and hierarchical planning
+// Copyright (C) 2014-2018 the original author or authors.
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package de.uniulm.ki.panda3.util.fastIntegerDataStructures
+
+import org.scalatest.FlatSpec
+
+import scala.util.Random
+
+class UUIntPairBucketQueueTest extends FlatSpec {
+
+  def pollAll(queue: UUIntPairPriorityQueue): Seq[(Int, Int)] = {
+    val res = Seq.newBuilder[(Int, Int)]
+    while (!queue.isEmpty) {
+      val key = queue.minKey()
+      res += ((key, queue.pollMinValue()))
+    }
+    res.result()
+  }
+
+  "The int pair bucket queue" must "return the elements ordered by key" in {
+    val random = new Random(42)
+    val queue = new UUIntPairBucketQueue()
+    // some keys do not fit into the buckets and are kept in the heap
+    val elements = Range(0, 5000) map { i => (random.nextInt(300) - 20 + (if (i % 100 == 0) UUIntPairBucketQueue.MAX_BUCKETS else 0), i) }
+    elements foreach { case (key, value) => queue.add(key, value) }
+
+    assert(queue.size() == elements.length)
+    val polled = pollAll(queue)
+    assert(polled.map(_._1) == elements.map(_._1).sorted)
+    assert(polled.toSet == elements.toSet)
+  }
+
+  it must "support adding elements while it is being emptied and be reusable after clear" in {
+    val random = new Random(42)
+    val queue = new UUIntPairBucketQueue()
+    Range(0, 10) foreach { round =>
+      queue.add(round, -1)
+      queue.add(1000, -1)
+      queue.clear()
+      assert(queue.isEmpty)
+
+      // a Dijkstra-like usage: every polled element causes elements with larger keys
+      queue.add(0, 0)
+      var last = 0
+      var polled = 0
+      while (!queue.isEmpty) {
+        val key = queue.minKey()
+        queue.pollMinValue()
+        assert(key >= last)
+        last = key
+        polled += 1
+        if (polled < 1000) Range(0, 2) foreach { _ => queue.add(key + random.nextInt(3), polled) }
+      }
+      assert(polled == 1999)
+    }
+  }
+
+  "The heuristics" must "use a bucket queue only for small non-negative costs" in {
+    assert(UUIntPairPriorityQueue.forCosts(Array(0, 1, 5)).isInstanceOf[UUIntPairBucketQueue])
+    assert(!UUIntPairPriorityQueue.forCosts(Array(1, -1)).isInstanceOf[UUIntPairBucketQueue])
+    assert(!UUIntPairPriorityQueue.forCosts(Array(1, UUIntPairBucketQueue.MAX_BUCKET_COST + 1)).isInstanceOf[UUIntPairBucketQueue])
+  }
+}